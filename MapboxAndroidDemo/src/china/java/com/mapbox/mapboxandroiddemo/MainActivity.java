@@ -44,6 +44,7 @@ import com.mapbox.mapboxandroiddemo.examples.extrusions.AdjustExtrusionLightActi
 import com.mapbox.mapboxandroiddemo.examples.extrusions.RotationExtrusionActivity;
 import com.mapbox.mapboxandroiddemo.examples.labs.AnimatedImageGifActivity;
 import com.mapbox.mapboxandroiddemo.examples.labs.IndoorMapActivity;
+import com.mapbox.mapboxandroiddemo.examples.labs.MarkerAnimationStressActivity;
 import com.mapbox.mapboxandroiddemo.examples.labs.MarkerFollowingRouteActivity;
 import com.mapbox.mapboxandroiddemo.examples.labs.PictureInPictureActivity;
 import com.mapbox.mapboxandroiddemo.examples.labs.PulsingLayerOpacityColorActivity;
@@ -639,6 +640,14 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
       null,
       R.string.activity_lab_marker_following_route_url, false, BuildConfig.MIN_SDK_VERSION));
 
+    exampleItemModels.add(new ExampleItemModel(
+      R.id.nav_lab,
+      R.string.activity_lab_marker_animation_stress_title,
+      R.string.activity_lab_marker_animation_stress_description,
+      new Intent(MainActivity.this, MarkerAnimationStressActivity.class),
+      null,
+      R.string.activity_lab_marker_animation_stress_url, true, BuildConfig.MIN_SDK_VERSION));
+
     exampleItemModels.add(new ExampleItemModel(
       R.id.nav_lab,
       R.string.activity_lab_space_station_location_title,
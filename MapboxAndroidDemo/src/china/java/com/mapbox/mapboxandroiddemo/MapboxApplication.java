@@ -2,19 +2,66 @@ package com.mapbox.mapboxandroiddemo;
 
 import android.app.Application;
 
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
+import com.mapbox.mapboxandroiddemo.utils.ReverseGeocodeCache;
+import com.mapbox.mapboxandroiddemo.utils.VectorTilesCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.squareup.picasso.OkHttpDownloader;
 import com.squareup.picasso.Picasso;
 
 public class MapboxApplication extends Application {
 
+  private static final int FEATURE_COLLECTION_CACHE_SIZE_BYTES = 8 * 1024 * 1024;
+  private static final int VECTOR_TILES_CACHE_SIZE = 2;
+
+  private FeatureCollectionCache featureCollectionCache;
+  private HttpStack httpStack;
+  private ReverseGeocodeCache reverseGeocodeCache;
+  private VectorTilesCache vectorTilesCache;
+
   @Override
   public void onCreate() {
     super.onCreate();
+    featureCollectionCache = new FeatureCollectionCache(FEATURE_COLLECTION_CACHE_SIZE_BYTES);
+    httpStack = new HttpStack(this);
+    reverseGeocodeCache = new ReverseGeocodeCache(this, httpStack);
+    vectorTilesCache = new VectorTilesCache(VECTOR_TILES_CACHE_SIZE);
     setUpPicasso();
     Mapbox.getInstance(this, getString(R.string.access_token));
   }
 
+  @Override
+  public void onTrimMemory(int level) {
+    super.onTrimMemory(level);
+    featureCollectionCache.onTrimMemory(level);
+    vectorTilesCache.onTrimMemory(level);
+  }
+
+  @Override
+  public void onLowMemory() {
+    super.onLowMemory();
+    featureCollectionCache.clear();
+    reverseGeocodeCache.clearMemory();
+    vectorTilesCache.clear();
+  }
+
+  public FeatureCollectionCache getFeatureCollectionCache() {
+    return featureCollectionCache;
+  }
+
+  public HttpStack getHttpStack() {
+    return httpStack;
+  }
+
+  public ReverseGeocodeCache getReverseGeocodeCache() {
+    return reverseGeocodeCache;
+  }
+
+  public VectorTilesCache getVectorTilesCache() {
+    return vectorTilesCache;
+  }
+
   private void setUpPicasso() {
     Picasso.Builder builder = new Picasso.Builder(this);
     builder.downloader(new OkHttpDownloader(this, Integer.MAX_VALUE));
@@ -14,6 +14,7 @@ import com.mapbox.mapboxandroiddemo.MainActivity;
 import com.mapbox.mapboxandroiddemo.R;
 import com.mapbox.mapboxandroiddemo.commons.AnalyticsTracker;
 import com.mapbox.mapboxandroiddemo.model.usermodel.UserResponse;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -26,7 +27,6 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 import static com.mapbox.mapboxandroiddemo.commons.StringConstants.AUTHCODE_KEY;
 import static com.mapbox.mapboxandroiddemo.commons.StringConstants.AVATAR_IMAGE_KEY;
@@ -87,7 +87,8 @@ public class AccountRetrievalService extends IntentService {
       .appendQueryParameter("code", code)
       .build().getQuery();
 
-    OkHttpClient client = new OkHttpClient();
+    // The shared cache never stores the response to a POST, so the token exchange isn't cached
+    OkHttpClient client = HttpStack.getInstance(this).getClient();
     Request request = new Request.Builder()
       .addHeader("User-Agent", "Android Dev Preview")
       .addHeader("Content-Type", "application/x-www-form-urlencoded")
@@ -131,10 +132,7 @@ public class AccountRetrievalService extends IntentService {
   }
 
   private void getUserInfo(final String userName, final String token) {
-    Retrofit retrofit = new Retrofit.Builder()
-      .baseUrl(BASE_URL)
-      .addConverterFactory(GsonConverterFactory.create())
-      .build();
+    Retrofit retrofit = HttpStack.getInstance(this).getRetrofit(BASE_URL);
     MapboxAccountRetrofitService service = retrofit.create(MapboxAccountRetrofitService.class);
     retrofit2.Call<UserResponse> request = service.getUserAccount(userName, token);
     request.enqueue(new retrofit2.Callback<UserResponse>() {
@@ -1,11 +1,11 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -32,10 +32,8 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
   public static final String ID_LAYER = "layer-id";
   public static final String SOURCE_URL = "mapbox://examples.dwtmhwpu";
   private MapView mapView;
-  private Handler handler;
   private FillLayer layer;
   private int index = 1;
-  private RefreshGeoJsonRunnable refreshGeoJsonRunnable;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -48,7 +46,6 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
     // This contains the MapView in XML and needs to be called after the account manager
     setContentView(R.layout.activity_style_rainfall);
 
-    handler = new Handler();
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
@@ -60,24 +57,21 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
       @Override
       public void onStyleLoaded(@NonNull Style style) {
         addRadarData(style);
-        refreshGeoJsonRunnable = new RefreshGeoJsonRunnable();
-        do {
-          handler.postDelayed(refreshGeoJsonRunnable, 1000);
-        }
-        while (index == 37);
+        // Step through the radar frames, the scheduler pauses this while the activity is paused
+        FrameScheduler.getInstance().schedule(AddRainFallStyleActivity.this, 1000,
+          new RefreshGeoJsonCallback());
       }
     });
   }
 
-  private class RefreshGeoJsonRunnable implements Runnable {
+  private class RefreshGeoJsonCallback implements FrameScheduler.Callback {
     @Override
-    public void run() {
+    public void onFrame(long frameTimeNanos, long budgetNanos) {
       layer.setFilter(eq((Expression.get("idx")), literal(index)));
       index++;
       if (index == 37) {
         index = 0;
       }
-      handler.postDelayed(this, 1000);
     }
   }
 
@@ -151,9 +145,6 @@ public class AddRainFallStyleActivity extends AppCompatActivity implements OnMap
   protected void onDestroy() {
     super.onDestroy();
     mapView.onDestroy();
-    handler.removeCallbacks(refreshGeoJsonRunnable);
-    refreshGeoJsonRunnable = null;
-    handler = null;
   }
 
   @Override
@@ -7,6 +7,7 @@ import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngBounds;
@@ -18,10 +19,6 @@ import com.mapbox.mapboxsdk.style.layers.FillLayer;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
-
-import timber.log.Timber;
-
 import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.geometryType;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
@@ -76,8 +73,7 @@ public class BathymetryActivity extends AppCompatActivity implements OnMapReadyC
         style.removeLayer("water-label");
 
         // Initialize FeatureCollection object for future use with layers
-        featureCollection = FeatureCollection.fromJson(loadGeoJsonFromAsset(
-            "bathymetry-data.geojson"));
+        featureCollection = GeoJsonAssetLoader.load(BathymetryActivity.this, "bathymetry-data.geojson");
 
         // Retrieve GeoJSON from local file and add it to the map
         style.addSource(new GeoJsonSource(GEOJSON_SOURCE_ID,
@@ -166,21 +162,4 @@ public class BathymetryActivity extends AppCompatActivity implements OnMapReadyC
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-
-  private String loadGeoJsonFromAsset(String filename) {
-    try {
-      // Load GeoJSON file
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (Exception exception) {
-      Timber.e("Exception Loading GeoJSON: %s", exception.toString());
-      exception.printStackTrace();
-      return null;
-    }
-  }
 }
\ No newline at end of file
@@ -1,12 +1,13 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -74,7 +75,8 @@ public class ChoroplethJsonVectorMixActivity extends AppCompatActivity implement
         // Add Mapbox-hosted vector source for state polygons
         style.addSource(new VectorSource(VECTOR_SOURCE_NAME, "mapbox://mapbox.us_census_states_2015"));
 
-        new LoadJson(ChoroplethJsonVectorMixActivity.this).execute();
+        BackgroundTaskExecutor.getInstance().execute(ChoroplethJsonVectorMixActivity.this,
+          new LoadJson(ChoroplethJsonVectorMixActivity.this));
       }
     });
   }
@@ -102,17 +104,18 @@ public class ChoroplethJsonVectorMixActivity extends AppCompatActivity implement
     }
   }
 
-  private static class LoadJson extends AsyncTask<Void, Void, Expression.Stop[]> {
+  private static class LoadJson extends BackgroundTask<Expression.Stop[]> {
 
     private WeakReference<ChoroplethJsonVectorMixActivity> weakReference;
     private static final String TAG = "ChJSonVectorMix";
 
     LoadJson(ChoroplethJsonVectorMixActivity activity) {
+      super(Pool.CPU);
       this.weakReference = new WeakReference<>(activity);
     }
 
     @Override
-    protected Expression.Stop[] doInBackground(Void... voids) {
+    protected Expression.Stop[] doInBackground() {
       try {
         ChoroplethJsonVectorMixActivity activity = weakReference.get();
         if (activity != null) {
@@ -156,7 +159,6 @@ public class ChoroplethJsonVectorMixActivity extends AppCompatActivity implement
 
     @Override
     protected void onPostExecute(@Nullable Expression.Stop[] stopsArray) {
-      super.onPostExecute(stopsArray);
       ChoroplethJsonVectorMixActivity activity = weakReference.get();
       if (activity != null && stopsArray != null) {
         activity.addDataToMap(stopsArray);
@@ -1,13 +1,18 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
 import android.graphics.Color;
+import android.graphics.PointF;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ClusteredGeoJsonSource;
+import com.mapbox.mapboxandroiddemo.utils.PointClusterIndex;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -18,14 +23,10 @@ import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.CircleLayer;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
-import com.mapbox.mapboxsdk.style.sources.GeoJsonOptions;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.utils.BitmapUtils;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-
-import timber.log.Timber;
+import java.util.List;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.all;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.division;
@@ -52,13 +53,24 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.textIgnorePlacem
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.textSize;
 
 /**
- * Use GeoJSON and circle layers to visualize point data as circle clusters.
+ * Use GeoJSON and circle layers to visualize point data as circle clusters. The points are clustered on
+ * the Java side with a {@link PointClusterIndex}, so tapping a cluster can zoom to where it expands and
+ * tell what's in it.
  */
-public class CircleLayerClusteringActivity extends AppCompatActivity {
+public class CircleLayerClusteringActivity extends AppCompatActivity implements
+  MapboxMap.OnMapClickListener, ClusteredGeoJsonSource.OnClustersLoadedListener {
+
+  private static final String EARTHQUAKES_URL = "https://www.mapbox.com/mapbox-gl-js/assets/earthquakes.geojson";
+  private static final String SOURCE_ID = "earthquakes";
+  private static final String[] CLUSTER_LAYER_IDS = {"cluster-0", "cluster-1", "cluster-2"};
+  private static final int CLUSTER_MAX_ZOOM = 14;
+  private static final int CLUSTER_RADIUS = 50;
+  // The most points of a tapped cluster looked at for its strongest earthquake
+  private static final int MAX_LEAVES = 1000;
 
   private MapView mapView;
   private MapboxMap mapboxMap;
-
+  private ClusteredGeoJsonSource earthquakesSource;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -93,6 +105,13 @@ public class CircleLayerClusteringActivity extends AppCompatActivity {
               true
             );
 
+            // Download the earthquakes and cluster them. This example visualizes all M1.0+ earthquakes
+            // from 12/22/15 to 1/21/16 as logged by USGS' Earthquake hazards program.
+            earthquakesSource.load(CircleLayerClusteringActivity.this, CircleLayerClusteringActivity.this,
+              EARTHQUAKES_URL,
+              new PointClusterIndex.Options().withMaxZoom(CLUSTER_MAX_ZOOM).withRadius(CLUSTER_RADIUS),
+              CircleLayerClusteringActivity.this);
+
             Toast.makeText(CircleLayerClusteringActivity.this, R.string.zoom_map_in_and_out_instruction,
               Toast.LENGTH_SHORT).show();
           }
@@ -134,6 +153,12 @@ public class CircleLayerClusteringActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (mapboxMap != null) {
+      mapboxMap.removeOnMapClickListener(this);
+    }
+    if (earthquakesSource != null) {
+      earthquakesSource.destroy();
+    }
     mapView.onDestroy();
   }
 
@@ -143,26 +168,45 @@ public class CircleLayerClusteringActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
+  @Override
+  public void onClustersLoaded(@NonNull PointClusterIndex clusterIndex) {
+    mapboxMap.addOnMapClickListener(this);
+  }
 
-  private void addClusteredGeoJsonSource(@NonNull Style loadedMapStyle) {
-
-    // Add a new source from the GeoJSON data and set the 'cluster' option to true.
-    try {
-      loadedMapStyle.addSource(
-        // Point to GeoJSON data. This example visualizes all M1.0+ earthquakes from
-        // 12/22/15 to 1/21/16 as logged by USGS' Earthquake hazards program.
-        new GeoJsonSource("earthquakes",
-          new URL("https://www.mapbox.com/mapbox-gl-js/assets/earthquakes.geojson"),
-          new GeoJsonOptions()
-            .withCluster(true)
-            .withClusterMaxZoom(14)
-            .withClusterRadius(50)
-        )
-      );
-    } catch (MalformedURLException malformedUrlException) {
-      Timber.e("Check the URL %s", malformedUrlException.getMessage());
+  @Override
+  public boolean onMapClick(@NonNull LatLng point) {
+    PointF screenPoint = mapboxMap.getProjection().toScreenLocation(point);
+    List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, CLUSTER_LAYER_IDS);
+    if (features.isEmpty() || !features.get(0).hasProperty(PointClusterIndex.PROPERTY_CLUSTER_ID)) {
+      return false;
+    }
+    PointClusterIndex clusterIndex = earthquakesSource.getClusterIndex();
+    Feature cluster = features.get(0);
+    int clusterId = cluster.getNumberProperty(PointClusterIndex.PROPERTY_CLUSTER_ID).intValue();
+    int pointCount = cluster.getNumberProperty(PointClusterIndex.PROPERTY_POINT_COUNT).intValue();
+
+    double strongestMagnitude = 0;
+    for (Feature leaf : clusterIndex.getLeaves(clusterId, MAX_LEAVES, 0)) {
+      if (leaf.hasProperty("mag")) {
+        strongestMagnitude = Math.max(strongestMagnitude, leaf.getNumberProperty("mag").doubleValue());
+      }
     }
+    Toast.makeText(this, getString(R.string.earthquake_cluster_info, pointCount, strongestMagnitude),
+      Toast.LENGTH_SHORT).show();
+
+    Point center = (Point) cluster.geometry();
+    mapboxMap.animateCamera(CameraUpdateFactory.newLatLngZoom(
+      new LatLng(center.latitude(), center.longitude()), clusterIndex.getClusterExpansionZoom(clusterId)));
+    return true;
+  }
+
+  private void addClusteredGeoJsonSource(@NonNull Style loadedMapStyle) {
 
+    // Add an empty source, which is filled with the clusters around the camera once the data is
+    // loaded and clustered.
+    GeoJsonSource source = new GeoJsonSource(SOURCE_ID);
+    loadedMapStyle.addSource(source);
+    earthquakesSource = new ClusteredGeoJsonSource(mapboxMap, source);
 
     // Use the earthquakes GeoJSON source to create three layers: One layer for each cluster category.
     // Each point range gets a different fill color.
@@ -173,7 +217,7 @@ public class CircleLayerClusteringActivity extends AppCompatActivity {
     };
 
     //Creating a marker layer for single data points
-    SymbolLayer unclustered = new SymbolLayer("unclustered-points", "earthquakes");
+    SymbolLayer unclustered = new SymbolLayer("unclustered-points", SOURCE_ID);
 
     unclustered.setProperties(
       iconImage("cross-icon-id"),
@@ -194,7 +238,7 @@ public class CircleLayerClusteringActivity extends AppCompatActivity {
 
     for (int i = 0; i < layers.length; i++) {
       //Add clusters' circles
-      CircleLayer circles = new CircleLayer("cluster-" + i, "earthquakes");
+      CircleLayer circles = new CircleLayer(CLUSTER_LAYER_IDS[i], SOURCE_ID);
       circles.setProperties(
         circleColor(layers[i][1]),
         circleRadius(18f)
@@ -216,7 +260,7 @@ public class CircleLayerClusteringActivity extends AppCompatActivity {
     }
 
     //Add the count labels
-    SymbolLayer count = new SymbolLayer("count", "earthquakes");
+    SymbolLayer count = new SymbolLayer("count", SOURCE_ID);
     count.setProperties(
       textField(Expression.toString(get("point_count"))),
       textSize(12f),
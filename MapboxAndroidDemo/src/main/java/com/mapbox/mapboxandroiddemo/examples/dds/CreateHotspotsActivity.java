@@ -6,6 +6,8 @@ import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ClusteredGeoJsonSource;
+import com.mapbox.mapboxandroiddemo.utils.PointClusterIndex;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -13,14 +15,8 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.CircleLayer;
-import com.mapbox.mapboxsdk.style.sources.GeoJsonOptions;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-
-import timber.log.Timber;
-
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.literal;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.toNumber;
@@ -29,11 +25,20 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleColor;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleRadius;
 
 /**
- * Use Mapbox GL clustering to visualize point data as hotspots.
+ * Use clustering to visualize point data as hotspots. The points are clustered on the Java side with
+ * a {@link PointClusterIndex}.
  */
 public class CreateHotspotsActivity extends AppCompatActivity {
 
+  private static final String EARTHQUAKES_URL = "https://www.mapbox.com/mapbox-gl-js/assets/earthquakes.geojson";
+  // Max zoom to cluster points on
+  private static final int CLUSTER_MAX_ZOOM = 15;
+  // Use small cluster radius for the hotspots look
+  private static final int CLUSTER_RADIUS = 20;
+
   private MapView mapView;
+  private MapboxMap mapboxMap;
+  private ClusteredGeoJsonSource earthquakesSource;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -51,6 +56,7 @@ public class CreateHotspotsActivity extends AppCompatActivity {
     mapView.getMapAsync(new OnMapReadyCallback() {
       @Override
       public void onMapReady(@NonNull final MapboxMap mapboxMap) {
+        CreateHotspotsActivity.this.mapboxMap = mapboxMap;
         mapboxMap.setStyle(Style.DARK, new Style.OnStyleLoaded() {
           @Override
           public void onStyleLoaded(@NonNull Style style) {
@@ -63,22 +69,15 @@ public class CreateHotspotsActivity extends AppCompatActivity {
 
   private void addClusteredGeoJsonSource(@NonNull Style loadedMapStyle) {
 
-    // Add a new source from our GeoJSON data and set the 'cluster' option to true.
-    try {
-      loadedMapStyle.addSource(
-        // Point to GeoJSON data. This example visualizes all M1.0+ earthquakes from
-        // 12/22/15 to 1/21/16 as logged by USGS' Earthquake hazards program.
-        new GeoJsonSource("earthquakes",
-          new URL("https://www.mapbox.com/mapbox-gl-js/assets/earthquakes.geojson"),
-          new GeoJsonOptions()
-            .withCluster(true)
-            .withClusterMaxZoom(15) // Max zoom to cluster points on
-            .withClusterRadius(20) // Use small cluster radius for the hotspots look
-        )
-      );
-    } catch (MalformedURLException malformedUrlException) {
-      Timber.e("Check the URL %s", malformedUrlException.getMessage());
-    }
+    // Add an empty source, which is filled with the clusters around the camera once the data is
+    // loaded and clustered.
+    GeoJsonSource source = new GeoJsonSource("earthquakes");
+    loadedMapStyle.addSource(source);
+    earthquakesSource = new ClusteredGeoJsonSource(mapboxMap, source);
+    // Point to GeoJSON data. This example visualizes all M1.0+ earthquakes from
+    // 12/22/15 to 1/21/16 as logged by USGS' Earthquake hazards program.
+    earthquakesSource.load(this, this, EARTHQUAKES_URL,
+      new PointClusterIndex.Options().withMaxZoom(CLUSTER_MAX_ZOOM).withRadius(CLUSTER_RADIUS), null);
 
     // Use the earthquakes source to create four layers:
     // three for each cluster category, and one for unclustered points
@@ -151,6 +150,9 @@ public class CreateHotspotsActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (earthquakesSource != null) {
+      earthquakesSource.destroy();
+    }
     mapView.onDestroy();
   }
 
@@ -1,7 +1,6 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
 import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -9,6 +8,9 @@ import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -19,11 +21,7 @@ import com.mapbox.mapboxsdk.style.layers.Property;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.util.Scanner;
-
-import timber.log.Timber;
 
 /**
  * Draw a polyline by parsing a GeoJSON file with the Mapbox Android SDK.
@@ -55,7 +53,8 @@ public class DrawGeojsonLineActivity extends AppCompatActivity implements OnMapR
     mapboxMap.setStyle(Style.MAPBOX_STREETS, new Style.OnStyleLoaded() {
       @Override
       public void onStyleLoaded(@NonNull Style style) {
-        new LoadGeoJson(DrawGeojsonLineActivity.this).execute();
+        BackgroundTaskExecutor.getInstance().execute(DrawGeojsonLineActivity.this,
+          new LoadGeoJson(DrawGeojsonLineActivity.this));
       }
     });
   }
@@ -80,36 +79,26 @@ public class DrawGeojsonLineActivity extends AppCompatActivity implements OnMapR
     }
   }
 
-  private static class LoadGeoJson extends AsyncTask<Void, Void, FeatureCollection> {
+  private static class LoadGeoJson extends BackgroundTask<FeatureCollection> {
 
     private WeakReference<DrawGeojsonLineActivity> weakReference;
 
     LoadGeoJson(DrawGeojsonLineActivity activity) {
+      super(Pool.CPU);
       this.weakReference = new WeakReference<>(activity);
     }
 
     @Override
-    protected FeatureCollection doInBackground(Void... voids) {
-      try {
-        DrawGeojsonLineActivity activity = weakReference.get();
-        if (activity != null) {
-          InputStream inputStream = activity.getAssets().open("example.geojson");
-          return FeatureCollection.fromJson(convertStreamToString(inputStream));
-        }
-      } catch (Exception exception) {
-        Timber.e("Exception Loading GeoJSON: %s" , exception.toString());
+    protected FeatureCollection doInBackground() {
+      DrawGeojsonLineActivity activity = weakReference.get();
+      if (activity != null) {
+        return GeoJsonAssetLoader.load(activity, "example.geojson");
       }
       return null;
     }
 
-    static String convertStreamToString(InputStream is) {
-      Scanner scanner = new Scanner(is).useDelimiter("\\A");
-      return scanner.hasNext() ? scanner.next() : "";
-    }
-
     @Override
     protected void onPostExecute(@Nullable FeatureCollection featureCollection) {
-      super.onPostExecute(featureCollection);
       DrawGeojsonLineActivity activity = weakReference.get();
       if (activity != null && featureCollection != null) {
         activity.drawLines(featureCollection);
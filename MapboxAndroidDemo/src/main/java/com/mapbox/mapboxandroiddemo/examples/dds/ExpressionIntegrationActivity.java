@@ -3,7 +3,6 @@ package com.mapbox.mapboxandroiddemo.examples.dds;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -18,6 +17,9 @@ import android.widget.Toast;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraUpdate;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -31,11 +33,9 @@ import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
 import timber.log.Timber;
 
@@ -131,7 +131,8 @@ public class ExpressionIntegrationActivity
       @Override
       public void onStyleLoaded(@NonNull final Style style) {
         setUpMapImagePins(style);
-        new LoadGeoJson(ExpressionIntegrationActivity.this).execute();
+        BackgroundTaskExecutor.getInstance().execute(ExpressionIntegrationActivity.this,
+          new LoadGeoJson(ExpressionIntegrationActivity.this));
       }
     });
   }
@@ -163,24 +164,27 @@ public class ExpressionIntegrationActivity
     }
   }
 
-  private static class LoadGeoJson extends AsyncTask<Void, Void, FeatureCollection> {
+  private static class LoadGeoJson extends BackgroundTask<FeatureCollection> {
 
     private WeakReference<ExpressionIntegrationActivity> weakReference;
 
     LoadGeoJson(ExpressionIntegrationActivity activity) {
+      super(Pool.CPU);
       this.weakReference = new WeakReference<>(activity);
     }
 
     @Override
-    protected FeatureCollection doInBackground(Void... voids) {
+    protected FeatureCollection doInBackground() {
       try {
         ExpressionIntegrationActivity activity = weakReference.get();
         if (activity != null) {
 
-          InputStream inputStream = activity.getAssets().open("weather_data_per_state_before2006.geojson");
-
           // Initialize FeatureCollection object for future use with layers
-          FeatureCollection featureCollection = FeatureCollection.fromJson(convertStreamToString(inputStream));
+          FeatureCollection featureCollection = GeoJsonAssetLoader.load(activity,
+            "weather_data_per_state_before2006.geojson");
+          if (featureCollection == null) {
+            return null;
+          }
 
           // Find out the states represented in the FeatureCollection
           // and bounds of the extreme conditions
@@ -214,14 +218,8 @@ public class ExpressionIntegrationActivity
       return null;
     }
 
-    static String convertStreamToString(InputStream is) {
-      Scanner scanner = new Scanner(is).useDelimiter("\\A");
-      return scanner.hasNext() ? scanner.next() : "";
-    }
-
     @Override
     protected void onPostExecute(@Nullable FeatureCollection featureCollection) {
-      super.onPostExecute(featureCollection);
       ExpressionIntegrationActivity activity = weakReference.get();
       if (activity != null && featureCollection != null) {
         activity.addDataToMap(featureCollection);
@@ -2,10 +2,22 @@ package com.mapbox.mapboxandroiddemo.examples.dds;
 
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.CameraMoveThrottle;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
+import com.mapbox.mapboxandroiddemo.utils.KdPointIndex;
+import com.mapbox.mapboxandroiddemo.utils.PointGridAggregator;
 import com.mapbox.mapboxsdk.Mapbox;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
@@ -14,9 +26,14 @@ import com.mapbox.mapboxsdk.style.layers.CircleLayer;
 import com.mapbox.mapboxsdk.style.layers.HeatmapLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
@@ -39,16 +56,38 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.heatmapOpacity;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.heatmapRadius;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.heatmapWeight;
 
-public class HeatmapActivity extends AppCompatActivity {
+/**
+ * Show earthquakes as a heatmap which turns into circles when zoomed in. Rather than every earthquake, the
+ * heatmap is given the earthquakes binned into a grid of a few pixels at the zoom of the map, around
+ * the area on screen, and the circles are given the earthquakes around the area on screen.
+ */
+public class HeatmapActivity extends AppCompatActivity implements CameraMoveThrottle.OnCameraChangeListener {
 
   private static final String EARTHQUAKE_SOURCE_URL = "https://www.mapbox.com/mapbox-gl-js/assets/earthquakes.geojson";
   private static final String EARTHQUAKE_SOURCE_ID = "earthquakes";
+  private static final String EARTHQUAKE_POINTS_SOURCE_ID = "earthquake-points";
   private static final String HEATMAP_LAYER_ID = "earthquakes-heat";
   private static final String HEATMAP_LAYER_SOURCE = "earthquakes";
   private static final String CIRCLE_LAYER_ID = "earthquakes-circle";
+  private static final int HEATMAP_MAX_ZOOM = 9;
+  private static final int CIRCLE_MIN_ZOOM = 7;
+  // Cells of a few pixels are under the heatmap radius at all but the lowest zooms
+  private static final int CELL_SIZE_PIXELS = 4;
+  // The magnitude at which an earthquake gets the full heatmap weight
+  private static final double FULL_WEIGHT_MAGNITUDE = 6;
+  // How often the sources are checked against the camera while it moves
+  private static final long CAMERA_REFRESH_INTERVAL_MILLIS = 100;
 
   private MapView mapView;
   private MapboxMap mapboxMap;
+  private CameraMoveThrottle cameraMoveThrottle;
+  private Earthquakes earthquakes;
+  // The west, south, east and north of the area each source has, padded around the area on screen
+  private double[] cellBounds;
+  private int cellZoom = -1;
+  private int cellRequest;
+  private double[] pointBounds;
+  private final KdPointIndex.IntList pointQueryResult = new KdPointIndex.IntList();
 
   @Override
   public void onCreate(Bundle savedInstanceState) {
@@ -71,6 +110,8 @@ public class HeatmapActivity extends AppCompatActivity {
             addEarthquakeSource(style);
             addHeatmapLayer(style);
             addCircleLayer(style);
+            BackgroundTaskExecutor.getInstance().execute(HeatmapActivity.this,
+              new LoadEarthquakesTask(HeatmapActivity.this));
           }
         });
       }
@@ -78,11 +119,95 @@ public class HeatmapActivity extends AppCompatActivity {
   }
 
   private void addEarthquakeSource(@NonNull Style loadedMapStyle) {
-    try {
-      loadedMapStyle.addSource(new GeoJsonSource(EARTHQUAKE_SOURCE_ID, new URL(EARTHQUAKE_SOURCE_URL)));
-    } catch (MalformedURLException malformedUrlException) {
-      Timber.e(malformedUrlException, "That's not an url... ");
+    // Both sources are filled in around the camera once the earthquakes are loaded
+    loadedMapStyle.addSource(new GeoJsonSource(EARTHQUAKE_SOURCE_ID));
+    loadedMapStyle.addSource(new GeoJsonSource(EARTHQUAKE_POINTS_SOURCE_ID));
+  }
+
+  private void onEarthquakesLoaded(@NonNull Earthquakes earthquakes) {
+    this.earthquakes = earthquakes;
+    cameraMoveThrottle = new CameraMoveThrottle(mapboxMap, this, CAMERA_REFRESH_INTERVAL_MILLIS, this);
+    cameraMoveThrottle.start();
+    onCameraChange();
+  }
+
+  /**
+   * Send the sources what's around the area on screen when it's no longer covered by what they have.
+   * This runs while the camera moves, so a pan or a fling fills in the heatmap as it goes.
+   */
+  @Override
+  public void onCameraChange() {
+    Style style = mapboxMap.getStyle();
+    if (earthquakes == null || style == null) {
+      return;
+    }
+    double zoom = mapboxMap.getCameraPosition().zoom;
+    LatLngBounds visibleBounds = mapboxMap.getProjection().getVisibleRegion().latLngBounds;
+
+    if (zoom < HEATMAP_MAX_ZOOM) {
+      int levelZoom = earthquakes.aggregator.getLevelZoom(zoom);
+      if (levelZoom != cellZoom || !contains(cellBounds, visibleBounds)) {
+        cellZoom = levelZoom;
+        cellBounds = padBounds(visibleBounds);
+        BackgroundTaskExecutor.getInstance().execute(this,
+          new WriteCellsTask(this, earthquakes.aggregator, ++cellRequest, zoom, cellBounds));
+      }
+    }
+
+    if (zoom >= CIRCLE_MIN_ZOOM && !contains(pointBounds, visibleBounds)) {
+      pointBounds = padBounds(visibleBounds);
+      pointQueryResult.clear();
+      earthquakes.index.range(pointBounds[0], pointBounds[1], pointBounds[2], pointBounds[3], pointQueryResult);
+      // The earthquakes are indexed between -180 and 180, so look up the part past the antimeridian too
+      if (pointBounds[0] < -180) {
+        earthquakes.index.range(pointBounds[0] + 360, pointBounds[1], 180, pointBounds[3], pointQueryResult);
+      }
+      if (pointBounds[2] > 180) {
+        earthquakes.index.range(-180, pointBounds[1], pointBounds[2] - 360, pointBounds[3], pointQueryResult);
+      }
+      List<Feature> points = new ArrayList<>(pointQueryResult.size());
+      for (int i = 0; i < pointQueryResult.size(); i++) {
+        points.add(earthquakes.features.get(pointQueryResult.get(i)));
+      }
+      GeoJsonSource pointsSource = style.getSourceAs(EARTHQUAKE_POINTS_SOURCE_ID);
+      if (pointsSource != null) {
+        pointsSource.setGeoJson(FeatureCollection.fromFeatures(points));
+      }
+    }
+  }
+
+  private void onCellsWritten(int request, @NonNull String cells) {
+    Style style = mapboxMap.getStyle();
+    // Drop the cells of a camera position that has been moved away from since
+    if (request != cellRequest || style == null) {
+      return;
     }
+    GeoJsonSource source = style.getSourceAs(EARTHQUAKE_SOURCE_ID);
+    if (source != null) {
+      source.setGeoJson(cells);
+    }
+  }
+
+  /**
+   * Grow bounds by half their size on each side, so a small pan stays within them.
+   *
+   * @return the west, south, east and north of the padded bounds
+   */
+  private static double[] padBounds(@NonNull LatLngBounds bounds) {
+    double longitudePadding = bounds.getLongitudeSpan() / 2;
+    double latitudePadding = bounds.getLatitudeSpan() / 2;
+    return new double[] {
+      bounds.getLonWest() - longitudePadding,
+      Math.max(-90, bounds.getLatSouth() - latitudePadding),
+      bounds.getLonEast() + longitudePadding,
+      Math.min(90, bounds.getLatNorth() + latitudePadding)
+    };
+  }
+
+  private static boolean contains(@Nullable double[] paddedBounds, @NonNull LatLngBounds bounds) {
+    return paddedBounds != null
+      && bounds.getLonWest() >= paddedBounds[0] && bounds.getLatSouth() >= paddedBounds[1]
+      && bounds.getLonEast() <= paddedBounds[2] && bounds.getLatNorth() <= paddedBounds[3];
   }
 
   private void addHeatmapLayer(@NonNull Style loadedMapStyle) {
@@ -106,14 +231,9 @@ public class HeatmapActivity extends AppCompatActivity {
         )
       ),
 
-      // Increase the heatmap weight based on frequency and property magnitude
-      heatmapWeight(
-        interpolate(
-          linear(), get("mag"),
-          stop(0, 0),
-          stop(6, 1)
-        )
-      ),
+      // Increase the heatmap weight based on frequency and property magnitude. The weight of each
+      // earthquake is worked out from its magnitude when it's binned, and summed into its cell.
+      heatmapWeight(get(PointGridAggregator.PROPERTY_WEIGHT)),
 
       // Increase the heatmap color weight weight by zoom level
       // heatmap-intensity is a multiplier on top of heatmap-weight
@@ -148,7 +268,8 @@ public class HeatmapActivity extends AppCompatActivity {
   }
 
   private void addCircleLayer(@NonNull Style loadedMapStyle) {
-    CircleLayer circleLayer = new CircleLayer(CIRCLE_LAYER_ID, EARTHQUAKE_SOURCE_ID);
+    CircleLayer circleLayer = new CircleLayer(CIRCLE_LAYER_ID, EARTHQUAKE_POINTS_SOURCE_ID);
+    circleLayer.setMinZoom(CIRCLE_MIN_ZOOM);
     circleLayer.setProperties(
 
       // Size circle radius by earthquake magnitude and zoom level
@@ -235,6 +356,131 @@ public class HeatmapActivity extends AppCompatActivity {
   @Override
   public void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
+    if (cameraMoveThrottle != null) {
+      cameraMoveThrottle.stop();
+    }
     mapView.onDestroy();
   }
+
+  /**
+   * The loaded earthquakes, binned for the heatmap and indexed for the circles.
+   */
+  private static class Earthquakes {
+
+    private final List<Feature> features;
+    private final PointGridAggregator aggregator;
+    private final KdPointIndex index;
+
+    Earthquakes(List<Feature> features, PointGridAggregator aggregator, KdPointIndex index) {
+      this.features = features;
+      this.aggregator = aggregator;
+      this.index = index;
+    }
+  }
+
+  /**
+   * Download the earthquakes, bin them for the heatmap and index them for the circles.
+   */
+  private static class LoadEarthquakesTask extends BackgroundTask<Earthquakes> {
+
+    private final WeakReference<HeatmapActivity> weakReference;
+    private final OkHttpClient client;
+
+    LoadEarthquakesTask(HeatmapActivity activity) {
+      super(Pool.IO);
+      this.weakReference = new WeakReference<>(activity);
+      this.client = HttpStack.getInstance(activity).getClient();
+    }
+
+    @Override
+    protected Earthquakes doInBackground() {
+      List<Feature> features;
+      try {
+        features = loadEarthquakes().features();
+      } catch (IOException exception) {
+        Timber.e(exception, "Couldn't load the earthquakes");
+        return null;
+      }
+      if (features == null || isCancelled()) {
+        return null;
+      }
+
+      long startMillis = System.currentTimeMillis();
+      PointGridAggregator aggregator = new PointGridAggregator(0, HEATMAP_MAX_ZOOM - 1, CELL_SIZE_PIXELS);
+      List<Feature> points = new ArrayList<>(features.size());
+      double[] longitudes = new double[features.size()];
+      double[] latitudes = new double[features.size()];
+      for (Feature feature : features) {
+        if (!(feature.geometry() instanceof Point) || !feature.hasProperty("mag")) {
+          continue;
+        }
+        Point point = (Point) feature.geometry();
+        double weight = feature.getNumberProperty("mag").doubleValue() / FULL_WEIGHT_MAGNITUDE;
+        aggregator.add(point.longitude(), point.latitude(), Math.max(0, Math.min(1, weight)));
+        longitudes[points.size()] = point.longitude();
+        latitudes[points.size()] = point.latitude();
+        points.add(feature);
+      }
+      KdPointIndex index = new KdPointIndex(longitudes, latitudes, points.size());
+      Timber.d("Binned %1$d earthquakes in %2$d ms", points.size(), System.currentTimeMillis() - startMillis);
+      return new Earthquakes(points, aggregator, index);
+    }
+
+    private FeatureCollection loadEarthquakes() throws IOException {
+      Request request = new Request.Builder().url(EARTHQUAKE_SOURCE_URL).build();
+      Response response = client.newCall(request).execute();
+      try {
+        if (!response.isSuccessful()) {
+          throw new IOException("Unexpected earthquakes response " + response.code());
+        }
+        return GeoJsonAssetLoader.parse(response.body().byteStream(), null);
+      } finally {
+        response.close();
+      }
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable Earthquakes earthquakes) {
+      HeatmapActivity activity = weakReference.get();
+      if (activity != null && earthquakes != null) {
+        activity.onEarthquakesLoaded(earthquakes);
+      }
+    }
+  }
+
+  /**
+   * Write the cells of a zoom around an area as GeoJSON, which gets long at higher zooms.
+   */
+  private static class WriteCellsTask extends BackgroundTask<String> {
+
+    private final WeakReference<HeatmapActivity> weakReference;
+    private final PointGridAggregator aggregator;
+    private final int request;
+    private final double zoom;
+    private final double[] bounds;
+
+    WriteCellsTask(HeatmapActivity activity, PointGridAggregator aggregator, int request, double zoom,
+                   double[] bounds) {
+      super(Pool.CPU);
+      this.weakReference = new WeakReference<>(activity);
+      this.aggregator = aggregator;
+      this.request = request;
+      this.zoom = zoom;
+      this.bounds = bounds;
+    }
+
+    @Override
+    protected String doInBackground() {
+      return aggregator.getGeoJson(zoom, bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable String cells) {
+      HeatmapActivity activity = weakReference.get();
+      if (activity != null && cells != null) {
+        activity.onCellsWritten(request, cells);
+      }
+    }
+  }
 }
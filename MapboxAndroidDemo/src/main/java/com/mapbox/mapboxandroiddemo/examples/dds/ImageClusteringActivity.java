@@ -7,6 +7,8 @@ import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ClusteredGeoJsonSource;
+import com.mapbox.mapboxandroiddemo.utils.PointClusterIndex;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -14,15 +16,9 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
-import com.mapbox.mapboxsdk.style.sources.GeoJsonOptions;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.utils.BitmapUtils;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-
-import timber.log.Timber;
-
 import static com.mapbox.mapboxsdk.style.expressions.Expression.all;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.division;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
@@ -42,11 +38,18 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.textIgnorePlacem
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.textSize;
 
 /**
- * Use GeoJson data with SymbolLayers to create a data clustering effect.
+ * Use GeoJson data with SymbolLayers to create a data clustering effect. The points are clustered on
+ * the Java side with a {@link PointClusterIndex}.
  */
 public class ImageClusteringActivity extends AppCompatActivity implements OnMapReadyCallback {
 
+  private static final String EARTHQUAKES_URL = "https://www.mapbox.com/mapbox-gl-js/assets/earthquakes.geojson";
+  private static final int CLUSTER_MAX_ZOOM = 14;
+  private static final int CLUSTER_RADIUS = 50;
+
   private MapView mapView;
+  private MapboxMap mapboxMap;
+  private ClusteredGeoJsonSource earthquakesSource;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -65,6 +68,7 @@ public class ImageClusteringActivity extends AppCompatActivity implements OnMapR
 
   @Override
   public void onMapReady(@NonNull MapboxMap mapboxMap) {
+    this.mapboxMap = mapboxMap;
     mapboxMap.setStyle(Style.LIGHT, new Style.OnStyleLoaded() {
       @Override
       public void onStyleLoaded(@NonNull Style style) {
@@ -84,22 +88,15 @@ public class ImageClusteringActivity extends AppCompatActivity implements OnMapR
   }
 
   private void addClusteredGeoJsonSource(@NonNull Style loadedMapStyle) {
-    // Add a new source from the GeoJSON data and set the 'cluster' option to true.
-    try {
-      loadedMapStyle.addSource(
-        // Point to GeoJSON data. This example visualizes all M1.0+ earthquakes from
-        // 12/22/15 to 1/21/16 as logged by USGS' Earthquake hazards program.
-        new GeoJsonSource("earthquakes",
-          new URL("https://www.mapbox.com/mapbox-gl-js/assets/earthquakes.geojson"),
-          new GeoJsonOptions()
-            .withCluster(true)
-            .withClusterMaxZoom(14)
-            .withClusterRadius(50)
-        )
-      );
-    } catch (MalformedURLException malformedUrlException) {
-      Timber.e("Check the URL %s" , malformedUrlException.getMessage());
-    }
+    // Add an empty source, which is filled with the clusters around the camera once the data is
+    // loaded and clustered.
+    GeoJsonSource source = new GeoJsonSource("earthquakes");
+    loadedMapStyle.addSource(source);
+    earthquakesSource = new ClusteredGeoJsonSource(mapboxMap, source);
+    // Point to GeoJSON data. This example visualizes all M1.0+ earthquakes from
+    // 12/22/15 to 1/21/16 as logged by USGS' Earthquake hazards program.
+    earthquakesSource.load(this, this, EARTHQUAKES_URL,
+      new PointClusterIndex.Options().withMaxZoom(CLUSTER_MAX_ZOOM).withRadius(CLUSTER_RADIUS), null);
 
     //Creating a SymbolLayer icon layer for single data/icon points
     loadedMapStyle.addLayer(new SymbolLayer("unclustered-points", "earthquakes").withProperties(
@@ -180,6 +177,9 @@ public class ImageClusteringActivity extends AppCompatActivity implements OnMapR
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (earthquakesSource != null) {
+      earthquakesSource.destroy();
+    }
     mapView.onDestroy();
   }
 
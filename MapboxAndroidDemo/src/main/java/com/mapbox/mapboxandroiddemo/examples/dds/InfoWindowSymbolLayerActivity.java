@@ -1,12 +1,6 @@
 package com.mapbox.mapboxandroiddemo.examples.dds;
 
-import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.PointF;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
@@ -18,6 +12,13 @@ import android.widget.Toast;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.FeatureHitIndex;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.SymbolBitmapDiskCache;
+import com.mapbox.mapboxandroiddemo.utils.SymbolBitmapGenerator;
+import com.mapbox.mapboxandroiddemo.utils.SymbolImageProvider;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.BubbleLayout;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -28,11 +29,12 @@ import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 
+import timber.log.Timber;
+
 import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.literal;
@@ -56,10 +58,14 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   private static final String PROPERTY_SELECTED = "selected";
   private static final String PROPERTY_NAME = "name";
   private static final String PROPERTY_CAPITAL = "capital";
+  // How far from a marker a tap can be, which covers the marker icon above its point
+  private static final float HIT_TOLERANCE_DP = 24;
   private MapView mapView;
   private MapboxMap mapboxMap;
   private GeoJsonSource source;
   private FeatureCollection featureCollection;
+  private FeatureHitIndex featureHitIndex;
+  private SymbolImageProvider calloutImages;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -76,6 +82,11 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
+
+    // There are only a few capitals, so every callout is drawn as soon as the data loads and a tap
+    // never waits for one. They're kept on disk for the next launch.
+    calloutImages = new SymbolImageProvider(this, new CalloutViewBinder(getString(R.string.capital)),
+      "symbol_layer_info_window_layout_callout", new SymbolBitmapDiskCache(this), SymbolImageProvider.Mode.EAGER);
   }
 
   @Override
@@ -84,7 +95,8 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
     mapboxMap.setStyle(Style.MAPBOX_STREETS, new Style.OnStyleLoaded() {
       @Override
       public void onStyleLoaded(@NonNull Style style) {
-        new LoadGeoJsonDataTask(InfoWindowSymbolLayerActivity.this).execute();
+        BackgroundTaskExecutor.getInstance().execute(InfoWindowSymbolLayerActivity.this,
+          new LoadGeoJsonDataTask(InfoWindowSymbolLayerActivity.this));
         mapboxMap.addOnMapClickListener(InfoWindowSymbolLayerActivity.this);
       }
     });
@@ -92,7 +104,7 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
 
   @Override
   public boolean onMapClick(@NonNull LatLng point) {
-    return handleClickIcon(mapboxMap.getProjection().toScreenLocation(point));
+    return handleClickIcon(point);
   }
 
   /**
@@ -102,6 +114,8 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
    */
   public void setUpData(final FeatureCollection collection) {
     featureCollection = collection;
+    featureHitIndex = new FeatureHitIndex(collection.features());
+    calloutImages.prefetch(this, collection.features());
     if (mapboxMap != null) {
       Style style = mapboxMap.getStyle();
       if (style != null) {
@@ -135,6 +149,28 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   private void refreshSource() {
     if (source != null && featureCollection != null) {
       source.setGeoJson(featureCollection);
+      syncCalloutImages();
+    }
+  }
+
+  /**
+   * Makes sure the Style holds the callout images of the selected features, and only those, since
+   * the callout layer only shows selected features. Callouts which haven't been drawn yet appear once
+   * the prefetch has drawn them.
+   */
+  private void syncCalloutImages() {
+    if (mapboxMap == null || featureCollection == null) {
+      return;
+    }
+    Style style = mapboxMap.getStyle();
+    if (style != null) {
+      List<Feature> selectedFeatures = new ArrayList<>();
+      for (Feature feature : featureCollection.features()) {
+        if (feature.getBooleanProperty(PROPERTY_SELECTED)) {
+          selectedFeatures.add(feature);
+        }
+      }
+      calloutImages.update(this, style, selectedFeatures);
     }
   }
 
@@ -178,29 +214,29 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   /**
    * This method handles click events for SymbolLayer symbols.
    * <p>
-   * When a SymbolLayer icon is clicked, we moved that feature to the selected state.
+   * When a SymbolLayer icon is clicked, we moved that feature to the selected state. The feature is
+   * looked up in the features already loaded, rather than queried from the rendered map.
    * </p>
    *
-   * @param screenPoint the point on screen clicked
+   * @param point the point on the map clicked
    */
-  private boolean handleClickIcon(PointF screenPoint) {
-    List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, MARKER_LAYER_ID);
-    if (!features.isEmpty()) {
-      String name = features.get(0).getStringProperty(PROPERTY_NAME);
-      List<Feature> featureList = featureCollection.features();
-      for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_NAME).equals(name)) {
-          if (featureSelectStatus(i)) {
-            setFeatureSelectState(featureList.get(i), false);
-          } else {
-            setSelected(i);
-          }
-        }
-      }
-      return true;
-    } else {
+  private boolean handleClickIcon(LatLng point) {
+    if (featureHitIndex == null) {
+      return false;
+    }
+    long startNanos = System.nanoTime();
+    int index = featureHitIndex.hitTest(point.getLongitude(), point.getLatitude(),
+      mapboxMap.getCameraPosition().zoom, HIT_TOLERANCE_DP);
+    Timber.d("Icon FeatureHitIndex lookup took %.3f ms", (System.nanoTime() - startNanos) / 1e6);
+    if (index < 0) {
       return false;
     }
+    if (featureSelectStatus(index)) {
+      setFeatureSelectState(featureCollection.features().get(index), false);
+    } else {
+      setSelected(index);
+    }
+    return true;
   }
 
   /**
@@ -238,44 +274,30 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
   }
 
   /**
-   * Invoked when the bitmaps have been generated from a view.
-   */
-  public void setImageGenResults(HashMap<String, Bitmap> imageMap) {
-    if (mapboxMap != null) {
-      Style style = mapboxMap.getStyle();
-      if (style != null) {
-        // calling addImages is faster as separate addImage calls for each bitmap.
-        style.addImages(imageMap);
-      }
-    }
-  }
-
-  /**
-   * AsyncTask to load data from the assets folder.
+   * Background task to load data from the assets folder.
    */
-  private static class LoadGeoJsonDataTask extends AsyncTask<Void, Void, FeatureCollection> {
+  private static class LoadGeoJsonDataTask extends BackgroundTask<FeatureCollection> {
 
     private final WeakReference<InfoWindowSymbolLayerActivity> activityRef;
 
     LoadGeoJsonDataTask(InfoWindowSymbolLayerActivity activity) {
+      super(Pool.CPU, PRIORITY_HIGH);
       this.activityRef = new WeakReference<>(activity);
     }
 
     @Override
-    protected FeatureCollection doInBackground(Void... params) {
+    protected FeatureCollection doInBackground() {
       InfoWindowSymbolLayerActivity activity = activityRef.get();
 
       if (activity == null) {
         return null;
       }
 
-      String geoJson = loadGeoJsonFromAsset(activity, "us_west_coast.geojson");
-      return FeatureCollection.fromJson(geoJson);
+      return GeoJsonAssetLoader.load(activity, "us_west_coast.geojson");
     }
 
     @Override
     protected void onPostExecute(FeatureCollection featureCollection) {
-      super.onPostExecute(featureCollection);
       InfoWindowSymbolLayerActivity activity = activityRef.get();
       if (featureCollection == null || activity == null) {
         return;
@@ -289,128 +311,58 @@ public class InfoWindowSymbolLayerActivity extends AppCompatActivity implements
       }
 
       activity.setUpData(featureCollection);
-      new GenerateViewIconTask(activity).execute(featureCollection);
-    }
-
-    static String loadGeoJsonFromAsset(Context context, String filename) {
-      try {
-        // Load GeoJSON file from local asset folder
-        InputStream is = context.getAssets().open(filename);
-        int size = is.available();
-        byte[] buffer = new byte[size];
-        is.read(buffer);
-        is.close();
-        return new String(buffer, "UTF-8");
-      } catch (Exception exception) {
-        throw new RuntimeException(exception);
-      }
+      Toast.makeText(activity, R.string.tap_on_marker_instruction, Toast.LENGTH_SHORT).show();
     }
   }
 
   /**
-   * AsyncTask to generate Bitmap from Views to be used as iconImage in a SymbolLayer.
-   * <p>
-   * Call be optionally be called to update the underlying data source after execution.
-   * </p>
-   * <p>
-   * Generating Views on background thread since we are not going to be adding them to the view hierarchy.
-   * </p>
+   * Fills in a BubbleLayout callout with a feature's name and capital.
    */
-  private static class GenerateViewIconTask extends AsyncTask<FeatureCollection, Void, HashMap<String, Bitmap>> {
+  private static class CalloutViewBinder extends SymbolBitmapGenerator.ViewBinder {
 
-    private final HashMap<String, View> viewMap = new HashMap<>();
-    private final WeakReference<InfoWindowSymbolLayerActivity> activityRef;
-    private final boolean refreshSource;
+    private final String capitalFormat;
 
-    GenerateViewIconTask(InfoWindowSymbolLayerActivity activity, boolean refreshSource) {
-      this.activityRef = new WeakReference<>(activity);
-      this.refreshSource = refreshSource;
+    CalloutViewBinder(String capitalFormat) {
+      this.capitalFormat = capitalFormat;
     }
 
-    GenerateViewIconTask(InfoWindowSymbolLayerActivity activity) {
-      this(activity, false);
+    @NonNull
+    @Override
+    public View createView(@NonNull LayoutInflater inflater) {
+      return inflater.inflate(R.layout.symbol_layer_info_window_layout_callout, null);
     }
 
-    @SuppressWarnings("WrongThread")
     @Override
-    protected HashMap<String, Bitmap> doInBackground(FeatureCollection... params) {
-      InfoWindowSymbolLayerActivity activity = activityRef.get();
-      if (activity != null) {
-        HashMap<String, Bitmap> imagesMap = new HashMap<>();
-        LayoutInflater inflater = LayoutInflater.from(activity);
-
-        FeatureCollection featureCollection = params[0];
-
-        for (Feature feature : featureCollection.features()) {
-
-          BubbleLayout bubbleLayout = (BubbleLayout)
-            inflater.inflate(R.layout.symbol_layer_info_window_layout_callout, null);
+    public String bindView(@NonNull View view, @NonNull Feature feature) {
+      BubbleLayout bubbleLayout = (BubbleLayout) view;
 
-          String name = feature.getStringProperty(PROPERTY_NAME);
-          TextView titleTextView = bubbleLayout.findViewById(R.id.info_window_title);
-          titleTextView.setText(name);
+      String name = feature.getStringProperty(PROPERTY_NAME);
+      TextView titleTextView = bubbleLayout.findViewById(R.id.info_window_title);
+      titleTextView.setText(name);
 
-          String style = feature.getStringProperty(PROPERTY_CAPITAL);
-          TextView descriptionTextView = bubbleLayout.findViewById(R.id.info_window_description);
-          descriptionTextView.setText(
-            String.format(activity.getString(R.string.capital), style));
+      String style = feature.getStringProperty(PROPERTY_CAPITAL);
+      TextView descriptionTextView = bubbleLayout.findViewById(R.id.info_window_description);
+      descriptionTextView.setText(String.format(capitalFormat, style));
 
-          int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-          bubbleLayout.measure(measureSpec, measureSpec);
-
-          int measuredWidth = bubbleLayout.getMeasuredWidth();
+      int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+      bubbleLayout.measure(measureSpec, measureSpec);
 
-          bubbleLayout.setArrowPosition(measuredWidth / 2 - 5);
+      int measuredWidth = bubbleLayout.getMeasuredWidth();
 
-          Bitmap bitmap = SymbolGenerator.generate(bubbleLayout);
-          imagesMap.put(name, bitmap);
-          viewMap.put(name, bubbleLayout);
-        }
-
-        return imagesMap;
-      } else {
-        return null;
-      }
+      bubbleLayout.setArrowPosition(measuredWidth / 2 - 5);
+      return name;
     }
 
     @Override
-    protected void onPostExecute(HashMap<String, Bitmap> bitmapHashMap) {
-      super.onPostExecute(bitmapHashMap);
-      InfoWindowSymbolLayerActivity activity = activityRef.get();
-      if (activity != null && bitmapHashMap != null) {
-        activity.setImageGenResults(bitmapHashMap);
-        if (refreshSource) {
-          activity.refreshSource();
-        }
-      }
-      Toast.makeText(activity, R.string.tap_on_marker_instruction, Toast.LENGTH_SHORT).show();
+    public String getImageId(@NonNull Feature feature) {
+      return feature.getStringProperty(PROPERTY_NAME);
     }
-  }
 
-  /**
-   * Utility class to generate Bitmaps for Symbol.
-   */
-  private static class SymbolGenerator {
-
-    /**
-     * Generate a Bitmap from an Android SDK View.
-     *
-     * @param view the View to be drawn to a Bitmap
-     * @return the generated bitmap
-     */
-    static Bitmap generate(@NonNull View view) {
-      int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-      view.measure(measureSpec, measureSpec);
-
-      int measuredWidth = view.getMeasuredWidth();
-      int measuredHeight = view.getMeasuredHeight();
-
-      view.layout(0, 0, measuredWidth, measuredHeight);
-      Bitmap bitmap = Bitmap.createBitmap(measuredWidth, measuredHeight, Bitmap.Config.ARGB_8888);
-      bitmap.eraseColor(Color.TRANSPARENT);
-      Canvas canvas = new Canvas(bitmap);
-      view.draw(canvas);
-      return bitmap;
+    @NonNull
+    @Override
+    public String getContentKey(@NonNull Feature feature) {
+      // The selected state doesn't change the callout
+      return feature.getStringProperty(PROPERTY_NAME) + "|" + feature.getStringProperty(PROPERTY_CAPITAL);
     }
   }
 
@@ -3,9 +3,17 @@ package com.mapbox.mapboxandroiddemo.examples.dds;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonVectorTiles;
+import com.mapbox.mapboxandroiddemo.utils.LocalVectorTileServer;
+import com.mapbox.mapboxandroiddemo.utils.VectorTilesCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -14,18 +22,32 @@ import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.layers.CircleLayer;
 import com.mapbox.mapboxsdk.style.layers.FillLayer;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
-import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+import com.mapbox.mapboxsdk.style.sources.TileSet;
+import com.mapbox.mapboxsdk.style.sources.VectorSource;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.literal;
 
-public class MultipleGeometriesActivity extends AppCompatActivity implements OnMapReadyCallback {
+/**
+ * Show the points and polygons of a GeoJSON file with different layers. The file is cut into vector
+ * tiles on the device, which the map loads as it needs them instead of tiling the whole file itself.
+ */
+public class MultipleGeometriesActivity extends AppCompatActivity implements OnMapReadyCallback,
+  MapView.OnDidFinishRenderingMapListener {
 
   private MapView mapView;
+  private MapboxMap mapboxMap;
+  private GeoJsonVectorTiles vectorTiles;
+  private long styleRequestNanos;
   private static final String GEOJSON_SOURCE_ID = "GEOJSONFILE";
+  private static final String TILES_NAME = "norway-campsites";
+  private static final String SOURCE_LAYER = "campsites";
+  private static final int TILES_MAX_ZOOM = 14;
+  private static final int TILE_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -45,25 +67,40 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
 
   @Override
   public void onMapReady(@NonNull MapboxMap mapboxMap) {
+    this.mapboxMap = mapboxMap;
+    styleRequestNanos = System.nanoTime();
     mapboxMap.setStyle(Style.LIGHT, new Style.OnStyleLoaded() {
       @Override
       public void onStyleLoaded(@NonNull Style style) {
-        createGeoJsonSource(style);
-        addPolygonLayer(style);
-        addPointsLayer(style);
+        BackgroundTaskExecutor.getInstance().execute(MultipleGeometriesActivity.this,
+          new LoadVectorTilesTask(MultipleGeometriesActivity.this));
       }
     });
   }
 
-  private void createGeoJsonSource(@NonNull Style loadedMapStyle) {
-    // Load data from GeoJSON file in the assets folder
-    loadedMapStyle.addSource(new GeoJsonSource(GEOJSON_SOURCE_ID,
-      loadJsonFromAsset("fake_norway_campsites.geojson")));
+  private void setUpVectorTiles(@NonNull GeoJsonVectorTiles vectorTiles) {
+    Style style = mapboxMap.getStyle();
+    if (style == null) {
+      return;
+    }
+    this.vectorTiles = vectorTiles;
+    createVectorSource(style);
+    addPolygonLayer(style);
+    addPointsLayer(style);
+    mapView.addOnDidFinishRenderingMapListener(this);
+  }
+
+  private void createVectorSource(@NonNull Style loadedMapStyle) {
+    // Serve the tiles cut from the GeoJSON file in the assets folder to a vector source
+    TileSet tileSet = new TileSet("2.1.0", LocalVectorTileServer.register(this, TILES_NAME, vectorTiles));
+    tileSet.setMaxZoom(TILES_MAX_ZOOM);
+    loadedMapStyle.addSource(new VectorSource(GEOJSON_SOURCE_ID, tileSet));
   }
 
   private void addPolygonLayer(@NonNull Style loadedMapStyle) {
     // Create and style a FillLayer that uses the Polygon Feature's coordinates in the GeoJSON data
     FillLayer countryPolygonFillLayer = new FillLayer("polygon", GEOJSON_SOURCE_ID);
+    countryPolygonFillLayer.setSourceLayer(SOURCE_LAYER);
     countryPolygonFillLayer.setProperties(
       PropertyFactory.fillColor(Color.RED),
       PropertyFactory.fillOpacity(.4f));
@@ -74,6 +111,7 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
   private void addPointsLayer(@NonNull Style loadedMapStyle) {
     // Create and style a CircleLayer that uses the Point Features' coordinates in the GeoJSON data
     CircleLayer individualCirclesLayer = new CircleLayer("points", GEOJSON_SOURCE_ID);
+    individualCirclesLayer.setSourceLayer(SOURCE_LAYER);
     individualCirclesLayer.setProperties(
       PropertyFactory.circleColor(Color.YELLOW),
       PropertyFactory.circleRadius(3f));
@@ -81,6 +119,58 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
     loadedMapStyle.addLayer(individualCirclesLayer);
   }
 
+  @Override
+  public void onDidFinishRenderingMap(boolean fully) {
+    if (fully) {
+      Timber.d("Campsite tiles rendered %1$.0f ms after the style was requested, %2$s",
+        (System.nanoTime() - styleRequestNanos) / 1e6, vectorTiles.getStats());
+      mapView.removeOnDidFinishRenderingMapListener(this);
+    }
+  }
+
+  /**
+   * Cut the GeoJSON file into vector tiles in the background.
+   */
+  private static class LoadVectorTilesTask extends BackgroundTask<GeoJsonVectorTiles> {
+
+    private final WeakReference<MultipleGeometriesActivity> activityRef;
+
+    LoadVectorTilesTask(MultipleGeometriesActivity activity) {
+      super(Pool.CPU);
+      activityRef = new WeakReference<>(activity);
+    }
+
+    @Override
+    protected GeoJsonVectorTiles doInBackground() {
+      MultipleGeometriesActivity activity = activityRef.get();
+      if (activity == null) {
+        return null;
+      }
+      // The tiles cut when the example was open before, with the tiles encoded then
+      VectorTilesCache cache = VectorTilesCache.getInstance(activity);
+      GeoJsonVectorTiles vectorTiles = cache.get(TILES_NAME);
+      if (vectorTiles != null) {
+        return vectorTiles;
+      }
+      FeatureCollection featureCollection =
+        GeoJsonBinaryAssetLoader.load(activity, "fake_norway_campsites.geojson");
+      if (featureCollection == null) {
+        return null;
+      }
+      vectorTiles = new GeoJsonVectorTiles(featureCollection, SOURCE_LAYER, TILES_MAX_ZOOM, TILE_CACHE_SIZE_BYTES);
+      cache.put(TILES_NAME, vectorTiles);
+      return vectorTiles;
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable GeoJsonVectorTiles vectorTiles) {
+      MultipleGeometriesActivity activity = activityRef.get();
+      if (activity != null && vectorTiles != null) {
+        activity.setUpVectorTiles(vectorTiles);
+      }
+    }
+  }
+
   // Add the mapView lifecycle to the activity's lifecycle methods
   @Override
   public void onResume() {
@@ -115,6 +205,8 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    mapView.removeOnDidFinishRenderingMapListener(this);
+    LocalVectorTileServer.unregister(TILES_NAME);
     mapView.onDestroy();
   }
 
@@ -123,19 +215,4 @@ public class MultipleGeometriesActivity extends AppCompatActivity implements OnM
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
@@ -6,6 +6,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -18,9 +19,6 @@ import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.HeatmapLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
-
-import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.heatmapDensity;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.interpolate;
@@ -72,7 +70,7 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
         mapboxMap.animateCamera(
           CameraUpdateFactory.newCameraPosition(cameraPositionForFragmentMap), 2600);
         style.addSource(new GeoJsonSource(HEATMAP_SOURCE_ID,
-          loadGeoJsonFromAsset("la_heatmap_styling_points.geojson")));
+          GeoJsonAssetLoader.load(MultipleHeatmapStylingActivity.this, "la_heatmap_styling_points.geojson")));
         initHeatmapColors();
         initHeatmapRadiusStops();
         initHeatmapIntensityStops();
@@ -412,21 +410,4 @@ public class MultipleHeatmapStylingActivity extends AppCompatActivity
       0.5f
     };
   }
-
-  private String loadGeoJsonFromAsset(String filename) {
-    try {
-      // Load GeoJSON file
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (Exception exception) {
-      Timber.e("Exception loading GeoJSON: %s", exception.toString());
-      exception.printStackTrace();
-      return null;
-    }
-  }
 }
@@ -1,18 +1,21 @@
 package com.mapbox.mapboxandroiddemo.examples.dds
 
 
-import android.content.Context
 import android.graphics.Color
 import android.graphics.PointF
-import android.os.AsyncTask
 import android.os.Bundle
 import android.support.v7.app.AppCompatActivity
 import android.widget.Toast
 import com.mapbox.geojson.Feature
 import com.mapbox.geojson.FeatureCollection
 import com.mapbox.mapboxandroiddemo.R
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonBinaryAssetLoader
+import com.mapbox.mapboxandroiddemo.utils.SimplificationPyramid
 import com.mapbox.mapboxsdk.Mapbox
 import com.mapbox.mapboxsdk.geometry.LatLng
+import com.mapbox.mapboxsdk.maps.MapView
 import com.mapbox.mapboxsdk.maps.MapboxMap
 import com.mapbox.mapboxsdk.maps.Style
 import com.mapbox.mapboxsdk.style.expressions.Expression.*
@@ -21,18 +24,24 @@ import com.mapbox.mapboxsdk.style.layers.LineLayer
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory.*
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource
 import kotlinx.android.synthetic.main.activity_dds_polygon_select_toggle.*
+import timber.log.Timber
 import java.lang.ref.WeakReference
 import java.util.*
 
 /**
  * Use data-driven styling to style and toggle the colors of various polygons based
- * on user interaction.
+ * on user interaction. The neighborhoods are simplified for bands of zooms in the background,
+ * and the level of the current zoom is swapped into the source when the zoom changes band.
  */
-class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickListener {
+class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickListener,
+        MapboxMap.OnCameraIdleListener, MapView.OnDidFinishRenderingFrameListener {
 
     private lateinit var mapboxMap: MapboxMap
     private var featureCollection: FeatureCollection? = null
     private var geoJsonSource: GeoJsonSource? = null
+    private var simplificationPyramid: SimplificationPyramid? = null
+    private var level = 0
+    private var sourceUpdateNanos = 0L
 
     companion object {
         const val BASE_NEIGHBORHOOD_FILL_LAYER_ID = "BASE_NEIGHBORHOOD_FILL_LAYER_ID"
@@ -42,6 +51,10 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
         const val PROPERTY_SELECTED = "selected"
         const val PROPERTY_FILL_COLOR = "fill_color"
         const val NEIGHBORHOOD_NAME_PROPERTY = "neighborhood_name"
+
+        // Lines move by at most half a pixel, at zooms below 10, 10 to 12, 12 to 14 and above 14
+        const val SIMPLIFY_TOLERANCE_PIXELS = 0.5f
+        val LEVEL_ZOOMS = intArrayOf(0, 10, 12, 14)
     }
 
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -58,7 +71,7 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
         mapView.getMapAsync { mapboxMap ->
             mapboxMap.setStyle(Style.LIGHT) {
                 this.mapboxMap = mapboxMap
-                LoadGeoJsonDataTask(this).execute()
+                BackgroundTaskExecutor.getInstance().execute(this, LoadGeoJsonDataTask(this))
                 mapboxMap.addOnMapClickListener(this)
                 Toast.makeText(this, getString(R.string.tap_on_neighborhood),
                         Toast.LENGTH_SHORT).show()
@@ -70,19 +83,42 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
         return handleClickIcon(mapboxMap.projection.toScreenLocation(point))
     }
 
+    override fun onCameraIdle() {
+        val pyramid = simplificationPyramid ?: return
+        val newLevel = pyramid.getLevel(mapboxMap.cameraPosition.zoom)
+        if (newLevel != level) {
+            level = newLevel
+            refreshSource()
+        }
+    }
+
+    override fun onDidFinishRenderingFrame(fully: Boolean) {
+        val pyramid = simplificationPyramid
+        if (!fully || pyramid == null || sourceUpdateNanos == 0L) {
+            return
+        }
+        Timber.d("Level %d: %d vertices, %d KB of GeoJSON, rendered in %.1f ms", level,
+                pyramid.getVertexCount(level), pyramid.getGeoJsonSize(level) / 1024,
+                (System.nanoTime() - sourceUpdateNanos) / 1e6)
+        sourceUpdateNanos = 0L
+    }
+
     /**
      * Sets up all of the sources and layers needed for this example
      *
-     * @param collection the FeatureCollection returned by the data loading AsyncTask.
+     * @param pyramid the simplified neighborhoods returned by the data loading task.
      */
-    fun setUpData(collection: FeatureCollection) {
+    fun setUpData(pyramid: SimplificationPyramid) {
 
-        // Set `featureCollection` equal to the FeatureCollection returned by the
-        // the data loading AsyncTask.
-        featureCollection = collection
+        // Set `featureCollection` equal to the full resolution neighborhoods. The simplified
+        // levels share their properties, so selecting a neighborhood here shows in every level.
+        simplificationPyramid = pyramid
+        featureCollection = pyramid.getFeatureCollection(pyramid.levelCount - 1)
+        level = pyramid.getLevel(mapboxMap.cameraPosition.zoom)
 
-        // Create a GeoJsonSource and add it to the map.
-        geoJsonSource = GeoJsonSource(NEIGHBORHOOD_POLYGON_SOURCE_ID, featureCollection)
+        // Create a GeoJsonSource with the level of the current zoom and add it to the map.
+        sourceUpdateNanos = System.nanoTime()
+        geoJsonSource = GeoJsonSource(NEIGHBORHOOD_POLYGON_SOURCE_ID, pyramid.getFeatureCollection(level))
 
         mapboxMap.style?.addSource(geoJsonSource!!)
 
@@ -101,7 +137,7 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
         neighborhoodPolygonColoredFillLayer.withProperties(
 
                 // Use data-driven styling to use each Feature's color property, which was set in
-                // `onPostExecute()` of the data loading AsyncTask.
+                // `onPostExecute()` of the data loading task.
                 fillColor(toColor(get(PROPERTY_FILL_COLOR))),
                 fillOpacity(.45f))
 
@@ -115,6 +151,9 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
                 lineColor(Color.GRAY),
                 lineWidth(2.2f))
         mapboxMap.style?.addLayerBelow(neighborhoodOutlineLineLayer, "settlement-label")
+
+        mapboxMap.addOnCameraIdleListener(this)
+        mapView.addOnDidFinishRenderingFrameListener(this)
     }
 
     /**
@@ -163,7 +202,9 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
      * Updates the display of data on the map after the FeatureCollection has been modified
      */
     private fun refreshSource() {
-        geoJsonSource?.setGeoJson(featureCollection)
+        val pyramid = simplificationPyramid ?: return
+        sourceUpdateNanos = System.nanoTime()
+        geoJsonSource?.setGeoJson(pyramid.getFeatureCollection(level))
     }
 
     /**
@@ -178,13 +219,13 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
     }
 
     /**
-     * AsyncTask to load data from a GeoJSON file in the assets folder. Rather than loading from
-     * a locally-stored file, you could also use the Mapbox Dataset API or Tileset API to retrieve
-     * GeoJSON data.
+     * Background task to load data from a GeoJSON file in the assets folder and simplify it for each
+     * band of zooms. Rather than loading from a locally-stored file, you could also use the Mapbox
+     * Dataset API or Tileset API to retrieve GeoJSON data.
      */
     private class LoadGeoJsonDataTask internal
     constructor(activity: PolygonSelectToggleActivity) :
-            AsyncTask<Void, Void, FeatureCollection>() {
+            BackgroundTask<SimplificationPyramid>(BackgroundTask.Pool.CPU, BackgroundTask.PRIORITY_HIGH) {
 
         private val PROPERTY_SELECTED = "selected"
         private val PROPERTY_FILL_COLOR = "fill_color"
@@ -199,21 +240,11 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
             this.activityRef = WeakReference(activity)
         }
 
-        override fun doInBackground(vararg params: Void): FeatureCollection? {
+        override fun doInBackground(): SimplificationPyramid? {
             val activity = activityRef.get() ?: return null
 
-            val geoJson = loadGeoJsonFromAsset(activity,
-                    "new-orleans-neighborhoods.geojson")
-            return FeatureCollection.fromJson(geoJson)
-        }
-
-        override fun onPostExecute(featureCollection: FeatureCollection?) {
-            super.onPostExecute(featureCollection)
-            val activity = activityRef.get()
-            if (featureCollection == null || activity == null) {
-                return
-            }
-
+            val featureCollection = GeoJsonBinaryAssetLoader.load(activity,
+                    "new-orleans-neighborhoods.geojson") ?: return null
             for (singleFeature in featureCollection.features()!!) {
                 singleFeature.addBooleanProperty(PROPERTY_SELECTED, false)
 
@@ -224,20 +255,15 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
                         randomColorListForPolygons.get(Random().nextInt(
                                 randomColorListForPolygons.size)))
             }
-            activity.setUpData(featureCollection)
+            return SimplificationPyramid(featureCollection, SIMPLIFY_TOLERANCE_PIXELS, *LEVEL_ZOOMS)
         }
 
-        companion object {
-            internal fun loadGeoJsonFromAsset(context: Context, filename: String): String {
-                try {
-                    // Load GeoJSON file
-                    context.assets.open(filename).bufferedReader().use {
-                        return it.readText()
-                    }
-                } catch (exception: Exception) {
-                    throw RuntimeException(exception)
-                }
+        override fun onPostExecute(pyramid: SimplificationPyramid?) {
+            val activity = activityRef.get()
+            if (pyramid == null || activity == null) {
+                return
             }
+            activity.setUpData(pyramid)
         }
     }
 
@@ -269,6 +295,8 @@ class PolygonSelectToggleActivity : AppCompatActivity(), MapboxMap.OnMapClickLis
     override fun onDestroy() {
         super.onDestroy()
         mapboxMap.removeOnMapClickListener(this)
+        mapboxMap.removeOnCameraIdleListener(this)
+        mapView.removeOnDidFinishRenderingFrameListener(this)
         mapView.onDestroy()
     }
 
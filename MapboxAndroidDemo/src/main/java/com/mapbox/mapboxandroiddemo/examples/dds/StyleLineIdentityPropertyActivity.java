@@ -5,6 +5,7 @@ import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -15,10 +16,6 @@ import com.mapbox.mapboxsdk.style.layers.Property;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.InputStream;
-
-import timber.log.Timber;
-
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.match;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.rgb;
@@ -54,7 +51,7 @@ public class StyleLineIdentityPropertyActivity extends AppCompatActivity {
 
             // Retrieve GeoJSON from local file and add it to the map
             style.addSource(new GeoJsonSource("lines",
-                loadGeoJsonFromAsset("golden_gate_lines.geojson")));
+                GeoJsonAssetLoader.load(StyleLineIdentityPropertyActivity.this, "golden_gate_lines.geojson")));
 
             // Create a LineLayer. Use lineColor and stops to draw red and blue lines on the map
             style.addLayer(new LineLayer("finalLines", "lines").withProperties(
@@ -112,23 +109,4 @@ public class StyleLineIdentityPropertyActivity extends AppCompatActivity {
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-
-  private String loadGeoJsonFromAsset(String filename) {
-
-    try {
-      // Load GeoJSON file
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (Exception exception) {
-      Timber.e("Exception Loading GeoJSON: %s", exception.toString());
-      exception.printStackTrace();
-      return null;
-    }
-
-  }
 }
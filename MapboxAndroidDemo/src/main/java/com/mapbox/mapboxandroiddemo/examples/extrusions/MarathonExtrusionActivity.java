@@ -3,19 +3,29 @@ package com.mapbox.mapboxandroiddemo.examples.extrusions;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonVectorTiles;
+import com.mapbox.mapboxandroiddemo.utils.LocalVectorTileServer;
+import com.mapbox.mapboxandroiddemo.utils.VectorTilesCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.layers.FillExtrusionLayer;
-import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+import com.mapbox.mapboxsdk.style.sources.TileSet;
+import com.mapbox.mapboxsdk.style.sources.VectorSource;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillExtrusionColor;
@@ -23,11 +33,21 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillExtrusionHei
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillExtrusionOpacity;
 
 /**
- * Use data-driven styling and GeoJSON data to set extrusions' heights
+ * Use data-driven styling and GeoJSON data to set extrusions' heights. The GeoJSON is cut into
+ * vector tiles on the device, which the map loads as it needs them.
  */
-public class MarathonExtrusionActivity extends AppCompatActivity implements OnMapReadyCallback {
+public class MarathonExtrusionActivity extends AppCompatActivity implements OnMapReadyCallback,
+  MapView.OnDidFinishRenderingMapListener {
+
+  private static final String TILES_NAME = "marathon-route";
+  private static final String SOURCE_LAYER = "course";
+  private static final int TILES_MAX_ZOOM = 14;
+  private static final int TILE_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
 
   private MapView mapView;
+  private MapboxMap mapboxMap;
+  private GeoJsonVectorTiles vectorTiles;
+  private long styleRequestNanos;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -47,28 +67,92 @@ public class MarathonExtrusionActivity extends AppCompatActivity implements OnMa
 
   @Override
   public void onMapReady(@NonNull final MapboxMap mapboxMap) {
-
+    this.mapboxMap = mapboxMap;
+    styleRequestNanos = System.nanoTime();
     mapboxMap.setStyle(Style.SATELLITE, new Style.OnStyleLoaded() {
       @Override
       public void onStyleLoaded(@NonNull Style style) {
-        // Add the marathon route source to the map
-        // Create a GeoJsonSource and use the Mapbox Datasets API to retrieve the GeoJSON data
-        // More info about the Datasets API at https://www.mapbox.com/api-documentation/#retrieve-a-dataset
-        GeoJsonSource courseRouteGeoJson = new GeoJsonSource(
-          "coursedata", loadJsonFromAsset("marathon_route.geojson"));
-
-        style.addSource(courseRouteGeoJson);
-        addExtrusionsLayerToMap(style);
+        BackgroundTaskExecutor.getInstance().execute(MarathonExtrusionActivity.this,
+          new LoadVectorTilesTask(MarathonExtrusionActivity.this));
       }
     });
   }
 
+  private void setUpVectorTiles(@NonNull GeoJsonVectorTiles vectorTiles) {
+    Style style = mapboxMap.getStyle();
+    if (style == null) {
+      return;
+    }
+    this.vectorTiles = vectorTiles;
+
+    // Add the marathon route source to the map, served from the tiles cut from the GeoJSON
+    // You could also use the Mapbox Datasets API to retrieve the GeoJSON data
+    // More info about the Datasets API at https://www.mapbox.com/api-documentation/#retrieve-a-dataset
+    TileSet tileSet = new TileSet("2.1.0", LocalVectorTileServer.register(this, TILES_NAME, vectorTiles));
+    tileSet.setMaxZoom(TILES_MAX_ZOOM);
+    style.addSource(new VectorSource("coursedata", tileSet));
+    addExtrusionsLayerToMap(style);
+    mapView.addOnDidFinishRenderingMapListener(this);
+  }
+
   private void addExtrusionsLayerToMap(@NonNull Style loadedMapStyle) {
     // Add FillExtrusion layer to map using GeoJSON data
-    loadedMapStyle.addLayer(new FillExtrusionLayer("course", "coursedata").withProperties(
-      fillExtrusionColor(Color.YELLOW),
-      fillExtrusionOpacity(0.7f),
-      fillExtrusionHeight(get("e"))));
+    loadedMapStyle.addLayer(new FillExtrusionLayer("course", "coursedata").withSourceLayer(SOURCE_LAYER)
+      .withProperties(
+        fillExtrusionColor(Color.YELLOW),
+        fillExtrusionOpacity(0.7f),
+        fillExtrusionHeight(get("e"))));
+  }
+
+  @Override
+  public void onDidFinishRenderingMap(boolean fully) {
+    if (fully) {
+      Timber.d("Marathon tiles rendered %1$.0f ms after the style was requested, %2$s",
+        (System.nanoTime() - styleRequestNanos) / 1e6, vectorTiles.getStats());
+      mapView.removeOnDidFinishRenderingMapListener(this);
+    }
+  }
+
+  /**
+   * Cut the marathon route into vector tiles in the background.
+   */
+  private static class LoadVectorTilesTask extends BackgroundTask<GeoJsonVectorTiles> {
+
+    private final WeakReference<MarathonExtrusionActivity> activityRef;
+
+    LoadVectorTilesTask(MarathonExtrusionActivity activity) {
+      super(Pool.CPU);
+      activityRef = new WeakReference<>(activity);
+    }
+
+    @Override
+    protected GeoJsonVectorTiles doInBackground() {
+      MarathonExtrusionActivity activity = activityRef.get();
+      if (activity == null) {
+        return null;
+      }
+      // The tiles cut when the example was open before, with the tiles encoded then
+      VectorTilesCache cache = VectorTilesCache.getInstance(activity);
+      GeoJsonVectorTiles vectorTiles = cache.get(TILES_NAME);
+      if (vectorTiles != null) {
+        return vectorTiles;
+      }
+      FeatureCollection featureCollection = GeoJsonAssetLoader.load(activity, "marathon_route.geojson");
+      if (featureCollection == null) {
+        return null;
+      }
+      vectorTiles = new GeoJsonVectorTiles(featureCollection, SOURCE_LAYER, TILES_MAX_ZOOM, TILE_CACHE_SIZE_BYTES);
+      cache.put(TILES_NAME, vectorTiles);
+      return vectorTiles;
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable GeoJsonVectorTiles vectorTiles) {
+      MarathonExtrusionActivity activity = activityRef.get();
+      if (activity != null && vectorTiles != null) {
+        activity.setUpVectorTiles(vectorTiles);
+      }
+    }
   }
 
   @Override
@@ -104,6 +188,8 @@ public class MarathonExtrusionActivity extends AppCompatActivity implements OnMa
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    mapView.removeOnDidFinishRenderingMapListener(this);
+    LocalVectorTileServer.unregister(TILES_NAME);
     mapView.onDestroy();
   }
 
@@ -112,19 +198,4 @@ public class MarathonExtrusionActivity extends AppCompatActivity implements OnMa
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
@@ -15,6 +15,7 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -152,6 +153,7 @@ public class DirectionsActivity extends AppCompatActivity {
       .profile(DirectionsCriteria.PROFILE_DRIVING)
       .accessToken(getString(R.string.access_token))
       .build();
+    HttpStack.getInstance(DirectionsActivity.this).attach(client);
 
     client.enqueueCall(new Callback<DirectionsResponse>() {
       @Override
@@ -232,6 +234,7 @@ public class DirectionsActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     // Cancel the Directions API request
     if (client != null) {
       client.cancelCall();
@@ -14,12 +14,10 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.mapbox.api.geocoding.v5.GeocodingCriteria;
-import com.mapbox.api.geocoding.v5.MapboxGeocoding;
 import com.mapbox.api.geocoding.v5.models.CarmenFeature;
-import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
-import com.mapbox.core.exceptions.ServicesException;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ReverseGeocodeCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -32,9 +30,6 @@ import com.mapbox.mapboxsdk.maps.Style;
 import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import timber.log.Timber;
 
 /**
@@ -42,6 +37,9 @@ import timber.log.Timber;
  */
 public class GeocodingActivity extends AppCompatActivity implements OnMapReadyCallback {
 
+  // Geohash cells of about 5 by 5 kilometers, which are well inside a place
+  private static final int REVERSE_GEOCODE_PRECISION = 5;
+
   private MapView mapView;
   private MapboxMap mapboxMap;
   private Button chooseCityButton;
@@ -183,19 +181,12 @@ public class GeocodingActivity extends AppCompatActivity implements OnMapReadyCa
   }
 
   private void makeGeocodeSearch(final LatLng latLng) {
-    try {
-      // Build a Mapbox geocoding request
-      MapboxGeocoding client = MapboxGeocoding.builder()
-        .accessToken(getString(R.string.access_token))
-        .query(Point.fromLngLat(latLng.getLongitude(), latLng.getLatitude()))
-        .geocodingTypes(GeocodingCriteria.TYPE_PLACE)
-        .mode(GeocodingCriteria.MODE_PLACES)
-        .build();
-      client.enqueueCall(new Callback<GeocodingResponse>() {
+    // Places are large, so every click in the same geohash cell gets the place from the cache
+    ReverseGeocodeCache.getInstance(this).reverseGeocode(
+      Point.fromLngLat(latLng.getLongitude(), latLng.getLatitude()), REVERSE_GEOCODE_PRECISION,
+      GeocodingCriteria.TYPE_PLACE, new ReverseGeocodeCache.Callback() {
         @Override
-        public void onResponse(Call<GeocodingResponse> call,
-                               Response<GeocodingResponse> response) {
-          List<CarmenFeature> results = response.body().features();
+        public void onResult(@NonNull List<CarmenFeature> results) {
           if (results.size() > 0) {
 
             // Get the first Feature from the successful geocoding response
@@ -209,14 +200,10 @@ public class GeocodingActivity extends AppCompatActivity implements OnMapReadyCa
         }
 
         @Override
-        public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
+        public void onFailure(@NonNull Throwable throwable) {
           Timber.e("Geocoding Failure: " + throwable.getMessage());
         }
       });
-    } catch (ServicesException servicesException) {
-      Timber.e("Error geocoding: " + servicesException.toString());
-      servicesException.printStackTrace();
-    }
   }
 
   private void animateCameraToNewPosition(LatLng latLng) {
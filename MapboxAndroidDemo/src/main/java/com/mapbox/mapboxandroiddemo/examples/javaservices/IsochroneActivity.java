@@ -2,6 +2,7 @@ package com.mapbox.mapboxandroiddemo.examples.javaservices;
 
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.Toast;
@@ -10,6 +11,10 @@ import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -24,9 +29,13 @@ import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.utils.BitmapUtils;
 
-import java.net.URL;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 
 import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.eq;
@@ -170,8 +179,10 @@ public class IsochroneActivity extends AppCompatActivity implements MapboxMap.On
       String randomNum = String.valueOf(Math.random());
 
       // Create and add a new GeoJsonSource with a unique ID. The source is fed a List of Feature objects via
-      // the Isochrone API response.
-      style.addSource(new GeoJsonSource(GEOJSON_SOURCE_ID + randomNum, new URL(url.toString())));
+      // the Isochrone API response, which is downloaded with the app's shared client.
+      style.addSource(new GeoJsonSource(GEOJSON_SOURCE_ID + randomNum));
+      BackgroundTaskExecutor.getInstance().execute(this,
+        new LoadIsochroneTask(this, url, GEOJSON_SOURCE_ID + randomNum));
 
       // Create new Fill and Line layers with unique ids.
       randomNumForLayerId = String.valueOf(randomNum);
@@ -246,6 +257,56 @@ public class IsochroneActivity extends AppCompatActivity implements MapboxMap.On
     style.addLayerBelow(isochroneLineLayer, "click-layer-id");
   }
 
+  /**
+   * Download an Isochrone API response and set it as the data of its source.
+   */
+  private static class LoadIsochroneTask extends BackgroundTask<FeatureCollection> {
+
+    private final WeakReference<IsochroneActivity> weakReference;
+    private final OkHttpClient client;
+    private final HttpUrl url;
+    private final String sourceId;
+
+    LoadIsochroneTask(IsochroneActivity activity, HttpUrl url, String sourceId) {
+      super(Pool.IO);
+      this.weakReference = new WeakReference<>(activity);
+      this.client = HttpStack.getInstance(activity).getClient();
+      this.url = url;
+      this.sourceId = sourceId;
+    }
+
+    @Override
+    protected FeatureCollection doInBackground() {
+      Request request = new Request.Builder().url(url).build();
+      try {
+        Response response = client.newCall(request).execute();
+        try {
+          if (!response.isSuccessful()) {
+            throw new IOException("Unexpected isochrone response " + response.code());
+          }
+          return GeoJsonAssetLoader.parse(response.body().byteStream(), null);
+        } finally {
+          response.close();
+        }
+      } catch (IOException exception) {
+        Timber.e(exception, "Couldn't load the isochrone");
+        return null;
+      }
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable FeatureCollection isochrone) {
+      IsochroneActivity activity = weakReference.get();
+      if (activity == null || isochrone == null || activity.mapboxMap.getStyle() == null) {
+        return;
+      }
+      GeoJsonSource source = activity.mapboxMap.getStyle().getSourceAs(sourceId);
+      if (source != null) {
+        source.setGeoJson(isochrone);
+      }
+    }
+  }
+
   @Override
   protected void onStart() {
     super.onStart();
@@ -279,6 +340,7 @@ public class IsochroneActivity extends AppCompatActivity implements MapboxMap.On
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     mapView.onDestroy();
   }
 
@@ -1,7 +1,6 @@
 package com.mapbox.mapboxandroiddemo.examples.javaservices;
 
 import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -16,6 +15,10 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -25,11 +28,9 @@ import com.mapbox.mapboxsdk.style.layers.LineLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.utils.ColorUtils;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Objects;
-import java.util.Scanner;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -72,7 +73,8 @@ public class MapMatchingActivity extends AppCompatActivity {
         map.setStyle(Style.MAPBOX_STREETS, new Style.OnStyleLoaded() {
           @Override
           public void onStyleLoaded(@NonNull Style style) {
-            new LoadGeoJson(MapMatchingActivity.this).execute();
+            BackgroundTaskExecutor.getInstance().execute(MapMatchingActivity.this,
+              new LoadGeoJson(MapMatchingActivity.this));
           }
         });
       }
@@ -112,6 +114,7 @@ public class MapMatchingActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     mapView.onDestroy();
   }
 
@@ -121,36 +124,26 @@ public class MapMatchingActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private static class LoadGeoJson extends AsyncTask<Void, Void, FeatureCollection> {
+  private static class LoadGeoJson extends BackgroundTask<FeatureCollection> {
 
     private WeakReference<MapMatchingActivity> weakReference;
 
     LoadGeoJson(MapMatchingActivity activity) {
+      super(Pool.CPU);
       this.weakReference = new WeakReference<>(activity);
     }
 
     @Override
-    protected FeatureCollection doInBackground(Void... voids) {
-      try {
-        MapMatchingActivity activity = weakReference.get();
-        if (activity != null) {
-          InputStream inputStream = activity.getAssets().open("trace.geojson");
-          return FeatureCollection.fromJson(convertStreamToString(inputStream));
-        }
-      } catch (Exception exception) {
-        Timber.e("Exception Loading GeoJSON: %s", exception.toString());
+    protected FeatureCollection doInBackground() {
+      MapMatchingActivity activity = weakReference.get();
+      if (activity != null) {
+        return GeoJsonAssetLoader.load(activity, "trace.geojson");
       }
       return null;
     }
 
-    static String convertStreamToString(InputStream is) {
-      Scanner scanner = new Scanner(is).useDelimiter("\\A");
-      return scanner.hasNext() ? scanner.next() : "";
-    }
-
     @Override
     protected void onPostExecute(@Nullable FeatureCollection featureCollection) {
-      super.onPostExecute(featureCollection);
       MapMatchingActivity activity = weakReference.get();
       if (activity != null && featureCollection != null) {
         activity.drawLines(featureCollection);
@@ -191,6 +184,7 @@ public class MapMatchingActivity extends AppCompatActivity {
         .profile(PROFILE_DRIVING)
         .coordinates(points)
         .build();
+      HttpStack.getInstance(MapMatchingActivity.this).attach(client);
 
       // Execute the API call and handle the response.
       client.enqueueCall(new Callback<MapMatchingResponse>() {
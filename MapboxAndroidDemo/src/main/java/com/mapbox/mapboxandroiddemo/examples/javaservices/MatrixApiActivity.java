@@ -3,6 +3,7 @@ package com.mapbox.mapboxandroiddemo.examples.javaservices;
 import android.content.Context;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.DefaultItemAnimator;
@@ -17,12 +18,14 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.mapbox.api.directions.v5.DirectionsCriteria;
-import com.mapbox.api.matrix.v1.MapboxMatrix;
-import com.mapbox.api.matrix.v1.models.MatrixResponse;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.MatrixTiler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.Icon;
 import com.mapbox.mapboxsdk.annotations.IconFactory;
@@ -35,16 +38,12 @@ import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.turf.TurfConversion;
 
-import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-import timber.log.Timber;
-
 
 /**
  * Use the Mapbox Java Services SDK's Matrix API to retrieve travel times between many points.
@@ -58,6 +57,8 @@ public class MatrixApiActivity extends AppCompatActivity {
   private RecyclerView recyclerView;
   private MatrixApiLocationRecyclerViewAdapter matrixApiLocationRecyclerViewAdapter;
   private ArrayList<SingleRecyclerViewMatrixLocation> matrixLocationList;
+  private MatrixTiler matrixTiler;
+  private LoadMatrixTask loadMatrixTask;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -75,6 +76,8 @@ public class MatrixApiActivity extends AppCompatActivity {
     // Create list of positions from local GeoJSON file
     initPositionListFromGeoJsonFile();
 
+    matrixTiler = new MatrixTiler(this, DirectionsCriteria.PROFILE_DRIVING);
+
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(new OnMapReadyCallback() {
@@ -99,9 +102,11 @@ public class MatrixApiActivity extends AppCompatActivity {
                 @Override
                 public boolean onMarkerClick(@NonNull Marker marker) {
 
-                  // Make a call to the Mapbox Matrix API
-                  makeMapboxMatrixApiCall(getClickedMarkerNumInPositionList(marker), Point.fromLngLat(
-                    marker.getPosition().getLongitude(), marker.getPosition().getLatitude()));
+                  // Make a call to the Mapbox Matrix API. The station's own point is the origin, so
+                  // that it's only sent once with the destinations
+                  int markerPositionInList = getClickedMarkerNumInPositionList(marker);
+                  makeMapboxMatrixApiCall(markerPositionInList >= 0 ? pointList.get(markerPositionInList)
+                    : Point.fromLngLat(marker.getPosition().getLongitude(), marker.getPosition().getLatitude()));
                   return false;
                 }
               });
@@ -138,43 +143,65 @@ public class MatrixApiActivity extends AppCompatActivity {
     snapHelper.attachToRecyclerView(recyclerView);
   }
 
-  private void makeMapboxMatrixApiCall(final int markerPositionInList, Point pointOfClickedMarker) {
+  private void makeMapboxMatrixApiCall(Point pointOfClickedMarker) {
+    // The distances from a station clicked before would overwrite the ones from this station
+    if (loadMatrixTask != null) {
+      loadMatrixTask.cancel(true);
+    }
 
-    // Build Mapbox Matrix API parameters
-    MapboxMatrix directionsMatrixClient = MapboxMatrix.builder()
-      .accessToken(getString(R.string.access_token))
-      .profile(DirectionsCriteria.PROFILE_DRIVING)
-      .coordinates(pointList)
-      .build();
+    // Only the row from the clicked station is needed, and any number of stations fits in it
+    loadMatrixTask = new LoadMatrixTask(this, matrixTiler, pointOfClickedMarker, pointList);
+    BackgroundTaskExecutor.getInstance().execute(this, loadMatrixTask);
+  }
 
-    // Handle the API response
-    directionsMatrixClient.enqueueCall(new Callback<MatrixResponse>() {
-      @Override
-      public void onResponse(Call<MatrixResponse> call,
-                             Response<MatrixResponse> response) {
-        List<Double[]> durationsToAllOfTheLocationsFromTheOrigin = response.body().durations();
-        for (int x = 0; x < durationsToAllOfTheLocationsFromTheOrigin.size(); x++) {
-          String finalConvertedFormattedDistance = String.valueOf(new DecimalFormat("#.##")
-            .format(TurfConversion.convertLength(
-              durationsToAllOfTheLocationsFromTheOrigin.get(markerPositionInList)[x],
-              "meters", "miles")));
-          if (x == markerPositionInList) {
-            matrixLocationList.get(x).setDistanceFromOrigin(finalConvertedFormattedDistance);
-          }
-          if (x != markerPositionInList) {
-            matrixLocationList.get(x).setDistanceFromOrigin(finalConvertedFormattedDistance);
-            matrixApiLocationRecyclerViewAdapter.notifyDataSetChanged();
-          }
-        }
+  private void onMatrixLoaded(@Nullable MatrixTiler.Result result) {
+    if (result == null || result.getFailedTileCount() > 0) {
+      Toast.makeText(MatrixApiActivity.this, R.string.call_error,
+        Toast.LENGTH_SHORT).show();
+    }
+    if (result == null) {
+      return;
+    }
+    double[] distancesFromTheOrigin = result.getDistances()[0];
+    DecimalFormat decimalFormat = new DecimalFormat("#.##");
+    for (int x = 0; x < distancesFromTheOrigin.length; x++) {
+      if (Double.isNaN(distancesFromTheOrigin[x])) {
+        matrixLocationList.get(x).setDistanceFromOrigin(null);
+        continue;
       }
+      matrixLocationList.get(x).setDistanceFromOrigin(decimalFormat.format(TurfConversion.convertLength(
+        distancesFromTheOrigin[x], "meters", "miles")));
+    }
+    matrixApiLocationRecyclerViewAdapter.notifyDataSetChanged();
+  }
 
-      @Override
-      public void onFailure(Call<MatrixResponse> call, Throwable throwable) {
-        Toast.makeText(MatrixApiActivity.this, R.string.call_error,
-          Toast.LENGTH_SHORT).show();
-        Timber.d( "onResponse onFailure");
+  private static class LoadMatrixTask extends BackgroundTask<MatrixTiler.Result> {
+
+    private final WeakReference<MatrixApiActivity> activityRef;
+    private final MatrixTiler matrixTiler;
+    private final Point origin;
+    private final List<Point> destinations;
+
+    LoadMatrixTask(MatrixApiActivity activity, MatrixTiler matrixTiler, Point origin, List<Point> destinations) {
+      super(Pool.IO);
+      this.activityRef = new WeakReference<>(activity);
+      this.matrixTiler = matrixTiler;
+      this.origin = origin;
+      this.destinations = destinations;
+    }
+
+    @Override
+    protected MatrixTiler.Result doInBackground() {
+      return matrixTiler.compute(Collections.singletonList(origin), destinations);
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable MatrixTiler.Result result) {
+      MatrixApiActivity activity = activityRef.get();
+      if (activity != null) {
+        activity.onMatrixLoaded(result);
       }
-    });
+    }
   }
 
   private void addMarkers() {
@@ -189,26 +216,10 @@ public class MatrixApiActivity extends AppCompatActivity {
     }
   }
 
-  private String loadGeoJsonFromAsset(String filename) {
-    try {
-      // Load GeoJSON file from local asset folder
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-    } catch (Exception exception) {
-      Timber.d(exception.toString(), "Exception Loading GeoJSON: ");
-      exception.printStackTrace();
-      return null;
-    }
-  }
-
   private void initPositionListFromGeoJsonFile() {
 
     // Get GeoJSON features from GeoJSON file in the assets folder
-    featureCollection = FeatureCollection.fromJson(loadGeoJsonFromAsset("boston_charge_stations.geojson"));
+    featureCollection = GeoJsonAssetLoader.load(this, "boston_charge_stations.geojson");
 
     // Initialize List<Position> for eventual use in the Matrix API call
     pointList = new ArrayList<>();
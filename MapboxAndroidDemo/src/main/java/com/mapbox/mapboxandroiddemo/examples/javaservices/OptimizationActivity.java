@@ -16,6 +16,8 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
+import com.mapbox.mapboxandroiddemo.utils.StopOrderOptimizer;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
@@ -28,6 +30,7 @@ import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -55,6 +58,10 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   private static final String ANY = "any";
   private static final String TEAL_COLOR = "#23D2BE";
   private static final float POLYLINE_WIDTH = 5;
+  // The Optimization API is limited to 12 coordinate sets
+  private static final int MAX_OPTIMIZATION_API_STOPS = 12;
+  // Ordering a dozen stops takes well under a millisecond, so this only cuts long trips short
+  private static final long PREVIEW_TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
   private MapView mapView;
   private MapboxMap mapboxMap;
   private DirectionsRoute optimizedRoute;
@@ -128,15 +135,22 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
 
   @Override
   public boolean onMapClick(@NonNull LatLng point) {
-    // Optimization API is limited to 12 coordinate sets
-    if (alreadyTwelveMarkersOnMap()) {
-      Toast.makeText(OptimizationActivity.this, R.string.only_twelve_stops_allowed, Toast.LENGTH_LONG).show();
-    } else {
-      Style style = mapboxMap.getStyle();
-      if (style != null) {
-        addDestinationMarker(style, point);
-        addPointToStopsList(point);
+    Style style = mapboxMap.getStyle();
+    if (style != null) {
+      addDestinationMarker(style, point);
+      addPointToStopsList(point);
+
+      // Order the stops on the device so that the route changes at once, then let the Optimization
+      // API replace it with a route along the roads, if it can take this many stops. The request for
+      // the stops before this one would replace it with a route which misses this stop
+      if (optimizedClient != null) {
+        optimizedClient.cancelCall();
+      }
+      drawLocallyOptimizedRoute(style, stops);
+      if (stops.size() <= MAX_OPTIMIZATION_API_STOPS) {
         getOptimizedRoute(style, stops);
+      } else if (stops.size() == MAX_OPTIMIZATION_API_STOPS + 1) {
+        Toast.makeText(OptimizationActivity.this, R.string.stops_ordered_on_device, Toast.LENGTH_LONG).show();
       }
     }
     return true;
@@ -145,6 +159,9 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   @Override
   public boolean onMapLongClick(@NonNull LatLng point) {
     stops.clear();
+    if (optimizedClient != null) {
+      optimizedClient.cancelCall();
+    }
     if (mapboxMap != null) {
       Style style = mapboxMap.getStyle();
       if (style != null) {
@@ -171,10 +188,6 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
     }
   }
 
-  private boolean alreadyTwelveMarkersOnMap() {
-    return stops.size() == 12;
-  }
-
   private void addDestinationMarker(@NonNull Style style, LatLng point) {
     List<Feature> destinationMarkerList = new ArrayList<>();
     for (Point singlePoint : stops) {
@@ -198,6 +211,22 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
     stops.add(origin);
   }
 
+  private void drawLocallyOptimizedRoute(@NonNull Style style, List<Point> coordinates) {
+    StopOrderOptimizer.Solution solution = StopOrderOptimizer.solve(
+      StopOrderOptimizer.haversineCosts(coordinates), PREVIEW_TIME_BUDGET_NANOS);
+    List<Point> orderedStops = new ArrayList<>(coordinates.size());
+    for (int stop : solution.getOrder()) {
+      orderedStops.add(coordinates.get(stop));
+    }
+    Timber.d("Ordered %1$d stops on the device in %2$d us", coordinates.size(),
+      TimeUnit.NANOSECONDS.toMicros(solution.getElapsedNanos()));
+    GeoJsonSource optimizedLineSource = style.getSourceAs("optimized-route-source-id");
+    if (optimizedLineSource != null) {
+      optimizedLineSource.setGeoJson(FeatureCollection.fromFeature(Feature.fromGeometry(
+        LineString.fromLngLats(orderedStops))));
+    }
+  }
+
   private void getOptimizedRoute(@NonNull final Style style, List<Point> coordinates) {
     optimizedClient = MapboxOptimization.builder()
       .source(FIRST)
@@ -207,6 +236,7 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
       .profile(DirectionsCriteria.PROFILE_DRIVING)
       .accessToken(Mapbox.getAccessToken())
       .build();
+    HttpStack.getInstance(OptimizationActivity.this).attach(optimizedClient);
 
     optimizedClient.enqueueCall(new Callback<OptimizationResponse>() {
       @Override
@@ -278,6 +308,7 @@ public class OptimizationActivity extends AppCompatActivity implements OnMapRead
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     // Cancel the directions API request
     if (optimizedClient != null) {
       optimizedClient.cancelCall();
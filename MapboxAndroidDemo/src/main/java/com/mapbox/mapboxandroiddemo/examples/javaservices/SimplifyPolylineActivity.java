@@ -1,7 +1,6 @@
 package com.mapbox.mapboxandroiddemo.examples.javaservices;
 
 import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -13,6 +12,9 @@ import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.geojson.utils.PolylineUtils;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -22,13 +24,9 @@ import com.mapbox.mapboxsdk.style.layers.LineLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.utils.ColorUtils;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Objects;
-import java.util.Scanner;
-
-import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineColor;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineWidth;
@@ -64,7 +62,8 @@ public class SimplifyPolylineActivity extends AppCompatActivity {
         mapboxMap.setStyle(Style.LIGHT, new Style.OnStyleLoaded() {
           @Override
           public void onStyleLoaded(@NonNull Style style) {
-            new DrawGeoJson(SimplifyPolylineActivity.this).execute();
+            BackgroundTaskExecutor.getInstance().execute(SimplifyPolylineActivity.this,
+              new DrawGeoJson(SimplifyPolylineActivity.this));
           }
         });
       }
@@ -113,36 +112,26 @@ public class SimplifyPolylineActivity extends AppCompatActivity {
     mapView.onSaveInstanceState(outState);
   }
 
-  private static class DrawGeoJson extends AsyncTask<Void, Void, FeatureCollection> {
+  private static class DrawGeoJson extends BackgroundTask<FeatureCollection> {
 
     private WeakReference<SimplifyPolylineActivity> weakReference;
 
     DrawGeoJson(SimplifyPolylineActivity activity) {
+      super(Pool.CPU);
       this.weakReference = new WeakReference<>(activity);
     }
 
     @Override
-    protected FeatureCollection doInBackground(Void... voids) {
-      try {
-        SimplifyPolylineActivity activity = weakReference.get();
-        if (activity != null) {
-          InputStream inputStream = activity.getAssets().open("matched_route.geojson");
-          return FeatureCollection.fromJson(convertStreamToString(inputStream));
-        }
-      } catch (Exception exception) {
-        Timber.e("Exception loading GeoJSON: %s", exception.toString());
+    protected FeatureCollection doInBackground() {
+      SimplifyPolylineActivity activity = weakReference.get();
+      if (activity != null) {
+        return FeatureCollectionCache.load(activity, "matched_route.geojson");
       }
       return null;
     }
 
-    static String convertStreamToString(InputStream is) {
-      Scanner scanner = new Scanner(is).useDelimiter("\\A");
-      return scanner.hasNext() ? scanner.next() : "";
-    }
-
     @Override
     protected void onPostExecute(@Nullable FeatureCollection featureCollection) {
-      super.onPostExecute(featureCollection);
       SimplifyPolylineActivity activity = weakReference.get();
       if (activity != null && featureCollection != null) {
         activity.drawLines(featureCollection);
@@ -15,6 +15,7 @@ import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -166,6 +167,7 @@ public class TilequeryActivity extends AppCompatActivity implements
       .dedupe(true)
       .layers("building")
       .build();
+    HttpStack.getInstance(TilequeryActivity.this).attach(tilequery);
 
     tilequery.enqueueCall(new Callback<FeatureCollection>() {
       @Override
@@ -273,6 +275,7 @@ public class TilequeryActivity extends AppCompatActivity implements
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     mapView.onDestroy();
   }
 
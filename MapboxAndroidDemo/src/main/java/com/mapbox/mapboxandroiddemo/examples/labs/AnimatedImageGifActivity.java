@@ -4,11 +4,11 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Movie;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngQuad;
@@ -20,6 +20,7 @@ import com.mapbox.mapboxsdk.style.layers.RasterLayer;
 import com.mapbox.mapboxsdk.style.sources.ImageSource;
 
 import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Add an animated image (GIF) anywhere on the map
@@ -28,10 +29,9 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
 
   private static final String ID_IMAGE_SOURCE = "animated_image_source";
   private static final String ID_IMAGE_LAYER = "animated_image_layer";
+  private static final long GIF_FRAME_INTERVAL_MILLIS = 50;
 
   private MapView mapView;
-  private Handler handler;
-  private Runnable runnable;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -55,10 +55,11 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
     map.setStyle(Style.MAPBOX_STREETS, new Style.OnStyleLoaded() {
       @Override
       public void onStyleLoaded(@NonNull Style style) {
-        // Use the RefreshImageRunnable class and runnable to quickly display images for a GIF/video UI experience
+        // Use the RefreshImageCallback class to quickly display images for a GIF/video UI experience. The
+        // scheduler pauses it while the activity is paused
         InputStream gifInputStream = getResources().openRawResource(R.raw.waving_bear);
-        runnable = new RefreshImageRunnable(style, Movie.decodeStream(gifInputStream), handler = new Handler());
-        handler.postDelayed(runnable, 100);
+        FrameScheduler.getInstance().schedule(AnimatedImageGifActivity.this, GIF_FRAME_INTERVAL_MILLIS,
+          new RefreshImageCallback(style, Movie.decodeStream(gifInputStream)));
       }
     });
   }
@@ -85,9 +86,6 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
   protected void onStop() {
     super.onStop();
     mapView.onStop();
-    if (handler != null) {
-      handler.removeCallbacks(runnable);
-    }
   }
 
   @Override
@@ -102,27 +100,25 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
     mapView.onSaveInstanceState(outState);
   }
 
-  private static class RefreshImageRunnable implements Runnable {
+  private static class RefreshImageCallback implements FrameScheduler.Callback {
 
     private ImageSource imageSource;
     private Style style;
     private Movie movie;
-    private Handler handler;
     private long movieStart;
     private Bitmap bitmap;
     private Canvas canvas;
 
-    RefreshImageRunnable(Style style, Movie movie, Handler handler) {
+    RefreshImageCallback(Style style, Movie movie) {
       this.style = style;
       this.movie = movie;
-      this.handler = handler;
       bitmap = Bitmap.createBitmap(movie.width(), movie.height(), Bitmap.Config.ARGB_8888);
       canvas = new Canvas(bitmap);
     }
 
     @Override
-    public void run() {
-      long now = android.os.SystemClock.uptimeMillis();
+    public void onFrame(long frameTimeNanos, long budgetNanos) {
+      long now = TimeUnit.NANOSECONDS.toMillis(frameTimeNanos);
       if (movieStart == 0) {
         movieStart = now;
       }
@@ -153,7 +149,6 @@ public class AnimatedImageGifActivity extends AppCompatActivity implements OnMap
       }
 
       imageSource.setImage(bitmap);
-      handler.postDelayed(this, 50);
     }
   }
 }
@@ -14,6 +14,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.provider.CalendarContract;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
@@ -21,14 +22,13 @@ import android.widget.Toast;
 
 import com.mapbox.android.core.permissions.PermissionsListener;
 import com.mapbox.api.geocoding.v5.GeocodingCriteria;
-import com.mapbox.api.geocoding.v5.MapboxGeocoding;
-import com.mapbox.api.geocoding.v5.models.CarmenFeature;
-import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
-import com.mapbox.core.exceptions.ServicesException;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.GeocodingBatcher;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
@@ -38,13 +38,12 @@ import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.iconAllowOverlap;
@@ -69,7 +68,6 @@ public class CalendarIntegrationActivity extends AppCompatActivity implements
   private String geojsonSourceId = "geojsonSourceId";
   private MapView mapView;
   private MapboxMap mapboxMap;
-  private List<Feature> featureList;
   private FeatureCollection featureCollection;
 
   @Override
@@ -157,84 +155,93 @@ public class CalendarIntegrationActivity extends AppCompatActivity implements
 
       Cursor cur = this.getContentResolver().query(calendarUri, projection, selection, null, null);
 
-      featureList = new ArrayList<>();
-      int index = 0;
       if (cur != null) {
         if (!deviceHasInternetConnection()) {
           Toast.makeText(this, R.string.no_connectivity, Toast.LENGTH_LONG).show();
           Timber.d("No internet connectivity");
         } else {
+          List<String[]> events = new ArrayList<>();
           while (cur.moveToNext()) {
-            if (index <= 80) {
-              if (cur.getString(EVENT_LOCATION_INDEX) != null && !cur.getString(EVENT_LOCATION_INDEX).isEmpty()) {
-                makeMapboxGeocodingRequest(style, cur.getString(TITLE_INDEX), cur.getString(EVENT_LOCATION_INDEX));
-              } else {
-                Timber.d("getCalendarData: location is null or empty");
-              }
-              index++;
+            if (cur.getString(EVENT_LOCATION_INDEX) != null && !cur.getString(EVENT_LOCATION_INDEX).isEmpty()) {
+              events.add(new String[] {cur.getString(TITLE_INDEX), cur.getString(EVENT_LOCATION_INDEX)});
+            } else {
+              Timber.d("getCalendarData: location is null or empty");
             }
           }
           setUpData(style);
+          BackgroundTaskExecutor.getInstance().execute(this, new GeocodeEventsTask(this, events));
         }
+        cur.close();
       }
     }
   }
 
   /**
-   * Use the Mapbox Java SDK's wrapper for making a Mapbox Geocoding API request. The text in the calendar event's
-   * location field is used to make a geocoding request.
+   * Show the geocoded calendar events on the map, all in one update of the source.
    *
-   * @param eventTitle    title of the calendar event so that it can be added as a Feature property. The title is
-   *                      eventually displayed in a Toast when a calendar event icon is tapped on.
-   * @param eventLocation the event's location. This text is used in the Mapbox geocoding search
+   * @param eventFeatures a Point Feature for each event whose location was found
    */
-  private void makeMapboxGeocodingRequest(@NonNull final Style style, final String eventTitle,
-                                          final String eventLocation) {
-    try {
-      // Build a Mapbox geocoding request
-      MapboxGeocoding client = MapboxGeocoding.builder()
-        .accessToken(getString(R.string.access_token))
-        .query(eventLocation)
-        .geocodingTypes(GeocodingCriteria.TYPE_ADDRESS)
-        .mode(GeocodingCriteria.MODE_PLACES)
-        .build();
-      client.enqueueCall(new Callback<GeocodingResponse>() {
-        @Override
-        public void onResponse(Call<GeocodingResponse> call,
-                               Response<GeocodingResponse> response) {
-          List<CarmenFeature> results = response.body().features();
-          if (results.size() > 0) {
-            // Get the first Feature from the successful geocoding response
-            CarmenFeature feature = results.get(0);
-            if (feature != null && style.isFullyLoaded()) {
-              LatLng featureLatLng = new LatLng(feature.center().latitude(), feature.center().longitude());
-              Feature singleFeature = Feature.fromGeometry(Point.fromLngLat(featureLatLng.getLongitude(),
-                featureLatLng.getLatitude()));
-              singleFeature.addStringProperty(PROPERTY_TITLE, eventTitle);
-              singleFeature.addStringProperty(PROPERTY_LOCATION, eventLocation);
-              featureList.add(singleFeature);
-              featureCollection = FeatureCollection.fromFeatures(featureList);
-              GeoJsonSource source = style.getSourceAs(geojsonSourceId);
-              if (source != null) {
-                source.setGeoJson(featureCollection);
-              } else {
-                Timber.d("onResponse: listOfCalendarEvents == null");
-              }
-            }
-          } else {
-            Toast.makeText(CalendarIntegrationActivity.this, R.string.no_results,
-              Toast.LENGTH_SHORT).show();
-          }
-        }
+  private void onEventsGeocoded(@NonNull FeatureCollection eventFeatures) {
+    featureCollection = eventFeatures;
+    Style style = mapboxMap.getStyle();
+    if (style == null || !style.isFullyLoaded()) {
+      return;
+    }
+    GeoJsonSource source = style.getSourceAs(geojsonSourceId);
+    if (source != null) {
+      source.setGeoJson(featureCollection);
+    } else {
+      Timber.d("onEventsGeocoded: listOfCalendarEvents == null");
+    }
+    if (featureCollection.features().isEmpty()) {
+      Toast.makeText(this, R.string.no_results, Toast.LENGTH_SHORT).show();
+    }
+  }
 
-        @Override
-        public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
-          Timber.d("Geocoding Failure: %s", throwable.getMessage());
+  /**
+   * Geocode the locations of the calendar events with a {@link GeocodingBatcher}, which looks up
+   * each distinct location once and remembers them across launches.
+   */
+  private static class GeocodeEventsTask extends BackgroundTask<FeatureCollection> {
+
+    private final WeakReference<CalendarIntegrationActivity> weakReference;
+    private final GeocodingBatcher geocodingBatcher;
+    // The title and location of each event
+    private final List<String[]> events;
+
+    GeocodeEventsTask(CalendarIntegrationActivity activity, List<String[]> events) {
+      super(Pool.IO);
+      this.weakReference = new WeakReference<>(activity);
+      this.geocodingBatcher = new GeocodingBatcher(activity, GeocodingCriteria.TYPE_ADDRESS);
+      this.events = events;
+    }
+
+    @Override
+    protected FeatureCollection doInBackground() {
+      List<String> locations = new ArrayList<>(events.size());
+      for (String[] event : events) {
+        locations.add(event[1]);
+      }
+      Map<String, Point> points = geocodingBatcher.geocode(locations);
+      List<Feature> features = new ArrayList<>(points.size());
+      for (String[] event : events) {
+        Point point = points.get(event[1]);
+        if (point != null) {
+          Feature feature = Feature.fromGeometry(point);
+          feature.addStringProperty(PROPERTY_TITLE, event[0]);
+          feature.addStringProperty(PROPERTY_LOCATION, event[1]);
+          features.add(feature);
         }
-      });
-    } catch (ServicesException servicesException) {
-      Timber.d("Error geocoding: %s", servicesException.toString());
-      servicesException.printStackTrace();
+      }
+      return FeatureCollection.fromFeatures(features);
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable FeatureCollection eventFeatures) {
+      CalendarIntegrationActivity activity = weakReference.get();
+      if (activity != null && eventFeatures != null) {
+        activity.onEventsGeocoded(eventFeatures);
+      }
     }
   }
 
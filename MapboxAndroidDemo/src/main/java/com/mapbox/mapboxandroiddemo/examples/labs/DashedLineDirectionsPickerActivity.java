@@ -19,6 +19,7 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -144,6 +145,7 @@ public class DashedLineDirectionsPickerActivity extends AppCompatActivity
       .profile(DirectionsCriteria.PROFILE_WALKING)
       .accessToken(getString(R.string.access_token))
       .build();
+    HttpStack.getInstance(DashedLineDirectionsPickerActivity.this).attach(client);
     client.enqueueCall(new Callback<DirectionsResponse>() {
       @Override
       public void onResponse(Call<DirectionsResponse> call, Response<DirectionsResponse> response) {
@@ -228,6 +230,7 @@ public class DashedLineDirectionsPickerActivity extends AppCompatActivity
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     mapView.onDestroy();
   }
 
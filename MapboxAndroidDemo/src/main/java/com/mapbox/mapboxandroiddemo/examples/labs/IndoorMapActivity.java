@@ -12,6 +12,7 @@ import android.widget.Button;
 import com.mapbox.geojson.Point;
 import com.mapbox.geojson.Polygon;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -22,8 +23,6 @@ import com.mapbox.mapboxsdk.style.layers.LineLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.turf.TurfJoins;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -99,7 +98,7 @@ public class IndoorMapActivity extends AppCompatActivity {
               }
             });
             indoorBuildingSource = new GeoJsonSource(
-              "indoor-building", loadJsonFromAsset("white_house_lvl_0.geojson"));
+              "indoor-building", FeatureCollectionCache.load(IndoorMapActivity.this, "white_house_lvl_0.geojson"));
             style.addSource(indoorBuildingSource);
 
             // Add the building layers since we know zoom levels in range
@@ -111,7 +110,8 @@ public class IndoorMapActivity extends AppCompatActivity {
         buttonSecondLevel.setOnClickListener(new View.OnClickListener() {
           @Override
           public void onClick(View view) {
-            indoorBuildingSource.setGeoJson(loadJsonFromAsset("white_house_lvl_1.geojson"));
+            indoorBuildingSource.setGeoJson(FeatureCollectionCache.load(IndoorMapActivity.this,
+              "white_house_lvl_1.geojson"));
           }
         });
 
@@ -119,7 +119,8 @@ public class IndoorMapActivity extends AppCompatActivity {
         buttonGroundLevel.setOnClickListener(new View.OnClickListener() {
           @Override
           public void onClick(View view) {
-            indoorBuildingSource.setGeoJson(loadJsonFromAsset("white_house_lvl_0.geojson"));
+            indoorBuildingSource.setGeoJson(FeatureCollectionCache.load(IndoorMapActivity.this,
+              "white_house_lvl_0.geojson"));
           }
         });
       }
@@ -210,21 +211,4 @@ public class IndoorMapActivity extends AppCompatActivity {
         stop(17f, 1f))));
     style.addLayer(indoorBuildingLineLayer);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
@@ -16,12 +16,10 @@ import android.widget.Toast;
 import com.mapbox.android.core.permissions.PermissionsListener;
 import com.mapbox.android.core.permissions.PermissionsManager;
 import com.mapbox.api.geocoding.v5.GeocodingCriteria;
-import com.mapbox.api.geocoding.v5.MapboxGeocoding;
 import com.mapbox.api.geocoding.v5.models.CarmenFeature;
-import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
-import com.mapbox.core.exceptions.ServicesException;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ReverseGeocodeCache;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.location.LocationComponent;
@@ -36,9 +34,6 @@ import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.layers.Property.NONE;
@@ -56,6 +51,8 @@ public class LocationPickerActivity extends AppCompatActivity implements Permiss
 
   private static final String TAG = "LocationPickerActivity";
   private static final String DROPPED_MARKER_LAYER_ID = "DROPPED_MARKER_LAYER_ID";
+  // Geohash cells of about 40 by 20 meters, so nearby drops share an address
+  private static final int REVERSE_GEOCODE_PRECISION = 8;
   private MapView mapView;
   private MapboxMap mapboxMap;
   private Button selectLocationButton;
@@ -246,18 +243,11 @@ public class LocationPickerActivity extends AppCompatActivity implements Permiss
    */
 
   private void reverseGeocode(@NonNull final Style style, final Point point) {
-    try {
-      MapboxGeocoding client = MapboxGeocoding.builder()
-        .accessToken(getString(R.string.access_token))
-        .query(Point.fromLngLat(point.longitude(), point.latitude()))
-        .geocodingTypes(GeocodingCriteria.TYPE_ADDRESS)
-        .build();
-
-      client.enqueueCall(new Callback<GeocodingResponse>() {
+    // A drop in the same geohash cell as an earlier one gets its address from the cache
+    ReverseGeocodeCache.getInstance(this).reverseGeocode(point, REVERSE_GEOCODE_PRECISION,
+      GeocodingCriteria.TYPE_ADDRESS, new ReverseGeocodeCache.Callback() {
         @Override
-        public void onResponse(Call<GeocodingResponse> call, Response<GeocodingResponse> response) {
-
-          List<CarmenFeature> results = response.body().features();
+        public void onResult(@NonNull List<CarmenFeature> results) {
           if (results.size() > 0) {
             CarmenFeature feature = results.get(0);
 
@@ -275,14 +265,10 @@ public class LocationPickerActivity extends AppCompatActivity implements Permiss
         }
 
         @Override
-        public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
+        public void onFailure(@NonNull Throwable throwable) {
           Timber.e("Geocoding Failure: %s", throwable.getMessage());
         }
       });
-    } catch (ServicesException servicesException) {
-      Timber.e("Error geocoding: %s", servicesException.toString());
-      servicesException.printStackTrace();
-    }
   }
 
   @SuppressWarnings( {"MissingPermission"})
@@ -0,0 +1,199 @@
+package com.mapbox.mapboxandroiddemo.examples.labs;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.TextView;
+
+import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
+import com.mapbox.mapboxandroiddemo.utils.MarkerAnimationLayer;
+import com.mapbox.mapboxsdk.Mapbox;
+import com.mapbox.mapboxsdk.maps.MapView;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
+import com.mapbox.mapboxsdk.maps.Style;
+import com.mapbox.mapboxsdk.style.layers.CircleLayer;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.util.Random;
+
+import timber.log.Timber;
+
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleColor;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleRadius;
+
+/**
+ * Animate thousands of markers moving around at once, all through one GeoJsonSource which is updated once per frame,
+ * and show how long each frame takes.
+ */
+public class MarkerAnimationStressActivity extends AppCompatActivity implements
+  MarkerAnimationLayer.OnMarkerArrivedListener {
+
+  private static final String FLEET_SOURCE_ID = "fleet-source-id";
+  private static final String FLEET_LAYER_ID = "fleet-layer-id";
+  private static final int MAX_MARKER_COUNT = 50000;
+
+  // The area of San Francisco the markers move around in
+  private static final double WEST = -122.515;
+  private static final double EAST = -122.375;
+  private static final double SOUTH = 37.71;
+  private static final double NORTH = 37.805;
+  private static final double MAX_MOVE_DEGREES = 0.01;
+  private static final int MIN_MOVE_MILLISECONDS = 2000;
+  private static final int MAX_MOVE_MILLISECONDS = 6000;
+  private static final int STATS_INTERVAL_MILLISECONDS = 1000;
+
+  private MapView mapView;
+  private TextView statsTextView;
+  private MarkerAnimationLayer markerAnimationLayer;
+  private final Random random = new Random();
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+
+    // Mapbox access token is configured here. This needs to be called either in your application
+    // object or in the same activity which contains the mapview.
+    Mapbox.getInstance(this, getString(R.string.access_token));
+
+    // This contains the MapView in XML and needs to be called after the access token is configured.
+    setContentView(R.layout.activity_lab_marker_animation_stress);
+
+    statsTextView = findViewById(R.id.marker_animation_stats_textview);
+
+    mapView = findViewById(R.id.mapView);
+    mapView.onCreate(savedInstanceState);
+    mapView.getMapAsync(new OnMapReadyCallback() {
+      @Override
+      public void onMapReady(@NonNull MapboxMap mapboxMap) {
+        mapboxMap.setStyle(Style.DARK, new Style.OnStyleLoaded() {
+          @Override
+          public void onStyleLoaded(@NonNull Style style) {
+            GeoJsonSource fleetSource = new GeoJsonSource(FLEET_SOURCE_ID);
+            style.addSource(fleetSource);
+            style.addLayer(new CircleLayer(FLEET_LAYER_ID, FLEET_SOURCE_ID).withProperties(
+              circleRadius(2f),
+              circleColor(Color.parseColor("#3bb2d0"))
+            ));
+
+            markerAnimationLayer = new MarkerAnimationLayer(fleetSource, MAX_MARKER_COUNT);
+            markerAnimationLayer.setOnMarkerArrivedListener(MarkerAnimationStressActivity.this);
+            markerAnimationLayer.start(MarkerAnimationStressActivity.this);
+            setMarkerCount(1000);
+            initStats();
+          }
+        });
+      }
+    });
+
+    findViewById(R.id.one_thousand_markers_button).setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        setMarkerCount(1000);
+      }
+    });
+    findViewById(R.id.ten_thousand_markers_button).setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        setMarkerCount(10000);
+      }
+    });
+    findViewById(R.id.fifty_thousand_markers_button).setOnClickListener(new View.OnClickListener() {
+      @Override
+      public void onClick(View view) {
+        setMarkerCount(50000);
+      }
+    });
+  }
+
+  /**
+   * Replace the markers with a number of new ones at random places, each heading somewhere nearby.
+   */
+  private void setMarkerCount(int markerCount) {
+    if (markerAnimationLayer == null) {
+      return;
+    }
+    markerAnimationLayer.clear();
+    for (int i = 0; i < markerCount; i++) {
+      int index = markerAnimationLayer.add(
+        WEST + random.nextDouble() * (EAST - WEST), SOUTH + random.nextDouble() * (NORTH - SOUTH));
+      moveToRandomTarget(markerAnimationLayer, index);
+    }
+    markerAnimationLayer.resetStats();
+  }
+
+  @Override
+  public void onMarkerArrived(@NonNull MarkerAnimationLayer layer, int index) {
+    moveToRandomTarget(layer, index);
+  }
+
+  private void moveToRandomTarget(MarkerAnimationLayer layer, int index) {
+    double longitude = clamp(layer.getLongitude(index) + (random.nextDouble() * 2 - 1) * MAX_MOVE_DEGREES, WEST, EAST);
+    double latitude = clamp(layer.getLatitude(index) + (random.nextDouble() * 2 - 1) * MAX_MOVE_DEGREES, SOUTH, NORTH);
+    layer.moveTo(index, longitude, latitude,
+      MIN_MOVE_MILLISECONDS + random.nextInt(MAX_MOVE_MILLISECONDS - MIN_MOVE_MILLISECONDS));
+  }
+
+  private static double clamp(double value, double min, double max) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  /**
+   * Show the time the main thread spends moving the markers and updating the source each frame.
+   */
+  private void initStats() {
+    FrameScheduler.getInstance().schedule(this, STATS_INTERVAL_MILLISECONDS, new FrameScheduler.Callback() {
+      @Override
+      public void onFrame(long frameTimeNanos, long budgetNanos) {
+        String stats = markerAnimationLayer.getStats();
+        statsTextView.setText(stats);
+        Timber.d("%1$s, %2$s", stats, FrameScheduler.getInstance().getStats());
+      }
+    });
+  }
+
+  @Override
+  public void onResume() {
+    super.onResume();
+    mapView.onResume();
+  }
+
+  @Override
+  protected void onStart() {
+    super.onStart();
+    mapView.onStart();
+  }
+
+  @Override
+  protected void onStop() {
+    super.onStop();
+    mapView.onStop();
+  }
+
+  @Override
+  public void onPause() {
+    super.onPause();
+    mapView.onPause();
+  }
+
+  @Override
+  public void onLowMemory() {
+    super.onLowMemory();
+    mapView.onLowMemory();
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    mapView.onDestroy();
+  }
+
+  @Override
+  protected void onSaveInstanceState(Bundle outState) {
+    super.onSaveInstanceState(outState);
+    mapView.onSaveInstanceState(outState);
+  }
+}
@@ -1,23 +1,21 @@
 package com.mapbox.mapboxandroiddemo.examples.labs;
 
-import android.animation.ObjectAnimator;
-import android.animation.TypeEvaluator;
-import android.animation.ValueAnimator;
 import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
-import android.view.animation.LinearInterpolator;
 
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
+import com.mapbox.mapboxandroiddemo.utils.RouteInterpolator;
 import com.mapbox.mapboxsdk.Mapbox;
-import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
@@ -27,12 +25,8 @@ import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.utils.BitmapUtils;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.util.List;
-import java.util.Scanner;
-
-import timber.log.Timber;
+import java.util.concurrent.TimeUnit;
 
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.iconAllowOverlap;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.iconIgnorePlacement;
@@ -49,15 +43,19 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
   private static final String TAG = "MarkerFollowingRoute";
   private static final String DOT_SOURCE_ID = "dot-source-id";
   private static final String LINE_SOURCE_ID = "line-source-id";
-  private int count = 0;
+  // About as fast as the marker moved when it took 300 milliseconds per route coordinate
+  private static final double MARKER_SPEED_METERS_PER_SECOND = 170;
+  // How far the marker moves in a frame at 60 fps
+  private static final double MARKER_POINT_SPACING_METERS = MARKER_SPEED_METERS_PER_SECOND / 60;
   private MapView mapView;
   private MapboxMap mapboxMap;
-  private Handler handler;
-  private Runnable runnable;
   private GeoJsonSource dotGeoJsonSource;
-  private ValueAnimator markerIconAnimator;
-  private LatLng markerIconCurrentLocation;
-  private List<Point> routeCoordinateList;
+  private FrameScheduler.Registration markerRegistration;
+  private Point[] markerPoints;
+  private double routeLength;
+  private double markerDistance;
+  private int markerPointIndex = -1;
+  private long lastMarkerFrameTimeNanos;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -80,7 +78,8 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
         mapboxMap.setStyle(Style.LIGHT, new Style.OnStyleLoaded() {
           @Override
           public void onStyleLoaded(@NonNull Style style) {
-            new LoadGeoJson(MarkerFollowingRouteActivity.this).execute();
+            BackgroundTaskExecutor.getInstance().execute(MarkerFollowingRouteActivity.this,
+              new LoadGeoJson(MarkerFollowingRouteActivity.this));
           }
         });
       }
@@ -91,80 +90,55 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
    * Add data to the map once the GeoJSON has been loaded
    *
    * @param featureCollection returned GeoJSON FeatureCollection from the async task
+   * @param route             the route's interpolator
+   * @param points            the positions along the route the marker moves through
    */
-  private void initData(@NonNull FeatureCollection featureCollection) {
-    LineString lineString = (LineString) featureCollection.features().get(0).geometry();
-    routeCoordinateList = lineString.coordinates();
+  private void initData(@NonNull FeatureCollection featureCollection, @NonNull RouteInterpolator route,
+                        @NonNull Point[] points) {
+    routeLength = route.getLength();
+    markerPoints = points;
     if (mapboxMap != null) {
       Style style = mapboxMap.getStyle();
       if (style != null) {
         initSources(style, featureCollection);
         initSymbolLayer(style);
         initDotLinePath(style);
-        initRunnable();
+        initMarkerCallback();
       }
     }
   }
 
   /**
-   * Set up the repeat logic for moving the icon along the route.
+   * Set up the frame callback moving the icon along the route.
    */
-  private void initRunnable() {
-    // Animating the marker requires the use of both the ValueAnimator and a handler.
-    // The ValueAnimator is used to move the marker between the GeoJSON points, this is
-    // done linearly. The handler is used to move the marker along the GeoJSON points.
-    handler = new Handler();
-    runnable = new Runnable() {
+  private void initMarkerCallback() {
+    // The marker moves at a constant speed however the coordinates are spaced. Each frame it moves
+    // on by the time since the previous frame, so it keeps its speed when frames are dropped. It's
+    // drawn at the nearest of the Points sampled along the route when it was loaded, a frame's move
+    // apart, so no Point is created per frame and the source is only updated when the marker has
+    // moved on to another one. The FrameScheduler pauses the callback while the activity is paused.
+    markerRegistration = FrameScheduler.getInstance().schedule(this, 0, new FrameScheduler.Callback() {
       @Override
-      public void run() {
-        // Check if we are at the end of the points list, if so we want to stop using
-        // the handler.
-        if ((routeCoordinateList.size() - 1 > count)) {
-
-          Point nextLocation = routeCoordinateList.get(count + 1);
-
-          if (markerIconAnimator != null && markerIconAnimator.isStarted()) {
-            markerIconCurrentLocation = (LatLng) markerIconAnimator.getAnimatedValue();
-            markerIconAnimator.cancel();
-          }
-          if (latLngEvaluator != null) {
-            markerIconAnimator = ObjectAnimator
-              .ofObject(latLngEvaluator, count == 0 ? new LatLng(37.61501, -122.385374)
-                  : markerIconCurrentLocation,
-                new LatLng(nextLocation.latitude(), nextLocation.longitude()))
-              .setDuration(300);
-            markerIconAnimator.setInterpolator(new LinearInterpolator());
-
-            markerIconAnimator.addUpdateListener(animatorUpdateListener);
-            markerIconAnimator.start();
-
-            // Keeping the current point count we are on.
-            count++;
-
-            // Once we finish we need to repeat the entire process by executing the
-            // handler again once the ValueAnimator is finished.
-            handler.postDelayed(this, 300);
-          }
+      public void onFrame(long frameTimeNanos, long budgetNanos) {
+        if (lastMarkerFrameTimeNanos != 0) {
+          markerDistance += MARKER_SPEED_METERS_PER_SECOND
+            * (frameTimeNanos - lastMarkerFrameTimeNanos) / TimeUnit.SECONDS.toNanos(1);
         }
-      }
-    };
-    handler.post(runnable);
-  }
-
-  /**
-   * Listener interface for when the ValueAnimator provides an updated value
-   */
-  private final ValueAnimator.AnimatorUpdateListener animatorUpdateListener =
-    new ValueAnimator.AnimatorUpdateListener() {
-      @Override
-      public void onAnimationUpdate(ValueAnimator valueAnimator) {
-        LatLng animatedPosition = (LatLng) valueAnimator.getAnimatedValue();
-        if (dotGeoJsonSource != null) {
-          dotGeoJsonSource.setGeoJson(Point.fromLngLat(
-            animatedPosition.getLongitude(), animatedPosition.getLatitude()));
+        lastMarkerFrameTimeNanos = frameTimeNanos;
+        markerDistance = Math.min(markerDistance, routeLength);
+        int pointIndex = Math.min((int) Math.round(markerDistance / MARKER_POINT_SPACING_METERS),
+          markerPoints.length - 1);
+        if (pointIndex != markerPointIndex && dotGeoJsonSource != null) {
+          markerPointIndex = pointIndex;
+          dotGeoJsonSource.setGeoJson(markerPoints[pointIndex]);
+        }
+        // Stop once the marker is at the end of the route
+        if (markerDistance >= routeLength) {
+          markerRegistration.cancel();
         }
       }
-    };
+    });
+  }
 
   /**
    * Add various sources to the map.
@@ -204,10 +178,6 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
   public void onResume() {
     super.onResume();
     mapView.onResume();
-    // When the activity is resumed we restart the marker animating.
-    if (handler != null && runnable != null) {
-      handler.post(runnable);
-    }
   }
 
   @Override
@@ -226,14 +196,9 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
   public void onPause() {
     super.onPause();
     mapView.onPause();
-    // Check if the marker is currently animating and if so, we pause the animation so we aren't
-    // using resources when the activities not in view.
-    if (handler != null && runnable != null) {
-      handler.removeCallbacksAndMessages(null);
-    }
-    if (markerIconAnimator != null) {
-      markerIconAnimator.cancel();
-    }
+    // The FrameScheduler pauses the marker callback. The marker carries on from where it was
+    // paused, rather than jumping ahead by the time the activity wasn't in view.
+    lastMarkerFrameTimeNanos = 0;
   }
 
   @Override
@@ -259,57 +224,38 @@ public class MarkerFollowingRouteActivity extends AppCompatActivity {
    * loading. The GeoJSON file we are using is stored in the assets folder, you could also get
    * this information from the Mapbox mapboxMap matching API during runtime.
    */
-  private static class LoadGeoJson extends AsyncTask<Void, Void, FeatureCollection> {
+  private static class LoadGeoJson extends BackgroundTask<FeatureCollection> {
 
     private WeakReference<MarkerFollowingRouteActivity> weakReference;
+    private RouteInterpolator route;
+    private Point[] points;
 
     LoadGeoJson(MarkerFollowingRouteActivity activity) {
+      super(Pool.CPU);
       this.weakReference = new WeakReference<>(activity);
     }
 
     @Override
-    protected FeatureCollection doInBackground(Void... voids) {
-      try {
-        MarkerFollowingRouteActivity activity = weakReference.get();
-        if (activity != null) {
-          InputStream inputStream = activity.getAssets().open("matched_route.geojson");
-          return FeatureCollection.fromJson(convertStreamToString(inputStream));
-        }
-      } catch (Exception exception) {
-        Timber.e(exception.toString());
+    protected FeatureCollection doInBackground() {
+      MarkerFollowingRouteActivity activity = weakReference.get();
+      if (activity == null) {
+        return null;
       }
-      return null;
-    }
-
-    static String convertStreamToString(InputStream is) {
-      Scanner scanner = new Scanner(is).useDelimiter("\\A");
-      return scanner.hasNext() ? scanner.next() : "";
+      FeatureCollection featureCollection = FeatureCollectionCache.load(activity, "matched_route.geojson");
+      if (featureCollection != null) {
+        LineString lineString = (LineString) featureCollection.features().get(0).geometry();
+        route = new RouteInterpolator(lineString.coordinates());
+        points = route.createPoints(MARKER_POINT_SPACING_METERS);
+      }
+      return featureCollection;
     }
 
     @Override
     protected void onPostExecute(@Nullable FeatureCollection featureCollection) {
-      super.onPostExecute(featureCollection);
       MarkerFollowingRouteActivity activity = weakReference.get();
       if (activity != null && featureCollection != null) {
-        activity.initData(featureCollection);
+        activity.initData(featureCollection, route, points);
       }
     }
   }
-
-  /**
-   * Method is used to interpolate the SymbolLayer icon animation.
-   */
-  private static final TypeEvaluator<LatLng> latLngEvaluator = new TypeEvaluator<LatLng>() {
-
-    private final LatLng latLng = new LatLng();
-
-    @Override
-    public LatLng evaluate(float fraction, LatLng startValue, LatLng endValue) {
-      latLng.setLatitude(startValue.getLatitude()
-        + ((endValue.getLatitude() - startValue.getLatitude()) * fraction));
-      latLng.setLongitude(startValue.getLongitude()
-        + ((endValue.getLongitude() - startValue.getLongitude()) * fraction));
-      return latLng;
-    }
-  };
 }
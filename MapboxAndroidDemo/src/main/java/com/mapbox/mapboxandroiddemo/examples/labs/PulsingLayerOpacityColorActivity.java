@@ -1,7 +1,5 @@
 package com.mapbox.mapboxandroiddemo.examples.labs;
 
-import android.animation.ArgbEvaluator;
-import android.animation.ValueAnimator;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -11,6 +9,8 @@ import android.view.View;
 
 import com.getbase.floatingactionbutton.FloatingActionButton;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FeatureCollectionCache;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -23,8 +23,7 @@ import com.mapbox.mapboxsdk.style.layers.Property;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
 
 import static com.mapbox.mapboxsdk.style.layers.Property.VISIBLE;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.circleColor;
@@ -32,14 +31,16 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillColor;
 
 /**
  * Use the style API to highlight different types of data.
- * In this example, parks, hotels, and attractions are displayed.
+ * In this example, parks, hotels, and attractions are displayed. The colors of all three layers pulse from a
+ * single frame callback.
  */
 public class PulsingLayerOpacityColorActivity extends AppCompatActivity implements OnMapReadyCallback {
 
+  // The time it takes to go from the brighter to the darker shade, and back again
+  private static final long PULSE_DURATION_MILLISECONDS = 1000;
+
   private MapView mapView;
-  private ValueAnimator parkColorAnimator;
-  private ValueAnimator hotelColorAnimator;
-  private ValueAnimator attractionsColorAnimator;
+  private PulseCallback pulseCallback;
 
   @Override
   protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -64,7 +65,8 @@ public class PulsingLayerOpacityColorActivity extends AppCompatActivity implemen
       @Override
       public void onStyleLoaded(@NonNull final Style style) {
         // Add the hotels source to the map
-        GeoJsonSource hotelSource = new GeoJsonSource("hotels", loadJsonFromAsset("la_hotels.geojson"));
+        GeoJsonSource hotelSource = new GeoJsonSource("hotels",
+          FeatureCollectionCache.load(PulsingLayerOpacityColorActivity.this, "la_hotels.geojson"));
         style.addSource(hotelSource);
 
         FillLayer hotelLayer = new FillLayer("hotels", "hotels").withProperties(
@@ -74,30 +76,9 @@ public class PulsingLayerOpacityColorActivity extends AppCompatActivity implemen
 
         style.addLayer(hotelLayer);
 
-        final FillLayer hotels = (FillLayer) style.getLayer("hotels");
-
-        hotelColorAnimator = ValueAnimator.ofObject(
-          new ArgbEvaluator(),
-          Color.parseColor("#5a9fcf"), // Brighter shade
-          Color.parseColor("#2C6B97") // Darker shade
-        );
-        hotelColorAnimator.setDuration(1000);
-        hotelColorAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        hotelColorAnimator.setRepeatMode(ValueAnimator.REVERSE);
-        hotelColorAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-
-          @Override
-          public void onAnimationUpdate(ValueAnimator animator) {
-
-            hotels.setProperties(
-              fillColor((int) animator.getAnimatedValue())
-            );
-          }
-
-        });
-
         // Add the attractions source to the map
-        GeoJsonSource attractionsSource = new GeoJsonSource("attractions", loadJsonFromAsset("la_attractions.geojson"));
+        GeoJsonSource attractionsSource = new GeoJsonSource("attractions",
+          FeatureCollectionCache.load(PulsingLayerOpacityColorActivity.this, "la_attractions.geojson"));
         style.addSource(attractionsSource);
 
         CircleLayer attractionsLayer = new CircleLayer("attractions", "attractions").withProperties(
@@ -107,49 +88,22 @@ public class PulsingLayerOpacityColorActivity extends AppCompatActivity implemen
 
         style.addLayer(attractionsLayer);
 
-        final CircleLayer attractions = (CircleLayer) style.getLayer("attractions");
-
-        attractionsColorAnimator = ValueAnimator.ofObject(
-          new ArgbEvaluator(),
-          Color.parseColor("#ec8a8a"), // Brighter shade
-          Color.parseColor("#de3232") // Darker shade
-        );
-        attractionsColorAnimator.setDuration(1000);
-        attractionsColorAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        attractionsColorAnimator.setRepeatMode(ValueAnimator.REVERSE);
-        attractionsColorAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-
-          @Override
-          public void onAnimationUpdate(ValueAnimator animator) {
-
-            attractions.setProperties(
-              circleColor((int) animator.getAnimatedValue())
-            );
-          }
-
-        });
-
         final FillLayer parks = (FillLayer) style.getLayer("landuse");
         parks.setProperties(
           PropertyFactory.visibility(Property.NONE)
         );
 
-        parkColorAnimator = ValueAnimator.ofObject(
-          new ArgbEvaluator(),
-          Color.parseColor("#7ac79c"), // Brighter shade
-          Color.parseColor("#419a68") // Darker shade
-        );
-        parkColorAnimator.setDuration(1000);
-        parkColorAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        parkColorAnimator.setRepeatMode(ValueAnimator.REVERSE);
-        parkColorAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-
-          @Override
-          public void onAnimationUpdate(ValueAnimator animator) {
-            parks.setProperties(
-              fillColor((int) animator.getAnimatedValue())
-            );
-          }
+        // All three layers pulse from one clock so that they are in sync when displayed.
+        pulseCallback = new PulseCallback(new PulsingLayer[] {
+          new PulsingLayer(hotelLayer,
+            Color.parseColor("#5a9fcf"), // Brighter shade
+            Color.parseColor("#2C6B97")), // Darker shade
+          new PulsingLayer(attractionsLayer,
+            Color.parseColor("#ec8a8a"), // Brighter shade
+            Color.parseColor("#de3232")), // Darker shade
+          new PulsingLayer(parks,
+            Color.parseColor("#7ac79c"), // Brighter shade
+            Color.parseColor("#419a68")) // Darker shade
         });
 
         FloatingActionButton toggleHotelsFab = findViewById(R.id.fab_toggle_hotels);
@@ -176,10 +130,8 @@ public class PulsingLayerOpacityColorActivity extends AppCompatActivity implemen
           }
         });
 
-        // Start all the animation at the same time so that they are in sync when displayed.
-        parkColorAnimator.start();
-        hotelColorAnimator.start();
-        attractionsColorAnimator.start();
+        // The frame callback runs once per frame and stops while the activity is paused, when the map can't be seen.
+        FrameScheduler.getInstance().schedule(PulsingLayerOpacityColorActivity.this, 0, pulseCallback);
       }
     });
   }
@@ -200,21 +152,97 @@ public class PulsingLayerOpacityColorActivity extends AppCompatActivity implemen
         PropertyFactory.visibility(VISIBLE)
       );
     }
+    if (pulseCallback != null) {
+      pulseCallback.onVisibilityChanged(layer);
+    }
+  }
+
+  /**
+   * A layer whose color pulses between two shades.
+   */
+  private static class PulsingLayer {
+    private final Layer layer;
+    private final int brighterColor;
+    private final int darkerColor;
+    private boolean visible;
+    // Transparent until a color is applied, the pulse colors are opaque
+    private int appliedColor = Color.TRANSPARENT;
+
+    PulsingLayer(Layer layer, int brighterColor, int darkerColor) {
+      this.layer = layer;
+      this.brighterColor = brighterColor;
+      this.darkerColor = darkerColor;
+    }
+  }
+
+  /**
+   * Frame callback which works out the color of every pulsing layer from one clock and applies them together. Hidden
+   * layers are skipped and a color is only set when it has changed, so the style is changed at most once per visible
+   * layer per frame.
+   */
+  private static class PulseCallback implements FrameScheduler.Callback {
+    private final PulsingLayer[] layers;
+    private final long pulseDurationNanos = TimeUnit.MILLISECONDS.toNanos(PULSE_DURATION_MILLISECONDS);
+    private long startTimeNanos = -1;
+
+    PulseCallback(PulsingLayer[] layers) {
+      this.layers = layers;
+      for (PulsingLayer pulsingLayer : layers) {
+        pulsingLayer.visible = VISIBLE.equals(pulsingLayer.layer.getVisibility().getValue());
+      }
+    }
+
+    void onVisibilityChanged(Layer layer) {
+      for (PulsingLayer pulsingLayer : layers) {
+        // Style layers are looked up again for each toggle, so compare them by id
+        if (pulsingLayer.layer.getId().equals(layer.getId())) {
+          pulsingLayer.visible = VISIBLE.equals(layer.getVisibility().getValue());
+          pulsingLayer.appliedColor = Color.TRANSPARENT;
+        }
+      }
+    }
+
+    @Override
+    public void onFrame(long frameTimeNanos, long budgetNanos) {
+      if (startTimeNanos < 0) {
+        startTimeNanos = frameTimeNanos;
+      }
+      // Go from the brighter to the darker shade and back, like a reversing, repeating ValueAnimator
+      long elapsedNanos = (frameTimeNanos - startTimeNanos) % (2 * pulseDurationNanos);
+      float fraction = elapsedNanos < pulseDurationNanos
+        ? (float) elapsedNanos / pulseDurationNanos
+        : 2f - (float) elapsedNanos / pulseDurationNanos;
+
+      for (PulsingLayer pulsingLayer : layers) {
+        if (!pulsingLayer.visible) {
+          continue;
+        }
+        int color = blend(pulsingLayer.brighterColor, pulsingLayer.darkerColor, fraction);
+        if (color == pulsingLayer.appliedColor) {
+          continue;
+        }
+        pulsingLayer.appliedColor = color;
+        if (pulsingLayer.layer instanceof CircleLayer) {
+          pulsingLayer.layer.setProperties(circleColor(color));
+        } else {
+          pulsingLayer.layer.setProperties(fillColor(color));
+        }
+      }
+    }
+
+    private static int blend(int from, int to, float fraction) {
+      return Color.argb(
+        Math.round(Color.alpha(from) + (Color.alpha(to) - Color.alpha(from)) * fraction),
+        Math.round(Color.red(from) + (Color.red(to) - Color.red(from)) * fraction),
+        Math.round(Color.green(from) + (Color.green(to) - Color.green(from)) * fraction),
+        Math.round(Color.blue(from) + (Color.blue(to) - Color.blue(from)) * fraction));
+    }
   }
 
   @Override
   public void onResume() {
     super.onResume();
     mapView.onResume();
-    if (hotelColorAnimator != null) {
-      hotelColorAnimator.start();
-    }
-    if (parkColorAnimator != null) {
-      parkColorAnimator.start();
-    }
-    if (attractionsColorAnimator != null) {
-      attractionsColorAnimator.start();
-    }
   }
 
   @Override
@@ -233,15 +261,6 @@ public class PulsingLayerOpacityColorActivity extends AppCompatActivity implemen
   public void onPause() {
     super.onPause();
     mapView.onPause();
-    if (hotelColorAnimator != null) {
-      hotelColorAnimator.cancel();
-    }
-    if (parkColorAnimator != null) {
-      parkColorAnimator.cancel();
-    }
-    if (attractionsColorAnimator != null) {
-      attractionsColorAnimator.cancel();
-    }
   }
 
   @Override
@@ -261,20 +280,4 @@ public class PulsingLayerOpacityColorActivity extends AppCompatActivity implemen
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
-
-  private String loadJsonFromAsset(String filename) {
-    // Using this method to load in GeoJSON files from the assets folder.
-    try {
-      InputStream is = getAssets().open(filename);
-      int size = is.available();
-      byte[] buffer = new byte[size];
-      is.read(buffer);
-      is.close();
-      return new String(buffer, "UTF-8");
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-      return null;
-    }
-  }
 }
@@ -3,7 +3,6 @@ package com.mapbox.mapboxandroiddemo.examples.labs;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
@@ -19,16 +18,20 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
+import com.mapbox.mapboxandroiddemo.utils.RouteInterpolator;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.maps.Style;
+import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.LineLayer;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonOptions;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import retrofit2.Call;
@@ -37,19 +40,24 @@ import retrofit2.Response;
 import timber.log.Timber;
 
 import static com.mapbox.api.directions.v5.DirectionsCriteria.GEOMETRY_POLYLINE;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.color;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.lineProgress;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.step;
+import static com.mapbox.mapboxsdk.style.expressions.Expression.stop;
 import static com.mapbox.mapboxsdk.style.layers.Property.LINE_CAP_ROUND;
 import static com.mapbox.mapboxsdk.style.layers.Property.LINE_JOIN_ROUND;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.iconImage;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.iconOffset;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineCap;
-import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineColor;
+import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineGradient;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineJoin;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineOpacity;
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.lineWidth;
 
 /**
  * Rather than showing the directions route all at once, have it "snake" from the origin to destination by showing the
- * route one {@link LegStep} section at a time.
+ * route one {@link LegStep} section at a time. The whole route is added to the map once and a line-gradient reveals
+ * more of it at each step.
  */
 public class SnakingDirectionsRouteActivity extends AppCompatActivity
   implements OnMapReadyCallback {
@@ -59,6 +67,7 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
   private static final String DRIVING_ROUTE_POLYLINE_LINE_LAYER_ID = "DRIVING_ROUTE_POLYLINE_LINE_LAYER_ID";
   private static final String DRIVING_ROUTE_POLYLINE_SOURCE_ID = "DRIVING_ROUTE_POLYLINE_SOURCE_ID";
   private static final int DRAW_SPEED_MILLISECONDS = 500;
+  private static final int ROUTE_COLOR = Color.parseColor("#d742f4");
   // Origin point in Paris, France
   private static final Point PARIS_ORIGIN_POINT = Point.fromLngLat(2.35222, 48.856614);
 
@@ -68,8 +77,7 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
   private MapView mapView;
   private MapboxMap mapboxMap;
   private MapboxDirections mapboxDirectionsClient;
-  private Handler handler = new Handler();
-  private Runnable runnable;
+  private FrameScheduler.Registration drawRouteRegistration;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -109,7 +117,9 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
       ))
 
       // Add a source and LineLayer for the snaking directions route line
-      .withSource(new GeoJsonSource(DRIVING_ROUTE_POLYLINE_SOURCE_ID))
+      // Line metrics are needed for the line-progress expression which reveals the route
+      .withSource(new GeoJsonSource(DRIVING_ROUTE_POLYLINE_SOURCE_ID,
+        new GeoJsonOptions().withLineMetrics(true)))
       .withLayerBelow(new LineLayer(DRIVING_ROUTE_POLYLINE_LINE_LAYER_ID,
         DRIVING_ROUTE_POLYLINE_SOURCE_ID)
         .withProperties(
@@ -117,7 +127,7 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
           lineOpacity(NAVIGATION_LINE_OPACITY),
           lineCap(LINE_CAP_ROUND),
           lineJoin(LINE_JOIN_ROUND),
-          lineColor(Color.parseColor("#d742f4"))
+          lineGradient(getRevealExpression(0))
         ), "layer-id"), new Style.OnStyleLoaded() {
           @Override
           public void onStyleLoaded(@NonNull Style style) {
@@ -143,6 +153,7 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
       .steps(true)
       .accessToken(getString(R.string.access_token))
       .build();
+    HttpStack.getInstance(SnakingDirectionsRouteActivity.this).attach(mapboxDirectionsClient);
 
     mapboxDirectionsClient.enqueueCall(new Callback<DirectionsResponse>() {
       @Override
@@ -159,9 +170,29 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
         // Get the route from the Mapbox Directions API response
         DirectionsRoute currentRoute = response.body().routes().get(0);
 
+        // Add the whole route to the map once, hidden by the line-gradient until it's revealed
+        if (drawRouteRegistration != null) {
+          drawRouteRegistration.cancel();
+        }
+        Style style = mapboxMap.getStyle();
+        if (style == null || currentRoute.geometry() == null) {
+          return;
+        }
+        LineLayer routeLayer = style.getLayerAs(DRIVING_ROUTE_POLYLINE_LINE_LAYER_ID);
+        GeoJsonSource routeSource = style.getSourceAs(DRIVING_ROUTE_POLYLINE_SOURCE_ID);
+        if (routeLayer == null || routeSource == null) {
+          return;
+        }
+        LineString routeLineString = LineString.fromPolyline(currentRoute.geometry(), Constants.PRECISION_5);
+        routeLayer.setProperties(lineGradient(getRevealExpression(0)));
+        routeSource.setGeoJson(routeLineString);
+
         // Start the step-by-step process of drawing the route
-        runnable = new DrawRouteRunnable(mapboxMap, currentRoute.legs().get(0).steps(), handler);
-        handler.postDelayed(runnable, DRAW_SPEED_MILLISECONDS);
+        DrawRouteCallback drawRouteCallback = new DrawRouteCallback(routeLayer, currentRoute,
+          new RouteInterpolator(routeLineString.coordinates()));
+        drawRouteRegistration = FrameScheduler.getInstance().schedule(SnakingDirectionsRouteActivity.this,
+          DRAW_SPEED_MILLISECONDS, drawRouteCallback);
+        drawRouteCallback.setRegistration(drawRouteRegistration);
       }
 
       @Override
@@ -173,41 +204,59 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
   }
 
   /**
-   * Runnable class which goes through the route and draws each {@link LegStep} of the Directions API route
+   * Build the line-gradient which shows the route up to a line-progress and hides the rest.
+   *
+   * @param progress how much of the route to show, from 0 to 1
+   * @return the line-gradient expression
    */
-  private static class DrawRouteRunnable implements Runnable {
-    private MapboxMap mapboxMap;
+  private static Expression getRevealExpression(double progress) {
+    if (progress >= 1) {
+      return color(ROUTE_COLOR);
+    }
+    return step(lineProgress(), color(ROUTE_COLOR), stop(progress, color(Color.TRANSPARENT)));
+  }
+
+  /**
+   * Frame callback which goes through the route and reveals each {@link LegStep} of the Directions API route. The
+   * route geometry is already on the map, so each step only moves the end of the line-gradient.
+   */
+  private static class DrawRouteCallback implements FrameScheduler.Callback {
+    private LineLayer routeLayer;
     private List<LegStep> steps;
-    private List<Feature> drivingRoutePolyLineFeatureList;
-    private Handler handler;
+    private RouteInterpolator routeInterpolator;
+    // The step distances are along the road, scale them to the length of the decoded geometry
+    private double stepDistanceScale;
+    private double drawnDistance;
+    private FrameScheduler.Registration registration;
     private int counterIndex;
 
-    DrawRouteRunnable(MapboxMap mapboxMap, List<LegStep> steps, Handler handler) {
-      this.mapboxMap = mapboxMap;
-      this.steps = steps;
-      this.handler = handler;
+    DrawRouteCallback(LineLayer routeLayer, DirectionsRoute route, RouteInterpolator routeInterpolator) {
+      this.routeLayer = routeLayer;
+      this.steps = route.legs().get(0).steps();
+      this.routeInterpolator = routeInterpolator;
+      this.stepDistanceScale = route.distance() != null && route.distance() > 0
+        ? routeInterpolator.getLength() / route.distance() : 1;
       this.counterIndex = 0;
-      drivingRoutePolyLineFeatureList = new ArrayList<>();
+    }
+
+    void setRegistration(FrameScheduler.Registration registration) {
+      this.registration = registration;
     }
 
     @Override
-    public void run() {
+    public void onFrame(long frameTimeNanos, long budgetNanos) {
       if (counterIndex < steps.size()) {
         LegStep singleStep = steps.get(counterIndex);
-        if (singleStep != null && singleStep.geometry() != null) {
-          LineString lineStringRepresentingSingleStep = LineString.fromPolyline(
-            singleStep.geometry(), Constants.PRECISION_5);
-          Feature featureLineString = Feature.fromGeometry(lineStringRepresentingSingleStep);
-          drivingRoutePolyLineFeatureList.add(featureLineString);
-        }
-        if (mapboxMap.getStyle() != null) {
-          GeoJsonSource source = mapboxMap.getStyle().getSourceAs(DRIVING_ROUTE_POLYLINE_SOURCE_ID);
-          if (source != null) {
-            source.setGeoJson(FeatureCollection.fromFeatures(drivingRoutePolyLineFeatureList));
-          }
+        if (singleStep != null) {
+          drawnDistance += singleStep.distance() * stepDistanceScale;
         }
+        boolean lastStep = counterIndex == steps.size() - 1;
+        routeLayer.setProperties(lineGradient(getRevealExpression(
+          lastStep ? 1 : routeInterpolator.getLineProgress(drawnDistance))));
         counterIndex++;
-        handler.postDelayed(this, DRAW_SPEED_MILLISECONDS);
+      } else if (registration != null) {
+        // The whole route is drawn
+        registration.cancel();
       }
     }
   }
@@ -228,9 +277,6 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
   protected void onStop() {
     super.onStop();
     mapView.onStop();
-    if (handler != null) {
-      handler.removeCallbacks(runnable);
-    }
   }
 
   @Override
@@ -248,6 +294,7 @@ public class SnakingDirectionsRouteActivity extends AppCompatActivity
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     // Cancel the directions API request
     if (mapboxDirectionsClient != null) {
       mapboxDirectionsClient.cancelCall();
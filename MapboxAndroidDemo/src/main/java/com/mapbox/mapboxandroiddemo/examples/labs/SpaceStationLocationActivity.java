@@ -2,7 +2,6 @@ package com.mapbox.mapboxandroiddemo.examples.labs;
 
 import android.graphics.BitmapFactory;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
@@ -12,6 +11,8 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
 import com.mapbox.mapboxandroiddemo.model.IssModel;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.geometry.LatLng;
@@ -26,7 +27,6 @@ import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.http.GET;
 import timber.log.Timber;
 
@@ -42,9 +42,8 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
 
   private static final String TAG = "SpaceStationActivity";
 
-  private Handler handler;
-  private Runnable runnable;
   private Call<IssModel> call;
+  private boolean requestInFlight;
 
   // apiCallTime is the time interval when we call the API in milliseconds, by default this is set
   // to 2000 and you should only increase the value, reducing the interval will only cause server
@@ -91,25 +90,29 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
 
   private void callApi() {
 
-    // Build our client, The API we are using is very basic only returning a handful of
+    // Get our client, The API we are using is very basic only returning a handful of
     // information, mainly, the current latitude and longitude of the International Space Station.
-    Retrofit client = new Retrofit.Builder()
-      .baseUrl("http://api.open-notify.org/")
-      .addConverterFactory(GsonConverterFactory.create())
-      .build();
+    // The client shares the app's connection pool, so the repeated calls reuse one connection.
+    Retrofit client = HttpStack.getInstance(this).getRetrofit("http://api.open-notify.org/");
 
     final IssApiService service = client.create(IssApiService.class);
 
-    // A handler is needed to called the API every x amount of seconds.
-    handler = new Handler();
-    runnable = new Runnable() {
+    // The frame scheduler calls the API every x amount of seconds. It runs the first call straight away
+    // and stops calling while the activity is paused.
+    FrameScheduler.getInstance().schedule(this, apiCallTime, new FrameScheduler.Callback() {
       @Override
-      public void run() {
+      public void onFrame(long frameTimeNanos, long budgetNanos) {
+        if (requestInFlight) {
+          // Don't stack up requests when the API is slower than the interval
+          return;
+        }
+        requestInFlight = true;
         // Call the API so we can get the updated coordinates.
         call = service.loadLocation();
         call.enqueue(new Callback<IssModel>() {
           @Override
           public void onResponse(Call<IssModel> call, Response<IssModel> response) {
+            requestInFlight = false;
 
             // We only need the latitude and longitude from the API.
             double latitude = response.body().getIssPosition().getLatitude();
@@ -119,6 +122,7 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
 
           @Override
           public void onFailure(Call<IssModel> call, Throwable throwable) {
+            requestInFlight = false;
             // If retrofit fails or the API was unreachable, an error will be called.
             //to check if throwable is null, then give a custom message.
             if (throwable.getMessage() == null) {
@@ -129,13 +133,8 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
 
           }
         });
-        // Schedule the next execution time for this runnable.
-        handler.postDelayed(this, apiCallTime);
       }
-    };
-
-    // The first time this runs we don't need a delay so we immediately post.
-    handler.post(runnable);
+    });
   }
 
   private void initSpaceStationSymbolLayer(@NonNull Style style) {
@@ -182,10 +181,6 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
   public void onResume() {
     super.onResume();
     mapView.onResume();
-    // When the user returns to the activity we want to resume the API calling.
-    if (handler != null && runnable != null) {
-      handler.post(runnable);
-    }
   }
 
   @Override
@@ -204,11 +199,6 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
   public void onPause() {
     super.onPause();
     mapView.onPause();
-    // When the user leaves the activity, there is no need in calling the API since the map
-    // isn't in view.
-    if (handler != null && runnable != null) {
-      handler.removeCallbacks(runnable);
-    }
   }
 
   @Override
@@ -220,6 +210,10 @@ public class SpaceStationLocationActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
+    if (call != null) {
+      call.cancel();
+    }
     mapView.onDestroy();
   }
 
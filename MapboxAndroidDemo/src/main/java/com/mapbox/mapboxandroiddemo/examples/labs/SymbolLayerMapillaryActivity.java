@@ -5,20 +5,18 @@ import android.animation.AnimatorSet;
 import android.animation.TypeEvaluator;
 import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
+import android.graphics.BitmapFactory;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.PointF;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.view.animation.FastOutSlowInInterpolator;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
@@ -38,6 +36,17 @@ import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.BitmapPool;
+import com.mapbox.mapboxandroiddemo.utils.CircleBitmapCropper;
+import com.mapbox.mapboxandroiddemo.utils.ConcurrentFetcher;
+import com.mapbox.mapboxandroiddemo.utils.FeatureHitIndex;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
+import com.mapbox.mapboxandroiddemo.utils.SymbolBitmapDiskCache;
+import com.mapbox.mapboxandroiddemo.utils.SymbolBitmapGenerator;
+import com.mapbox.mapboxandroiddemo.utils.SymbolImageProvider;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
@@ -57,16 +66,23 @@ import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.style.sources.Source;
 import com.mapbox.mapboxsdk.style.sources.TileSet;
 import com.mapbox.mapboxsdk.style.sources.VectorSource;
-import com.squareup.picasso.Picasso;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -126,6 +142,9 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   private static final float LOADING_CIRCLE_RADIUS = 60;
   private static final int LOADING_PROGRESS_STEPS = 25; //number of steps in a progress animation
   private static final int LOADING_STEP_DURATION = 50; //duration between each step
+  private static final long THUMBNAIL_POOL_SIZE_BYTES = 2 * 1024 * 1024;
+  // How far from a POI a tap can be, which covers its maki icon
+  private static final float HIT_TOLERANCE_DP = 16;
 
   private MapView mapView;
   private MapboxMap mapboxMap;
@@ -134,10 +153,15 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
 
   private GeoJsonSource source;
   private FeatureCollection featureCollection;
-  private HashMap<String, View> viewMap;
+  private FeatureHitIndex featureHitIndex;
+  // keeps the callout text hit boxes used for click events
+  private final CalloutViewBinder calloutViewBinder = new CalloutViewBinder();
+  private SymbolImageProvider calloutImages;
   private AnimatorSet animatorSet;
 
   private LoadMapillaryDataTask loadMapillaryDataTask;
+  // reused by every load for decoding and cropping thumbnails
+  private final BitmapPool thumbnailPool = new BitmapPool(THUMBNAIL_POOL_SIZE_BYTES);
 
   @ActivityStep
   private int currentStep;
@@ -176,6 +200,10 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     mapView = findViewById(R.id.mapView);
     mapView.onCreate(savedInstanceState);
     mapView.getMapAsync(this);
+
+    // Callouts are only drawn once their POI is selected, and kept on disk for the next launch
+    calloutImages = new SymbolImageProvider(this, calloutViewBinder, "mapillary_layout_callout",
+      new SymbolBitmapDiskCache(this));
   }
 
   @Override
@@ -188,7 +216,8 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         mapboxMap.getUiSettings().setCompassEnabled(false);
         mapboxMap.getUiSettings().setLogoEnabled(false);
         mapboxMap.getUiSettings().setAttributionEnabled(false);
-        new LoadPoiDataTask(SymbolLayerMapillaryActivity.this).execute();
+        BackgroundTaskExecutor.getInstance().execute(SymbolLayerMapillaryActivity.this,
+          new LoadPoiDataTask(SymbolLayerMapillaryActivity.this));
         mapboxMap.addOnMapClickListener(SymbolLayerMapillaryActivity.this);
       }
     });
@@ -197,7 +226,10 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   @Override
   public boolean onMapClick(@NonNull LatLng point) {
     PointF screenPoint = mapboxMap.getProjection().toScreenLocation(point);
+    // The callouts are only known by their rendered bitmaps, so they're still queried from the map
+    long queryStartNanos = System.nanoTime();
     List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, CALLOUT_LAYER_ID);
+    Timber.d("Callout queryRenderedFeatures took %.3f ms", (System.nanoTime() - queryStartNanos) / 1e6);
     if (!features.isEmpty()) {
       // we received a click event on the callout layer
       Feature feature = features.get(0);
@@ -205,7 +237,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       handleClickCallout(feature, screenPoint, symbolScreenPoint);
     } else {
       // we didn't find a click event on callout layer, try clicking maki layer
-      return handleClickIcon(screenPoint);
+      return handleClickIcon(point);
     }
 
     return true;
@@ -216,6 +248,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       return;
     }
     featureCollection = collection;
+    featureHitIndex = new FeatureHitIndex(collection.features());
 
     if (style.isFullyLoaded()) {
       setupSource(style);
@@ -236,7 +269,26 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   private void refreshSource() {
     if (source != null && featureCollection != null) {
       source.setGeoJson(featureCollection);
+      syncCalloutImages();
+    }
+  }
+
+  /**
+   * Makes sure the Style holds the callout images of the selected features, and only those, since
+   * the callout layer only shows selected features. Callouts which haven't been drawn yet, or whose
+   * favourite state changed, are drawn on a background thread and appear once they're ready.
+   */
+  private void syncCalloutImages() {
+    if (style == null || featureCollection == null) {
+      return;
+    }
+    List<Feature> selectedFeatures = new ArrayList<>();
+    for (Feature feature : featureCollection.features()) {
+      if (feature.getBooleanProperty(PROPERTY_SELECTED)) {
+        selectedFeatures.add(feature);
+      }
     }
+    calloutImages.update(this, style, selectedFeatures);
   }
 
   /**
@@ -351,19 +403,21 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    * @param symbolScreenPoint the point of the symbol on screen
    */
   private void handleClickCallout(Feature feature, PointF screenPoint, PointF symbolScreenPoint) {
-    View view = viewMap.get(feature.getStringProperty(PROPERTY_TITLE));
-    View textContainer = view.findViewById(R.id.text_container);
-
-    // create hitbox for textView
-    Rect hitRectText = new Rect();
-    textContainer.getHitRect(hitRectText);
+    String title = feature.getStringProperty(PROPERTY_TITLE);
+    Rect textHitRect = calloutViewBinder.getTextHitRect(title);
+    if (textHitRect == null) {
+      // The callout came from the disk cache, lay out its View once to find the text's hit box
+      View view = calloutViewBinder.createView(LayoutInflater.from(this));
+      calloutViewBinder.bindView(view, feature);
+      SymbolBitmapGenerator.measureAndLayout(view);
+      calloutViewBinder.onViewRendered(view, title);
+      textHitRect = calloutViewBinder.getTextHitRect(title);
+    }
 
     // move hitbox to location of symbol
+    Rect hitRectText = new Rect(textHitRect);
     hitRectText.offset((int) symbolScreenPoint.x, (int) symbolScreenPoint.y);
 
-    // offset vertically to match anchor behaviour
-    hitRectText.offset(0, -view.getMeasuredHeight());
-
     // hit test if clicked point is in textview hitbox
     if (hitRectText.contains((int) screenPoint.x, (int) screenPoint.y)) {
       // user clicked on text
@@ -373,7 +427,7 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
       // user clicked on icon
       List<Feature> featureList = featureCollection.features();
       for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_TITLE).equals(feature.getStringProperty(PROPERTY_TITLE))) {
+        if (featureList.get(i).getStringProperty(PROPERTY_TITLE).equals(title)) {
           toggleFavourite(i);
         }
       }
@@ -383,25 +437,25 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   /**
    * This method handles click events for maki symbols.
    * <p>
-   * When a maki symbol is clicked, we moved that feature to the selected state.
+   * When a maki symbol is clicked, we moved that feature to the selected state. The feature is looked
+   * up in the features already loaded, rather than queried from the rendered map.
    * </p>
    *
-   * @param screenPoint the point on screen clicked
+   * @param point the point on the map clicked
    */
-  private boolean handleClickIcon(PointF screenPoint) {
-    List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, MAKI_LAYER_ID);
-    if (!features.isEmpty()) {
-      String title = features.get(0).getStringProperty(PROPERTY_TITLE);
-      List<Feature> featureList = featureCollection.features();
-      for (int i = 0; i < featureList.size(); i++) {
-        if (featureList.get(i).getStringProperty(PROPERTY_TITLE).equals(title)) {
-          setSelected(i, true);
-        }
-      }
-
-      return true;
+  private boolean handleClickIcon(LatLng point) {
+    if (featureHitIndex == null) {
+      return false;
+    }
+    long startNanos = System.nanoTime();
+    int index = featureHitIndex.hitTest(point.getLongitude(), point.getLatitude(),
+      mapboxMap.getCameraPosition().zoom, HIT_TOLERANCE_DP);
+    Timber.d("Icon FeatureHitIndex lookup took %.3f ms", (System.nanoTime() - startNanos) / 1e6);
+    if (index < 0) {
+      return false;
     }
-    return false;
+    setSelected(index, true);
+    return true;
   }
 
   /**
@@ -495,8 +549,8 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     }
 
     loadMapillaryDataTask = new LoadMapillaryDataTask(this,
-      mapboxMap, Picasso.with(getApplicationContext()), new Handler(), feature);
-    loadMapillaryDataTask.execute(50);
+      mapboxMap, thumbnailPool, new Handler(), feature, 50);
+    BackgroundTaskExecutor.getInstance().execute(this, loadMapillaryDataTask);
   }
 
   /**
@@ -506,30 +560,13 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
    */
   private void toggleFavourite(int index) {
     Feature feature = featureCollection.features().get(index);
-    String title = feature.getStringProperty(PROPERTY_TITLE);
     boolean currentState = feature.getBooleanProperty(PROPERTY_FAVOURITE);
     feature.properties().addProperty(PROPERTY_FAVOURITE, !currentState);
-    View view = viewMap.get(title);
 
-    ImageView imageView = view.findViewById(R.id.logoView);
-    imageView.setImageResource(currentState ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
-    Bitmap bitmap = SymbolGenerator.generate(view);
-    style.addImage(title, bitmap);
+    // The favourite state is part of the callout's content key, so this redraws the callout
     refreshSource();
   }
 
-  /**
-   * Invoked when the bitmaps have been generated from a view.
-   */
-  public void setImageGenResults(HashMap<String, View> viewMap, HashMap<String, Bitmap> imageMap) {
-    if (style.isFullyLoaded()) {
-      // calling addImages is faster as separate addImage calls for each bitmap.
-      style.addImages(imageMap);
-    }
-    // need to store reference to views to be able to use them as hitboxes for click events.
-    this.viewMap = viewMap;
-  }
-
   private void setActivityStep(@ActivityStep int activityStep) {
     Feature selectedFeature = getSelectedFeature();
     double zoom = stepZoomMap.get(activityStep);
@@ -581,9 +618,11 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
     }
+    thumbnailPool.clear();
     mapView.onDestroy();
   }
 
@@ -676,131 +715,112 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
   }
 
   /**
-   * AsyncTask to load data from the assets folder.
+   * Background task to load data from the assets folder.
    */
-  private static class LoadPoiDataTask extends AsyncTask<Void, Void, FeatureCollection> {
+  private static class LoadPoiDataTask extends BackgroundTask<FeatureCollection> {
 
     private final WeakReference<SymbolLayerMapillaryActivity> activityRef;
 
     LoadPoiDataTask(SymbolLayerMapillaryActivity activity) {
+      super(Pool.CPU, PRIORITY_HIGH);
       this.activityRef = new WeakReference<>(activity);
     }
 
     @Override
-    protected FeatureCollection doInBackground(Void... params) {
+    protected FeatureCollection doInBackground() {
       SymbolLayerMapillaryActivity activity = activityRef.get();
 
       if (activity == null) {
         return null;
       }
 
-      String geoJson = loadGeoJsonFromAsset(activity, "sf_poi.geojson");
-      return FeatureCollection.fromJson(geoJson);
+      return GeoJsonAssetLoader.load(activity, "sf_poi.geojson");
     }
 
     @Override
     protected void onPostExecute(FeatureCollection featureCollection) {
-      super.onPostExecute(featureCollection);
       SymbolLayerMapillaryActivity activity = activityRef.get();
       if (featureCollection == null || activity == null) {
         return;
       }
       activity.setupData(featureCollection);
-      new GenerateViewIconTask(activity).execute(featureCollection);
-    }
-
-    static String loadGeoJsonFromAsset(Context context, String filename) {
-      try {
-        // Load GeoJSON file from local asset folder
-        InputStream is = context.getAssets().open(filename);
-        int size = is.available();
-        byte[] buffer = new byte[size];
-        is.read(buffer);
-        is.close();
-        return new String(buffer, "UTF-8");
-      } catch (Exception exception) {
-        throw new RuntimeException(exception);
-      }
     }
   }
 
   /**
-   * AsyncTask to generate Bitmap from Views to be used as iconImage in a SymbolLayer.
-   * <p>
-   * Call be optionally be called to update the underlying data source after execution.
-   * </p>
-   * <p>
-   * Generating Views on background thread since we are not going to be adding them to the view hierarchy.
-   * </p>
+   * Fills in a callout with a POI's title, style and favourite state, and keeps the hit box of
+   * each callout's text so that clicks on the text can be told apart from clicks on the icon.
    */
-  private static class GenerateViewIconTask extends AsyncTask<FeatureCollection, Void, HashMap<String, Bitmap>> {
+  private static class CalloutViewBinder extends SymbolBitmapGenerator.ViewBinder {
 
-    private final HashMap<String, View> viewMap = new HashMap<>();
-    private final WeakReference<SymbolLayerMapillaryActivity> activityRef;
-    private final boolean refreshSource;
+    private final Map<String, Rect> textHitRects = new ConcurrentHashMap<>();
 
-    GenerateViewIconTask(SymbolLayerMapillaryActivity activity, boolean refreshSource) {
-      this.activityRef = new WeakReference<>(activity);
-      this.refreshSource = refreshSource;
+    @NonNull
+    @Override
+    public View createView(@NonNull LayoutInflater inflater) {
+      return inflater.inflate(R.layout.mapillary_layout_callout, null);
     }
 
-    GenerateViewIconTask(SymbolLayerMapillaryActivity activity) {
-      this(activity, false);
+    @Override
+    public String bindView(@NonNull View view, @NonNull Feature feature) {
+      String name = feature.getStringProperty(PROPERTY_TITLE);
+      TextView titleTv = view.findViewById(R.id.title);
+      titleTv.setText(name);
+
+      String style = feature.getStringProperty(PROPERTY_STYLE);
+      TextView styleTv = view.findViewById(R.id.style);
+      styleTv.setText(style);
+
+      boolean favourite = feature.getBooleanProperty(PROPERTY_FAVOURITE);
+      ImageView imageView = view.findViewById(R.id.logoView);
+      imageView.setImageResource(favourite ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
+      return name;
     }
 
-    @SuppressWarnings("WrongThread")
     @Override
-    protected HashMap<String, Bitmap> doInBackground(FeatureCollection... params) {
-      SymbolLayerMapillaryActivity activity = activityRef.get();
-      if (activity != null) {
-        HashMap<String, Bitmap> imagesMap = new HashMap<>();
-        LayoutInflater inflater = LayoutInflater.from(activity);
-        FeatureCollection featureCollection = params[0];
-
-        for (Feature feature : featureCollection.features()) {
-          View view = inflater.inflate(R.layout.mapillary_layout_callout, null);
-
-          String name = feature.getStringProperty(PROPERTY_TITLE);
-          TextView titleTv = view.findViewById(R.id.title);
-          titleTv.setText(name);
-
-          String style = feature.getStringProperty(PROPERTY_STYLE);
-          TextView styleTv = view.findViewById(R.id.style);
-          styleTv.setText(style);
+    public String getImageId(@NonNull Feature feature) {
+      return feature.getStringProperty(PROPERTY_TITLE);
+    }
 
-          boolean favourite = feature.getBooleanProperty(PROPERTY_FAVOURITE);
-          ImageView imageView = view.findViewById(R.id.logoView);
-          imageView.setImageResource(favourite ? R.drawable.ic_favorite : R.drawable.ic_favorite_border);
+    @NonNull
+    @Override
+    public String getContentKey(@NonNull Feature feature) {
+      return feature.getStringProperty(PROPERTY_TITLE) + "|" + feature.getStringProperty(PROPERTY_STYLE)
+        + "|" + feature.getBooleanProperty(PROPERTY_FAVOURITE);
+    }
 
-          Bitmap bitmap = SymbolGenerator.generate(view);
-          imagesMap.put(name, bitmap);
-          viewMap.put(name, view);
-        }
+    @Override
+    public void onViewRendered(@NonNull View view, @NonNull String imageId) {
+      Rect hitRectText = new Rect();
+      view.findViewById(R.id.text_container).getHitRect(hitRectText);
 
-        return imagesMap;
-      } else {
-        return null;
-      }
+      // offset vertically to match anchor behaviour
+      hitRectText.offset(0, -view.getMeasuredHeight());
+      textHitRects.put(imageId, hitRectText);
     }
 
-    @Override
-    protected void onPostExecute(HashMap<String, Bitmap> bitmapHashMap) {
-      super.onPostExecute(bitmapHashMap);
-      SymbolLayerMapillaryActivity activity = activityRef.get();
-      if (activity != null && bitmapHashMap != null) {
-        activity.setImageGenResults(viewMap, bitmapHashMap);
-        if (refreshSource) {
-          activity.refreshSource();
-        }
-      }
+    /**
+     * @param imageId the title of the POI
+     * @return the hit box of the callout text relative to the symbol position, or null if the
+     * callout hasn't been rendered
+     */
+    @Nullable
+    Rect getTextHitRect(String imageId) {
+      return textHitRects.get(imageId);
     }
   }
 
   /**
-   * Async task which fetches pictures from around the POI using Mapillary services.
+   * Background task which fetches pictures from around the POI using Mapillary services.
    * https://www.mapillary.com/developer/api-documentation/
+   * <p>
+   * The image list is parsed straight from the response stream. Thumbnails are then fetched and cropped
+   * on the other threads of the shared I/O pool, while this task waits for them on its own, and handed
+   * to the map in batches as they finish, so the first pictures show up without waiting for the
+   * slowest one.
+   * </p>
    */
-  private static class LoadMapillaryDataTask extends AsyncTask<Integer, Void, MapillaryDataLoadResult> {
+  private static class LoadMapillaryDataTask extends BackgroundTask<MapillaryDataLoadResult> {
 
     static final String URL_IMAGE_PLACEHOLDER = "https://d1cuyjsrcm0gby.cloudfront.net/%s/thumb-320.jpg";
     static final String KEY_UNIQUE_FEATURE = "key";
@@ -811,77 +831,181 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     static final String API_URL = "https://a.mapillary.com/v3/images/"
       + "?lookat=%f,%f&closeto=%f,%f&radius=%d"
       + "&client_id=bjgtc1FDTnFPaXpxeTZuUDNabmJ5dzozOGE1ODhkMmEyYTkyZTI4";
+    static final int PUBLISH_BATCH_SIZE = 8;
+    static final long PUBLISH_INTERVAL_MS = 250;
 
     private WeakReference<SymbolLayerMapillaryActivity> activityRef;
     private MapboxMap map;
-    private Picasso picasso;
+    private final BitmapPool bitmapPool;
     private final Handler progressHandler;
+    // separate from progressHandler, whose messages are all removed when the loading state changes
+    private final Handler publishHandler = new Handler(Looper.getMainLooper());
+    private final OkHttpClient okHttpClient;
     private int loadingProgress;
     private boolean loadingIncrease = true;
     private Feature feature;
-
-    public LoadMapillaryDataTask(SymbolLayerMapillaryActivity activity, MapboxMap map, Picasso picasso,
-                                 Handler progressHandler, Feature feature) {
+    private final int radius;
+    // only touched on the main thread
+    private final List<Feature> publishedFeatures = new ArrayList<>();
+    private long startTime;
+
+    public LoadMapillaryDataTask(SymbolLayerMapillaryActivity activity, MapboxMap map, BitmapPool bitmapPool,
+                                 Handler progressHandler, Feature feature, int radius) {
+      super(Pool.IO, PRIORITY_HIGH);
       this.activityRef = new WeakReference<>(activity);
+      this.okHttpClient = HttpStack.getInstance(activity).getClient();
       this.map = map;
-      this.picasso = picasso;
+      this.bitmapPool = bitmapPool;
       this.progressHandler = progressHandler;
       this.feature = feature;
+      this.radius = radius;
     }
 
     @Override
     protected void onPreExecute() {
-      super.onPreExecute();
       loadingProgress = 0;
+      startTime = SystemClock.elapsedRealtime();
       setLoadingState(true, false);
     }
 
     @Override
-    protected MapillaryDataLoadResult doInBackground(Integer... radius) {
+    protected MapillaryDataLoadResult doInBackground() {
       progressHandler.post(progressRunnable);
+      FeatureCollection featureCollection;
+      try {
+        featureCollection = fetchImageFeatures();
+      } catch (IOException exception) {
+        Timber.e(exception);
+        return null;
+      }
+      long listTime = SystemClock.elapsedRealtime() - startTime;
+
+      // Below this task, so that the pool's threads pick the next load over the rest of these thumbnails
+      ConcurrentFetcher<Thumbnail> thumbnailFetcher = new ConcurrentFetcher<>(okHttpClient,
+        BackgroundTaskExecutor.getInstance().getExecutor(Pool.IO, PRIORITY_NORMAL));
+      MapillaryDataLoadResult result = new MapillaryDataLoadResult(featureCollection);
       try {
-        Thread.sleep(2500); //ensure loading visualisation
+        int submittedCount = 0;
+        for (Feature imageFeature : featureCollection.features()) {
+          if (imageFeature.hasNonNullValueForProperty(KEY_UNIQUE_FEATURE)) {
+            String imageId = imageFeature.getStringProperty(KEY_UNIQUE_FEATURE);
+            thumbnailFetcher.submit(String.format(URL_IMAGE_PLACEHOLDER, imageId),
+              new ThumbnailLoader(bitmapPool, imageFeature, imageId));
+            submittedCount++;
+          }
+        }
+
+        List<Thumbnail> batch = new ArrayList<>(PUBLISH_BATCH_SIZE);
+        long lastPublishTime = 0;
+        for (int index = 0; index < submittedCount; index++) {
+          Future<Thumbnail> future = thumbnailFetcher.take();
+          try {
+            batch.add(future.get());
+          } catch (ExecutionException exception) {
+            Timber.w(exception.getCause(), "Unable to load a Mapillary thumbnail");
+            result.failedCount++;
+            continue;
+          }
+          result.loadedCount++;
+          long now = SystemClock.elapsedRealtime();
+          // publish the first thumbnail right away, then in batches
+          if (result.loadedCount == 1 || batch.size() >= PUBLISH_BATCH_SIZE
+            || now - lastPublishTime >= PUBLISH_INTERVAL_MS) {
+            publish(batch);
+            batch = new ArrayList<>(PUBLISH_BATCH_SIZE);
+            lastPublishTime = now;
+          }
+        }
+        if (!batch.isEmpty()) {
+          publish(batch);
+        }
       } catch (InterruptedException exception) {
-        exception.printStackTrace();
+        // cancelled, stop the thumbnail loaders below
+        Thread.currentThread().interrupt();
+        return null;
+      } finally {
+        thumbnailFetcher.cancel();
       }
-      OkHttpClient okHttpClient = new OkHttpClient();
+
+      result.listTime = listTime;
+      result.totalTime = SystemClock.elapsedRealtime() - startTime;
+      return result;
+    }
+
+    /**
+     * Request the images around the POI and parse the response while it's downloaded.
+     */
+    private FeatureCollection fetchImageFeatures() throws IOException {
+      Point poiPosition = (Point) feature.geometry();
+
+      @SuppressLint("DefaultLocale") Request request = new Request.Builder()
+        .url(String.format(API_URL,
+          poiPosition.longitude(), poiPosition.latitude(),
+          poiPosition.longitude(), poiPosition.latitude(),
+          radius
+        ))
+        .build();
+
+      Response response = okHttpClient.newCall(request).execute();
       try {
-        Point poiPosition = (Point) feature.geometry();
-
-        @SuppressLint("DefaultLocale") Request request = new Request.Builder()
-          .url(String.format(API_URL,
-            poiPosition.longitude(), poiPosition.latitude(),
-            poiPosition.longitude(), poiPosition.latitude(),
-            radius[0]
-          ))
-          .build();
-
-        Response response = okHttpClient.newCall(request).execute();
-        FeatureCollection featureCollection = FeatureCollection.fromJson(response.body().string());
-        MapillaryDataLoadResult mapillaryDataLoadResult = new MapillaryDataLoadResult(featureCollection);
-        for (Feature feature : featureCollection.features()) {
-          String imageId = feature.getStringProperty(KEY_UNIQUE_FEATURE);
-          String imageUrl = String.format(URL_IMAGE_PLACEHOLDER, imageId);
-          Bitmap bitmap = picasso.load(imageUrl).resize(IMAGE_SIZE, IMAGE_SIZE).get();
-
-          //cropping bitmap to be circular
-          bitmap = getCroppedBitmap(bitmap);
-
-          mapillaryDataLoadResult.add(feature, bitmap);
+        if (!response.isSuccessful()) {
+          throw new IOException("Unexpected Mapillary response " + response.code());
         }
-        return mapillaryDataLoadResult;
+        return GeoJsonAssetLoader.parse(response.body().byteStream(), null);
+      } finally {
+        response.close();
+      }
+    }
 
-      } catch (Exception exception) {
-        Timber.e(exception);
+    private void publish(final List<Thumbnail> batch) {
+      publishHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          if (!isCancelled()) {
+            showThumbnails(batch);
+          }
+        }
+      });
+    }
+
+    /**
+     * Add a batch of finished thumbnails to the map, together with their features.
+     */
+    private void showThumbnails(List<Thumbnail> batch) {
+      Style style = map.getStyle();
+      if (style == null) {
+        return;
+      }
+      boolean firstBatch = publishedFeatures.isEmpty();
+      HashMap<String, Bitmap> images = new HashMap<>();
+      for (Thumbnail thumbnail : batch) {
+        images.put(thumbnail.imageId, thumbnail.bitmap);
+        publishedFeatures.add(thumbnail.feature);
+      }
+      style.addImages(images);
+      // The Style keeps a copy of the pixels, so the thumbnails can be drawn into again
+      for (Bitmap bitmap : images.values()) {
+        bitmapPool.put(bitmap);
+      }
+
+      FeatureCollection featureCollection = FeatureCollection.fromFeatures(new ArrayList<>(publishedFeatures));
+      GeoJsonSource mapillarySource = (GeoJsonSource) style.getSource(ID_SOURCE);
+      if (mapillarySource == null) {
+        addMapillaryLayers(style, featureCollection);
+      } else {
+        mapillarySource.setGeoJson(featureCollection);
+      }
+
+      if (firstBatch) {
+        Timber.d("First Mapillary thumbnail shown after %d ms", SystemClock.elapsedRealtime() - startTime);
+        setLoadingState(false, true);
       }
-      return null;
     }
 
     @Override
     protected void onPostExecute(MapillaryDataLoadResult mapillaryDataLoadResult) {
-      super.onPostExecute(mapillaryDataLoadResult);
-      setLoadingState(false, true);
       if (mapillaryDataLoadResult == null) {
+        setLoadingState(false, false);
         SymbolLayerMapillaryActivity activity = activityRef.get();
         if (activity != null) {
           Toast.makeText(activity, "Error. Unable to load Mapillary data.", Toast.LENGTH_LONG).show();
@@ -889,111 +1013,89 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
         return;
       }
 
-      FeatureCollection featureCollection = mapillaryDataLoadResult.mapillaryFeatureCollection;
-
-      Map<Feature, Bitmap> bitmapMap = mapillaryDataLoadResult.bitmapHashMap;
-      for (Map.Entry<Feature, Bitmap> featureBitmapEntry : bitmapMap.entrySet()) {
-        Feature feature = featureBitmapEntry.getKey();
-        String key = feature.getStringProperty(KEY_UNIQUE_FEATURE);
-        map.getStyle().addImage(key, featureBitmapEntry.getValue());
+      if (mapillaryDataLoadResult.loadedCount == 0) {
+        // nothing was published, so the loading state is still on
+        setLoadingState(false, true);
       }
+      Timber.d("Loaded %1$d of %2$d Mapillary thumbnails (%3$d failed): "
+          + "image list after %4$d ms, all thumbnails after %5$d ms",
+        mapillaryDataLoadResult.loadedCount, mapillaryDataLoadResult.mapillaryFeatureCollection.features().size(),
+        mapillaryDataLoadResult.failedCount, mapillaryDataLoadResult.listTime, mapillaryDataLoadResult.totalTime);
+      Timber.d("Mapillary thumbnail threads: %s", BackgroundTaskExecutor.getInstance().getMetrics(Pool.IO));
+      Timber.d("Mapillary thumbnail bitmaps: %s", bitmapPool.getStats());
+      Timber.d("Mapillary thumbnail workers: %d created", ThumbnailWorker.getCreatedCount());
+    }
 
-      GeoJsonSource mapillarySource = (GeoJsonSource) map.getStyle().getSource(ID_SOURCE);
-      if (mapillarySource == null) {
-        map.getStyle().addSource(new GeoJsonSource(ID_SOURCE, featureCollection, new GeoJsonOptions()
-          .withCluster(true)
-          .withClusterMaxZoom(17)
-          .withClusterRadius(IMAGE_SIZE / 3)
-        ));
-
-        // unclustered
-        map.getStyle().addLayerBelow(new SymbolLayer(ID_LAYER_UNCLUSTERED, ID_SOURCE).withProperties(
-          iconImage(TOKEN_UNIQUE_FEATURE),
-          iconAllowOverlap(true),
-          iconSize(interpolate(exponential(1f), zoom(),
-            stop(12, 0.0f),
-            stop(15, 0.8f),
-            stop(16, 1.1f),
-            stop(17, 1.4f),
-            stop(18, 1.7f)
-          ))), MAKI_LAYER_ID);
-
-        // clustered
-        int[][] layers = new int[][] {
-          new int[] {20, Color.RED},
-          new int[] {10, Color.BLUE},
-          new int[] {0, Color.GREEN}
-        };
-
-        for (int i = 0; i < layers.length; i++) {
-
-          Expression pointCount = toNumber(Expression.get("point_count"));
-
-          //Add cluster circles
-          CircleLayer clusterLayer = new CircleLayer("cluster-" + i, ID_SOURCE);
-          clusterLayer.setProperties(
-            circleColor(layers[i][1]),
-            circleRadius(
-              interpolate(
-                exponential(1f),
-                zoom(),
-                stop(12, 10f),
-                stop(14, 16f),
-                stop(15, 18f),
-                stop(16, 20f)
-              )
-            ),
-            circleOpacity(0.6f)
-          );
-          clusterLayer.setMaxZoom(17f);
-
-          // Add a filter to the cluster layer that hides the circles based on "point_count"
-          clusterLayer.setFilter(
-            i == 0
-              ? gte(pointCount, literal(layers[i][0])) :
-              all(
-                gte(pointCount, literal(layers[i][0])),
-                lt(pointCount, literal(layers[i - 1][0]))
-              )
-          );
-          map.getStyle().addLayerBelow(clusterLayer, MAKI_LAYER_ID);
-        }
+    private static void addMapillaryLayers(@NonNull Style style, @NonNull FeatureCollection featureCollection) {
+      style.addSource(new GeoJsonSource(ID_SOURCE, featureCollection, new GeoJsonOptions()
+        .withCluster(true)
+        .withClusterMaxZoom(17)
+        .withClusterRadius(IMAGE_SIZE / 3)
+      ));
 
-        //Add the count labels
-        SymbolLayer count = new SymbolLayer("count", ID_SOURCE);
-        count.setProperties(
-          textField("{point_count}"),
-          textSize(8f),
-          textOffset(new Float[] {0.0f, 0.0f}),
-          textColor(Color.WHITE),
-          textIgnorePlacement(true)
+      // unclustered
+      style.addLayerBelow(new SymbolLayer(ID_LAYER_UNCLUSTERED, ID_SOURCE).withProperties(
+        iconImage(TOKEN_UNIQUE_FEATURE),
+        iconAllowOverlap(true),
+        iconSize(interpolate(exponential(1f), zoom(),
+          stop(12, 0.0f),
+          stop(15, 0.8f),
+          stop(16, 1.1f),
+          stop(17, 1.4f),
+          stop(18, 1.7f)
+        ))), MAKI_LAYER_ID);
+
+      // clustered
+      int[][] layers = new int[][] {
+        new int[] {20, Color.RED},
+        new int[] {10, Color.BLUE},
+        new int[] {0, Color.GREEN}
+      };
+
+      for (int i = 0; i < layers.length; i++) {
+
+        Expression pointCount = toNumber(Expression.get("point_count"));
+
+        //Add cluster circles
+        CircleLayer clusterLayer = new CircleLayer("cluster-" + i, ID_SOURCE);
+        clusterLayer.setProperties(
+          circleColor(layers[i][1]),
+          circleRadius(
+            interpolate(
+              exponential(1f),
+              zoom(),
+              stop(12, 10f),
+              stop(14, 16f),
+              stop(15, 18f),
+              stop(16, 20f)
+            )
+          ),
+          circleOpacity(0.6f)
         );
-        map.getStyle().addLayerBelow(count, MAKI_LAYER_ID);
-      } else {
-        mapillarySource.setGeoJson(featureCollection);
+        clusterLayer.setMaxZoom(17f);
+
+        // Add a filter to the cluster layer that hides the circles based on "point_count"
+        clusterLayer.setFilter(
+          i == 0
+            ? gte(pointCount, literal(layers[i][0])) :
+            all(
+              gte(pointCount, literal(layers[i][0])),
+              lt(pointCount, literal(layers[i - 1][0]))
+            )
+        );
+        style.addLayerBelow(clusterLayer, MAKI_LAYER_ID);
       }
-    }
 
-    static Bitmap getCroppedBitmap(Bitmap bitmap) {
-      Bitmap output = Bitmap.createBitmap(bitmap.getWidth(),
-        bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-      Canvas canvas = new Canvas(output);
-
-      final int color = 0xff424242;
-      final Paint paint = new Paint();
-      final Rect rect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-
-      paint.setAntiAlias(true);
-      canvas.drawARGB(0, 0, 0, 0);
-      paint.setColor(color);
-      // canvas.drawRoundRect(rectF, roundPx, roundPx, paint);
-      canvas.drawCircle(bitmap.getWidth() / 2, bitmap.getHeight() / 2,
-        bitmap.getWidth() / 2, paint);
-      paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-      canvas.drawBitmap(bitmap, rect, rect, paint);
-      //Bitmap _bmp = Bitmap.createScaledBitmap(output, 60, 60, false);
-      //return _bmp;
-      return output;
+      //Add the count labels
+      SymbolLayer count = new SymbolLayer("count", ID_SOURCE);
+      count.setProperties(
+        textField("{point_count}"),
+        textSize(8f),
+        textOffset(new Float[] {0.0f, 0.0f}),
+        textColor(Color.WHITE),
+        textIgnorePlacement(true)
+      );
+      style.addLayerBelow(count, MAKI_LAYER_ID);
     }
 
     private Runnable progressRunnable = new Runnable() {
@@ -1041,43 +1143,140 @@ public class SymbolLayerMapillaryActivity extends AppCompatActivity implements O
     }
   }
 
-  private static class MapillaryDataLoadResult {
-    private final HashMap<Feature, Bitmap> bitmapHashMap = new HashMap<>();
-    private final FeatureCollection mapillaryFeatureCollection;
+  /**
+   * Reads, decodes and crops one thumbnail on the I/O thread which fetched it. The source and cropped
+   * Bitmaps come from the pool, and the read buffer, decode options and cropper come from a
+   * {@link ThumbnailWorker}, so a warmed up load allocates no Bitmaps.
+   */
+  private static class ThumbnailLoader implements ConcurrentFetcher.BodyReader<Thumbnail> {
 
-    MapillaryDataLoadResult(FeatureCollection mapillaryFeatureCollection) {
-      this.mapillaryFeatureCollection = mapillaryFeatureCollection;
+    // RGB_565 halves the decoded size, thumbnails have no transparency and are scaled down anyway
+    private static final Bitmap.Config DECODE_CONFIG = Bitmap.Config.RGB_565;
+
+    private final BitmapPool bitmapPool;
+    private final Feature feature;
+    private final String imageId;
+
+    ThumbnailLoader(BitmapPool bitmapPool, Feature feature, String imageId) {
+      this.bitmapPool = bitmapPool;
+      this.feature = feature;
+      this.imageId = imageId;
+    }
+
+    @Override
+    public Thumbnail read(@NonNull InputStream body) throws IOException {
+      ThumbnailWorker worker = ThumbnailWorker.acquire();
+      try {
+        return load(worker, body);
+      } finally {
+        worker.release();
+      }
     }
 
-    public void add(Feature feature, Bitmap bitmap) {
-      bitmapHashMap.put(feature, bitmap);
+    private Thumbnail load(ThumbnailWorker worker, InputStream body) throws IOException {
+      int length = worker.read(body);
+
+      BitmapFactory.Options options = worker.options;
+      options.inJustDecodeBounds = true;
+      options.inSampleSize = 1;
+      BitmapFactory.decodeByteArray(worker.buffer, 0, length, options);
+      if (options.outWidth <= 0 || options.outHeight <= 0) {
+        throw new IOException("Unable to decode thumbnail " + imageId);
+      }
+      // decode at the smallest power of two scale which still covers the circle
+      int size = worker.cropper.getSize();
+      while (Math.min(options.outWidth, options.outHeight) / (options.inSampleSize * 2) >= size) {
+        options.inSampleSize *= 2;
+      }
+      options.inPreferredConfig = DECODE_CONFIG;
+      Bitmap source = bitmapPool.decodeByteArray(worker.buffer, length, options);
+      if (source == null) {
+        throw new IOException("Unable to decode thumbnail " + imageId);
+      }
+
+      //cropping bitmap to be circular
+      try {
+        Bitmap output = bitmapPool.get(size, size, Bitmap.Config.ARGB_8888);
+        return new Thumbnail(feature, imageId, worker.cropper.crop(source, output));
+      } finally {
+        bitmapPool.put(source);
+      }
     }
   }
 
   /**
-   * Utility class to generate Bitmaps for Symbol.
+   * State of a thumbnail loader, used by one thumbnail at a time. Idle workers are kept for the life of
+   * the app rather than with the threads which used them, so the I/O pool's threads can come and go, and
+   * the Activity be opened again, without reallocating the buffer and the cropper's mask. There are
+   * never more workers than thumbnails loaded at once, that is I/O threads.
    */
-  private static class SymbolGenerator {
+  private static class ThumbnailWorker {
+    private static final Queue<ThumbnailWorker> IDLE_WORKERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger CREATED_COUNT = new AtomicInteger();
+
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final CircleBitmapCropper cropper = new CircleBitmapCropper(LoadMapillaryDataTask.IMAGE_SIZE);
+    private byte[] buffer = new byte[32 * 1024];
+
+    static ThumbnailWorker acquire() {
+      ThumbnailWorker worker = IDLE_WORKERS.poll();
+      if (worker == null) {
+        worker = new ThumbnailWorker();
+        CREATED_COUNT.incrementAndGet();
+      }
+      return worker;
+    }
 
     /**
-     * Generate a Bitmap from an Android SDK View.
+     * @return the number of workers created since the app started
+     */
+    static int getCreatedCount() {
+      return CREATED_COUNT.get();
+    }
+
+    void release() {
+      IDLE_WORKERS.offer(this);
+    }
+
+    /**
+     * Read a whole response into the buffer, growing it when needed.
      *
-     * @param view the View to be drawn to a Bitmap
-     * @return the generated bitmap
+     * @return the number of bytes read
      */
-    static Bitmap generate(@NonNull View view) {
-      int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-      view.measure(measureSpec, measureSpec);
-
-      int measuredWidth = view.getMeasuredWidth();
-      int measuredHeight = view.getMeasuredHeight();
-
-      view.layout(0, 0, measuredWidth, measuredHeight);
-      Bitmap bitmap = Bitmap.createBitmap(measuredWidth, measuredHeight, Bitmap.Config.ARGB_8888);
-      bitmap.eraseColor(Color.TRANSPARENT);
-      Canvas canvas = new Canvas(bitmap);
-      view.draw(canvas);
-      return bitmap;
+    int read(InputStream inputStream) throws IOException {
+      int length = 0;
+      int count;
+      while ((count = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+        length += count;
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+      }
+      return length;
+    }
+  }
+
+  private static class Thumbnail {
+    private final Feature feature;
+    private final String imageId;
+    private final Bitmap bitmap;
+
+    Thumbnail(Feature feature, String imageId, Bitmap bitmap) {
+      this.feature = feature;
+      this.imageId = imageId;
+      this.bitmap = bitmap;
+    }
+  }
+
+  private static class MapillaryDataLoadResult {
+    private final FeatureCollection mapillaryFeatureCollection;
+    private int loadedCount;
+    private int failedCount;
+    private long listTime;
+    private long totalTime;
+
+    MapillaryDataLoadResult(FeatureCollection mapillaryFeatureCollection) {
+      this.mapillaryFeatureCollection = mapillaryFeatureCollection;
     }
   }
 
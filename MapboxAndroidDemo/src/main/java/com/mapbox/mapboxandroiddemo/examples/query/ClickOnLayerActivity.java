@@ -1,14 +1,20 @@
 package com.mapbox.mapboxandroiddemo.examples.query;
 
 import android.graphics.PointF;
-import android.graphics.RectF;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
 import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTask;
+import com.mapbox.mapboxandroiddemo.utils.BackgroundTaskExecutor;
+import com.mapbox.mapboxandroiddemo.utils.FeatureHitIndex;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader;
+import com.mapbox.mapboxandroiddemo.utils.HttpStack;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
@@ -18,9 +24,13 @@ import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.layers.FillLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.net.URL;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.List;
 
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillOpacity;
@@ -35,6 +45,12 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
   private MapboxMap mapboxMap;
   private static final String geoJsonSourceId = "geoJsonData";
   private static final String geoJsonLayerId = "polygonFillLayer";
+  private static final String REGIONS_URL = "https://gist.githubusercontent"
+    + ".com/tobrun/cf0d689c8187d42ebe62757f6d0cf137/raw/4d8ac3c8333f1517df9d303"
+    + "d58f20f4a1d8841e8/regions.geojson";
+  // How far from a polygon a tap can be
+  private static final float HIT_TOLERANCE_DP = 10;
+  private FeatureHitIndex featureHitIndex;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -63,6 +79,8 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
       public void onStyleLoaded(@NonNull Style style) {
         mapboxMap.addOnMapClickListener(ClickOnLayerActivity.this);
         addGeoJsonSourceToMap(style);
+        BackgroundTaskExecutor.getInstance().execute(ClickOnLayerActivity.this,
+          new LoadRegionsTask(ClickOnLayerActivity.this));
 
         // Create FillLayer with GeoJSON source and add the FillLayer to the map
         if (style != null) {
@@ -75,28 +93,52 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
 
   @Override
   public boolean onMapClick(@NonNull LatLng point) {
-    PointF pointf = mapboxMap.getProjection().toScreenLocation(point);
-    RectF rectF = new RectF(pointf.x - 10, pointf.y - 10, pointf.x + 10, pointf.y + 10);
-    List<Feature> featureList = mapboxMap.queryRenderedFeatures(rectF, geoJsonLayerId);
-    if (featureList.size() > 0) {
-      for (Feature feature : featureList) {
-        Timber.d("Feature found with %1$s", feature.toJson());
-        Toast.makeText(ClickOnLayerActivity.this, R.string.click_on_polygon_toast,
-          Toast.LENGTH_SHORT).show();
-      }
+    if (featureHitIndex == null) {
+      return false;
+    }
+    // Look the polygon up in the regions that were loaded, rather than query the rendered map
+    long startNanos = System.nanoTime();
+    int index = featureHitIndex.hitTest(point.getLongitude(), point.getLatitude(),
+      mapboxMap.getCameraPosition().zoom, HIT_TOLERANCE_DP);
+    if (index >= 0) {
+      Feature feature = featureHitIndex.getFeature(index);
+      logTapLatency(point, System.nanoTime() - startNanos);
+      Timber.d("Feature found with %1$s", feature.toJson());
+      Toast.makeText(ClickOnLayerActivity.this, R.string.click_on_polygon_toast,
+        Toast.LENGTH_SHORT).show();
       return true;
     }
     return false;
   }
 
+  /**
+   * Log how long finding the tapped polygon took, next to how long querying the rendered polygons for
+   * the same tap takes, which is how this example used to find it.
+   */
+  private void logTapLatency(@NonNull LatLng point, long hitTestNanos) {
+    if (Timber.treeCount() == 0) {
+      return;
+    }
+    PointF screenPoint = mapboxMap.getProjection().toScreenLocation(point);
+    long queryStartNanos = System.nanoTime();
+    List<Feature> features = mapboxMap.queryRenderedFeatures(screenPoint, geoJsonLayerId);
+    Timber.d("Tapped polygon found in %1$.3f ms with FeatureHitIndex, queryRenderedFeatures took %2$.3f ms "
+      + "and found %3$d polygons", hitTestNanos / 1e6, (System.nanoTime() - queryStartNanos) / 1e6, features.size());
+  }
+
   private void addGeoJsonSourceToMap(@NonNull Style loadedMapStyle) {
-    try {
-      // Add GeoJsonSource to map
-      loadedMapStyle.addSource(new GeoJsonSource(geoJsonSourceId, new URL("https://gist.githubusercontent"
-        + ".com/tobrun/cf0d689c8187d42ebe62757f6d0cf137/raw/4d8ac3c8333f1517df9d303"
-        + "d58f20f4a1d8841e8/regions.geojson")));
-    } catch (Throwable throwable) {
-      Timber.e("Couldn't add GeoJsonSource to map - %s", throwable);
+    // Add GeoJsonSource to map, the regions are set once they're loaded
+    loadedMapStyle.addSource(new GeoJsonSource(geoJsonSourceId));
+  }
+
+  private void onRegionsLoaded(@NonNull FeatureCollection regions, @NonNull FeatureHitIndex featureHitIndex) {
+    this.featureHitIndex = featureHitIndex;
+    Style style = mapboxMap.getStyle();
+    if (style != null) {
+      GeoJsonSource source = style.getSourceAs(geoJsonSourceId);
+      if (source != null) {
+        source.setGeoJson(regions);
+      }
     }
   }
 
@@ -133,6 +175,7 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    Timber.d("HTTP calls so far:\n%s", HttpStack.getInstance(this).getMetrics().getStats());
     if (mapboxMap != null) {
       mapboxMap.removeOnMapClickListener(this);
     }
@@ -144,4 +187,51 @@ public class ClickOnLayerActivity extends AppCompatActivity implements OnMapRead
     super.onSaveInstanceState(outState);
     mapView.onSaveInstanceState(outState);
   }
+
+  /**
+   * Download the regions and index them for finding the one that's tapped.
+   */
+  private static class LoadRegionsTask extends BackgroundTask<FeatureCollection> {
+
+    private final WeakReference<ClickOnLayerActivity> weakReference;
+    private final OkHttpClient client;
+    private FeatureHitIndex featureHitIndex;
+
+    LoadRegionsTask(ClickOnLayerActivity activity) {
+      super(Pool.IO);
+      this.weakReference = new WeakReference<>(activity);
+      this.client = HttpStack.getInstance(activity).getClient();
+    }
+
+    @Override
+    protected FeatureCollection doInBackground() {
+      Request request = new Request.Builder().url(REGIONS_URL).build();
+      try {
+        Response response = client.newCall(request).execute();
+        try {
+          if (!response.isSuccessful()) {
+            throw new IOException("Unexpected regions response " + response.code());
+          }
+          FeatureCollection regions = GeoJsonAssetLoader.parse(response.body().byteStream(), null);
+          if (regions.features() != null) {
+            featureHitIndex = new FeatureHitIndex(regions.features());
+          }
+          return regions;
+        } finally {
+          response.close();
+        }
+      } catch (IOException exception) {
+        Timber.e(exception, "Couldn't download the regions from %s", REGIONS_URL);
+        return null;
+      }
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable FeatureCollection regions) {
+      ClickOnLayerActivity activity = weakReference.get();
+      if (activity != null && regions != null && featureHitIndex != null) {
+        activity.onRegionsLoaded(regions, featureHitIndex);
+      }
+    }
+  }
 }
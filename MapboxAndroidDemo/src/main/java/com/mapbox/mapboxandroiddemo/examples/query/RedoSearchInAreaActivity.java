@@ -13,6 +13,7 @@ import com.mapbox.android.gestures.MoveGestureDetector;
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.ViewportFeatureQuery;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
@@ -21,7 +22,7 @@ import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.layers.FillLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 
-import java.util.List;
+import timber.log.Timber;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.exponential;
 import static com.mapbox.mapboxsdk.style.expressions.Expression.interpolate;
@@ -32,7 +33,8 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.fillOpacity;
 
 /**
  * Use MapboxMap.queryRenderedFeatures() to find and highlight certain features within the map viewport.
- * The search button re-appears when the map is moved.
+ * The search button re-appears when the map is moved. After a pan, only the part of the viewport that
+ * wasn't searched before is queried.
  */
 public class RedoSearchInAreaActivity extends AppCompatActivity implements OnMapReadyCallback,
   MapboxMap.OnMoveListener {
@@ -43,6 +45,7 @@ public class RedoSearchInAreaActivity extends AppCompatActivity implements OnMap
   private MapView mapView;
   private MapboxMap mapboxMap;
   private GeoJsonSource dataGeoJsonSource;
+  private ViewportFeatureQuery viewportFeatureQuery;
   private Button redoSearchButton;
   private boolean moveMapInstructionShown;
 
@@ -72,6 +75,7 @@ public class RedoSearchInAreaActivity extends AppCompatActivity implements OnMap
       @Override
       public void onStyleLoaded(@NonNull final Style style) {
         mapboxMap.addOnMoveListener(RedoSearchInAreaActivity.this);
+        viewportFeatureQuery = new ViewportFeatureQuery(mapView, mapboxMap, ID_OF_LAYER_TO_HIGHLIGHT);
 
         style.addSource(new GeoJsonSource(GEO_JSON_SOURCE_ID,
           FeatureCollection.fromFeatures(new Feature[] {})));
@@ -95,7 +99,7 @@ public class RedoSearchInAreaActivity extends AppCompatActivity implements OnMap
             }
             FeatureCollection featureCollection = null;
             if (style.getLayer(ID_OF_LAYER_TO_HIGHLIGHT) != null) {
-              featureCollection = FeatureCollection.fromFeatures(getFeaturesInViewport(ID_OF_LAYER_TO_HIGHLIGHT));
+              featureCollection = getFeaturesInViewport();
             } else {
               Toast.makeText(RedoSearchInAreaActivity.this,
                 String.format(getString(R.string.layer_not_found), ID_OF_LAYER_TO_HIGHLIGHT),
@@ -115,11 +119,17 @@ public class RedoSearchInAreaActivity extends AppCompatActivity implements OnMap
 
   /**
    * Perform feature query within the viewport.
+   *
+   * @return the features in the viewport, or null if they're the same as after the last search
    */
-  private List<Feature> getFeaturesInViewport(String layerName) {
+  private FeatureCollection getFeaturesInViewport() {
     RectF rectF = new RectF(mapView.getLeft(),
       mapView.getTop(), mapView.getRight(), mapView.getBottom());
-    return mapboxMap.queryRenderedFeatures(rectF, layerName);
+    long startNanos = System.nanoTime();
+    boolean changed = viewportFeatureQuery.update(rectF);
+    Timber.d("Searched in %1$.2f ms, %2$s", (System.nanoTime() - startNanos) / 1e6,
+      viewportFeatureQuery.getStats());
+    return changed ? viewportFeatureQuery.getFeatureCollection() : null;
   }
 
   @Override
@@ -173,6 +183,9 @@ public class RedoSearchInAreaActivity extends AppCompatActivity implements OnMap
     if (mapboxMap != null) {
       mapboxMap.removeOnMoveListener(this);
     }
+    if (viewportFeatureQuery != null) {
+      viewportFeatureQuery.destroy();
+    }
     mapView.onDestroy();
   }
 
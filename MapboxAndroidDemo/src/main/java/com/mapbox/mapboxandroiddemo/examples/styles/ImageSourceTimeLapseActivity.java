@@ -1,11 +1,11 @@
 package com.mapbox.mapboxandroiddemo.examples.styles;
 
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 
 import com.mapbox.mapboxandroiddemo.R;
+import com.mapbox.mapboxandroiddemo.utils.FrameScheduler;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.geometry.LatLngQuad;
@@ -22,8 +22,6 @@ import com.mapbox.mapboxsdk.style.sources.ImageSource;
 public class ImageSourceTimeLapseActivity extends AppCompatActivity implements OnMapReadyCallback {
 
   private MapView mapView;
-  private Handler handler;
-  private Runnable runnable;
   private static final String ID_IMAGE_SOURCE = "animated_image_source";
   private static final String ID_IMAGE_LAYER = "animated_image_layer";
 
@@ -59,22 +57,19 @@ public class ImageSourceTimeLapseActivity extends AppCompatActivity implements O
         // Add layer
         style.addLayer(new RasterLayer(ID_IMAGE_LAYER, ID_IMAGE_SOURCE));
 
-        // Loop the GeoJSON refreshing
-        handler = new Handler();
-        runnable = new RefreshImageRunnable(handler, style);
-        handler.postDelayed(runnable, 100);
+        // Loop the image refreshing, the scheduler pauses it while the activity is paused
+        FrameScheduler.getInstance().schedule(ImageSourceTimeLapseActivity.this, 1000,
+          new RefreshImageCallback(style));
       }
     });
   }
 
-  private static class RefreshImageRunnable implements Runnable {
+  private static class RefreshImageCallback implements FrameScheduler.Callback {
     private final Style loadedMapStyle;
-    private final Handler handler;
     private int[] drawables;
     private int drawableIndex;
 
-    RefreshImageRunnable(Handler handler,Style loadedMapStyle) {
-      this.handler = handler;
+    RefreshImageCallback(Style loadedMapStyle) {
       this.loadedMapStyle = loadedMapStyle;
       drawables = new int[4];
       drawables[0] = R.drawable.southeast_radar_0;
@@ -85,12 +80,11 @@ public class ImageSourceTimeLapseActivity extends AppCompatActivity implements O
     }
 
     @Override
-    public void run() {
+    public void onFrame(long frameTimeNanos, long budgetNanos) {
       ((ImageSource) loadedMapStyle.getSource(ID_IMAGE_SOURCE)).setImage(drawables[drawableIndex++]);
       if (drawableIndex > 3) {
         drawableIndex = 0;
       }
-      handler.postDelayed(this, 1000);
     }
   }
 
@@ -129,9 +123,6 @@ public class ImageSourceTimeLapseActivity extends AppCompatActivity implements O
   @Override
   protected void onDestroy() {
     super.onDestroy();
-    if (handler != null && runnable != null) {
-      handler.removeCallbacks(runnable);
-    }
     mapView.onDestroy();
   }
 
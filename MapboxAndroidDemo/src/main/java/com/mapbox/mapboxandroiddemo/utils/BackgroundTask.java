@@ -0,0 +1,183 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Unit of background work run by {@link BackgroundTaskExecutor}. It replaces AsyncTask in the
+ * examples: the work runs on either the CPU or the I/O pool, the result is delivered on the main
+ * thread, and the task is cancelled when the Activity it was started from is destroyed.
+ *
+ * @param <T> the type of the result
+ */
+public abstract class BackgroundTask<T> {
+
+  public static final int PRIORITY_LOW = -10;
+  public static final int PRIORITY_NORMAL = 0;
+  public static final int PRIORITY_HIGH = 10;
+
+  /**
+   * The pool a task runs on. CPU is for parsing and drawing and is sized to the number of cores,
+   * I/O is for network and disk work which spends most of its time waiting.
+   */
+  public enum Pool {
+    CPU,
+    IO
+  }
+
+  private final Pool pool;
+  private final int priority;
+  private final String name;
+  private volatile boolean cancelled;
+  private Thread workerThread;
+  private Lifecycle lifecycle;
+  private LifecycleObserver lifecycleObserver;
+  private Runnable queuedRunnable;
+
+  protected BackgroundTask(@NonNull Pool pool) {
+    this(pool, PRIORITY_NORMAL);
+  }
+
+  /**
+   * @param pool     the pool to run on
+   * @param priority queued tasks with a higher priority are started first, equal priorities run in
+   *                 submission order
+   */
+  protected BackgroundTask(@NonNull Pool pool, int priority) {
+    this.pool = pool;
+    this.priority = priority;
+    this.name = getClass().getSimpleName();
+  }
+
+  /**
+   * Called on the main thread right before the task is queued.
+   */
+  @MainThread
+  protected void onPreExecute() {
+  }
+
+  /**
+   * Does the work on a pool thread. Long running work should check {@link #isCancelled()}.
+   *
+   * @return the result passed to {@link #onPostExecute(Object)}
+   */
+  @WorkerThread
+  @Nullable
+  protected abstract T doInBackground();
+
+  /**
+   * Called on the main thread with the result of {@link #doInBackground()}, unless the task was
+   * cancelled.
+   *
+   * @param result the result of the work
+   */
+  @MainThread
+  protected void onPostExecute(@Nullable T result) {
+  }
+
+  /**
+   * Called on the main thread instead of {@link #onPostExecute(Object)} once a cancelled task has
+   * left the pool.
+   */
+  @MainThread
+  protected void onCancelled() {
+  }
+
+  /**
+   * Cancel the task. A queued task is removed from its pool, a running task is told through
+   * {@link #isCancelled()} and optionally interrupted.
+   *
+   * @param mayInterruptIfRunning whether to interrupt the pool thread if the task is running
+   */
+  public final void cancel(boolean mayInterruptIfRunning) {
+    synchronized (this) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      if (mayInterruptIfRunning && workerThread != null) {
+        workerThread.interrupt();
+      }
+    }
+    BackgroundTaskExecutor.getInstance().onTaskCancelled(this);
+  }
+
+  public final boolean isCancelled() {
+    return cancelled;
+  }
+
+  @NonNull
+  public final Pool getPool() {
+    return pool;
+  }
+
+  public final int getPriority() {
+    return priority;
+  }
+
+  @NonNull
+  public String getName() {
+    return name;
+  }
+
+  synchronized boolean startRunning(@NonNull Thread thread) {
+    if (cancelled) {
+      return false;
+    }
+    workerThread = thread;
+    return true;
+  }
+
+  synchronized void stopRunning() {
+    workerThread = null;
+    // Drop an interrupt from a cancel() which raced with the end of the work, so it doesn't leak
+    // into the next task on this thread
+    Thread.interrupted();
+  }
+
+  Runnable getQueuedRunnable() {
+    return queuedRunnable;
+  }
+
+  void setQueuedRunnable(Runnable queuedRunnable) {
+    this.queuedRunnable = queuedRunnable;
+  }
+
+  @MainThread
+  void bindTo(@NonNull Lifecycle lifecycle) {
+    this.lifecycle = lifecycle;
+    this.lifecycleObserver = new CancelOnDestroyObserver(this);
+    lifecycle.addObserver(lifecycleObserver);
+  }
+
+  @MainThread
+  void unbind() {
+    if (lifecycle != null) {
+      lifecycle.removeObserver(lifecycleObserver);
+      lifecycle = null;
+      lifecycleObserver = null;
+    }
+  }
+
+  /**
+   * Cancels the task when the Activity or Fragment that started it is destroyed.
+   */
+  static class CancelOnDestroyObserver implements LifecycleObserver {
+
+    private final BackgroundTask<?> task;
+
+    CancelOnDestroyObserver(BackgroundTask<?> task) {
+      this.task = task;
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void onDestroy() {
+      task.cancel(true);
+    }
+  }
+}
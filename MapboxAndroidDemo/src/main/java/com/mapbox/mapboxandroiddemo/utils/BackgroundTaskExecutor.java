@@ -0,0 +1,391 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleOwner;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+/**
+ * Shared executor for the examples' background work, used instead of the single serial AsyncTask
+ * executor so that a slow network request in one example doesn't hold up asset parsing in the next.
+ * <p>
+ * There are two pools: a CPU pool of one thread fewer than the number of cores, but at least two and
+ * at most four, for parsing and bitmap work, and an I/O pool of four threads for network and disk
+ * work. Threads run at background priority. Each pool starts its highest priority task first. Tasks
+ * are bound to the lifecycle of the Activity that starts them and are cancelled when it's destroyed,
+ * and their results are delivered on the main thread. A task can also split its work into parts that
+ * run side by side on its pool, see {@link #getExecutor(BackgroundTask.Pool, int)}.
+ * </p>
+ * <p>
+ * Application-wide objects, which outlive any Activity, run their disk work on a separate serial
+ * executor instead, see {@link #getDiskExecutor()}.
+ * </p>
+ */
+public final class BackgroundTaskExecutor {
+
+  private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+  private static final int CPU_POOL_SIZE = Math.max(2, Math.min(CPU_COUNT - 1, 4));
+  private static final int IO_POOL_SIZE = 4;
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private static BackgroundTaskExecutor instance;
+
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final AtomicLong sequence = new AtomicLong();
+  private final PoolMetrics cpuMetrics;
+  private final PoolMetrics ioMetrics;
+  private final ThreadPoolExecutor diskExecutor;
+
+  private BackgroundTaskExecutor() {
+    cpuMetrics = new PoolMetrics(BackgroundTask.Pool.CPU,
+      createPool("cpu", CPU_POOL_SIZE, new PriorityBlockingQueue<Runnable>()));
+    ioMetrics = new PoolMetrics(BackgroundTask.Pool.IO,
+      createPool("io", IO_POOL_SIZE, new PriorityBlockingQueue<Runnable>()));
+    diskExecutor = createPool("disk", 1, new LinkedBlockingQueue<Runnable>());
+  }
+
+  @NonNull
+  public static synchronized BackgroundTaskExecutor getInstance() {
+    if (instance == null) {
+      instance = new BackgroundTaskExecutor();
+    }
+    return instance;
+  }
+
+  /**
+   * Queue a task on its pool. The task is cancelled when the owner is destroyed, and a task started
+   * from an owner which has already been destroyed is cancelled straight away. Either way its
+   * onCancelled() is called on the main thread.
+   *
+   * @param owner the Activity or Fragment whose lifecycle the task is bound to
+   * @param task  the task to run
+   * @param <T>   the type of the task's result
+   * @return the task, so that it can be kept to cancel it later
+   */
+  @MainThread
+  @NonNull
+  public <T> BackgroundTask<T> execute(@NonNull LifecycleOwner owner, @NonNull BackgroundTask<T> task) {
+    Lifecycle lifecycle = owner.getLifecycle();
+    if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+      // The task was never queued, so the pool won't finish it
+      task.cancel(false);
+      deliver(task, null);
+      return task;
+    }
+    task.bindTo(lifecycle);
+    task.onPreExecute();
+
+    PoolMetrics metrics = getMetrics(task.getPool());
+    QueuedTask<T> queuedTask = new QueuedTask<>(task, metrics, sequence.getAndIncrement());
+    task.setQueuedRunnable(queuedTask);
+    metrics.submittedCount.incrementAndGet();
+    metrics.executor.execute(queuedTask);
+    return task;
+  }
+
+  /**
+   * Get the executor for disk work which isn't bound to the lifecycle of an Activity, like the reads
+   * and writes of an application-wide cache. It runs Runnables one at a time in the order they're
+   * given, on a background priority thread which stops once it has been idle for a while. Nothing
+   * cancels the Runnables, so each should be short.
+   *
+   * @return the shared serial disk executor
+   */
+  @NonNull
+  public Executor getDiskExecutor() {
+    return diskExecutor;
+  }
+
+  /**
+   * Get an Executor which queues Runnables on one of the pools, for work a task splits into parts
+   * that run side by side, like the requests of a batch. The Runnables aren't bound to a lifecycle,
+   * so whoever submits them waits for and cancels them, and they're counted in the pool's metrics.
+   *
+   * @param pool     the pool to run the Runnables on
+   * @param priority the priority of the Runnables against the pool's other work
+   * @return an Executor for the pool
+   */
+  @NonNull
+  public Executor getExecutor(@NonNull BackgroundTask.Pool pool, final int priority) {
+    final PoolMetrics metrics = getMetrics(pool);
+    return new Executor() {
+      @Override
+      public void execute(@NonNull Runnable runnable) {
+        metrics.submittedCount.incrementAndGet();
+        metrics.executor.execute(new QueuedRunnable(runnable, priority, metrics, sequence.getAndIncrement()));
+      }
+    };
+  }
+
+  /**
+   * Metrics for one of the pools.
+   *
+   * @param pool the pool to get the metrics for
+   * @return the queue depth and latency figures for the pool
+   */
+  @NonNull
+  public PoolMetrics getMetrics(@NonNull BackgroundTask.Pool pool) {
+    return pool == BackgroundTask.Pool.CPU ? cpuMetrics : ioMetrics;
+  }
+
+  /**
+   * Summary of both pools' metrics, for logging.
+   *
+   * @return the metrics as a String
+   */
+  @NonNull
+  public String getStats() {
+    return cpuMetrics.toString() + "; " + ioMetrics.toString();
+  }
+
+  void onTaskCancelled(@NonNull BackgroundTask<?> task) {
+    QueuedTask<?> queuedTask = (QueuedTask<?>) task.getQueuedRunnable();
+    // A task which hasn't started yet won't be run by the pool, so it's removed and finished here.
+    // A running task finishes itself once doInBackground returns
+    if (queuedTask != null && queuedTask.started.compareAndSet(false, true)) {
+      queuedTask.metrics.executor.remove(queuedTask);
+      queuedTask.metrics.cancelledCount.incrementAndGet();
+      deliver(task, null);
+    }
+  }
+
+  private <T> void deliver(final BackgroundTask<T> task, final T result) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        task.unbind();
+        task.setQueuedRunnable(null);
+        if (task.isCancelled()) {
+          task.onCancelled();
+        } else {
+          task.onPostExecute(result);
+        }
+      }
+    });
+  }
+
+  private static ThreadPoolExecutor createPool(final String name, int size, BlockingQueue<Runnable> queue) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      queue, new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+          return new Thread(new Runnable() {
+            @Override
+            public void run() {
+              Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+              runnable.run();
+            }
+          }, "background-" + name + "-" + threadCount.incrementAndGet());
+        }
+      });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Queue entry of a pool. Orders by priority, then by submission order.
+   */
+  private abstract static class QueueEntry implements Runnable, Comparable<QueueEntry> {
+
+    final PoolMetrics metrics;
+    final long queuedTimeNanos = System.nanoTime();
+    private final int priority;
+    private final long sequenceNumber;
+
+    QueueEntry(int priority, PoolMetrics metrics, long sequenceNumber) {
+      this.priority = priority;
+      this.metrics = metrics;
+      this.sequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public int compareTo(@NonNull QueueEntry other) {
+      if (priority != other.priority) {
+        return priority > other.priority ? -1 : 1;
+      }
+      return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+    }
+  }
+
+  /**
+   * Queue entry for a task.
+   */
+  private class QueuedTask<T> extends QueueEntry {
+
+    private final BackgroundTask<T> task;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    QueuedTask(BackgroundTask<T> task, PoolMetrics metrics, long sequenceNumber) {
+      super(task.getPriority(), metrics, sequenceNumber);
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      if (!started.compareAndSet(false, true)) {
+        return;
+      }
+      long startTimeNanos = System.nanoTime();
+      metrics.recordWait(startTimeNanos - queuedTimeNanos);
+
+      T result = null;
+      if (task.startRunning(Thread.currentThread())) {
+        try {
+          result = task.doInBackground();
+        } finally {
+          task.stopRunning();
+          long runTimeNanos = System.nanoTime() - startTimeNanos;
+          metrics.recordRun(runTimeNanos);
+          Timber.d("%1$s ran on the %2$s pool in %3$d ms after waiting %4$d ms, %5$d still queued",
+            task.getName(), metrics.pool, TimeUnit.NANOSECONDS.toMillis(runTimeNanos),
+            TimeUnit.NANOSECONDS.toMillis(startTimeNanos - queuedTimeNanos), metrics.getQueueDepth());
+          if (task.isCancelled()) {
+            metrics.cancelledCount.incrementAndGet();
+          }
+          deliver(task, result);
+        }
+      } else {
+        metrics.cancelledCount.incrementAndGet();
+        deliver(task, null);
+      }
+    }
+  }
+
+  /**
+   * Queue entry for a Runnable from {@link #getExecutor(BackgroundTask.Pool, int)}.
+   */
+  private static class QueuedRunnable extends QueueEntry {
+
+    private final Runnable runnable;
+
+    QueuedRunnable(Runnable runnable, int priority, PoolMetrics metrics, long sequenceNumber) {
+      super(priority, metrics, sequenceNumber);
+      this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      long startTimeNanos = System.nanoTime();
+      metrics.recordWait(startTimeNanos - queuedTimeNanos);
+      try {
+        runnable.run();
+      } finally {
+        metrics.recordRun(System.nanoTime() - startTimeNanos);
+      }
+    }
+  }
+
+  /**
+   * Queue depth and latency figures for one pool. Wait time is measured from when a task is queued
+   * until a pool thread picks it up, run time covers doInBackground.
+   */
+  public static class PoolMetrics {
+
+    private final BackgroundTask.Pool pool;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    PoolMetrics(BackgroundTask.Pool pool, ThreadPoolExecutor executor) {
+      this.pool = pool;
+      this.executor = executor;
+    }
+
+    void recordWait(long waitNanos) {
+      waitCount.incrementAndGet();
+      totalWaitNanos.addAndGet(waitNanos);
+      updateMax(maxWaitNanos, waitNanos);
+    }
+
+    void recordRun(long runNanos) {
+      runCount.incrementAndGet();
+      totalRunNanos.addAndGet(runNanos);
+      updateMax(maxRunNanos, runNanos);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+      long current = max.get();
+      while (value > current && !max.compareAndSet(current, value)) {
+        current = max.get();
+      }
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int getQueueDepth() {
+      return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks currently running
+     */
+    public int getActiveCount() {
+      return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+      return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+      return runCount.get();
+    }
+
+    public long getCancelledCount() {
+      return cancelledCount.get();
+    }
+
+    public long getAverageWaitMillis() {
+      long count = waitCount.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count);
+    }
+
+    public long getMaxWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public long getAverageRunMillis() {
+      long count = runCount.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRunNanos.get() / count);
+    }
+
+    public long getMaxRunMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxRunNanos.get());
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%1$s pool: queued=%2$d, active=%3$d, submitted=%4$d, completed=%5$d, "
+          + "cancelled=%6$d, wait avg/max=%7$d/%8$d ms, run avg/max=%9$d/%10$d ms",
+        pool, getQueueDepth(), getActiveCount(), getSubmittedCount(), getCompletedCount(),
+        getCancelledCount(), getAverageWaitMillis(), getMaxWaitMillis(), getAverageRunMillis(),
+        getMaxRunMillis());
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Locale;
+
+/**
+ * Pool of mutable Bitmaps which can be drawn into again or decoded into with
+ * {@link BitmapFactory.Options#inBitmap}, so that loading many images of the same size doesn't
+ * allocate a new Bitmap for each one.
+ * <p>
+ * From KitKat any pooled Bitmap with a large enough allocation is reconfigured to the requested size,
+ * before that only Bitmaps of exactly the requested size and config are reused. The pool holds up to
+ * its size limit and drops the least recently pooled Bitmaps beyond that. It's safe to use from
+ * several threads.
+ * </p>
+ */
+public class BitmapPool {
+
+  private final long maxSizeBytes;
+  private final LinkedList<Bitmap> bitmaps = new LinkedList<>();
+  private long sizeBytes;
+  private int hitCount;
+  private int missCount;
+  private long allocatedBytes;
+  private int evictionCount;
+
+  /**
+   * @param maxSizeBytes the most bytes of Bitmaps to keep in the pool
+   */
+  public BitmapPool(long maxSizeBytes) {
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Get a transparent Bitmap to draw into, reusing a pooled one if there is one that fits.
+   *
+   * @param width  the width of the Bitmap
+   * @param height the height of the Bitmap
+   * @param config the config of the Bitmap
+   * @return a mutable, transparent Bitmap of the requested size and config
+   */
+  @NonNull
+  public Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+    Bitmap bitmap = take(width, height, config, Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT);
+    if (bitmap == null) {
+      return Bitmap.createBitmap(width, height, config);
+    }
+    bitmap.eraseColor(Color.TRANSPARENT);
+    return bitmap;
+  }
+
+  /**
+   * Decode an image into a pooled Bitmap where the platform allows it. Run a bounds only decode with
+   * the same options first and set {@link BitmapFactory.Options#inSampleSize} and
+   * {@link BitmapFactory.Options#inPreferredConfig}, the decoded size is worked out from those.
+   *
+   * @param data    the encoded image
+   * @param length  the number of bytes of data to decode
+   * @param options the options of the bounds decode, reused for this decode
+   * @return the decoded, mutable Bitmap, or null if the image couldn't be decoded
+   */
+  @Nullable
+  public Bitmap decodeByteArray(@NonNull byte[] data, int length, @NonNull BitmapFactory.Options options) {
+    int sampleSize = Math.max(1, options.inSampleSize);
+    int width = (options.outWidth + sampleSize - 1) / sampleSize;
+    int height = (options.outHeight + sampleSize - 1) / sampleSize;
+    Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+    boolean canReconfigure = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+
+    options.inJustDecodeBounds = false;
+    options.inMutable = true;
+    // Before KitKat only images decoded at their full size can reuse a Bitmap
+    options.inBitmap = canReconfigure || sampleSize == 1 ? take(width, height, config, canReconfigure) : null;
+    try {
+      Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+      if (bitmap == null && options.inBitmap != null) {
+        put(options.inBitmap);
+      }
+      return bitmap;
+    } catch (IllegalArgumentException exception) {
+      // The decoded size didn't fit the pooled Bitmap after all, decode into a new one
+      options.inBitmap = null;
+      return BitmapFactory.decodeByteArray(data, 0, length, options);
+    } finally {
+      options.inBitmap = null;
+    }
+  }
+
+  /**
+   * Return a Bitmap to the pool once nothing uses it anymore. Immutable and recycled Bitmaps are
+   * ignored.
+   *
+   * @param bitmap the Bitmap to reuse
+   */
+  public void put(@NonNull Bitmap bitmap) {
+    if (!bitmap.isMutable() || bitmap.isRecycled()) {
+      return;
+    }
+    synchronized (this) {
+      if (bitmaps.contains(bitmap)) {
+        return;
+      }
+      bitmaps.addLast(bitmap);
+      sizeBytes += getByteCount(bitmap);
+      while (sizeBytes > maxSizeBytes && !bitmaps.isEmpty()) {
+        Bitmap evicted = bitmaps.removeFirst();
+        sizeBytes -= getByteCount(evicted);
+        evictionCount++;
+      }
+    }
+  }
+
+  /**
+   * Drop all pooled Bitmaps.
+   */
+  public synchronized void clear() {
+    bitmaps.clear();
+    sizeBytes = 0;
+  }
+
+  /**
+   * Summary of how often Bitmaps were reused, for logging.
+   *
+   * @return the hit and miss counts, the bytes allocated for misses and the pool size as a String
+   */
+  @NonNull
+  public synchronized String getStats() {
+    return String.format(Locale.US, "reused=%1$d, allocated=%2$d (%3$d bytes), evicted=%4$d, pooled=%5$d (%6$d bytes)",
+      hitCount, missCount, allocatedBytes, evictionCount, bitmaps.size(), sizeBytes);
+  }
+
+  @Nullable
+  private synchronized Bitmap take(int width, int height, Bitmap.Config config, boolean canReconfigure) {
+    long requiredBytes = (long) width * height * getBytesPerPixel(config);
+    Bitmap reusable = null;
+    // Search from the most recently pooled Bitmap, an exact match needs no reconfiguring
+    Iterator<Bitmap> iterator = bitmaps.descendingIterator();
+    while (iterator.hasNext()) {
+      Bitmap bitmap = iterator.next();
+      if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+        reusable = bitmap;
+        break;
+      }
+      if (canReconfigure && reusable == null && getByteCount(bitmap) >= requiredBytes) {
+        reusable = bitmap;
+      }
+    }
+    if (reusable == null) {
+      missCount++;
+      allocatedBytes += requiredBytes;
+      return null;
+    }
+    bitmaps.remove(reusable);
+    sizeBytes -= getByteCount(reusable);
+    hitCount++;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+      && (reusable.getWidth() != width || reusable.getHeight() != height || reusable.getConfig() != config)) {
+      reusable.reconfigure(width, height, config);
+    }
+    return reusable;
+  }
+
+  private static long getByteCount(Bitmap bitmap) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+      return bitmap.getAllocationByteCount();
+    }
+    return (long) bitmap.getRowBytes() * bitmap.getHeight();
+  }
+
+  private static int getBytesPerPixel(Bitmap.Config config) {
+    switch (config) {
+      case ALPHA_8:
+        return 1;
+      case RGB_565:
+      case ARGB_4444:
+        return 2;
+      default:
+        return 4;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+
+/**
+ * Tells a listener that the camera changed while it moves, at most once every interval, and once
+ * more when it stops. For examples that fill a source with what's around the camera, which would
+ * otherwise only refresh on camera idle and show stale data for the whole of a pan or a fling.
+ * <p>
+ * The first move is passed on in the next frame, later ones every interval from the
+ * {@link FrameScheduler}, so the refresh lines up with frames and pauses with the owner. The frame
+ * callback is cancelled once a run finds the camera hasn't moved, so a still map isn't woken up.
+ * </p>
+ */
+public class CameraMoveThrottle implements MapboxMap.OnCameraMoveListener, MapboxMap.OnCameraIdleListener,
+  FrameScheduler.Callback {
+
+  /**
+   * Told that the camera changed.
+   */
+  public interface OnCameraChangeListener {
+    @MainThread
+    void onCameraChange();
+  }
+
+  private final MapboxMap mapboxMap;
+  private final LifecycleOwner owner;
+  private final long intervalMillis;
+  private final OnCameraChangeListener listener;
+  private FrameScheduler.Registration registration;
+  private boolean moved;
+
+  /**
+   * @param mapboxMap      the map whose camera to follow
+   * @param owner          the Activity the frame callback is bound to
+   * @param intervalMillis the least time between two calls while the camera moves
+   * @param listener       the listener to tell
+   */
+  public CameraMoveThrottle(@NonNull MapboxMap mapboxMap, @NonNull LifecycleOwner owner, long intervalMillis,
+                            @NonNull OnCameraChangeListener listener) {
+    this.mapboxMap = mapboxMap;
+    this.owner = owner;
+    this.intervalMillis = intervalMillis;
+    this.listener = listener;
+  }
+
+  /**
+   * Start following the camera.
+   */
+  @MainThread
+  public void start() {
+    mapboxMap.addOnCameraMoveListener(this);
+    mapboxMap.addOnCameraIdleListener(this);
+  }
+
+  /**
+   * Stop following the camera. Call it when the Activity is destroyed.
+   */
+  @MainThread
+  public void stop() {
+    mapboxMap.removeOnCameraMoveListener(this);
+    mapboxMap.removeOnCameraIdleListener(this);
+    cancelFrameCallback();
+  }
+
+  @Override
+  public void onCameraMove() {
+    moved = true;
+    if (registration == null || registration.isCancelled()) {
+      registration = FrameScheduler.getInstance().schedule(owner, intervalMillis, this);
+    }
+  }
+
+  @Override
+  public void onCameraIdle() {
+    cancelFrameCallback();
+    listener.onCameraChange();
+  }
+
+  @Override
+  public void onFrame(long frameTimeNanos, long budgetNanos) {
+    if (!moved) {
+      cancelFrameCallback();
+      return;
+    }
+    moved = false;
+    listener.onCameraChange();
+  }
+
+  private void cancelFrameCallback() {
+    moved = false;
+    if (registration != null) {
+      registration.cancel();
+      registration = null;
+    }
+  }
+}
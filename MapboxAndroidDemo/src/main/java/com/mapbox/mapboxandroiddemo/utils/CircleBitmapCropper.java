@@ -0,0 +1,68 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.support.annotation.NonNull;
+
+/**
+ * Crops images to a circle of a fixed size without allocating anything per image.
+ * <p>
+ * The anti-aliased circle is drawn once into an ALPHA_8 mask. Each crop stamps the mask into the
+ * output Bitmap and draws the source, scaled to fill the circle and centred, over it in SRC_IN mode.
+ * The Canvas, Paints and Matrix are reused, so a cropper isn't thread safe: give each thread its own.
+ * </p>
+ */
+public class CircleBitmapCropper {
+
+  private final int size;
+  private final Bitmap mask;
+  private final Canvas canvas = new Canvas();
+  private final Paint maskPaint = new Paint();
+  private final Paint sourcePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+  private final Matrix matrix = new Matrix();
+
+  /**
+   * @param size the width and height of the cropped images
+   */
+  public CircleBitmapCropper(int size) {
+    this.size = size;
+    mask = Bitmap.createBitmap(size, size, Bitmap.Config.ALPHA_8);
+    Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    canvas.setBitmap(mask);
+    canvas.drawCircle(size / 2f, size / 2f, size / 2f, circlePaint);
+    canvas.setBitmap(null);
+
+    maskPaint.setColor(Color.BLACK);
+    sourcePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Crop an image to a circle. The source isn't changed and can be reused once this returns.
+   *
+   * @param source the image to crop, of any size
+   * @param output a transparent, mutable Bitmap of {@link #getSize()} by {@link #getSize()} pixels
+   *               with an alpha channel, for example from {@link BitmapPool#get(int, int, Bitmap.Config)}
+   * @return the output Bitmap
+   */
+  @NonNull
+  public Bitmap crop(@NonNull Bitmap source, @NonNull Bitmap output) {
+    float scale = (float) size / Math.min(source.getWidth(), source.getHeight());
+    matrix.setScale(scale, scale);
+    matrix.postTranslate((size - source.getWidth() * scale) / 2f, (size - source.getHeight() * scale) / 2f);
+
+    canvas.setBitmap(output);
+    canvas.drawBitmap(mask, 0, 0, maskPaint);
+    canvas.drawBitmap(source, matrix, sourcePaint);
+    canvas.setBitmap(null);
+    return output;
+  }
+}
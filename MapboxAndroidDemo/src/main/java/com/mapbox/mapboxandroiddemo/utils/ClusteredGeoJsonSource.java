@@ -0,0 +1,196 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.content.Context;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import timber.log.Timber;
+
+/**
+ * Fills a plain GeoJsonSource with clusters from a {@link PointClusterIndex}, for examples which
+ * would otherwise set the cluster option on the source.
+ * <p>
+ * The points are downloaded and clustered on a background task. After that, the source gets the
+ * clusters for the visible part of the map and half a screen around it. They're looked up again while
+ * the camera moves, through a {@link CameraMoveThrottle}, once the zoom level changes or the visible
+ * part leaves the area the source has. The index stays available for cluster membership and expansion
+ * zooms.
+ * </p>
+ */
+public class ClusteredGeoJsonSource implements CameraMoveThrottle.OnCameraChangeListener {
+
+  /**
+   * Called once the points are clustered.
+   */
+  public interface OnClustersLoadedListener {
+    void onClustersLoaded(@NonNull PointClusterIndex clusterIndex);
+  }
+
+  // How often the clusters are checked against the camera while it moves
+  private static final long CAMERA_REFRESH_INTERVAL_MILLIS = 100;
+
+  private final MapboxMap mapboxMap;
+  private final GeoJsonSource source;
+  private PointClusterIndex clusterIndex;
+  private CameraMoveThrottle cameraMoveThrottle;
+  // The zoom level and the west, south, east and north of the clusters the source has
+  private int clusterZoom = -1;
+  private double[] clusterBounds;
+
+  /**
+   * @param mapboxMap the map whose camera decides which clusters are shown
+   * @param source    the source to fill, added to the map's Style without the cluster option
+   */
+  public ClusteredGeoJsonSource(@NonNull MapboxMap mapboxMap, @NonNull GeoJsonSource source) {
+    this.mapboxMap = mapboxMap;
+    this.source = source;
+  }
+
+  /**
+   * Download a GeoJSON file of points and cluster it on a background task bound to the owner's
+   * lifecycle. The source is filled as soon as the points are clustered.
+   *
+   * @param owner    the Activity the background work is bound to
+   * @param context  any context from this app
+   * @param url      the GeoJSON file to download
+   * @param options  the clustering options
+   * @param listener optional listener told when the points are clustered
+   */
+  @MainThread
+  public void load(@NonNull LifecycleOwner owner, @NonNull Context context, @NonNull String url,
+                   @NonNull PointClusterIndex.Options options, @Nullable OnClustersLoadedListener listener) {
+    BackgroundTaskExecutor.getInstance().execute(owner,
+      new LoadTask(this, owner, HttpStack.getInstance(context).getClient(), url, options, listener));
+  }
+
+  /**
+   * @return the index, or null until the points are clustered
+   */
+  @Nullable
+  public PointClusterIndex getClusterIndex() {
+    return clusterIndex;
+  }
+
+  /**
+   * Stop following the camera. Call it when the Activity is destroyed.
+   */
+  public void destroy() {
+    if (cameraMoveThrottle != null) {
+      cameraMoveThrottle.stop();
+    }
+  }
+
+  @Override
+  public void onCameraChange() {
+    if (clusterIndex == null || mapboxMap.getStyle() == null) {
+      return;
+    }
+    double zoom = mapboxMap.getCameraPosition().zoom;
+    LatLngBounds bounds = mapboxMap.getProjection().getVisibleRegion().latLngBounds;
+    // The index has one level of clusters per zoom level
+    int levelZoom = (int) Math.floor(zoom);
+    if (levelZoom == clusterZoom && clusterBounds != null
+      && bounds.getLonWest() >= clusterBounds[0] && bounds.getLatSouth() >= clusterBounds[1]
+      && bounds.getLonEast() <= clusterBounds[2] && bounds.getLatNorth() <= clusterBounds[3]) {
+      return;
+    }
+    double longitudePadding = bounds.getLongitudeSpan() / 2;
+    double latitudePadding = bounds.getLatitudeSpan() / 2;
+    clusterZoom = levelZoom;
+    clusterBounds = new double[] {
+      bounds.getLonWest() - longitudePadding, bounds.getLatSouth() - latitudePadding,
+      bounds.getLonEast() + longitudePadding, bounds.getLatNorth() + latitudePadding
+    };
+    List<Feature> clusters = clusterIndex.getClusters(
+      clusterBounds[0], clusterBounds[1], clusterBounds[2], clusterBounds[3], zoom);
+    source.setGeoJson(FeatureCollection.fromFeatures(clusters));
+  }
+
+  @MainThread
+  private void onClustersLoaded(@NonNull LifecycleOwner owner, @NonNull PointClusterIndex clusterIndex) {
+    this.clusterIndex = clusterIndex;
+    cameraMoveThrottle = new CameraMoveThrottle(mapboxMap, owner, CAMERA_REFRESH_INTERVAL_MILLIS, this);
+    cameraMoveThrottle.start();
+    onCameraChange();
+  }
+
+  /**
+   * Downloads the points and clusters them.
+   */
+  private static class LoadTask extends BackgroundTask<PointClusterIndex> {
+
+    private final ClusteredGeoJsonSource clusteredSource;
+    private final LifecycleOwner owner;
+    private final OkHttpClient client;
+    private final String url;
+    private final PointClusterIndex.Options options;
+    private final OnClustersLoadedListener listener;
+
+    LoadTask(ClusteredGeoJsonSource clusteredSource, LifecycleOwner owner, OkHttpClient client, String url,
+             PointClusterIndex.Options options, OnClustersLoadedListener listener) {
+      super(Pool.IO);
+      this.clusteredSource = clusteredSource;
+      this.owner = owner;
+      this.client = client;
+      this.url = url;
+      this.options = options;
+      this.listener = listener;
+    }
+
+    @Override
+    protected PointClusterIndex doInBackground() {
+      try {
+        List<Feature> points = loadPoints().features();
+        if (points == null || isCancelled()) {
+          return null;
+        }
+        long startMillis = System.currentTimeMillis();
+        PointClusterIndex clusterIndex = new PointClusterIndex(points, options);
+        Timber.d("Clustered %1$d points in %2$d ms", clusterIndex.getPointCount(),
+          System.currentTimeMillis() - startMillis);
+        return clusterIndex;
+      } catch (IOException exception) {
+        Timber.e(exception, "Couldn't load the points from %s", url);
+        return null;
+      }
+    }
+
+    private FeatureCollection loadPoints() throws IOException {
+      Request request = new Request.Builder().url(url).build();
+      Response response = client.newCall(request).execute();
+      try {
+        if (!response.isSuccessful()) {
+          throw new IOException("Unexpected response " + response.code() + " for " + url);
+        }
+        return GeoJsonAssetLoader.parse(response.body().byteStream(), null);
+      } finally {
+        response.close();
+      }
+    }
+
+    @Override
+    protected void onPostExecute(@Nullable PointClusterIndex clusterIndex) {
+      if (clusterIndex == null) {
+        return;
+      }
+      clusteredSource.onClustersLoaded(owner, clusterIndex);
+      if (listener != null) {
+        listener.onClustersLoaded(clusterIndex);
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fetches a batch of URLs side by side on an Executor, like one of the {@link BackgroundTaskExecutor}
+ * pools, and hands back each result as soon as it's ready, so that one slow response doesn't hold up
+ * the rest.
+ * <p>
+ * Each response body is read by the {@link BodyReader} it was submitted with, on the thread which
+ * fetched it. Requests that fail or answer with an error status complete with an IOException. A
+ * fetcher is used from one thread, which submits the requests and takes their results.
+ * </p>
+ *
+ * @param <T> the type the response bodies are read into
+ */
+public class ConcurrentFetcher<T> {
+
+  /**
+   * Reads one response body, on the thread which fetched it.
+   *
+   * @param <T> the type the body is read into
+   */
+  public interface BodyReader<T> {
+    T read(@NonNull InputStream body) throws IOException;
+  }
+
+  private final OkHttpClient okHttpClient;
+  private final CompletionService<T> completionService;
+  private final List<Future<T>> futures = new ArrayList<>();
+
+  /**
+   * @param okHttpClient the client to make the requests with
+   * @param executor     the Executor to make the requests and read the bodies on
+   */
+  public ConcurrentFetcher(@NonNull OkHttpClient okHttpClient, @NonNull Executor executor) {
+    this.okHttpClient = okHttpClient;
+    this.completionService = new ExecutorCompletionService<>(executor);
+  }
+
+  /**
+   * Queue a request.
+   *
+   * @param url    the URL to fetch
+   * @param reader the reader of the response body
+   * @return the Future of the body's result
+   */
+  @NonNull
+  public Future<T> submit(@NonNull final String url, @NonNull final BodyReader<T> reader) {
+    Future<T> future = completionService.submit(new Callable<T>() {
+      @Override
+      public T call() throws IOException {
+        Response response = okHttpClient.newCall(new Request.Builder().url(url).build()).execute();
+        try {
+          if (!response.isSuccessful()) {
+            throw new IOException("Unexpected response " + response.code() + " for " + url);
+          }
+          return reader.read(response.body().byteStream());
+        } finally {
+          response.close();
+        }
+      }
+    });
+    futures.add(future);
+    return future;
+  }
+
+  /**
+   * Wait for the next request to finish. Call it once for each submitted request.
+   *
+   * @return the Future of the request which finished, whose get() returns straight away
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  @WorkerThread
+  @NonNull
+  public Future<T> take() throws InterruptedException {
+    return completionService.take();
+  }
+
+  /**
+   * Cancel the requests which haven't finished, interrupting those in flight. Those still queued
+   * won't be made.
+   */
+  public void cancel() {
+    for (Future<T> future : futures) {
+      future.cancel(true);
+    }
+  }
+}
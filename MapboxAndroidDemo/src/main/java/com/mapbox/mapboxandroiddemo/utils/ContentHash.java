@@ -0,0 +1,37 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes a String describing some content into a key for caching what was made from it, so an
+ * entry never goes stale: different content gives a different key.
+ */
+public final class ContentHash {
+
+  private ContentHash() {
+  }
+
+  /**
+   * @param content a String describing everything the cached value was made from
+   * @return the hex SHA-1 of the content
+   */
+  @NonNull
+  public static String sha1Hex(@NonNull String content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes("UTF-8"));
+      StringBuilder builder = new StringBuilder(digest.length * 2);
+      for (byte value : digest) {
+        builder.append(Character.forDigit((value >> 4) & 0xF, 16));
+        builder.append(Character.forDigit(value & 0xF, 16));
+      }
+      return builder.toString();
+    } catch (NoSuchAlgorithmException | IOException exception) {
+      // Every Android device has SHA-1 and UTF-8
+      throw new IllegalStateException(exception);
+    }
+  }
+}
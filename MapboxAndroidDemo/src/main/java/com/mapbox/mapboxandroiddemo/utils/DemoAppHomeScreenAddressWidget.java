@@ -17,18 +17,13 @@ import com.mapbox.android.core.location.LocationEngineRequest;
 import com.mapbox.android.core.location.LocationEngineResult;
 import com.mapbox.android.core.permissions.PermissionsListener;
 import com.mapbox.android.core.permissions.PermissionsManager;
-import com.mapbox.api.geocoding.v5.MapboxGeocoding;
 import com.mapbox.api.geocoding.v5.models.CarmenFeature;
-import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
 import com.mapbox.geojson.Point;
 import com.mapbox.mapboxandroiddemo.R;
 
 import java.lang.ref.WeakReference;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 import timber.log.Timber;
 
 import static android.os.Looper.getMainLooper;
@@ -44,6 +39,8 @@ public class DemoAppHomeScreenAddressWidget extends AppWidgetProvider implements
   private LocationChangeListeningActivityLocationCallback callback;
   private static final long DEFAULT_INTERVAL_IN_MILLISECONDS = 1000L;
   private static final long DEFAULT_MAX_WAIT_TIME = DEFAULT_INTERVAL_IN_MILLISECONDS * 5;
+  // Geohash cells of about 150 by 150 meters, a block or so
+  private static final int REVERSE_GEOCODE_PRECISION = 7;
 
   @Override
   public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
@@ -156,18 +153,10 @@ public class DemoAppHomeScreenAddressWidget extends AppWidgetProvider implements
         if (lastKnownLocation == null) {
           return;
         } else {
-          // Build a Mapbox reverse geocode request
-          MapboxGeocoding reverseGeocode = MapboxGeocoding.builder()
-            .accessToken(context.getString(R.string.access_token))
-            .query(Point.fromLngLat(lastKnownLocation.getLongitude(), lastKnownLocation.getLatitude()))
-            .build();
-
-          reverseGeocode.enqueueCall(new Callback<GeocodingResponse>() {
+          ReverseGeocodeCache.Callback callback = new ReverseGeocodeCache.Callback() {
             @Override
-            public void onResponse(Call<GeocodingResponse> call, Response<GeocodingResponse> response) {
+            public void onResult(@NonNull List<CarmenFeature> carmenFeatureList) {
               try {
-                List<CarmenFeature> carmenFeatureList = response.body().features();
-
                 String textForWidgetTextView;
 
                 // Check that the reverse geocoding response has a place name to display
@@ -203,12 +192,18 @@ public class DemoAppHomeScreenAddressWidget extends AppWidgetProvider implements
             }
 
             @Override
-            public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
+            public void onFailure(@NonNull Throwable throwable) {
               Timber.d("onFailure: geocoding failure");
               Toast.makeText(context, R.string.reverse_geocode_failure, Toast.LENGTH_LONG).show();
               throwable.printStackTrace();
             }
-          });
+          };
+
+          // Reverse geocode through the app's cache, so that a device which hasn't moved out of the
+          // geohash cell since the last update doesn't make a request
+          ReverseGeocodeCache.getInstance(context).reverseGeocode(
+            Point.fromLngLat(lastKnownLocation.getLongitude(), lastKnownLocation.getLatitude()),
+            REVERSE_GEOCODE_PRECISION, null, callback);
         }
       }
     }
@@ -0,0 +1,292 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+import com.mapbox.mapboxandroiddemo.MapboxApplication;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Application-wide cache of parsed asset FeatureCollections, keyed by asset file name, so that
+ * reopening an example doesn't parse the same GeoJSON again.
+ * <p>
+ * Entries are weighted by an estimate of the heap the parsed collection takes, from its number of
+ * coordinates, lists, features and properties, and evicted least recently used first once the total
+ * goes over the limit. Collections from {@link GeoJsonBinaryAssetLoader} are weighted as if every
+ * feature were decoded, without decoding them. Cached collections are shared between Activities, so
+ * only use this for data that examples don't modify.
+ * </p>
+ */
+public class FeatureCollectionCache {
+
+  private final LruCache<String, Entry> cache;
+
+  /**
+   * @param maxSizeBytes the estimated heap size of the collections to keep
+   */
+  public FeatureCollectionCache(int maxSizeBytes) {
+    cache = new LruCache<String, Entry>(maxSizeBytes) {
+      @Override
+      protected int sizeOf(String fileName, Entry entry) {
+        return entry.sizeBytes;
+      }
+    };
+  }
+
+  /**
+   * Get the cache held by the application.
+   *
+   * @param context any context from this app
+   * @return the application's FeatureCollectionCache
+   */
+  @NonNull
+  public static FeatureCollectionCache getInstance(@NonNull Context context) {
+    return ((MapboxApplication) context.getApplicationContext()).getFeatureCollectionCache();
+  }
+
+  /**
+   * Return the application's cached FeatureCollection for an asset, loading it on a miss.
+   * A miss parses the asset on the calling thread.
+   *
+   * @param context  any context from this app
+   * @param fileName the name of the GeoJSON file in the assets folder
+   * @return the FeatureCollection, or null if the asset couldn't be read
+   */
+  @Nullable
+  public static FeatureCollection load(@NonNull Context context, @NonNull String fileName) {
+    return getInstance(context).get(context, fileName);
+  }
+
+  /**
+   * Return the cached FeatureCollection for an asset, loading it with
+   * {@link GeoJsonBinaryAssetLoader} on a miss.
+   *
+   * @param context  the context used to open the asset on a miss
+   * @param fileName the name of the GeoJSON file in the assets folder
+   * @return the FeatureCollection, or null if the asset couldn't be read
+   */
+  @Nullable
+  public FeatureCollection get(@NonNull Context context, @NonNull String fileName) {
+    Entry entry = cache.get(fileName);
+    if (entry != null) {
+      Timber.d("FeatureCollection cache hit for %1$s, %2$s", fileName, getStats());
+      return entry.featureCollection;
+    }
+
+    FeatureCollection featureCollection = GeoJsonBinaryAssetLoader.load(context, fileName);
+    if (featureCollection != null) {
+      cache.put(fileName, new Entry(featureCollection,
+        (int) Math.min(Integer.MAX_VALUE, estimateSizeBytes(featureCollection))));
+    }
+    Timber.d("FeatureCollection cache miss for %1$s, %2$s", fileName, getStats());
+    return featureCollection;
+  }
+
+  /**
+   * Release cached collections in response to
+   * {@link android.app.Application#onTrimMemory(int)}.
+   *
+   * @param level the trim level passed to onTrimMemory
+   */
+  public void onTrimMemory(int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+      || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+      cache.evictAll();
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      cache.trimToSize(cache.maxSize() / 2);
+    }
+    Timber.d("FeatureCollection cache trimmed for level %1$d, %2$s", level, getStats());
+  }
+
+  /**
+   * Drop every cached collection.
+   */
+  public void clear() {
+    cache.evictAll();
+  }
+
+  public int hitCount() {
+    return cache.hitCount();
+  }
+
+  public int missCount() {
+    return cache.missCount();
+  }
+
+  public int evictionCount() {
+    return cache.evictionCount();
+  }
+
+  /**
+   * Summary of the cache counters, for logging.
+   *
+   * @return the size, hit, miss and eviction counts as a String
+   */
+  @NonNull
+  public String getStats() {
+    return String.format(Locale.US, "size=%1$d/%2$d bytes, hits=%3$d, misses=%4$d, evictions=%5$d",
+      cache.size(), cache.maxSize(), cache.hitCount(), cache.missCount(), cache.evictionCount());
+  }
+
+  /**
+   * Estimate how much heap a parsed FeatureCollection takes.
+   *
+   * @param featureCollection the collection
+   * @return the estimated size in bytes
+   */
+  static long estimateSizeBytes(@NonNull FeatureCollection featureCollection) {
+    List<Feature> features = featureCollection.features();
+    if (features == null) {
+      return SizeEstimate.LIST_BYTES;
+    }
+    SizeEstimate estimate = new SizeEstimate();
+    // Walking a binary collection would decode it, so it counts its contents from the file instead
+    if (!GeoJsonBinaryAssetLoader.estimateSize(features, estimate)) {
+      estimate.addList(features.size());
+      for (Feature feature : features) {
+        estimate.features++;
+        estimate.addString(feature.id());
+        estimate.addGeometry(feature.geometry());
+        estimate.addProperties(feature.properties());
+      }
+    }
+    return estimate.getSizeBytes();
+  }
+
+  /**
+   * Counts of the objects a parsed collection is made of, turned into bytes with rough sizes of
+   * those objects on ART, which has 4 byte references.
+   */
+  static class SizeEstimate {
+
+    // A Point, the list of its coordinates and the two Doubles in it
+    static final int POINT_BYTES = 88;
+    // An ArrayList and its array, without the references in it
+    static final int LIST_BYTES = 40;
+    static final int REFERENCE_BYTES = 4;
+    // A Feature, its JsonObject and the map in that
+    static final int FEATURE_BYTES = 80;
+    // A map entry, and the JsonPrimitive and boxed value it holds
+    static final int PROPERTY_BYTES = 72;
+    // A String and its array, without the characters
+    static final int STRING_BYTES = 40;
+    static final int CHAR_BYTES = 2;
+    // Nested objects and arrays, by the length of their JSON, as a tree of maps, entries and Strings
+    static final int JSON_CHAR_BYTES = 6;
+
+    long points;
+    long lists;
+    long listElements;
+    long features;
+    long properties;
+    long strings;
+    long chars;
+    long jsonChars;
+
+    void addList(int size) {
+      lists++;
+      listElements += size;
+    }
+
+    void addString(@Nullable String value) {
+      if (value != null) {
+        strings++;
+        chars += value.length();
+      }
+    }
+
+    void addPoints(List<Point> points) {
+      addList(points.size());
+      this.points += points.size();
+    }
+
+    void addGeometry(@Nullable Geometry geometry) {
+      if (geometry instanceof Point) {
+        points++;
+      } else if (geometry instanceof LineString) {
+        addPoints(((LineString) geometry).coordinates());
+      } else if (geometry instanceof MultiPoint) {
+        addPoints(((MultiPoint) geometry).coordinates());
+      } else if (geometry instanceof Polygon) {
+        addRings(((Polygon) geometry).coordinates());
+      } else if (geometry instanceof MultiLineString) {
+        addRings(((MultiLineString) geometry).coordinates());
+      } else if (geometry instanceof MultiPolygon) {
+        List<List<List<Point>>> polygons = ((MultiPolygon) geometry).coordinates();
+        addList(polygons.size());
+        for (List<List<Point>> polygon : polygons) {
+          addRings(polygon);
+        }
+      } else if (geometry instanceof GeometryCollection) {
+        List<Geometry> geometries = ((GeometryCollection) geometry).geometries();
+        addList(geometries.size());
+        for (Geometry member : geometries) {
+          addGeometry(member);
+        }
+      }
+    }
+
+    void addProperties(@Nullable JsonObject jsonObject) {
+      if (jsonObject == null) {
+        return;
+      }
+      for (Map.Entry<String, JsonElement> property : jsonObject.entrySet()) {
+        properties++;
+        addString(property.getKey());
+        JsonElement value = property.getValue();
+        if (value.isJsonPrimitive() && ((JsonPrimitive) value).isString()) {
+          addString(value.getAsString());
+        } else if (!value.isJsonPrimitive() && !value.isJsonNull()) {
+          jsonChars += value.toString().length();
+        }
+      }
+    }
+
+    long getSizeBytes() {
+      return points * POINT_BYTES
+        + lists * LIST_BYTES + listElements * REFERENCE_BYTES
+        + features * FEATURE_BYTES
+        + properties * PROPERTY_BYTES
+        + strings * STRING_BYTES + chars * CHAR_BYTES
+        + jsonChars * JSON_CHAR_BYTES;
+    }
+
+    private void addRings(List<List<Point>> rings) {
+      addList(rings.size());
+      for (List<Point> ring : rings) {
+        addPoints(ring);
+      }
+    }
+  }
+
+  private static class Entry {
+    private final FeatureCollection featureCollection;
+    private final int sizeBytes;
+
+    Entry(FeatureCollection featureCollection, int sizeBytes) {
+      this.featureCollection = featureCollection;
+      this.sizeBytes = Math.max(1, sizeBytes);
+    }
+  }
+}
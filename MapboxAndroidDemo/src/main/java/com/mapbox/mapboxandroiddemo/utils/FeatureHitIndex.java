@@ -0,0 +1,281 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the Feature under a tap from the Features an example already holds, rather than asking the
+ * map with queryRenderedFeatures, which waits for the render thread.
+ * <p>
+ * The bounding boxes of the Features are kept in a {@link PackedHilbertRTree} in Web Mercator
+ * coordinates. A tap searches the tree for boxes within a tolerance in dp at the zoom of the map,
+ * and then measures the distance to the geometry of each Feature found: to points, to the segments
+ * of lines and to the outlines of polygons, with taps inside a polygon at no distance. Distances are
+ * measured on the flat map, so a tilted map is treated as if it weren't tilted.
+ * </p>
+ * <p>
+ * The index doesn't know how the Features are styled, so it finds Features that are filtered out or
+ * hidden by a layer, and doesn't know the size of icons. Features that cross the antimeridian
+ * aren't supported.
+ * </p>
+ */
+public class FeatureHitIndex {
+
+  private static final int NOT_FOUND = -1;
+  // The tile size of the map in dp, which zoom levels are measured in
+  private static final int TILE_SIZE = 512;
+
+  private final List<Feature> features;
+  private final int[] featureIndices;
+  // Null when there are no Features to find
+  private final PackedHilbertRTree tree;
+  private final KdPointIndex.IntList candidates = new KdPointIndex.IntList();
+  private final double[] bounds = new double[4];
+
+  /**
+   * Index Features for hit testing. Features without a geometry are left out. The list is kept, the
+   * Features in it shouldn't be moved or replaced while the index is used.
+   *
+   * @param features the Features to index
+   */
+  public FeatureHitIndex(@NonNull List<Feature> features) {
+    this.features = features;
+    int count = 0;
+    int[] indices = new int[features.size()];
+    for (int i = 0; i < features.size(); i++) {
+      if (features.get(i).geometry() != null) {
+        indices[count++] = i;
+      }
+    }
+    featureIndices = Arrays.copyOf(indices, count);
+    if (count == 0) {
+      tree = null;
+      return;
+    }
+    tree = new PackedHilbertRTree(count);
+    for (int i = 0; i < count; i++) {
+      resetBounds(bounds);
+      addToBounds(features.get(indices[i]).geometry(), bounds);
+      // Web Mercator y grows to the south
+      tree.add(WebMercator.longitudeToX(bounds[0]), WebMercator.latitudeToY(bounds[3]),
+        WebMercator.longitudeToX(bounds[2]), WebMercator.latitudeToY(bounds[1]));
+    }
+    tree.finish();
+  }
+
+  /**
+   * Find the Feature closest to a point on the map within a tolerance.
+   *
+   * @param longitude         the longitude of the point, for example from Projection#fromScreenLocation()
+   * @param latitude          the latitude of the point
+   * @param zoom              the zoom of the map
+   * @param toleranceDp       how far from a Feature the point can be, in dp like the map's zoom levels,
+   *                          not in pixels
+   * @return the index of the Feature in the list it was indexed from, or -1 if there's none close enough
+   */
+  public int hitTest(double longitude, double latitude, double zoom, float toleranceDp) {
+    if (tree == null) {
+      return NOT_FOUND;
+    }
+    double worldSize = TILE_SIZE * Math.pow(2, zoom);
+    double tolerance = toleranceDp / worldSize;
+    // Taps on the copies of the world next to the main one
+    double x = WebMercator.longitudeToX(((longitude + 180) % 360 + 360) % 360 - 180);
+    double y = WebMercator.latitudeToY(latitude);
+
+    candidates.clear();
+    tree.search(x - tolerance, y - tolerance, x + tolerance, y + tolerance, candidates);
+
+    int closest = NOT_FOUND;
+    double closestDistance = tolerance * tolerance;
+    for (int i = 0; i < candidates.size(); i++) {
+      int featureIndex = featureIndices[candidates.get(i)];
+      double distance = squaredDistance(features.get(featureIndex).geometry(), x, y);
+      // Prefer the Feature that comes first among ones at the same distance, like one a tap is inside
+      if (distance < closestDistance
+        || (distance == closestDistance && (closest == NOT_FOUND || featureIndex < closest))) {
+        closest = featureIndex;
+        closestDistance = distance;
+      }
+    }
+    return closest;
+  }
+
+  /**
+   * @param index the index of a Feature, as returned by {@link #hitTest(double, double, double, float)}
+   * @return the Feature from the list it was indexed from
+   */
+  @NonNull
+  public Feature getFeature(int index) {
+    return features.get(index);
+  }
+
+  public int getFeatureCount() {
+    return featureIndices.length;
+  }
+
+  /**
+   * Empty bounds for {@link #addToBounds(Geometry, double[])} to grow.
+   *
+   * @param bounds the west, south, east and north edges in degrees
+   */
+  static void resetBounds(@NonNull double[] bounds) {
+    bounds[0] = Double.POSITIVE_INFINITY;
+    bounds[1] = Double.POSITIVE_INFINITY;
+    bounds[2] = Double.NEGATIVE_INFINITY;
+    bounds[3] = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Grow bounds to cover a geometry.
+   *
+   * @param geometry the geometry, or null to leave the bounds as they are
+   * @param bounds   the west, south, east and north edges in degrees
+   */
+  static void addToBounds(@Nullable Geometry geometry, @NonNull double[] bounds) {
+    if (geometry instanceof Point) {
+      addToBounds((Point) geometry, bounds);
+    } else if (geometry instanceof MultiPoint) {
+      addToBounds(((MultiPoint) geometry).coordinates(), bounds);
+    } else if (geometry instanceof LineString) {
+      addToBounds(((LineString) geometry).coordinates(), bounds);
+    } else if (geometry instanceof MultiLineString) {
+      for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+        addToBounds(line, bounds);
+      }
+    } else if (geometry instanceof Polygon) {
+      // The outer ring holds the holes
+      addToBounds(((Polygon) geometry).coordinates().get(0), bounds);
+    } else if (geometry instanceof MultiPolygon) {
+      for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+        addToBounds(polygon.get(0), bounds);
+      }
+    } else if (geometry instanceof GeometryCollection) {
+      for (Geometry child : ((GeometryCollection) geometry).geometries()) {
+        addToBounds(child, bounds);
+      }
+    }
+  }
+
+  private static void addToBounds(List<Point> points, double[] bounds) {
+    for (Point point : points) {
+      addToBounds(point, bounds);
+    }
+  }
+
+  private static void addToBounds(Point point, double[] bounds) {
+    bounds[0] = Math.min(bounds[0], point.longitude());
+    bounds[1] = Math.min(bounds[1], point.latitude());
+    bounds[2] = Math.max(bounds[2], point.longitude());
+    bounds[3] = Math.max(bounds[3], point.latitude());
+  }
+
+  /**
+   * The squared distance from a point to a geometry, in Web Mercator coordinates.
+   */
+  private static double squaredDistance(Geometry geometry, double x, double y) {
+    double distance = Double.POSITIVE_INFINITY;
+    if (geometry instanceof Point) {
+      distance = squaredDistance((Point) geometry, x, y);
+    } else if (geometry instanceof MultiPoint) {
+      for (Point point : ((MultiPoint) geometry).coordinates()) {
+        distance = Math.min(distance, squaredDistance(point, x, y));
+      }
+    } else if (geometry instanceof LineString) {
+      distance = squaredLineDistance(((LineString) geometry).coordinates(), x, y);
+    } else if (geometry instanceof MultiLineString) {
+      for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+        distance = Math.min(distance, squaredLineDistance(line, x, y));
+      }
+    } else if (geometry instanceof Polygon) {
+      distance = squaredPolygonDistance(((Polygon) geometry).coordinates(), x, y);
+    } else if (geometry instanceof MultiPolygon) {
+      for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+        distance = Math.min(distance, squaredPolygonDistance(polygon, x, y));
+      }
+    } else if (geometry instanceof GeometryCollection) {
+      for (Geometry child : ((GeometryCollection) geometry).geometries()) {
+        distance = Math.min(distance, squaredDistance(child, x, y));
+      }
+    }
+    return distance;
+  }
+
+  private static double squaredDistance(Point point, double x, double y) {
+    double dx = WebMercator.longitudeToX(point.longitude()) - x;
+    double dy = WebMercator.latitudeToY(point.latitude()) - y;
+    return dx * dx + dy * dy;
+  }
+
+  private static double squaredLineDistance(List<Point> line, double x, double y) {
+    if (line.size() == 1) {
+      return squaredDistance(line.get(0), x, y);
+    }
+    double distance = Double.POSITIVE_INFINITY;
+    double previousX = 0;
+    double previousY = 0;
+    for (int i = 0; i < line.size(); i++) {
+      Point point = line.get(i);
+      double pointX = WebMercator.longitudeToX(point.longitude());
+      double pointY = WebMercator.latitudeToY(point.latitude());
+      if (i > 0) {
+        distance = Math.min(distance, squaredSegmentDistance(x, y, previousX, previousY, pointX, pointY));
+      }
+      previousX = pointX;
+      previousY = pointY;
+    }
+    return distance;
+  }
+
+  /**
+   * Zero inside the polygon, otherwise the distance to the closest ring, holes included.
+   */
+  private static double squaredPolygonDistance(List<List<Point>> rings, double x, double y) {
+    boolean inside = false;
+    double distance = Double.POSITIVE_INFINITY;
+    for (List<Point> ring : rings) {
+      double previousX = 0;
+      double previousY = 0;
+      for (int i = 0; i < ring.size(); i++) {
+        Point point = ring.get(i);
+        double pointX = WebMercator.longitudeToX(point.longitude());
+        double pointY = WebMercator.latitudeToY(point.latitude());
+        if (i > 0) {
+          // Even-odd rule, which holes fall out of
+          if ((pointY > y) != (previousY > y)
+            && x < (previousX - pointX) * (y - pointY) / (previousY - pointY) + pointX) {
+            inside = !inside;
+          }
+          distance = Math.min(distance, squaredSegmentDistance(x, y, previousX, previousY, pointX, pointY));
+        }
+        previousX = pointX;
+        previousY = pointY;
+      }
+    }
+    return inside ? 0 : distance;
+  }
+
+  private static double squaredSegmentDistance(double x, double y, double ax, double ay, double bx, double by) {
+    double dx = bx - ax;
+    double dy = by - ay;
+    double lengthSquared = dx * dx + dy * dy;
+    double fraction = lengthSquared > 0 ? ((x - ax) * dx + (y - ay) * dy) / lengthSquared : 0;
+    fraction = Math.max(0, Math.min(1, fraction));
+    double closestX = ax + fraction * dx - x;
+    double closestY = ay + fraction * dy - y;
+    return closestX * closestX + closestY * closestY;
+  }
+}
@@ -0,0 +1,330 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.annotation.TargetApi;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Shared, vsync aligned scheduler for the examples' animation and refresh loops, used instead of a
+ * Handler.postDelayed() loop per example.
+ * <p>
+ * Each callback asks to run every so many milliseconds and is run on the first frame at or after its
+ * due time, so its updates line up with the display rather than drifting against it. Callbacks which
+ * are due together run in the same frame and share a time budget: once a frame has used its budget,
+ * callbacks which are still due wait for the next frame. A callback that falls behind runs once
+ * rather than once per missed interval.
+ * </p>
+ * <p>
+ * Callbacks are bound to the lifecycle of the Activity that schedules them. They're paused in onPause,
+ * resumed in onResume and removed in onDestroy. The frames a callback ran late by are counted and
+ * logged when it's paused. Before Jelly Bean, which has no Choreographer, frames are emulated with a
+ * Handler.
+ * </p>
+ */
+public final class FrameScheduler {
+
+  /**
+   * Work run by the scheduler on the main thread.
+   */
+  public interface Callback {
+    /**
+     * @param frameTimeNanos the time the frame started rendering, in the {@link System#nanoTime()}
+     *                       time base. Use it rather than reading the clock to animate smoothly
+     * @param budgetNanos    the time left in this frame's budget. Callbacks that can split up their
+     *                       work should stop once it's used up and carry on in the next frame
+     */
+    void onFrame(long frameTimeNanos, long budgetNanos);
+  }
+
+  // Most devices refresh at 60 Hz
+  private static final long FRAME_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+  // Leave the rest of the frame to input, layout and the map
+  private static final long FRAME_BUDGET_NANOS = FRAME_INTERVAL_NANOS / 2;
+
+  private static FrameScheduler instance;
+
+  private final List<Registration> registrations = new ArrayList<>();
+  private final FrameSource frameSource;
+  // Copy of the registrations run in a frame, kept between frames so a frame doesn't allocate
+  private Registration[] snapshot = new Registration[8];
+  private long scheduledFrameTimeNanos = Long.MAX_VALUE;
+  private int frameCount;
+  private int overBudgetFrameCount;
+
+  private FrameScheduler() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      frameSource = new ChoreographerFrameSource(this);
+    } else {
+      frameSource = new HandlerFrameSource(this);
+    }
+  }
+
+  @MainThread
+  @NonNull
+  public static FrameScheduler getInstance() {
+    if (instance == null) {
+      instance = new FrameScheduler();
+    }
+    return instance;
+  }
+
+  /**
+   * Run a callback every interval while the owner is resumed. It first runs on the next frame once
+   * the owner is resumed.
+   *
+   * @param owner          the Activity or Fragment whose lifecycle the callback is bound to
+   * @param intervalMillis the time between runs. 0 runs the callback on every frame
+   * @param callback       the work to run
+   * @return the registration, to cancel the callback before the owner is destroyed
+   */
+  @MainThread
+  @NonNull
+  public Registration schedule(@NonNull LifecycleOwner owner, long intervalMillis, @NonNull Callback callback) {
+    Registration registration = new Registration(this, owner.getLifecycle(),
+      TimeUnit.MILLISECONDS.toNanos(intervalMillis), callback);
+    registrations.add(registration);
+    if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+      registration.cancel();
+    } else {
+      // The observer is brought up to the current state straight away, so this resumes the
+      // registration if the owner is already resumed
+      owner.getLifecycle().addObserver(registration);
+    }
+    return registration;
+  }
+
+  /**
+   * Summary of the frames run so far, for logging.
+   *
+   * @return the frame count and over budget frame count as a String
+   */
+  @NonNull
+  public String getStats() {
+    return String.format(Locale.US, "frames=%1$d, over budget=%2$d, callbacks=%3$d",
+      frameCount, overBudgetFrameCount, registrations.size());
+  }
+
+  private void requestFrame(long frameTimeNanos) {
+    if (frameTimeNanos >= scheduledFrameTimeNanos) {
+      return;
+    }
+    scheduledFrameTimeNanos = frameTimeNanos;
+    long delayMillis = TimeUnit.NANOSECONDS.toMillis(frameTimeNanos - System.nanoTime() - FRAME_INTERVAL_NANOS / 2);
+    frameSource.cancelFrame();
+    frameSource.postFrame(Math.max(0, delayMillis));
+  }
+
+  private void doFrame(long frameTimeNanos) {
+    scheduledFrameTimeNanos = Long.MAX_VALUE;
+    frameCount++;
+    long budgetEndNanos = System.nanoTime() + FRAME_BUDGET_NANOS;
+    long nextFrameTimeNanos = Long.MAX_VALUE;
+    boolean ranCallback = false;
+
+    // Callbacks may cancel themselves or schedule others while they run, so run them from a copy
+    int count = registrations.size();
+    if (snapshot.length < count) {
+      snapshot = new Registration[Math.max(count, snapshot.length * 2)];
+    }
+    registrations.toArray(snapshot);
+    for (int i = 0; i < count; i++) {
+      Registration registration = snapshot[i];
+      if (registration.cancelled || registration.paused) {
+        continue;
+      }
+      if (!registration.isDue(frameTimeNanos)) {
+        nextFrameTimeNanos = Math.min(nextFrameTimeNanos, registration.dueTimeNanos);
+        continue;
+      }
+      long budgetNanos = budgetEndNanos - System.nanoTime();
+      if (budgetNanos <= 0 && ranCallback) {
+        // Out of time for this frame, coalesce into the next one
+        registration.deferredCount++;
+        nextFrameTimeNanos = Math.min(nextFrameTimeNanos, frameTimeNanos + FRAME_INTERVAL_NANOS);
+        continue;
+      }
+      registration.run(frameTimeNanos, Math.max(0, budgetNanos));
+      ranCallback = true;
+      if (!registration.cancelled && !registration.paused) {
+        nextFrameTimeNanos = Math.min(nextFrameTimeNanos, registration.dueTimeNanos);
+      }
+    }
+    // Don't keep cancelled registrations and their activities alive until the next frame
+    Arrays.fill(snapshot, 0, count, null);
+    if (System.nanoTime() > budgetEndNanos) {
+      overBudgetFrameCount++;
+    }
+    if (nextFrameTimeNanos != Long.MAX_VALUE) {
+      requestFrame(nextFrameTimeNanos);
+    }
+  }
+
+  /**
+   * A callback scheduled with {@link #schedule(LifecycleOwner, long, Callback)}.
+   */
+  public static class Registration implements LifecycleObserver {
+
+    private final FrameScheduler scheduler;
+    private final Lifecycle lifecycle;
+    private final long intervalNanos;
+    private final Callback callback;
+    private boolean paused = true;
+    private boolean cancelled;
+    private long dueTimeNanos;
+    private int runCount;
+    private int droppedFrameCount;
+    private int deferredCount;
+
+    Registration(FrameScheduler scheduler, Lifecycle lifecycle, long intervalNanos, Callback callback) {
+      this.scheduler = scheduler;
+      this.lifecycle = lifecycle;
+      this.intervalNanos = Math.max(intervalNanos, FRAME_INTERVAL_NANOS);
+      this.callback = callback;
+    }
+
+    /**
+     * Stop running the callback. Safe to call from the callback itself.
+     */
+    @MainThread
+    public void cancel() {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      lifecycle.removeObserver(this);
+      scheduler.registrations.remove(this);
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    /**
+     * Summary of how the callback kept up, for logging.
+     *
+     * @return the run count, the frames the runs were late by and the runs put off for lack of time
+     */
+    @NonNull
+    public String getStats() {
+      return String.format(Locale.US, "runs=%1$d, dropped frames=%2$d, deferred=%3$d", runCount, droppedFrameCount,
+        deferredCount);
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_RESUME)
+    void onResume() {
+      if (cancelled) {
+        return;
+      }
+      paused = false;
+      // Run on the next frame, whatever was due before the pause is stale by now
+      dueTimeNanos = System.nanoTime();
+      scheduler.requestFrame(dueTimeNanos);
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_PAUSE)
+    void onPause() {
+      paused = true;
+      Timber.d("Frame callback %1$s paused: %2$s", callback.getClass().getSimpleName(), getStats());
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void onDestroy() {
+      cancel();
+    }
+
+    private boolean isDue(long frameTimeNanos) {
+      // Allow for vsync jitter, a callback due half a frame from now belongs to this frame
+      return dueTimeNanos <= frameTimeNanos + FRAME_INTERVAL_NANOS / 2;
+    }
+
+    private void run(long frameTimeNanos, long budgetNanos) {
+      long lateNanos = frameTimeNanos - dueTimeNanos;
+      if (runCount > 0 && lateNanos > FRAME_INTERVAL_NANOS / 2) {
+        droppedFrameCount += (lateNanos + FRAME_INTERVAL_NANOS / 2) / FRAME_INTERVAL_NANOS;
+      }
+      runCount++;
+      dueTimeNanos += intervalNanos;
+      if (dueTimeNanos <= frameTimeNanos) {
+        // Fell behind, skip the missed runs instead of catching up on them one frame after another
+        dueTimeNanos = frameTimeNanos + intervalNanos;
+      }
+      callback.onFrame(frameTimeNanos, budgetNanos);
+    }
+  }
+
+  /**
+   * Delivers frames to the scheduler.
+   */
+  private interface FrameSource {
+    void postFrame(long delayMillis);
+
+    void cancelFrame();
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private static class ChoreographerFrameSource implements FrameSource, Choreographer.FrameCallback {
+
+    private final FrameScheduler scheduler;
+    private final Choreographer choreographer = Choreographer.getInstance();
+
+    ChoreographerFrameSource(FrameScheduler scheduler) {
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public void postFrame(long delayMillis) {
+      choreographer.postFrameCallbackDelayed(this, delayMillis);
+    }
+
+    @Override
+    public void cancelFrame() {
+      choreographer.removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      scheduler.doFrame(frameTimeNanos);
+    }
+  }
+
+  private static class HandlerFrameSource implements FrameSource, Runnable {
+
+    private final FrameScheduler scheduler;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    HandlerFrameSource(FrameScheduler scheduler) {
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public void postFrame(long delayMillis) {
+      handler.postDelayed(this, Math.max(delayMillis, TimeUnit.NANOSECONDS.toMillis(FRAME_INTERVAL_NANOS)));
+    }
+
+    @Override
+    public void cancelFrame() {
+      handler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+      scheduler.doFrame(System.nanoTime());
+    }
+  }
+}
@@ -0,0 +1,280 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.GeometryAdapterFactory;
+import com.mapbox.geojson.gson.GeoJsonAdapterFactory;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Loads GeoJSON FeatureCollections from the assets folder without first reading the whole file
+ * into a String. The file is walked with a streaming {@link JsonReader} and each Feature is read
+ * straight from the stream, so large assets no longer need several times their size in heap.
+ */
+public final class GeoJsonAssetLoader {
+
+  private static final String FEATURES_KEY = "features";
+  private static final int BUFFER_SIZE = 16 * 1024;
+  private static final TypeAdapter<Feature> FEATURE_ADAPTER = new GsonBuilder()
+    .registerTypeAdapterFactory(GeoJsonAdapterFactory.create())
+    .registerTypeAdapterFactory(GeometryAdapterFactory.create())
+    .create()
+    .getAdapter(Feature.class);
+
+  private GeoJsonAssetLoader() {
+  }
+
+  /**
+   * Optional per-feature callback which is run while the asset is being parsed.
+   */
+  public interface FeatureTransform {
+
+    /**
+     * Filters or projects a single parsed Feature.
+     *
+     * @param feature the Feature which was just read from the asset
+     * @return the Feature to keep, which may be a new projected Feature, or null to drop it
+     */
+    @Nullable
+    Feature apply(@NonNull Feature feature);
+  }
+
+  /**
+   * Load a FeatureCollection from the assets folder.
+   *
+   * @param context  the context used to open the asset
+   * @param fileName the name of the GeoJSON file in the assets folder
+   * @return the parsed FeatureCollection, or null if the asset couldn't be read
+   */
+  @Nullable
+  public static FeatureCollection load(@NonNull Context context, @NonNull String fileName) {
+    return load(context, fileName, null, null);
+  }
+
+  /**
+   * Load a FeatureCollection from the assets folder, running each Feature through a transform.
+   *
+   * @param context   the context used to open the asset
+   * @param fileName  the name of the GeoJSON file in the assets folder
+   * @param transform optional callback to filter or project each Feature
+   * @return the parsed FeatureCollection, or null if the asset couldn't be read
+   */
+  @Nullable
+  public static FeatureCollection load(@NonNull Context context, @NonNull String fileName,
+                                       @Nullable FeatureTransform transform) {
+    return load(context, fileName, transform, null);
+  }
+
+  /**
+   * Load a FeatureCollection from the assets folder and report how long the parse took and how much
+   * the heap grew.
+   *
+   * @param context   the context used to open the asset
+   * @param fileName  the name of the GeoJSON file in the assets folder
+   * @param transform optional callback to filter or project each Feature
+   * @param metrics   optional object which is filled in with the byte count, parse time and heap growth
+   * @return the parsed FeatureCollection, or null if the asset couldn't be read
+   */
+  @Nullable
+  public static FeatureCollection load(@NonNull Context context, @NonNull String fileName,
+                                       @Nullable FeatureTransform transform,
+                                       @Nullable LoadMetrics metrics) {
+    CountingInputStream countingStream = null;
+    long startTime = SystemClock.elapsedRealtime();
+    long startHeap = LoadMetrics.usedHeapBytes();
+    try {
+      countingStream = new CountingInputStream(context.getAssets().open(fileName));
+      ParseResult result = parseFeatures(countingStream, transform);
+      long parseTime = SystemClock.elapsedRealtime() - startTime;
+      long heapDelta = LoadMetrics.usedHeapBytes() - startHeap;
+      if (metrics != null) {
+        metrics.set(fileName, countingStream.getByteCount(), parseTime, heapDelta,
+          result.features.size(), result.droppedCount);
+      }
+      Timber.d("Loaded %1$s: %2$d bytes, %3$d features (%4$d dropped) in %5$d ms, heap +%6$d bytes",
+        fileName, countingStream.getByteCount(), result.features.size(), result.droppedCount, parseTime,
+        heapDelta);
+      return FeatureCollection.fromFeatures(result.features);
+    } catch (IOException exception) {
+      Timber.e(exception, "Exception loading GeoJSON asset %s", fileName);
+      return null;
+    } finally {
+      closeQuietly(countingStream);
+    }
+  }
+
+  /**
+   * Parse a FeatureCollection directly from a stream. The stream isn't closed by this method.
+   *
+   * @param inputStream the stream containing a GeoJSON FeatureCollection
+   * @param transform   optional callback to filter or project each Feature
+   * @return the parsed FeatureCollection
+   * @throws IOException if the stream couldn't be read or isn't a FeatureCollection
+   */
+  @NonNull
+  public static FeatureCollection parse(@NonNull InputStream inputStream,
+                                        @Nullable FeatureTransform transform) throws IOException {
+    return FeatureCollection.fromFeatures(parseFeatures(inputStream, transform).features);
+  }
+
+  private static ParseResult parseFeatures(InputStream inputStream, @Nullable FeatureTransform transform)
+    throws IOException {
+    JsonReader reader = new JsonReader(new InputStreamReader(
+      new BufferedInputStream(inputStream, BUFFER_SIZE), "UTF-8"));
+    ParseResult result = new ParseResult();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (!FEATURES_KEY.equals(reader.nextName())) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginArray();
+      while (reader.hasNext()) {
+        Feature feature = FEATURE_ADAPTER.read(reader);
+        if (feature.properties() == null) {
+          // Match Feature.fromJson(), which always gives a Feature a properties object to add to
+          feature = Feature.fromGeometry(feature.geometry(), new JsonObject(), feature.id(), feature.bbox());
+        }
+        if (transform != null) {
+          feature = transform.apply(feature);
+        }
+        if (feature != null) {
+          result.features.add(feature);
+        } else {
+          result.droppedCount++;
+        }
+      }
+      reader.endArray();
+    }
+    reader.endObject();
+    return result;
+  }
+
+  private static void closeQuietly(@Nullable InputStream inputStream) {
+    if (inputStream == null) {
+      return;
+    }
+    try {
+      inputStream.close();
+    } catch (IOException exception) {
+      Timber.d("Exception closing asset stream: %s", exception.toString());
+    }
+  }
+
+  private static class ParseResult {
+    private final List<Feature> features = new ArrayList<>();
+    private int droppedCount;
+  }
+
+  /**
+   * Byte count, timing and heap information for a single asset load. The heap growth is the change in
+   * used Java heap across the load, so it's only a rough figure when other threads are allocating.
+   */
+  public static class LoadMetrics {
+
+    private String fileName;
+    private long byteCount;
+    private long parseTimeMillis;
+    private long heapDeltaBytes;
+    private int featureCount;
+    private int droppedFeatureCount;
+
+    static long usedHeapBytes() {
+      Runtime runtime = Runtime.getRuntime();
+      return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    void set(String fileName, long byteCount, long parseTimeMillis, long heapDeltaBytes,
+             int featureCount, int droppedFeatureCount) {
+      this.fileName = fileName;
+      this.byteCount = byteCount;
+      this.parseTimeMillis = parseTimeMillis;
+      this.heapDeltaBytes = heapDeltaBytes;
+      this.featureCount = featureCount;
+      this.droppedFeatureCount = droppedFeatureCount;
+    }
+
+    public String getFileName() {
+      return fileName;
+    }
+
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    public long getParseTimeMillis() {
+      return parseTimeMillis;
+    }
+
+    public long getHeapDeltaBytes() {
+      return heapDeltaBytes;
+    }
+
+    public int getFeatureCount() {
+      return featureCount;
+    }
+
+    public int getDroppedFeatureCount() {
+      return droppedFeatureCount;
+    }
+  }
+
+  /**
+   * Stream wrapper which counts how many bytes have been read through it.
+   */
+  private static class CountingInputStream extends FilterInputStream {
+
+    private long byteCount;
+
+    CountingInputStream(InputStream inputStream) {
+      super(inputStream);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value != -1) {
+        byteCount++;
+      }
+      return value;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+      int count = super.read(buffer, offset, length);
+      if (count > 0) {
+        byteCount += count;
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long byteAmount) throws IOException {
+      long skipped = super.skip(byteAmount);
+      byteCount += skipped;
+      return skipped;
+    }
+
+    long getByteCount() {
+      return byteCount;
+    }
+  }
+}
@@ -0,0 +1,422 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+import com.mapbox.mapboxandroiddemo.utils.GeoJsonAssetLoader.LoadMetrics;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Loads the binary versions of the GeoJSON assets which the convertGeoJsonAssets Gradle task
+ * (gradle/geojson-binary-assets.gradle) writes at build time. The file is memory-mapped and each
+ * Feature is only decoded the first time it's read from the returned FeatureCollection.
+ * <p>
+ * If an asset has no binary version, the text GeoJSON is loaded with {@link GeoJsonAssetLoader} instead.
+ * </p>
+ */
+public final class GeoJsonBinaryAssetLoader {
+
+  private static final String BINARY_ASSET_FOLDER = "geobin/";
+  private static final String BINARY_ASSET_EXTENSION = ".geobin";
+  private static final int MAGIC = 0x47454F42;
+  private static final int VERSION = 1;
+
+  private static final int GEOMETRY_POINT = 1;
+  private static final int GEOMETRY_LINE_STRING = 2;
+  private static final int GEOMETRY_POLYGON = 3;
+  private static final int GEOMETRY_MULTI_POINT = 4;
+  private static final int GEOMETRY_MULTI_LINE_STRING = 5;
+  private static final int GEOMETRY_MULTI_POLYGON = 6;
+
+  private static final int VALUE_NULL = 0;
+  private static final int VALUE_STRING = 1;
+  private static final int VALUE_DOUBLE = 2;
+  private static final int VALUE_LONG = 3;
+  private static final int VALUE_TRUE = 4;
+  private static final int VALUE_FALSE = 5;
+  private static final int VALUE_JSON = 6;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private GeoJsonBinaryAssetLoader() {
+  }
+
+  /**
+   * Load a FeatureCollection for a GeoJSON file in the assets folder, preferring its binary version.
+   *
+   * @param context  the context used to open the asset
+   * @param fileName the name of the GeoJSON file in the assets folder, for example "la_hotels.geojson"
+   * @return the FeatureCollection, or null if neither version of the asset could be read
+   */
+  @Nullable
+  public static FeatureCollection load(@NonNull Context context, @NonNull String fileName) {
+    return load(context, fileName, null);
+  }
+
+  /**
+   * Load a FeatureCollection for a GeoJSON file in the assets folder, preferring its binary version.
+   *
+   * @param context  the context used to open the asset
+   * @param fileName the name of the GeoJSON file in the assets folder, for example "la_hotels.geojson"
+   * @param metrics  optional object which is filled in with the byte count, load time and heap growth
+   * @return the FeatureCollection, or null if neither version of the asset could be read
+   */
+  @Nullable
+  public static FeatureCollection load(@NonNull Context context, @NonNull String fileName,
+                                       @Nullable LoadMetrics metrics) {
+    String binaryFileName = BINARY_ASSET_FOLDER
+      + fileName.substring(0, fileName.lastIndexOf('.')) + BINARY_ASSET_EXTENSION;
+    long startTime = SystemClock.elapsedRealtime();
+    long startHeap = LoadMetrics.usedHeapBytes();
+    try {
+      BinaryFeatureList features = new BinaryFeatureList(map(context, binaryFileName));
+      long loadTime = SystemClock.elapsedRealtime() - startTime;
+      long heapDelta = LoadMetrics.usedHeapBytes() - startHeap;
+      if (metrics != null) {
+        metrics.set(binaryFileName, features.buffer.capacity(), loadTime, heapDelta, features.size(), 0);
+      }
+      Timber.d("Mapped %1$s: %2$d bytes, %3$d features in %4$d ms, heap +%5$d bytes",
+        binaryFileName, features.buffer.capacity(), features.size(), loadTime, heapDelta);
+      return FeatureCollection.fromFeatures(features);
+    } catch (IOException exception) {
+      Timber.d("No binary asset for %1$s, parsing GeoJSON instead: %2$s", fileName, exception.toString());
+      return GeoJsonAssetLoader.load(context, fileName, null, metrics);
+    }
+  }
+
+  /**
+   * Wrap a binary GeoJSON file that's already in memory, for reading one from outside the assets
+   * folder.
+   */
+  @NonNull
+  static FeatureCollection fromBuffer(@NonNull ByteBuffer buffer) throws IOException {
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a version " + VERSION + " binary GeoJSON file");
+    }
+    return FeatureCollection.fromFeatures(new BinaryFeatureList(buffer));
+  }
+
+  /**
+   * Count what a collection from this loader holds once every feature is decoded, without decoding
+   * them.
+   *
+   * @param features the features of a collection
+   * @param estimate the counts to add to
+   * @return false if the features didn't come from this loader, so nothing was counted
+   */
+  static boolean estimateSize(@NonNull List<Feature> features,
+                              @NonNull FeatureCollectionCache.SizeEstimate estimate) {
+    if (!(features instanceof BinaryFeatureList)) {
+      return false;
+    }
+    ((BinaryFeatureList) features).estimateSize(estimate);
+    return true;
+  }
+
+  private static ByteBuffer map(Context context, String binaryFileName) throws IOException {
+    // Only works because the .geobin assets are stored uncompressed, see aaptOptions in build.gradle
+    AssetFileDescriptor descriptor = context.getAssets().openFd(binaryFileName);
+    FileInputStream inputStream = descriptor.createInputStream();
+    try {
+      FileChannel channel = inputStream.getChannel();
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+        descriptor.getStartOffset(), descriptor.getLength());
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException(binaryFileName + " isn't a version " + VERSION + " binary GeoJSON file");
+      }
+      return buffer;
+    } finally {
+      inputStream.close();
+      descriptor.close();
+    }
+  }
+
+  /**
+   * Read-only view of the features in a mapped file. Features are decoded the first time they're
+   * requested and kept afterwards, so changes to their properties stick like in a parsed collection.
+   */
+  private static class BinaryFeatureList extends AbstractList<Feature> {
+
+    private final ByteBuffer buffer;
+    private final double scale;
+    private final int featureCount;
+    private final int featureIndexOffset;
+    private final int stringIndexOffset;
+    private final Feature[] features;
+    private final String[] strings;
+    private JsonParser jsonParser;
+
+    BinaryFeatureList(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.scale = buffer.getInt(8);
+      this.featureCount = buffer.getInt(12);
+      this.strings = new String[buffer.getInt(16)];
+      this.featureIndexOffset = buffer.getInt(20);
+      this.stringIndexOffset = buffer.getInt(24);
+      this.features = new Feature[featureCount];
+    }
+
+    @Override
+    public int size() {
+      return featureCount;
+    }
+
+    @Override
+    public synchronized Feature get(int index) {
+      if (index < 0 || index >= featureCount) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + featureCount);
+      }
+      Feature feature = features[index];
+      if (feature == null) {
+        feature = readFeature(buffer.getInt(featureIndexOffset + index * 4));
+        features[index] = feature;
+      }
+      return feature;
+    }
+
+    void estimateSize(FeatureCollectionCache.SizeEstimate estimate) {
+      estimate.addList(featureCount);
+      // Decoded features share the strings of the table, so each is counted once
+      for (int index = 0; index < strings.length; index++) {
+        estimate.strings++;
+        estimate.chars += getStringLength(index);
+      }
+      for (int index = 0; index < featureCount; index++) {
+        ByteBuffer reader = buffer.duplicate();
+        reader.position(buffer.getInt(featureIndexOffset + index * 4));
+        estimateFeatureSize(reader, estimate);
+      }
+    }
+
+    /**
+     * @return the length in bytes of a string in the table, which is its length in characters for ASCII
+     */
+    private int getStringLength(int index) {
+      ByteBuffer reader = buffer.duplicate();
+      reader.position(buffer.getInt(stringIndexOffset + index * 4));
+      return readVarint(reader);
+    }
+
+    private void estimateFeatureSize(ByteBuffer reader, FeatureCollectionCache.SizeEstimate estimate) {
+      estimate.features++;
+      switch (readVarint(reader)) {
+        case GEOMETRY_POINT:
+          estimate.points++;
+          readVarLong(reader);
+          readVarLong(reader);
+          break;
+        case GEOMETRY_LINE_STRING:
+        case GEOMETRY_MULTI_POINT:
+          skipPoints(reader, estimate);
+          break;
+        case GEOMETRY_POLYGON:
+        case GEOMETRY_MULTI_LINE_STRING:
+          skipRings(reader, estimate);
+          break;
+        case GEOMETRY_MULTI_POLYGON:
+          int polygonCount = readVarint(reader);
+          estimate.addList(polygonCount);
+          for (int polygon = 0; polygon < polygonCount; polygon++) {
+            skipRings(reader, estimate);
+          }
+          break;
+        default:
+          break;
+      }
+
+      // The id
+      readVarint(reader);
+      int propertyCount = readVarint(reader);
+      estimate.properties += propertyCount;
+      for (int property = 0; property < propertyCount; property++) {
+        // The key, then the value
+        readVarint(reader);
+        int valueType = reader.get();
+        if (valueType == VALUE_STRING) {
+          readVarint(reader);
+        } else if (valueType == VALUE_JSON) {
+          // Every feature parses its own copy of the JSON
+          estimate.jsonChars += getStringLength(readVarint(reader));
+        } else if (valueType == VALUE_DOUBLE) {
+          reader.position(reader.position() + 8);
+        } else if (valueType == VALUE_LONG) {
+          readVarLong(reader);
+        }
+      }
+    }
+
+    private static void skipPoints(ByteBuffer reader, FeatureCollectionCache.SizeEstimate estimate) {
+      int pointCount = readVarint(reader);
+      estimate.addList(pointCount);
+      estimate.points += pointCount;
+      for (int point = 0; point < pointCount * 2; point++) {
+        readVarLong(reader);
+      }
+    }
+
+    private static void skipRings(ByteBuffer reader, FeatureCollectionCache.SizeEstimate estimate) {
+      int ringCount = readVarint(reader);
+      estimate.addList(ringCount);
+      for (int ring = 0; ring < ringCount; ring++) {
+        skipPoints(reader, estimate);
+      }
+    }
+
+    private Feature readFeature(int offset) {
+      ByteBuffer reader = buffer.duplicate();
+      reader.position(offset);
+      long[] previous = new long[2];
+
+      Geometry geometry;
+      int geometryType = readVarint(reader);
+      switch (geometryType) {
+        case GEOMETRY_POINT:
+          geometry = readPoint(reader, previous);
+          break;
+        case GEOMETRY_LINE_STRING:
+          geometry = LineString.fromLngLats(readPoints(reader, previous));
+          break;
+        case GEOMETRY_POLYGON:
+          geometry = Polygon.fromLngLats(readRings(reader, previous));
+          break;
+        case GEOMETRY_MULTI_POINT:
+          geometry = MultiPoint.fromLngLats(readPoints(reader, previous));
+          break;
+        case GEOMETRY_MULTI_LINE_STRING:
+          geometry = MultiLineString.fromLngLats(readRings(reader, previous));
+          break;
+        case GEOMETRY_MULTI_POLYGON:
+          int polygonCount = readVarint(reader);
+          List<List<List<Point>>> polygons = new ArrayList<>(polygonCount);
+          for (int polygon = 0; polygon < polygonCount; polygon++) {
+            polygons.add(readRings(reader, previous));
+          }
+          geometry = MultiPolygon.fromLngLats(polygons);
+          break;
+        default:
+          geometry = null;
+          break;
+      }
+
+      int idIndex = readVarint(reader);
+      String id = idIndex == 0 ? null : getString(idIndex - 1);
+
+      JsonObject properties = new JsonObject();
+      int propertyCount = readVarint(reader);
+      for (int property = 0; property < propertyCount; property++) {
+        String key = getString(readVarint(reader));
+        int valueType = reader.get();
+        switch (valueType) {
+          case VALUE_STRING:
+            properties.addProperty(key, getString(readVarint(reader)));
+            break;
+          case VALUE_DOUBLE:
+            properties.addProperty(key, reader.getDouble());
+            break;
+          case VALUE_LONG:
+            properties.addProperty(key, decodeZigZag(readVarLong(reader)));
+            break;
+          case VALUE_TRUE:
+            properties.addProperty(key, true);
+            break;
+          case VALUE_FALSE:
+            properties.addProperty(key, false);
+            break;
+          case VALUE_JSON:
+            if (jsonParser == null) {
+              jsonParser = new JsonParser();
+            }
+            properties.add(key, jsonParser.parse(getString(readVarint(reader))));
+            break;
+          case VALUE_NULL:
+          default:
+            properties.add(key, JsonNull.INSTANCE);
+            break;
+        }
+      }
+      return Feature.fromGeometry(geometry, properties, id);
+    }
+
+    private Point readPoint(ByteBuffer reader, long[] previous) {
+      previous[0] += decodeZigZag(readVarLong(reader));
+      previous[1] += decodeZigZag(readVarLong(reader));
+      return Point.fromLngLat(previous[0] / scale, previous[1] / scale);
+    }
+
+    private List<Point> readPoints(ByteBuffer reader, long[] previous) {
+      int pointCount = readVarint(reader);
+      List<Point> points = new ArrayList<>(pointCount);
+      for (int point = 0; point < pointCount; point++) {
+        points.add(readPoint(reader, previous));
+      }
+      return points;
+    }
+
+    private List<List<Point>> readRings(ByteBuffer reader, long[] previous) {
+      int ringCount = readVarint(reader);
+      List<List<Point>> rings = new ArrayList<>(ringCount);
+      for (int ring = 0; ring < ringCount; ring++) {
+        rings.add(readPoints(reader, previous));
+      }
+      return rings;
+    }
+
+    private String getString(int index) {
+      String value = strings[index];
+      if (value == null) {
+        ByteBuffer reader = buffer.duplicate();
+        reader.position(buffer.getInt(stringIndexOffset + index * 4));
+        byte[] bytes = new byte[readVarint(reader)];
+        reader.get(bytes);
+        value = new String(bytes, UTF_8);
+        strings[index] = value;
+      }
+      return value;
+    }
+
+    private static int readVarint(ByteBuffer reader) {
+      return (int) readVarLong(reader);
+    }
+
+    private static long readVarLong(ByteBuffer reader) {
+      long value = 0;
+      int shift = 0;
+      byte current;
+      do {
+        current = reader.get();
+        value |= (long) (current & 0x7F) << shift;
+        shift += 7;
+      } while ((current & 0x80) != 0);
+      return value;
+    }
+
+    private static long decodeZigZag(long value) {
+      return (value >>> 1) ^ -(value & 1);
+    }
+  }
+}
@@ -0,0 +1,613 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Cuts a FeatureCollection into Mapbox Vector Tiles on the device, in the style of geojson-vt, so a
+ * large dataset can be shown from a vector source instead of being handed to a GeoJsonSource whole.
+ * <p>
+ * The Features are projected to Web Mercator once, and every vertex of their lines and polygons is
+ * given an importance by Douglas-Peucker, so each zoom keeps only the vertices that are visible at
+ * it. A tile is cut out of the nearest ancestor tile that was cut before, one zoom at a time, with a
+ * buffer around it so lines and fills run past its edges. The Features cut for each tile and the
+ * encoded tiles are kept in LRU caches, so panning around and back doesn't cut or encode them again.
+ * </p>
+ * <p>
+ * Tiles are cut on request, from any thread, one at a time. Features that cross the antimeridian
+ * aren't wrapped. Serve the tiles to the map with {@link LocalVectorTileServer}, and keep them in
+ * {@link VectorTilesCache} so they outlive the example.
+ * </p>
+ */
+public class GeoJsonVectorTiles {
+
+  // Tile coordinates across a tile, and how far features run past its edges, as in geojson-vt
+  public static final int EXTENT = 4096;
+  private static final int BUFFER = 64;
+  // How far a simplified line may be from the original, in tile coordinates
+  private static final double TOLERANCE = 3;
+  private static final int SLICE_CACHE_SIZE = 64;
+
+  private final int maxZoom;
+  private final List<SliceFeature> features;
+  private final LruCache<Long, List<SliceFeature>> slices;
+  private final LruCache<Long, byte[]> tiles;
+  private final VectorTileEncoder encoder;
+  // The geometry of the Feature being encoded, the last point written and the ring being rounded
+  private int[] geometry = new int[256];
+  private int geometryLength;
+  private int cursorX;
+  private int cursorY;
+  private int[] ring = new int[64];
+  private int slicedCount;
+  private int encodedCount;
+
+  /**
+   * Project and simplify the Features. This takes a while for large collections.
+   *
+   * @param featureCollection the Features to cut into tiles
+   * @param layerName         the source layer the Features are in
+   * @param maxZoom           the highest zoom to cut tiles for, which has every vertex. Set it as the
+   *                          max zoom of the source so the map overzooms its tiles
+   * @param cacheSizeBytes    how many bytes of encoded tiles to keep
+   */
+  @WorkerThread
+  public GeoJsonVectorTiles(@NonNull FeatureCollection featureCollection, @NonNull String layerName,
+                            int maxZoom, int cacheSizeBytes) {
+    if (maxZoom < 0 || maxZoom > 24) {
+      throw new IllegalArgumentException("Tiles can't be cut up to zoom " + maxZoom);
+    }
+    this.maxZoom = maxZoom;
+    encoder = new VectorTileEncoder(layerName, EXTENT);
+    slices = new LruCache<>(SLICE_CACHE_SIZE);
+    tiles = new LruCache<Long, byte[]>(cacheSizeBytes) {
+      @Override
+      protected int sizeOf(Long key, byte[] tile) {
+        return Math.max(1, tile.length);
+      }
+    };
+
+    double tolerance = TOLERANCE / ((double) (1 << maxZoom) * EXTENT);
+    features = new ArrayList<>();
+    List<Feature> sourceFeatures = featureCollection.features();
+    if (sourceFeatures != null) {
+      for (Feature feature : sourceFeatures) {
+        convert(feature, feature.geometry(), tolerance * tolerance, features);
+      }
+    }
+  }
+
+  public int getMaxZoom() {
+    return maxZoom;
+  }
+
+  /**
+   * Get a tile, cutting and encoding it if it isn't cached.
+   *
+   * @return the tile in the MVT format, or an empty array if there's nothing in it
+   */
+  @NonNull
+  public synchronized byte[] getTile(int zoom, int x, int y) {
+    if (zoom < 0 || zoom > maxZoom || x < 0 || y < 0 || x >= 1 << zoom || y >= 1 << zoom) {
+      return new byte[0];
+    }
+    long key = toKey(zoom, x, y);
+    byte[] tile = tiles.get(key);
+    if (tile == null) {
+      tile = encode(getSlice(zoom, x, y), zoom, x, y);
+      tiles.put(key, tile);
+      encodedCount++;
+    }
+    return tile;
+  }
+
+  /**
+   * Summary of the caches, for logging.
+   *
+   * @return the number of tiles cut and encoded and the tile cache counters as a String
+   */
+  @NonNull
+  public synchronized String getStats() {
+    return String.format(Locale.US, "sliced=%1$d, encoded=%2$d, cache=%3$d/%4$d bytes, hits=%5$d, misses=%6$d",
+      slicedCount, encodedCount, tiles.size(), tiles.maxSize(), tiles.hitCount(), tiles.missCount());
+  }
+
+  /**
+   * Drop the cached tiles, in response to onTrimMemory or onLowMemory.
+   */
+  public synchronized void clearCache() {
+    slices.evictAll();
+    tiles.evictAll();
+  }
+
+  private static long toKey(int zoom, int x, int y) {
+    return ((long) zoom << 58) | ((long) x << 29) | y;
+  }
+
+  /**
+   * The Features in a tile, cut from the closest ancestor that's cached.
+   */
+  private List<SliceFeature> getSlice(int zoom, int x, int y) {
+    int ancestorZoom = zoom;
+    List<SliceFeature> slice = null;
+    while (ancestorZoom > 0) {
+      slice = slices.get(toKey(ancestorZoom, x >> (zoom - ancestorZoom), y >> (zoom - ancestorZoom)));
+      if (slice != null) {
+        break;
+      }
+      ancestorZoom--;
+    }
+    if (slice == null) {
+      slice = features;
+    }
+    for (int childZoom = ancestorZoom + 1; childZoom <= zoom && !slice.isEmpty(); childZoom++) {
+      int childX = x >> (zoom - childZoom);
+      int childY = y >> (zoom - childZoom);
+      double size = 1.0 / (1 << childZoom);
+      double buffer = size * BUFFER / EXTENT;
+      slice = clip(slice, childX * size - buffer, (childX + 1) * size + buffer, 0);
+      slice = clip(slice, childY * size - buffer, (childY + 1) * size + buffer, 1);
+      slices.put(toKey(childZoom, childX, childY), slice);
+      slicedCount++;
+    }
+    return slice;
+  }
+
+  /**
+   * Encode the Features of a tile, leaving out the vertices and the lines and rings too small to see.
+   */
+  private byte[] encode(List<SliceFeature> slice, int zoom, int x, int y) {
+    double tolerance = zoom == maxZoom ? 0 : TOLERANCE / ((double) (1 << zoom) * EXTENT);
+    double sqTolerance = tolerance * tolerance;
+    double scale = (double) (1 << zoom) * EXTENT;
+    double left = (double) x * EXTENT;
+    double top = (double) y * EXTENT;
+    for (SliceFeature feature : slice) {
+      geometryLength = 0;
+      cursorX = 0;
+      cursorY = 0;
+      if (feature.type == VectorTileEncoder.GEOMETRY_POINT) {
+        double[] points = feature.parts.get(0).coordinates;
+        int count = feature.parts.get(0).length / 3;
+        addCommand(VectorTileEncoder.COMMAND_MOVE_TO, count);
+        for (int i = 0; i < count; i++) {
+          addPoint(points[3 * i] * scale - left, points[3 * i + 1] * scale - top);
+        }
+      } else {
+        boolean polygon = feature.type == VectorTileEncoder.GEOMETRY_POLYGON;
+        for (Part part : feature.parts) {
+          if (tolerance > 0 && part.size < (polygon ? sqTolerance : tolerance)) {
+            continue;
+          }
+          addPart(part, polygon, sqTolerance, scale, left, top);
+        }
+      }
+      if (geometryLength > 0) {
+        encoder.addFeature(feature.id, feature.source.properties(), feature.type, geometry, geometryLength);
+      }
+    }
+    return encoder.encode();
+  }
+
+  /**
+   * Add a line or ring in tile coordinates, without its unimportant vertices or the ones that round
+   * onto the vertex before them.
+   */
+  private void addPart(Part part, boolean polygon, double sqTolerance, double scale, double left, double top) {
+    int count = 0;
+    int end = polygon ? part.length - 3 : part.length;
+    for (int i = 0; i < end; i += 3) {
+      if (sqTolerance > 0 && part.coordinates[i + 2] <= sqTolerance) {
+        continue;
+      }
+      int tileX = (int) Math.round(part.coordinates[i] * scale - left);
+      int tileY = (int) Math.round(part.coordinates[i + 1] * scale - top);
+      if (count > 0 && tileX == ring[2 * count - 2] && tileY == ring[2 * count - 1]) {
+        continue;
+      }
+      if (2 * count + 2 > ring.length) {
+        ring = Arrays.copyOf(ring, ring.length * 2);
+      }
+      ring[2 * count] = tileX;
+      ring[2 * count + 1] = tileY;
+      count++;
+    }
+    if (polygon && count > 1 && ring[0] == ring[2 * count - 2] && ring[1] == ring[2 * count - 1]) {
+      count--;
+    }
+    if (count < (polygon ? 3 : 2)) {
+      return;
+    }
+
+    if (polygon) {
+      // Outer rings go clockwise on screen and holes the other way, which is a positive area for
+      // outer rings with y pointing down
+      long area = 0;
+      for (int i = 0, j = count - 1; i < count; j = i++) {
+        area += (long) ring[2 * j] * ring[2 * i + 1] - (long) ring[2 * i] * ring[2 * j + 1];
+      }
+      if (area == 0) {
+        return;
+      }
+      if ((area > 0) != part.outer) {
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+          int ringX = ring[2 * i];
+          int ringY = ring[2 * i + 1];
+          ring[2 * i] = ring[2 * j];
+          ring[2 * i + 1] = ring[2 * j + 1];
+          ring[2 * j] = ringX;
+          ring[2 * j + 1] = ringY;
+        }
+      }
+    }
+
+    ensureGeometryCapacity(2 * count + 3);
+    addCommand(VectorTileEncoder.COMMAND_MOVE_TO, 1);
+    addTilePoint(ring[0], ring[1]);
+    addCommand(VectorTileEncoder.COMMAND_LINE_TO, count - 1);
+    for (int i = 1; i < count; i++) {
+      addTilePoint(ring[2 * i], ring[2 * i + 1]);
+    }
+    if (polygon) {
+      addCommand(VectorTileEncoder.COMMAND_CLOSE_PATH, 1);
+    }
+  }
+
+  private void addCommand(int id, int count) {
+    ensureGeometryCapacity(1);
+    geometry[geometryLength++] = VectorTileEncoder.command(id, count);
+  }
+
+  private void addPoint(double tileX, double tileY) {
+    ensureGeometryCapacity(2);
+    addTilePoint((int) Math.round(tileX), (int) Math.round(tileY));
+  }
+
+  private void addTilePoint(int tileX, int tileY) {
+    geometry[geometryLength++] = VectorTileEncoder.zigZag(tileX - cursorX);
+    geometry[geometryLength++] = VectorTileEncoder.zigZag(tileY - cursorY);
+    cursorX = tileX;
+    cursorY = tileY;
+  }
+
+  private void ensureGeometryCapacity(int length) {
+    if (geometryLength + length > geometry.length) {
+      geometry = Arrays.copyOf(geometry, Math.max(geometry.length * 2, geometryLength + length));
+    }
+  }
+
+  /**
+   * Keep the parts of Features between two lines along an axis, 0 for x and 1 for y, as geojson-vt's
+   * clip does. Features entirely between them are kept as they are.
+   */
+  private static List<SliceFeature> clip(List<SliceFeature> features, double k1, double k2, int axis) {
+    List<SliceFeature> clipped = new ArrayList<>();
+    for (SliceFeature feature : features) {
+      double min = axis == 0 ? feature.minX : feature.minY;
+      double max = axis == 0 ? feature.maxX : feature.maxY;
+      if (min >= k1 && max < k2) {
+        clipped.add(feature);
+        continue;
+      } else if (max < k1 || min >= k2) {
+        continue;
+      }
+
+      List<Part> parts = new ArrayList<>();
+      if (feature.type == VectorTileEncoder.GEOMETRY_POINT) {
+        Part points = feature.parts.get(0);
+        Part inside = new Part(points.size, true);
+        for (int i = 0; i < points.length; i += 3) {
+          double a = points.coordinates[i + axis];
+          if (a >= k1 && a <= k2) {
+            inside.add(points.coordinates[i], points.coordinates[i + 1], points.coordinates[i + 2]);
+          }
+        }
+        if (inside.length > 0) {
+          parts.add(inside);
+        }
+      } else {
+        for (Part part : feature.parts) {
+          clipLine(part, parts, k1, k2, axis, feature.type == VectorTileEncoder.GEOMETRY_POLYGON);
+        }
+      }
+      if (!parts.isEmpty()) {
+        clipped.add(new SliceFeature(feature.source, feature.id, feature.type, parts));
+      }
+    }
+    return clipped;
+  }
+
+  private static void clipLine(Part line, List<Part> parts, double k1, double k2, int axis, boolean polygon) {
+    double[] coordinates = line.coordinates;
+    Part slice = new Part(line.size, line.outer);
+    for (int i = 0; i < line.length - 3; i += 3) {
+      double ax = coordinates[i];
+      double ay = coordinates[i + 1];
+      double az = coordinates[i + 2];
+      double bx = coordinates[i + 3];
+      double by = coordinates[i + 4];
+      double a = axis == 0 ? ax : ay;
+      double b = axis == 0 ? bx : by;
+      boolean exited = false;
+
+      if (a < k1) {
+        // The line enters from the low side
+        if (b > k1) {
+          intersect(slice, ax, ay, bx, by, k1, axis);
+        }
+      } else if (a > k2) {
+        // The line enters from the high side
+        if (b < k2) {
+          intersect(slice, ax, ay, bx, by, k2, axis);
+        }
+      } else {
+        slice.add(ax, ay, az);
+      }
+      if (b < k1 && a >= k1) {
+        intersect(slice, ax, ay, bx, by, k1, axis);
+        exited = true;
+      }
+      if (b > k2 && a <= k2) {
+        intersect(slice, ax, ay, bx, by, k2, axis);
+        exited = true;
+      }
+      if (!polygon && exited) {
+        parts.add(slice);
+        slice = new Part(line.size, line.outer);
+      }
+    }
+
+    int last = line.length - 3;
+    if (last >= 0) {
+      double a = coordinates[last + axis];
+      if (a >= k1 && a <= k2) {
+        slice.add(coordinates[last], coordinates[last + 1], coordinates[last + 2]);
+      }
+    }
+    // Close rings whose ends were cut off
+    last = slice.length - 3;
+    if (polygon && last >= 3
+      && (slice.coordinates[last] != slice.coordinates[0] || slice.coordinates[last + 1] != slice.coordinates[1])) {
+      slice.add(slice.coordinates[0], slice.coordinates[1], slice.coordinates[2]);
+    }
+    if (slice.length > 0) {
+      parts.add(slice);
+    }
+  }
+
+  private static void intersect(Part slice, double ax, double ay, double bx, double by, double k, int axis) {
+    if (axis == 0) {
+      slice.add(k, ay + (by - ay) * (k - ax) / (bx - ax), 1);
+    } else {
+      slice.add(ax + (bx - ax) * (k - ay) / (by - ay), k, 1);
+    }
+  }
+
+  /**
+   * Project a geometry and add it to the Features to cut, split into points, lines and polygons.
+   */
+  private static void convert(Feature feature, Geometry geometry, double sqTolerance, List<SliceFeature> features) {
+    long id = parseId(feature.id());
+    List<Part> parts = new ArrayList<>();
+    int type;
+    if (geometry instanceof Point) {
+      type = VectorTileEncoder.GEOMETRY_POINT;
+      parts.add(convertPoints(Arrays.asList((Point) geometry)));
+    } else if (geometry instanceof MultiPoint) {
+      type = VectorTileEncoder.GEOMETRY_POINT;
+      parts.add(convertPoints(((MultiPoint) geometry).coordinates()));
+    } else if (geometry instanceof LineString) {
+      type = VectorTileEncoder.GEOMETRY_LINE;
+      parts.add(convertLine(((LineString) geometry).coordinates(), sqTolerance, false, true));
+    } else if (geometry instanceof MultiLineString) {
+      type = VectorTileEncoder.GEOMETRY_LINE;
+      for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+        parts.add(convertLine(line, sqTolerance, false, true));
+      }
+    } else if (geometry instanceof Polygon) {
+      type = VectorTileEncoder.GEOMETRY_POLYGON;
+      convertRings(((Polygon) geometry).coordinates(), sqTolerance, parts);
+    } else if (geometry instanceof MultiPolygon) {
+      type = VectorTileEncoder.GEOMETRY_POLYGON;
+      for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+        convertRings(polygon, sqTolerance, parts);
+      }
+    } else if (geometry instanceof GeometryCollection) {
+      for (Geometry child : ((GeometryCollection) geometry).geometries()) {
+        convert(feature, child, sqTolerance, features);
+      }
+      return;
+    } else {
+      return;
+    }
+    for (int i = parts.size() - 1; i >= 0; i--) {
+      if (parts.get(i).length == 0) {
+        parts.remove(i);
+      }
+    }
+    if (!parts.isEmpty()) {
+      features.add(new SliceFeature(feature, id, type, parts));
+    }
+  }
+
+  private static void convertRings(List<List<Point>> rings, double sqTolerance, List<Part> parts) {
+    for (int i = 0; i < rings.size(); i++) {
+      parts.add(convertLine(rings.get(i), sqTolerance, true, i == 0));
+    }
+  }
+
+  private static Part convertPoints(List<Point> points) {
+    Part part = new Part(0, true);
+    for (Point point : points) {
+      part.add(WebMercator.longitudeToX(point.longitude()), WebMercator.latitudeToY(point.latitude()), 0);
+    }
+    return part;
+  }
+
+  /**
+   * Project a line or ring and rank its vertices, keeping its length or area to drop it at zooms where
+   * it's too small to see.
+   */
+  private static Part convertLine(List<Point> points, double sqTolerance, boolean polygon, boolean outer) {
+    Part part = new Part(0, outer);
+    double size = 0;
+    double lastX = 0;
+    double lastY = 0;
+    for (int i = 0; i < points.size(); i++) {
+      double x = WebMercator.longitudeToX(points.get(i).longitude());
+      double y = WebMercator.latitudeToY(points.get(i).latitude());
+      part.add(x, y, 0);
+      if (i > 0) {
+        size += polygon ? (lastX * y - x * lastY) / 2 : Math.hypot(x - lastX, y - lastY);
+      }
+      lastX = x;
+      lastY = y;
+    }
+    part.size = Math.abs(size);
+    if (part.length >= 6) {
+      int last = part.length - 3;
+      part.coordinates[2] = 1;
+      simplify(part.coordinates, 0, last, sqTolerance);
+      part.coordinates[last + 2] = 1;
+    }
+    return part;
+  }
+
+  /**
+   * Douglas-Peucker from geojson-vt: store the squared distance at which each vertex stops being
+   * needed as its importance.
+   */
+  private static void simplify(double[] coordinates, int first, int last, double sqTolerance) {
+    int[] stack = new int[64];
+    int top = 0;
+    stack[top++] = first;
+    stack[top++] = last;
+    while (top > 0) {
+      int end = stack[--top];
+      int start = stack[--top];
+      double maxSqDist = sqTolerance;
+      int index = -1;
+      double ax = coordinates[start];
+      double ay = coordinates[start + 1];
+      double bx = coordinates[end];
+      double by = coordinates[end + 1];
+      for (int i = start + 3; i < end; i += 3) {
+        double distance = squaredSegmentDistance(coordinates[i], coordinates[i + 1], ax, ay, bx, by);
+        if (distance > maxSqDist) {
+          index = i;
+          maxSqDist = distance;
+        }
+      }
+      if (index != -1) {
+        coordinates[index + 2] = maxSqDist;
+        if (top + 4 > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        if (index - start > 3) {
+          stack[top++] = start;
+          stack[top++] = index;
+        }
+        if (end - index > 3) {
+          stack[top++] = index;
+          stack[top++] = end;
+        }
+      }
+    }
+  }
+
+  private static double squaredSegmentDistance(double x, double y, double ax, double ay, double bx, double by) {
+    double dx = bx - ax;
+    double dy = by - ay;
+    double lengthSquared = dx * dx + dy * dy;
+    double fraction = lengthSquared > 0 ? ((x - ax) * dx + (y - ay) * dy) / lengthSquared : 0;
+    fraction = Math.max(0, Math.min(1, fraction));
+    double closestX = ax + fraction * dx - x;
+    double closestY = ay + fraction * dy - y;
+    return closestX * closestX + closestY * closestY;
+  }
+
+  private static long parseId(String id) {
+    if (id == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(id);
+    } catch (NumberFormatException exception) {
+      // Vector tiles only have number ids
+      return -1;
+    }
+  }
+
+  /**
+   * A Feature, or the part of one in a tile, in Web Mercator coordinates.
+   */
+  private static class SliceFeature {
+
+    private final Feature source;
+    private final long id;
+    private final int type;
+    private final List<Part> parts;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    SliceFeature(Feature source, long id, int type, List<Part> parts) {
+      this.source = source;
+      this.id = id;
+      this.type = type;
+      this.parts = parts;
+      for (Part part : parts) {
+        for (int i = 0; i < part.length; i += 3) {
+          minX = Math.min(minX, part.coordinates[i]);
+          minY = Math.min(minY, part.coordinates[i + 1]);
+          maxX = Math.max(maxX, part.coordinates[i]);
+          maxY = Math.max(maxY, part.coordinates[i + 1]);
+        }
+      }
+    }
+  }
+
+  /**
+   * The points of a Feature, or one of its lines or rings, as x, y and importance triples.
+   */
+  private static class Part {
+
+    private double[] coordinates = new double[24];
+    private int length;
+    // The length of the line or area of the ring it was cut from
+    private double size;
+    private final boolean outer;
+
+    Part(double size, boolean outer) {
+      this.size = size;
+      this.outer = outer;
+    }
+
+    void add(double x, double y, double importance) {
+      if (length + 3 > coordinates.length) {
+        coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+      }
+      coordinates[length++] = x;
+      coordinates[length++] = y;
+      coordinates[length++] = importance;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Helpers for writing GeoJSON straight into a StringBuilder, for sources which are updated often
+ * enough that building Feature objects and serializing them shows up in a frame.
+ */
+public final class GeoJsonWriter {
+
+  // Six decimal places are about 10 centimeters
+  private static final int COORDINATE_PRECISION = 1000000;
+
+  private GeoJsonWriter() {
+  }
+
+  /**
+   * Append a coordinate, or any number which six decimals are enough for, with a fixed number of
+   * decimals. StringBuilder.append(double) allocates on every call.
+   *
+   * @param builder the builder to append to
+   * @param value   the number to append
+   */
+  public static void appendCoordinate(@NonNull StringBuilder builder, double value) {
+    long fixed = Math.round(value * COORDINATE_PRECISION);
+    if (fixed < 0) {
+      builder.append('-');
+      fixed = -fixed;
+    }
+    builder.append(fixed / COORDINATE_PRECISION).append('.');
+    long decimals = fixed % COORDINATE_PRECISION;
+    for (long digit = COORDINATE_PRECISION / 10; digit > 1 && decimals < digit; digit /= 10) {
+      builder.append('0');
+    }
+    builder.append(decimals);
+  }
+}
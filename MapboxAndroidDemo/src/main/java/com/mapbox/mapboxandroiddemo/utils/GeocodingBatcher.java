@@ -0,0 +1,317 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mapbox.api.geocoding.v5.GeocodingCriteria;
+import com.mapbox.api.geocoding.v5.MapboxGeocoding;
+import com.mapbox.api.geocoding.v5.models.CarmenFeature;
+import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
+import com.mapbox.core.exceptions.ServicesException;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxandroiddemo.R;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Forward geocodes many place names at once, like the locations of calendar events.
+ * <p>
+ * Names which only differ in case or spacing are looked up once. Results are kept in a file in the
+ * app's cache folder for 30 days, including names with no result, so that the next launch only
+ * looks up names it hasn't seen. The rest go to the Geocoding API through the shared
+ * {@link HttpStack}, started no faster than a token bucket allows and with a few in flight at once,
+ * which keeps a long list well under the API's rate limit. Failed lookups aren't cached, so they're
+ * tried again next time.
+ * </p>
+ */
+public class GeocodingBatcher {
+
+  private static final String CACHE_FILE = "forward-geocode.json";
+  private static final long TIME_TO_LIVE_MILLIS = TimeUnit.DAYS.toMillis(30);
+  // The Geocoding API allows 600 requests a minute, half of which leaves room for the rest of the app
+  private static final double REQUESTS_PER_SECOND = 5;
+  private static final int BURST_SIZE = 5;
+  private static final int MAX_IN_FLIGHT = 4;
+  private static final Object CACHE_LOCK = new Object();
+
+  private final File cacheFile;
+  private final String accessToken;
+  private final HttpStack httpStack;
+  private final String geocodingTypes;
+
+  /**
+   * @param context        any context from this app
+   * @param geocodingTypes the GeocodingCriteria types to return, like {@link GeocodingCriteria#TYPE_ADDRESS}
+   */
+  public GeocodingBatcher(@NonNull Context context, @NonNull String geocodingTypes) {
+    this.cacheFile = new File(context.getCacheDir(), CACHE_FILE);
+    this.accessToken = context.getString(R.string.access_token);
+    this.httpStack = HttpStack.getInstance(context);
+    this.geocodingTypes = geocodingTypes;
+  }
+
+  /**
+   * The form of a place name that identical names share.
+   *
+   * @param query a place name
+   * @return the name trimmed, lower case and with runs of spaces made single
+   */
+  @NonNull
+  public static String normalize(@NonNull String query) {
+    return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Geocode place names, blocking until every lookup has finished. Interrupting the thread stops
+   * starting lookups and returns what has been found so far.
+   *
+   * @param queries the place names, which may repeat
+   * @return the location of each name which has a result
+   */
+  @WorkerThread
+  @NonNull
+  public Map<String, Point> geocode(@NonNull Collection<String> queries) {
+    long startMillis = System.currentTimeMillis();
+    // The first spelling of each name is the one looked up
+    Map<String, String> uniqueQueries = new LinkedHashMap<>();
+    for (String query : queries) {
+      String key = normalize(query);
+      if (!key.isEmpty() && !uniqueQueries.containsKey(key)) {
+        uniqueQueries.put(key, query);
+      }
+    }
+
+    JsonObject cache = readCache();
+    final Map<String, Point> points = new ConcurrentHashMap<>();
+    Map<String, String> misses = new LinkedHashMap<>();
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, String> query : uniqueQueries.entrySet()) {
+      JsonElement entry = cache.get(cacheKey(query.getKey()));
+      if (entry != null && entry.isJsonArray() && now - getTime(entry.getAsJsonArray()) < TIME_TO_LIVE_MILLIS) {
+        JsonArray values = entry.getAsJsonArray();
+        if (values.size() == 3) {
+          points.put(query.getKey(), Point.fromLngLat(values.get(0).getAsDouble(), values.get(1).getAsDouble()));
+        }
+      } else {
+        misses.put(query.getKey(), query.getValue());
+      }
+    }
+
+    final Map<String, JsonArray> found = new ConcurrentHashMap<>();
+    final AtomicInteger failures = new AtomicInteger();
+    final CountDownLatch finished = new CountDownLatch(misses.size());
+    final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    TokenBucket tokenBucket = new TokenBucket(REQUESTS_PER_SECOND, BURST_SIZE);
+    int started = 0;
+    try {
+      for (Map.Entry<String, String> query : misses.entrySet()) {
+        tokenBucket.acquire();
+        inFlight.acquire();
+        started++;
+        lookUp(query.getKey(), query.getValue(), new LookupCallback() {
+          @Override
+          public void onResult(@NonNull String key, @NonNull JsonArray cacheEntry) {
+            if (cacheEntry.size() == 3) {
+              points.put(key, Point.fromLngLat(cacheEntry.get(0).getAsDouble(), cacheEntry.get(1).getAsDouble()));
+            }
+            found.put(key, cacheEntry);
+            inFlight.release();
+            finished.countDown();
+          }
+
+          @Override
+          public void onFailure(@NonNull String key, @NonNull Throwable throwable) {
+            Timber.d("Geocoding %1$s failed: %2$s", key, throwable.toString());
+            failures.incrementAndGet();
+            inFlight.release();
+            finished.countDown();
+          }
+        });
+      }
+      finished.await();
+    } catch (InterruptedException exception) {
+      Timber.d("Geocoding interrupted after starting %1$d of %2$d lookups", started, misses.size());
+      Thread.currentThread().interrupt();
+    }
+
+    if (!found.isEmpty()) {
+      synchronized (CACHE_LOCK) {
+        // Read again in case another batch wrote the file meanwhile
+        cache = readCache();
+        for (Map.Entry<String, JsonArray> entry : found.entrySet()) {
+          cache.add(cacheKey(entry.getKey()), entry.getValue());
+        }
+        removeExpired(cache);
+        writeCache(cache);
+      }
+    }
+
+    Map<String, Point> results = new HashMap<>();
+    for (String query : queries) {
+      Point point = points.get(normalize(query));
+      if (point != null) {
+        results.put(query, point);
+      }
+    }
+    Timber.d("Geocoded %1$d names, %2$d unique, %3$d from the cache, %4$d looked up, %5$d failed, "
+        + "%6$d found in %7$d ms", queries.size(), uniqueQueries.size(), uniqueQueries.size() - misses.size(),
+      started, failures.get(), results.size(), System.currentTimeMillis() - startMillis);
+    return results;
+  }
+
+  private void lookUp(final String key, String query, final LookupCallback callback) {
+    MapboxGeocoding client;
+    try {
+      client = httpStack.attach(MapboxGeocoding.builder()
+        .accessToken(accessToken)
+        .query(query)
+        .geocodingTypes(geocodingTypes)
+        .mode(GeocodingCriteria.MODE_PLACES)
+        // Only the best match is used
+        .limit(1)
+        .build());
+    } catch (ServicesException servicesException) {
+      callback.onFailure(key, servicesException);
+      return;
+    }
+    client.enqueueCall(new Callback<GeocodingResponse>() {
+      @Override
+      public void onResponse(Call<GeocodingResponse> call, Response<GeocodingResponse> response) {
+        GeocodingResponse body = response.body();
+        if (!response.isSuccessful() || body == null) {
+          callback.onFailure(key, new IOException("Unexpected geocoding response " + response.code()));
+          return;
+        }
+        // An entry is the longitude, latitude and time found, or only the time if there's no result
+        JsonArray cacheEntry = new JsonArray();
+        List<CarmenFeature> features = body.features();
+        if (features != null && !features.isEmpty() && features.get(0).center() != null) {
+          Point center = features.get(0).center();
+          cacheEntry.add(center.longitude());
+          cacheEntry.add(center.latitude());
+        }
+        cacheEntry.add(System.currentTimeMillis());
+        callback.onResult(key, cacheEntry);
+      }
+
+      @Override
+      public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
+        callback.onFailure(key, throwable);
+      }
+    });
+  }
+
+  /**
+   * The key of a name in the cache file, which holds the results of every type.
+   */
+  private String cacheKey(String key) {
+    return geocodingTypes + ":" + key;
+  }
+
+  private static long getTime(JsonArray cacheEntry) {
+    return cacheEntry.get(cacheEntry.size() - 1).getAsLong();
+  }
+
+  private static void removeExpired(JsonObject cache) {
+    long now = System.currentTimeMillis();
+    List<String> expired = new ArrayList<>();
+    for (Map.Entry<String, JsonElement> entry : cache.entrySet()) {
+      if (!entry.getValue().isJsonArray() || now - getTime(entry.getValue().getAsJsonArray()) >= TIME_TO_LIVE_MILLIS) {
+        expired.add(entry.getKey());
+      }
+    }
+    for (String key : expired) {
+      cache.remove(key);
+    }
+  }
+
+  @NonNull
+  private JsonObject readCache() {
+    synchronized (CACHE_LOCK) {
+      if (!cacheFile.exists()) {
+        return new JsonObject();
+      }
+      Reader reader = null;
+      try {
+        reader = new InputStreamReader(new FileInputStream(cacheFile), "UTF-8");
+        JsonElement cache = new JsonParser().parse(reader);
+        if (cache.isJsonObject()) {
+          return cache.getAsJsonObject();
+        }
+        throw new IOException("Not a JSON object");
+      } catch (IOException | RuntimeException exception) {
+        Timber.d("Deleting unreadable geocoding cache: %s", exception.toString());
+        cacheFile.delete();
+        return new JsonObject();
+      } finally {
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (IOException exception) {
+            Timber.d("Exception closing geocoding cache: %s", exception.toString());
+          }
+        }
+      }
+    }
+  }
+
+  private void writeCache(JsonObject cache) {
+    File tempFile = new File(cacheFile.getPath() + ".tmp");
+    OutputStream outputStream = null;
+    try {
+      outputStream = new FileOutputStream(tempFile);
+      outputStream.write(cache.toString().getBytes("UTF-8"));
+      outputStream.close();
+      outputStream = null;
+      if (!tempFile.renameTo(cacheFile)) {
+        throw new IOException("Unable to rename " + tempFile + " to " + cacheFile);
+      }
+    } catch (IOException exception) {
+      Timber.e(exception, "Exception writing geocoding cache");
+      tempFile.delete();
+    } finally {
+      if (outputStream != null) {
+        try {
+          outputStream.close();
+        } catch (IOException exception) {
+          Timber.d("Exception closing geocoding cache: %s", exception.toString());
+        }
+      }
+    }
+  }
+
+  private interface LookupCallback {
+
+    void onResult(@NonNull String key, @NonNull JsonArray cacheEntry);
+
+    void onFailure(@NonNull String key, @NonNull Throwable throwable);
+  }
+}
@@ -0,0 +1,303 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import timber.log.Timber;
+
+/**
+ * Times the phases of the calls made with the shared {@link HttpStack}, per endpoint.
+ * <p>
+ * An endpoint is the host and the first two path segments of a URL, like api.mapbox.com/directions/v5,
+ * so the calls to an API are counted together whatever their parameters. Each call records the time
+ * spent looking up the host, connecting including TLS, waiting from the end of the request to the
+ * first byte of the response, and reading the body. Calls on a pooled connection don't look up or
+ * connect. Calls the cache revalidated with a 304 are counted as revalidated.
+ * </p>
+ * <p>
+ * OkHttp doesn't end the calls the disk cache answers, either without the network or after a 304, so
+ * add this as an application interceptor too, which records those calls when they return.
+ * </p>
+ */
+public class HttpMetrics implements EventListener.Factory, Interceptor {
+
+  private final Map<String, EndpointStats> endpoints = new LinkedHashMap<>();
+  // The calls that haven't been recorded yet
+  private final Map<Call, CallListener> calls = new HashMap<>();
+
+  @Override
+  public synchronized EventListener create(Call call) {
+    CallListener listener = new CallListener();
+    calls.put(call, listener);
+    return listener;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    long startNanos = System.nanoTime();
+    Response response = chain.proceed(chain.request());
+    Response networkResponse = response.networkResponse();
+    if (networkResponse == null) {
+      String endpoint = getEndpoint(chain.request().url());
+      synchronized (this) {
+        calls.remove(chain.call());
+        if (response.cacheResponse() != null) {
+          getEndpointStats(endpoint).cacheHits++;
+        }
+      }
+      if (response.cacheResponse() != null) {
+        Timber.d("%1$s %2$s in %3$.0f ms from the cache", chain.request().method(), endpoint,
+          millis(System.nanoTime() - startNanos));
+      }
+    } else if (networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      // The cache has read the empty body of the 304, so every event of the call has been sent
+      CallListener listener;
+      synchronized (this) {
+        listener = calls.get(chain.call());
+      }
+      if (listener != null) {
+        listener.callEndNanos = System.nanoTime();
+        record(chain.call(), listener);
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Summary of every endpoint called, for logging.
+   *
+   * @return a line per endpoint with its call counts and average phase times
+   */
+  @NonNull
+  public synchronized String getStats() {
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, EndpointStats> endpoint : endpoints.entrySet()) {
+      if (builder.length() > 0) {
+        builder.append('\n');
+      }
+      builder.append(endpoint.getKey()).append(": ").append(endpoint.getValue());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Forget the calls counted so far.
+   */
+  public synchronized void clear() {
+    endpoints.clear();
+  }
+
+  static String getEndpoint(HttpUrl url) {
+    StringBuilder endpoint = new StringBuilder(url.host());
+    List<String> segments = url.pathSegments();
+    for (int i = 0; i < Math.min(2, segments.size()); i++) {
+      endpoint.append('/').append(segments.get(i));
+    }
+    return endpoint.toString();
+  }
+
+  private EndpointStats getEndpointStats(String endpoint) {
+    EndpointStats stats = endpoints.get(endpoint);
+    if (stats == null) {
+      stats = new EndpointStats();
+      endpoints.put(endpoint, stats);
+    }
+    return stats;
+  }
+
+  private synchronized void record(Call call, CallListener listener) {
+    if (calls.remove(call) == null) {
+      return;
+    }
+    String endpoint = getEndpoint(call.request().url());
+    getEndpointStats(endpoint).add(listener);
+    Timber.d("%1$s %2$s in %3$.0f ms, %4$s", listener.method, endpoint,
+      millis(listener.callEndNanos - listener.callStartNanos), listener.describe());
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  /**
+   * The times of one call that went to the network. Calls run on one thread at a time, so the times
+   * aren't synchronized.
+   */
+  private class CallListener extends EventListener {
+
+    private String method;
+    private long callStartNanos;
+    private long callEndNanos;
+    private long dnsStartNanos;
+    private long dnsNanos = -1;
+    private long connectStartNanos;
+    private long connectNanos = -1;
+    private long requestEndNanos;
+    private long firstByteNanos = -1;
+    private long bodyStartNanos;
+    private long bodyNanos = -1;
+    private int responseCode;
+    private boolean failed;
+
+    @Override
+    public void callStart(Call call) {
+      method = call.request().method();
+      callStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+      dnsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+      dnsNanos = System.nanoTime() - dnsStartNanos;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+      connectStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+      connectNanos = System.nanoTime() - connectStartNanos;
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol,
+                              IOException exception) {
+      connectNanos = System.nanoTime() - connectStartNanos;
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, okhttp3.Request request) {
+      requestEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+      requestEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+      firstByteNanos = System.nanoTime() - requestEndNanos;
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+      responseCode = response.code();
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+      bodyStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+      bodyNanos = System.nanoTime() - bodyStartNanos;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+      callEndNanos = System.nanoTime();
+      record(call, this);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException exception) {
+      callEndNanos = System.nanoTime();
+      failed = true;
+      record(call, this);
+    }
+
+    String describe() {
+      if (failed) {
+        return "failed";
+      }
+      return String.format(Locale.US, "code=%1$d, dns=%2$s, connect=%3$s, ttfb=%4$.0f ms, body=%5$s", responseCode,
+        format(dnsNanos), format(connectNanos), millis(firstByteNanos), format(bodyNanos));
+    }
+
+    private String format(long nanos) {
+      return nanos == -1 ? "-" : String.format(Locale.US, "%1$.0f ms", millis(nanos));
+    }
+  }
+
+  /**
+   * The calls to one endpoint.
+   */
+  private static class EndpointStats {
+
+    private int calls;
+    private int failures;
+    private int cacheHits;
+    private int revalidated;
+    private final Phase dns = new Phase();
+    private final Phase connect = new Phase();
+    private final Phase firstByte = new Phase();
+    private final Phase body = new Phase();
+
+    void add(CallListener call) {
+      calls++;
+      if (call.failed) {
+        failures++;
+        return;
+      }
+      if (call.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        revalidated++;
+      }
+      dns.add(call.dnsNanos);
+      connect.add(call.connectNanos);
+      firstByte.add(call.firstByteNanos);
+      body.add(call.bodyNanos);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "calls=%1$d, failures=%2$d, cache hits=%3$d, revalidated=%4$d, "
+          + "average dns=%5$s, connect=%6$s, ttfb=%7$s, body=%8$s", calls, failures, cacheHits, revalidated,
+        dns, connect, firstByte, body);
+    }
+  }
+
+  /**
+   * The average time of a phase over the calls that went through it.
+   */
+  private static class Phase {
+
+    private int count;
+    private long totalNanos;
+
+    void add(long nanos) {
+      if (nanos >= 0) {
+        count++;
+        totalNanos += nanos;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return count == 0 ? "-" : String.format(Locale.US, "%1$.0f ms (%2$d)", millis(totalNanos / count), count);
+    }
+  }
+}
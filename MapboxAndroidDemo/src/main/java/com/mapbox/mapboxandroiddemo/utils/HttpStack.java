@@ -0,0 +1,111 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.mapbox.core.MapboxService;
+import com.mapbox.mapboxandroiddemo.MapboxApplication;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * The OkHttp client shared by the examples that call web APIs, held by the application.
+ * <p>
+ * Sharing one client keeps one connection pool, so an example reuses the connections, TLS sessions
+ * and HTTP/2 streams opened by the examples before it instead of opening its own. Responses go
+ * through a disk cache in the app's cache directory: fresh responses are answered without the
+ * network, and stale responses with an ETag or Last-Modified are revalidated with If-None-Match or
+ * If-Modified-Since, so an unchanged response costs a 304 instead of the body. Every call is timed
+ * by {@link HttpMetrics}.
+ * </p>
+ * <p>
+ * Give Mapbox Java SDK clients the shared client with {@link #attach(MapboxService)} before calling
+ * them, and build Retrofit services for other APIs with {@link #getRetrofit(String)}.
+ * </p>
+ */
+public class HttpStack {
+
+  private static final String CACHE_DIRECTORY = "http";
+  private static final long CACHE_SIZE_BYTES = 20 * 1024 * 1024;
+
+  private final OkHttpClient client;
+  private final HttpMetrics metrics = new HttpMetrics();
+  private final Map<String, Retrofit> retrofits = new HashMap<>();
+
+  public HttpStack(@NonNull Context context) {
+    this(new File(context.getCacheDir(), CACHE_DIRECTORY));
+  }
+
+  /**
+   * @param cacheDirectory the directory of the disk cache
+   */
+  public HttpStack(@NonNull File cacheDirectory) {
+    client = new OkHttpClient.Builder()
+      .cache(new Cache(cacheDirectory, CACHE_SIZE_BYTES))
+      .addInterceptor(metrics)
+      .eventListenerFactory(metrics)
+      .build();
+  }
+
+  /**
+   * Get the stack held by the application.
+   *
+   * @param context any context from this app
+   * @return the application's HttpStack
+   */
+  @NonNull
+  public static HttpStack getInstance(@NonNull Context context) {
+    return ((MapboxApplication) context.getApplicationContext()).getHttpStack();
+  }
+
+  @NonNull
+  public OkHttpClient getClient() {
+    return client;
+  }
+
+  @NonNull
+  public HttpMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get a Retrofit for an API that isn't in the Mapbox Java SDK, parsing JSON with Gson.
+   *
+   * @param baseUrl the base URL of the API, ending with a slash
+   * @return a Retrofit calling the API with the shared client
+   */
+  @NonNull
+  public synchronized Retrofit getRetrofit(@NonNull String baseUrl) {
+    Retrofit retrofit = retrofits.get(baseUrl);
+    if (retrofit == null) {
+      retrofit = new Retrofit.Builder()
+        .baseUrl(baseUrl)
+        .client(client)
+        .addConverterFactory(GsonConverterFactory.create())
+        .build();
+      retrofits.put(baseUrl, retrofit);
+    }
+    return retrofit;
+  }
+
+  /**
+   * Make a Mapbox Java SDK client call its API with the shared client, in place of the client it
+   * would build for itself.
+   *
+   * @param service a client built with its builder, like MapboxDirections
+   * @param <S>     the type of the client
+   * @return the same client, for chaining
+   */
+  @NonNull
+  public <S extends MapboxService<?, ?>> S attach(@NonNull S service) {
+    service.setCallFactory(client);
+    return service;
+  }
+}
@@ -0,0 +1,280 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Static spatial index of points for fast range and radius queries, in the style of KDBush.
+ * <p>
+ * The points are sorted into a KD-tree in place, in a single int array of ids and a packed array of
+ * coordinates, so the index holds no per point objects. Leaves of the tree hold up to a node size of
+ * points which are scanned linearly. Points can't be added once the index is built. Queries reuse a
+ * stack, so query an index from one thread at a time.
+ * </p>
+ */
+public class KdPointIndex {
+
+  private static final int DEFAULT_NODE_SIZE = 64;
+
+  private final int size;
+  private final int nodeSize;
+  private final int[] ids;
+  private final double[] coordinates;
+  private int[] stack = new int[3 * 32];
+
+  /**
+   * Index the first size points of a pair of coordinate arrays. The arrays aren't kept.
+   *
+   * @param xs   the x coordinates
+   * @param ys   the y coordinates
+   * @param size the number of points to index
+   */
+  public KdPointIndex(@NonNull double[] xs, @NonNull double[] ys, int size) {
+    this(xs, ys, size, DEFAULT_NODE_SIZE);
+  }
+
+  /**
+   * Index the first size points of a pair of coordinate arrays. The arrays aren't kept.
+   *
+   * @param xs       the x coordinates
+   * @param ys       the y coordinates
+   * @param size     the number of points to index
+   * @param nodeSize the most points in a leaf of the tree. Larger leaves build faster and query slower
+   */
+  public KdPointIndex(@NonNull double[] xs, @NonNull double[] ys, int size, int nodeSize) {
+    this.size = size;
+    this.nodeSize = Math.max(1, nodeSize);
+    ids = new int[size];
+    coordinates = new double[size * 2];
+    for (int i = 0; i < size; i++) {
+      ids[i] = i;
+      coordinates[2 * i] = xs[i];
+      coordinates[2 * i + 1] = ys[i];
+    }
+    sort(0, size - 1, 0);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Find the points inside a box.
+   *
+   * @param minX   the left of the box
+   * @param minY   the top of the box
+   * @param maxX   the right of the box
+   * @param maxY   the bottom of the box
+   * @param result the list to add the indices of the points in the box to, in no particular order
+   */
+  public void range(double minX, double minY, double maxX, double maxY, @NonNull IntList result) {
+    int top = push(0, 0, size - 1, 0);
+    while (top > 0) {
+      int axis = stack[--top];
+      int right = stack[--top];
+      int left = stack[--top];
+
+      if (right - left <= nodeSize) {
+        for (int i = left; i <= right; i++) {
+          double x = coordinates[2 * i];
+          double y = coordinates[2 * i + 1];
+          if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+            result.add(ids[i]);
+          }
+        }
+        continue;
+      }
+
+      int middle = (left + right) >> 1;
+      double x = coordinates[2 * middle];
+      double y = coordinates[2 * middle + 1];
+      if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+        result.add(ids[middle]);
+      }
+      if (axis == 0 ? minX <= x : minY <= y) {
+        top = push(top, left, middle - 1, 1 - axis);
+      }
+      if (axis == 0 ? maxX >= x : maxY >= y) {
+        top = push(top, middle + 1, right, 1 - axis);
+      }
+    }
+  }
+
+  /**
+   * Find the points within a distance of a point.
+   *
+   * @param queryX the x coordinate of the point
+   * @param queryY the y coordinate of the point
+   * @param radius the distance, in the units of the coordinates
+   * @param result the list to add the indices of the points found to, in no particular order
+   */
+  public void within(double queryX, double queryY, double radius, @NonNull IntList result) {
+    double radiusSquared = radius * radius;
+    int top = push(0, 0, size - 1, 0);
+    while (top > 0) {
+      int axis = stack[--top];
+      int right = stack[--top];
+      int left = stack[--top];
+
+      if (right - left <= nodeSize) {
+        for (int i = left; i <= right; i++) {
+          if (squaredDistance(coordinates[2 * i], coordinates[2 * i + 1], queryX, queryY) <= radiusSquared) {
+            result.add(ids[i]);
+          }
+        }
+        continue;
+      }
+
+      int middle = (left + right) >> 1;
+      double x = coordinates[2 * middle];
+      double y = coordinates[2 * middle + 1];
+      if (squaredDistance(x, y, queryX, queryY) <= radiusSquared) {
+        result.add(ids[middle]);
+      }
+      if (axis == 0 ? queryX - radius <= x : queryY - radius <= y) {
+        top = push(top, left, middle - 1, 1 - axis);
+      }
+      if (axis == 0 ? queryX + radius >= x : queryY + radius >= y) {
+        top = push(top, middle + 1, right, 1 - axis);
+      }
+    }
+  }
+
+  private int push(int top, int left, int right, int axis) {
+    if (left > right) {
+      return top;
+    }
+    if (top + 3 > stack.length) {
+      stack = Arrays.copyOf(stack, stack.length * 2);
+    }
+    stack[top] = left;
+    stack[top + 1] = right;
+    stack[top + 2] = axis;
+    return top + 3;
+  }
+
+  private void sort(int left, int right, int axis) {
+    if (right - left <= nodeSize) {
+      return;
+    }
+    int middle = (left + right) >> 1;
+    // Put the median in the middle, with smaller values on the left and larger ones on the right
+    select(middle, left, right, axis);
+    sort(left, middle - 1, 1 - axis);
+    sort(middle + 1, right, 1 - axis);
+  }
+
+  /**
+   * Floyd-Rivest selection of the kth smallest value on an axis between left and right.
+   */
+  private void select(int k, int left, int right, int axis) {
+    while (right > left) {
+      if (right - left > 600) {
+        int count = right - left + 1;
+        int m = k - left + 1;
+        double z = Math.log(count);
+        double s = 0.5 * Math.exp(2 * z / 3);
+        double sd = 0.5 * Math.sqrt(z * s * (count - s) / count) * (m - count / 2.0 < 0 ? -1 : 1);
+        int newLeft = Math.max(left, (int) Math.floor(k - m * s / count + sd));
+        int newRight = Math.min(right, (int) Math.floor(k + (count - m) * s / count + sd));
+        select(k, newLeft, newRight, axis);
+      }
+
+      double pivot = coordinates[2 * k + axis];
+      int i = left;
+      int j = right;
+
+      swap(left, k);
+      if (coordinates[2 * right + axis] > pivot) {
+        swap(left, right);
+      }
+      while (i < j) {
+        swap(i, j);
+        i++;
+        j--;
+        while (coordinates[2 * i + axis] < pivot) {
+          i++;
+        }
+        while (coordinates[2 * j + axis] > pivot) {
+          j--;
+        }
+      }
+
+      if (coordinates[2 * left + axis] == pivot) {
+        swap(left, j);
+      } else {
+        j++;
+        swap(j, right);
+      }
+      if (j <= k) {
+        left = j + 1;
+      }
+      if (k <= j) {
+        right = j - 1;
+      }
+    }
+  }
+
+  private void swap(int i, int j) {
+    int id = ids[i];
+    ids[i] = ids[j];
+    ids[j] = id;
+    double x = coordinates[2 * i];
+    coordinates[2 * i] = coordinates[2 * j];
+    coordinates[2 * j] = x;
+    double y = coordinates[2 * i + 1];
+    coordinates[2 * i + 1] = coordinates[2 * j + 1];
+    coordinates[2 * j + 1] = y;
+  }
+
+  private static double squaredDistance(double ax, double ay, double bx, double by) {
+    double dx = ax - bx;
+    double dy = ay - by;
+    return dx * dx + dy * dy;
+  }
+
+  /**
+   * Growable list of ints, which query results are added to so they can be reused between queries.
+   */
+  public static class IntList {
+
+    private int[] values;
+    private int size;
+
+    public IntList() {
+      this(16);
+    }
+
+    public IntList(int capacity) {
+      values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    public int get(int index) {
+      if (index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+      }
+      return values[index];
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public void clear() {
+      size = 0;
+    }
+
+    @NonNull
+    public int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxsdk.module.http.HttpRequestUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import timber.log.Timber;
+
+/**
+ * Serves {@link GeoJsonVectorTiles} to the map in process, standing in for a tile server.
+ * <p>
+ * The map loads tiles through OkHttp, so the first registration gives the map a client whose
+ * interceptor answers requests to a made up host from the registered tiles, without touching the
+ * network. Every other request goes on to the network as before. Use the URL returned by
+ * {@link #register(Context, String, GeoJsonVectorTiles)} in the TileSet of a VectorSource, and
+ * unregister the tiles when the example is destroyed. Tiles without features are answered with 204
+ * No Content.
+ * </p>
+ * <p>
+ * The map's client is process wide and stays in place for every map opened afterwards. It is built
+ * from the {@link HttpStack} client, so the map shares its connection pool and is timed by its
+ * {@link HttpMetrics}, but it leaves out the HttpStack disk cache, as the map caches tiles itself.
+ * </p>
+ */
+public final class LocalVectorTileServer implements Interceptor {
+
+  private static final String HOST = "local-vector-tiles";
+  private static final MediaType MEDIA_TYPE = MediaType.parse("application/x-protobuf");
+  // As many requests to a host at once as the map's own client allows
+  private static final int MAX_REQUESTS_PER_HOST = 20;
+
+  private static LocalVectorTileServer instance;
+
+  private final Map<String, GeoJsonVectorTiles> tileSets = new HashMap<>();
+
+  private LocalVectorTileServer() {
+  }
+
+  /**
+   * Serve tiles under a name, replacing tiles registered under it before.
+   *
+   * @param context any context from this app
+   * @param name    the name of the tiles, which is part of their URL
+   * @param tiles   the tiles to serve
+   * @return the URL template of the tiles, for a TileSet
+   */
+  @NonNull
+  public static synchronized String register(@NonNull Context context, @NonNull String name,
+                                            @NonNull GeoJsonVectorTiles tiles) {
+    if (instance == null) {
+      instance = new LocalVectorTileServer();
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+      // The interceptor goes after HttpMetrics, which closes the calls that don't reach the network
+      HttpRequestUtil.setOkHttpClient(HttpStack.getInstance(context).getClient().newBuilder()
+        .cache(null)
+        .dispatcher(dispatcher)
+        .addInterceptor(instance)
+        .build());
+    }
+    synchronized (instance.tileSets) {
+      instance.tileSets.put(name, tiles);
+    }
+    return "http://" + HOST + "/" + name + "/{z}/{x}/{y}.mvt";
+  }
+
+  /**
+   * Stop serving tiles. Requests for them are answered with 404 Not Found.
+   *
+   * @param name the name the tiles were registered under
+   */
+  public static synchronized void unregister(@NonNull String name) {
+    if (instance != null) {
+      synchronized (instance.tileSets) {
+        instance.tileSets.remove(name);
+      }
+    }
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    HttpUrl url = request.url();
+    if (!HOST.equals(url.host())) {
+      return chain.proceed(request);
+    }
+
+    // The path is /name/z/x/y.mvt
+    List<String> segments = url.pathSegments();
+    GeoJsonVectorTiles tiles = null;
+    int[] tile = new int[3];
+    if (segments.size() == 4 && segments.get(3).endsWith(".mvt")) {
+      synchronized (tileSets) {
+        tiles = tileSets.get(segments.get(0));
+      }
+      try {
+        tile[0] = Integer.parseInt(segments.get(1));
+        tile[1] = Integer.parseInt(segments.get(2));
+        tile[2] = Integer.parseInt(segments.get(3).substring(0, segments.get(3).length() - 4));
+      } catch (NumberFormatException exception) {
+        tiles = null;
+      }
+    }
+    Response.Builder response = new Response.Builder()
+      .request(request)
+      .protocol(Protocol.HTTP_1_1);
+    if (tiles == null) {
+      return response.code(404).message("Not Found").body(ResponseBody.create(MEDIA_TYPE, new byte[0])).build();
+    }
+
+    long startNanos = System.nanoTime();
+    byte[] bytes = tiles.getTile(tile[0], tile[1], tile[2]);
+    Timber.v("Served tile %1$d/%2$d/%3$d of %4$s, %5$d bytes in %6$.2f ms", tile[0], tile[1], tile[2],
+      segments.get(0), bytes.length, (System.nanoTime() - startNanos) / 1e6);
+    if (bytes.length == 0) {
+      return response.code(204).message("No Content").body(ResponseBody.create(MEDIA_TYPE, bytes)).build();
+    }
+    return response.code(200).message("OK").body(ResponseBody.create(MEDIA_TYPE, bytes)).build();
+  }
+}
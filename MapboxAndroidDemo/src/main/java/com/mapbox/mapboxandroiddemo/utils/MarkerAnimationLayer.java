@@ -0,0 +1,280 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Animates many markers at once, for example a fleet of vehicles, through a single GeoJsonSource.
+ * <p>
+ * Each marker moves in a straight line from where it is to a target over a duration. The positions
+ * are kept in primitive arrays and all markers are advanced in one {@link FrameScheduler} callback,
+ * which then sends the source a single FeatureCollection for the frame. The collection is written as
+ * GeoJSON into a reused StringBuilder rather than built from Feature objects, so a frame allocates the
+ * one String it sends. Frames in which no marker moved send nothing.
+ * </p>
+ * <p>
+ * Each feature has a "bearing" property, in degrees clockwise from north, for rotating its icon.
+ * </p>
+ */
+public class MarkerAnimationLayer implements FrameScheduler.Callback {
+
+  /**
+   * Notified when markers reach their target, to send them on somewhere else.
+   */
+  public interface OnMarkerArrivedListener {
+    /**
+     * Called from the frame callback, after the frame has been sent to the source.
+     * {@link #moveTo(int, double, double, long)} can be called from here.
+     *
+     * @param layer the layer the marker belongs to
+     * @param index the index of the marker which arrived
+     */
+    void onMarkerArrived(@NonNull MarkerAnimationLayer layer, int index);
+  }
+
+  public static final String PROPERTY_BEARING = "bearing";
+
+  private final GeoJsonSource source;
+  private final int capacity;
+  private final double[] longitudes;
+  private final double[] latitudes;
+  private final double[] fromLongitudes;
+  private final double[] fromLatitudes;
+  private final double[] toLongitudes;
+  private final double[] toLatitudes;
+  private final float[] bearings;
+  private final long[] startTimes;
+  private final long[] durations;
+  private final boolean[] moving;
+  private final int[] arrived;
+  private final StringBuilder geoJson = new StringBuilder();
+  private OnMarkerArrivedListener listener;
+  private FrameScheduler.Registration registration;
+  private int size;
+  private boolean dirty;
+  private long frameTimeNanos;
+  private boolean inFrame;
+
+  private int frameCount;
+  private int publishedCount;
+  private long totalWorkNanos;
+  private long maxWorkNanos;
+  private long lastWorkNanos;
+
+  /**
+   * @param source   the source to show the markers in, already added to the style
+   * @param capacity the most markers the layer can hold
+   */
+  public MarkerAnimationLayer(@NonNull GeoJsonSource source, int capacity) {
+    this.source = source;
+    this.capacity = capacity;
+    longitudes = new double[capacity];
+    latitudes = new double[capacity];
+    fromLongitudes = new double[capacity];
+    fromLatitudes = new double[capacity];
+    toLongitudes = new double[capacity];
+    toLatitudes = new double[capacity];
+    bearings = new float[capacity];
+    startTimes = new long[capacity];
+    durations = new long[capacity];
+    moving = new boolean[capacity];
+    arrived = new int[capacity];
+  }
+
+  public void setOnMarkerArrivedListener(@Nullable OnMarkerArrivedListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Start animating the markers while the owner is resumed.
+   *
+   * @param owner the Activity or Fragment whose lifecycle the animation is bound to
+   */
+  @MainThread
+  public void start(@NonNull LifecycleOwner owner) {
+    stop();
+    registration = FrameScheduler.getInstance().schedule(owner, 0, this);
+    dirty = true;
+  }
+
+  /**
+   * Stop animating the markers, they stay where they are on the map.
+   */
+  @MainThread
+  public void stop() {
+    if (registration != null) {
+      registration.cancel();
+      registration = null;
+    }
+  }
+
+  /**
+   * Add a marker which stands still until it's moved.
+   *
+   * @param longitude the longitude of the marker
+   * @param latitude  the latitude of the marker
+   * @return the index of the marker, for moving it
+   * @throws IllegalStateException if the layer is full
+   */
+  public int add(double longitude, double latitude) {
+    if (size == capacity) {
+      throw new IllegalStateException("The layer is full at " + capacity + " markers");
+    }
+    int index = size++;
+    longitudes[index] = longitude;
+    latitudes[index] = latitude;
+    bearings[index] = 0;
+    moving[index] = false;
+    dirty = true;
+    return index;
+  }
+
+  /**
+   * Remove all markers.
+   */
+  public void clear() {
+    size = 0;
+    dirty = true;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double getLongitude(int index) {
+    return longitudes[index];
+  }
+
+  public double getLatitude(int index) {
+    return latitudes[index];
+  }
+
+  public boolean isMoving(int index) {
+    return moving[index];
+  }
+
+  /**
+   * Move a marker from where it is now to a target at a constant speed. A move that's under way is
+   * replaced.
+   *
+   * @param index          the index of the marker
+   * @param longitude      the longitude of the target
+   * @param latitude       the latitude of the target
+   * @param durationMillis the time the move takes
+   */
+  public void moveTo(int index, double longitude, double latitude, long durationMillis) {
+    fromLongitudes[index] = longitudes[index];
+    fromLatitudes[index] = latitudes[index];
+    toLongitudes[index] = longitude;
+    toLatitudes[index] = latitude;
+    // Moves started while the markers are advanced start at the frame time, like the other moves
+    // of that frame
+    startTimes[index] = inFrame ? frameTimeNanos : System.nanoTime();
+    durations[index] = Math.max(1, TimeUnit.MILLISECONDS.toNanos(durationMillis));
+    moving[index] = true;
+    // Flat approximation of the bearing, it's only used to turn the icon
+    double longitudeDelta = (longitude - longitudes[index]) * Math.cos(Math.toRadians(latitudes[index]));
+    double latitudeDelta = latitude - latitudes[index];
+    if (longitudeDelta != 0 || latitudeDelta != 0) {
+      bearings[index] = (float) ((Math.toDegrees(Math.atan2(longitudeDelta, latitudeDelta)) + 360) % 360);
+    }
+  }
+
+  /**
+   * Summary of the work done on the main thread per frame, for logging and display.
+   *
+   * @return the frame counts and the average, last and most time the frames took as a String
+   */
+  @NonNull
+  public String getStats() {
+    long averageWorkNanos = frameCount > 0 ? totalWorkNanos / frameCount : 0;
+    return String.format(Locale.US, "markers=%1$d, frames=%2$d, sent=%3$d, frame time avg=%4$.2f ms, last=%5$.2f ms,"
+        + " max=%6$.2f ms", size, frameCount, publishedCount, toMillis(averageWorkNanos), toMillis(lastWorkNanos),
+      toMillis(maxWorkNanos));
+  }
+
+  /**
+   * Forget the frame times so far, for example after the number of markers changed.
+   */
+  public void resetStats() {
+    frameCount = 0;
+    publishedCount = 0;
+    totalWorkNanos = 0;
+    maxWorkNanos = 0;
+    lastWorkNanos = 0;
+  }
+
+  @Override
+  public void onFrame(long frameTimeNanos, long budgetNanos) {
+    long startNanos = System.nanoTime();
+    this.frameTimeNanos = frameTimeNanos;
+    inFrame = true;
+
+    int arrivedCount = 0;
+    for (int i = 0; i < size; i++) {
+      if (!moving[i]) {
+        continue;
+      }
+      double fraction = (double) (frameTimeNanos - startTimes[i]) / durations[i];
+      if (fraction >= 1) {
+        fraction = 1;
+        moving[i] = false;
+        arrived[arrivedCount++] = i;
+      } else if (fraction < 0) {
+        fraction = 0;
+      }
+      longitudes[i] = fromLongitudes[i] + (toLongitudes[i] - fromLongitudes[i]) * fraction;
+      latitudes[i] = fromLatitudes[i] + (toLatitudes[i] - fromLatitudes[i]) * fraction;
+      dirty = true;
+    }
+
+    if (dirty) {
+      dirty = false;
+      source.setGeoJson(writeGeoJson());
+      publishedCount++;
+    }
+
+    if (listener != null) {
+      for (int i = 0; i < arrivedCount; i++) {
+        listener.onMarkerArrived(this, arrived[i]);
+      }
+    }
+    inFrame = false;
+
+    frameCount++;
+    lastWorkNanos = System.nanoTime() - startNanos;
+    totalWorkNanos += lastWorkNanos;
+    maxWorkNanos = Math.max(maxWorkNanos, lastWorkNanos);
+  }
+
+  private String writeGeoJson() {
+    StringBuilder builder = geoJson;
+    builder.setLength(0);
+    builder.append("{\"type\":\"FeatureCollection\",\"features\":[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append("{\"type\":\"Feature\",\"properties\":{\"").append(PROPERTY_BEARING).append("\":");
+      builder.append((int) bearings[i]);
+      builder.append("},\"geometry\":{\"type\":\"Point\",\"coordinates\":[");
+      GeoJsonWriter.appendCoordinate(builder, longitudes[i]);
+      builder.append(',');
+      GeoJsonWriter.appendCoordinate(builder, latitudes[i]);
+      builder.append("]}}");
+    }
+    builder.append("]}");
+    return builder.toString();
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+}
@@ -0,0 +1,402 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+
+import com.mapbox.api.directions.v5.DirectionsCriteria;
+import com.mapbox.api.matrix.v1.MapboxMatrix;
+import com.mapbox.api.matrix.v1.models.MatrixResponse;
+import com.mapbox.core.exceptions.ServicesException;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxandroiddemo.R;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Computes travel time and distance matrices of any size with the Matrix API, which takes at most
+ * 25 coordinates a request, or 10 with the driving-traffic profile.
+ * <p>
+ * The sources are split into blocks, and each block is paired with runs of destinations, so that
+ * every request stays within the limit. The block size is picked to make the fewest requests.
+ * Coordinates which are both a source and a destination of a request are only sent once, so
+ * finding the times from one of a set of points to all of them takes one request for up to 25
+ * points. Requests run a few at a time and no faster than the API's rate limit, and their results
+ * are written into one matrix of each. Results of each request are cached by a hash of its
+ * coordinates, so computing a matrix again only requests the parts that changed.
+ * </p>
+ */
+public class MatrixTiler {
+
+  public static final int MAX_COORDINATES = 25;
+  public static final int MAX_COORDINATES_TRAFFIC = 10;
+
+  // The Matrix API allows 60 requests a minute
+  private static final double REQUESTS_PER_SECOND = 1;
+  private static final int BURST_SIZE = 5;
+  private static final int MAX_IN_FLIGHT = 4;
+  // A cell is a duration and a distance, so this is about 4 MB
+  private static final int CACHE_SIZE_CELLS = 256 * 1024;
+
+  private final HttpStack httpStack;
+  private final String accessToken;
+  private final String profile;
+  @Nullable
+  private final String baseUrl;
+  private final int maxCoordinates;
+  @Nullable
+  private final TokenBucket tokenBucket;
+  // Durations and distances of each tile, keyed by a hash of the tile's coordinates
+  private final LruCache<String, double[][][]> cache = new LruCache<String, double[][][]>(CACHE_SIZE_CELLS) {
+    @Override
+    protected int sizeOf(String key, double[][][] tile) {
+      return tile[0].length * tile[0][0].length;
+    }
+  };
+
+  /**
+   * @param context any context from this app
+   * @param profile the DirectionsCriteria profile to travel with
+   */
+  public MatrixTiler(@NonNull Context context, @NonNull String profile) {
+    this(HttpStack.getInstance(context), context.getString(R.string.access_token), profile, null);
+  }
+
+  /**
+   * @param httpStack   the stack to make the requests with
+   * @param accessToken the access token for the requests
+   * @param profile     the DirectionsCriteria profile to travel with
+   * @param baseUrl     the base URL of another Matrix endpoint, like a local one for testing, whose
+   *                    requests aren't rate limited, or null for the Matrix API
+   */
+  public MatrixTiler(@NonNull HttpStack httpStack, @NonNull String accessToken, @NonNull String profile,
+                     @Nullable String baseUrl) {
+    this.httpStack = httpStack;
+    this.accessToken = accessToken;
+    this.profile = profile;
+    this.baseUrl = baseUrl;
+    this.maxCoordinates = DirectionsCriteria.PROFILE_DRIVING_TRAFFIC.equals(profile)
+      ? MAX_COORDINATES_TRAFFIC : MAX_COORDINATES;
+    this.tokenBucket = baseUrl == null ? new TokenBucket(REQUESTS_PER_SECOND, BURST_SIZE) : null;
+  }
+
+  /**
+   * Compute the travel times and distances from every source to every destination, blocking until
+   * every request has finished. Interrupting the thread stops starting requests, and the cells of
+   * the requests which weren't made are left unknown. Without sources or destinations the matrices
+   * are empty and nothing is requested.
+   *
+   * @param sources      the points to travel from
+   * @param destinations the points to travel to
+   * @return the matrices, with a row for each source and a column for each destination
+   */
+  @WorkerThread
+  @NonNull
+  public Result compute(@NonNull List<Point> sources, @NonNull List<Point> destinations) {
+    long startMillis = System.currentTimeMillis();
+    final Result result = new Result(sources.size(), destinations.size());
+    if (sources.isEmpty() || destinations.isEmpty()) {
+      return result;
+    }
+    List<Tile> tiles = plan(sources, destinations);
+    result.tileCount = tiles.size();
+
+    final AtomicInteger failures = new AtomicInteger();
+    final CountDownLatch finished = new CountDownLatch(tiles.size());
+    final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    int started = 0;
+    try {
+      for (final Tile tile : tiles) {
+        double[][][] cached = cache.get(tile.key);
+        if (cached != null) {
+          tile.copyInto(result, cached);
+          result.cachedTileCount++;
+          finished.countDown();
+          continue;
+        }
+        if (tokenBucket != null) {
+          tokenBucket.acquire();
+        }
+        inFlight.acquire();
+        started++;
+        request(tile, new TileCallback() {
+          @Override
+          public void onResult(@NonNull double[][][] values) {
+            cache.put(tile.key, values);
+            tile.copyInto(result, values);
+            inFlight.release();
+            finished.countDown();
+          }
+
+          @Override
+          public void onFailure(@NonNull Throwable throwable) {
+            Timber.d("Matrix request for %1$s failed: %2$s", tile, throwable.toString());
+            failures.incrementAndGet();
+            inFlight.release();
+            finished.countDown();
+          }
+        });
+      }
+      finished.await();
+    } catch (InterruptedException exception) {
+      Timber.d("Matrix interrupted after starting %1$d of %2$d requests", started, tiles.size());
+      Thread.currentThread().interrupt();
+    }
+    result.failedTileCount = failures.get();
+    Timber.d("%1$dx%2$d matrix in %3$d tiles, %4$d cached, %5$d requested, %6$d failed, in %7$d ms",
+      sources.size(), destinations.size(), tiles.size(), result.cachedTileCount, started,
+      result.failedTileCount, System.currentTimeMillis() - startMillis);
+    return result;
+  }
+
+  public void clearCache() {
+    cache.evictAll();
+  }
+
+  /**
+   * Split the matrix into tiles of at most {@link #maxCoordinates} distinct coordinates each.
+   */
+  private List<Tile> plan(List<Point> sources, List<Point> destinations) {
+    int rowsPerTile = getRowsPerTile(sources.size(), destinations.size(), maxCoordinates);
+    List<Tile> tiles = new ArrayList<>();
+    for (int rowStart = 0; rowStart < sources.size(); rowStart += rowsPerTile) {
+      int rowEnd = Math.min(sources.size(), rowStart + rowsPerTile);
+      int columnStart = 0;
+      while (columnStart < destinations.size()) {
+        // The sources take the first indices, then destinations are added until the next one would
+        // be one coordinate too many. Destinations which are also sources of the tile are free
+        Map<Point, Integer> coordinates = new LinkedHashMap<>();
+        for (Point source : sources.subList(rowStart, rowEnd)) {
+          putIfAbsent(coordinates, source);
+        }
+        int columnEnd = columnStart;
+        while (columnEnd < destinations.size()) {
+          Point destination = destinations.get(columnEnd);
+          if (!coordinates.containsKey(destination) && coordinates.size() == maxCoordinates) {
+            break;
+          }
+          putIfAbsent(coordinates, destination);
+          columnEnd++;
+        }
+        // A tile needs two coordinates, which only matters when a source goes to itself
+        if (coordinates.size() == 1) {
+          coordinates.put(Point.fromLngLat(sources.get(rowStart).longitude() + 1e-6,
+            sources.get(rowStart).latitude()), 1);
+        }
+        tiles.add(new Tile(rowStart, rowEnd, columnStart, columnEnd, coordinates,
+          sources.subList(rowStart, rowEnd), destinations.subList(columnStart, columnEnd), profile));
+        columnStart = columnEnd;
+      }
+    }
+    return tiles;
+  }
+
+  /**
+   * The number of sources a tile takes that makes the fewest tiles, if no coordinates are shared.
+   */
+  static int getRowsPerTile(int sourceCount, int destinationCount, int maxCoordinates) {
+    int bestRows = 1;
+    long bestCount = Long.MAX_VALUE;
+    for (int rows = 1; rows <= Math.min(sourceCount, maxCoordinates - 1); rows++) {
+      int columns = Math.min(destinationCount, maxCoordinates - rows);
+      long count = (long) ((sourceCount + rows - 1) / rows) * ((destinationCount + columns - 1) / columns);
+      if (count < bestCount) {
+        bestCount = count;
+        bestRows = rows;
+      }
+    }
+    return bestRows;
+  }
+
+  private static void putIfAbsent(Map<Point, Integer> coordinates, Point point) {
+    if (!coordinates.containsKey(point)) {
+      coordinates.put(point, coordinates.size());
+    }
+  }
+
+  private void request(final Tile tile, final TileCallback callback) {
+    MapboxMatrix client;
+    try {
+      MapboxMatrix.Builder builder = MapboxMatrix.builder()
+        .accessToken(accessToken)
+        .profile(profile)
+        .coordinates(tile.coordinates)
+        .sources(tile.sourceIndices)
+        .destinations(tile.destinationIndices)
+        .addAnnotations(DirectionsCriteria.ANNOTATION_DURATION, DirectionsCriteria.ANNOTATION_DISTANCE);
+      if (baseUrl != null) {
+        builder.baseUrl(baseUrl);
+      }
+      client = httpStack.attach(builder.build());
+    } catch (ServicesException servicesException) {
+      callback.onFailure(servicesException);
+      return;
+    }
+    client.enqueueCall(new Callback<MatrixResponse>() {
+      @Override
+      public void onResponse(Call<MatrixResponse> call, Response<MatrixResponse> response) {
+        MatrixResponse body = response.body();
+        if (!response.isSuccessful() || body == null) {
+          callback.onFailure(new IOException("Unexpected matrix response " + response.code()));
+          return;
+        }
+        int rows = tile.sourceIndices.length;
+        int columns = tile.destinationIndices.length;
+        callback.onResult(new double[][][] {
+          toArray(body.durations(), rows, columns), toArray(body.distances(), rows, columns)});
+      }
+
+      @Override
+      public void onFailure(Call<MatrixResponse> call, Throwable throwable) {
+        callback.onFailure(throwable);
+      }
+    });
+  }
+
+  /**
+   * Copy a matrix from a response, with NaN where there's no route or no value.
+   */
+  private static double[][] toArray(@Nullable List<Double[]> values, int rows, int columns) {
+    double[][] array = new double[rows][columns];
+    for (int row = 0; row < rows; row++) {
+      Arrays.fill(array[row], Double.NaN);
+      Double[] rowValues = values != null && row < values.size() ? values.get(row) : null;
+      if (rowValues == null) {
+        continue;
+      }
+      for (int column = 0; column < Math.min(columns, rowValues.length); column++) {
+        if (rowValues[column] != null) {
+          array[row][column] = rowValues[column];
+        }
+      }
+    }
+    return array;
+  }
+
+  private interface TileCallback {
+
+    void onResult(@NonNull double[][][] values);
+
+    void onFailure(@NonNull Throwable throwable);
+  }
+
+  /**
+   * The sources and destinations of one request.
+   */
+  private static class Tile {
+
+    private final int rowStart;
+    private final int rowEnd;
+    private final int columnStart;
+    private final int columnEnd;
+    private final List<Point> coordinates;
+    private final Integer[] sourceIndices;
+    private final Integer[] destinationIndices;
+    private final String key;
+
+    Tile(int rowStart, int rowEnd, int columnStart, int columnEnd, Map<Point, Integer> coordinates,
+         List<Point> sources, List<Point> destinations, String profile) {
+      this.rowStart = rowStart;
+      this.rowEnd = rowEnd;
+      this.columnStart = columnStart;
+      this.columnEnd = columnEnd;
+      this.coordinates = new ArrayList<>(coordinates.keySet());
+      sourceIndices = new Integer[sources.size()];
+      StringBuilder content = new StringBuilder(profile);
+      for (int i = 0; i < sources.size(); i++) {
+        sourceIndices[i] = coordinates.get(sources.get(i));
+        appendCoordinate(content.append(i == 0 ? '|' : ';'), sources.get(i));
+      }
+      destinationIndices = new Integer[destinations.size()];
+      for (int i = 0; i < destinations.size(); i++) {
+        destinationIndices[i] = coordinates.get(destinations.get(i));
+        appendCoordinate(content.append(i == 0 ? '|' : ';'), destinations.get(i));
+      }
+      key = ContentHash.sha1Hex(content.toString());
+    }
+
+    private static void appendCoordinate(StringBuilder content, Point point) {
+      // Six decimals is about 10 cm, closer than routing can tell apart
+      content.append(String.format(Locale.US, "%.6f,%.6f", point.longitude(), point.latitude()));
+    }
+
+    void copyInto(Result result, double[][][] values) {
+      for (int row = rowStart; row < rowEnd; row++) {
+        System.arraycopy(values[0][row - rowStart], 0, result.durations[row], columnStart, columnEnd - columnStart);
+        System.arraycopy(values[1][row - rowStart], 0, result.distances[row], columnStart, columnEnd - columnStart);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "rows %1$d-%2$d, columns %3$d-%4$d", rowStart, rowEnd - 1, columnStart,
+        columnEnd - 1);
+    }
+  }
+
+  /**
+   * The matrices of a computation, in seconds and meters, with NaN for cells without a route or
+   * whose request failed.
+   */
+  public static class Result {
+
+    private final double[][] durations;
+    private final double[][] distances;
+    private int tileCount;
+    private int cachedTileCount;
+    private int failedTileCount;
+
+    Result(int sourceCount, int destinationCount) {
+      durations = new double[sourceCount][destinationCount];
+      distances = new double[sourceCount][destinationCount];
+      for (int row = 0; row < sourceCount; row++) {
+        Arrays.fill(durations[row], Double.NaN);
+        Arrays.fill(distances[row], Double.NaN);
+      }
+    }
+
+    /**
+     * @return the travel time in seconds from each source, by row, to each destination, by column
+     */
+    @NonNull
+    public double[][] getDurations() {
+      return durations;
+    }
+
+    /**
+     * @return the travel distance in meters from each source, by row, to each destination, by column
+     */
+    @NonNull
+    public double[][] getDistances() {
+      return distances;
+    }
+
+    public int getTileCount() {
+      return tileCount;
+    }
+
+    public int getCachedTileCount() {
+      return cachedTileCount;
+    }
+
+    public int getFailedTileCount() {
+      return failedTileCount;
+    }
+  }
+}
@@ -0,0 +1,304 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Static R-tree of boxes for fast box queries, in the style of Flatbush.
+ * <p>
+ * The boxes are sorted along a Hilbert curve through their centers and packed bottom up into full
+ * nodes, so the whole tree is one array of box coordinates and one array of indices, without per node
+ * objects. Add every box and then call {@link #finish()} before searching. Boxes can't be added once
+ * the tree is finished. Searches reuse a stack, so search a tree from one thread at a time.
+ * </p>
+ */
+public class PackedHilbertRTree {
+
+  private static final int DEFAULT_NODE_SIZE = 16;
+  private static final int HILBERT_MAX = (1 << 16) - 1;
+
+  private final int numItems;
+  private final int nodeSize;
+  // The index in boxes at which each level of the tree ends, leaves first
+  private final int[] levelBounds;
+  private final double[] boxes;
+  private final int[] indices;
+  private int position;
+  private double minX = Double.POSITIVE_INFINITY;
+  private double minY = Double.POSITIVE_INFINITY;
+  private double maxX = Double.NEGATIVE_INFINITY;
+  private double maxY = Double.NEGATIVE_INFINITY;
+  private boolean finished;
+  private int[] stack = new int[64];
+
+  /**
+   * @param numItems the number of boxes that will be added
+   */
+  public PackedHilbertRTree(int numItems) {
+    this(numItems, DEFAULT_NODE_SIZE);
+  }
+
+  /**
+   * @param numItems the number of boxes that will be added
+   * @param nodeSize the most children of a node. Larger nodes build faster and search slower
+   */
+  public PackedHilbertRTree(int numItems, int nodeSize) {
+    if (numItems <= 0) {
+      throw new IllegalArgumentException("A tree needs at least one box, not " + numItems);
+    }
+    this.numItems = numItems;
+    this.nodeSize = Math.min(Math.max(nodeSize, 2), 65535);
+
+    int count = numItems;
+    int numNodes = count;
+    int[] bounds = new int[32];
+    int levels = 0;
+    bounds[levels++] = count * 4;
+    do {
+      count = (count + this.nodeSize - 1) / this.nodeSize;
+      numNodes += count;
+      bounds[levels++] = numNodes * 4;
+    } while (count != 1);
+    levelBounds = Arrays.copyOf(bounds, levels);
+
+    boxes = new double[numNodes * 4];
+    indices = new int[numNodes];
+  }
+
+  /**
+   * Add a box.
+   *
+   * @return the index of the box, which searches return
+   */
+  public int add(double boxMinX, double boxMinY, double boxMaxX, double boxMaxY) {
+    if (finished) {
+      throw new IllegalStateException("Boxes can't be added once the tree is finished");
+    }
+    int index = position >> 2;
+    indices[index] = index;
+    boxes[position++] = boxMinX;
+    boxes[position++] = boxMinY;
+    boxes[position++] = boxMaxX;
+    boxes[position++] = boxMaxY;
+
+    minX = Math.min(minX, boxMinX);
+    minY = Math.min(minY, boxMinY);
+    maxX = Math.max(maxX, boxMaxX);
+    maxY = Math.max(maxY, boxMaxY);
+    return index;
+  }
+
+  /**
+   * Sort the boxes and build the nodes above them. Call this once all boxes are added.
+   */
+  public void finish() {
+    if (finished) {
+      return;
+    }
+    if (position >> 2 != numItems) {
+      throw new IllegalStateException("Added " + (position >> 2) + " boxes instead of " + numItems);
+    }
+    finished = true;
+
+    if (numItems <= nodeSize) {
+      // The root is the only node above the boxes
+      indices[position >> 2] = 0;
+      boxes[position++] = minX;
+      boxes[position++] = minY;
+      boxes[position++] = maxX;
+      boxes[position++] = maxY;
+      return;
+    }
+
+    double width = maxX - minX;
+    double height = maxY - minY;
+    int[] hilbertValues = new int[numItems];
+    for (int i = 0; i < numItems; i++) {
+      int pos = 4 * i;
+      int x = width > 0 ? (int) Math.floor(HILBERT_MAX * ((boxes[pos] + boxes[pos + 2]) / 2 - minX) / width) : 0;
+      int y = height > 0 ? (int) Math.floor(HILBERT_MAX * ((boxes[pos + 1] + boxes[pos + 3]) / 2 - minY) / height) : 0;
+      // Flip the sign bit so the unsigned Hilbert values sort as signed ints
+      hilbertValues[i] = hilbert(x, y) ^ Integer.MIN_VALUE;
+    }
+    sort(hilbertValues, 0, numItems - 1);
+
+    // Build each level of nodes from the one below it
+    int pos = 0;
+    for (int level = 0; level < levelBounds.length - 1; level++) {
+      int end = levelBounds[level];
+      while (pos < end) {
+        int nodeIndex = pos;
+        double nodeMinX = Double.POSITIVE_INFINITY;
+        double nodeMinY = Double.POSITIVE_INFINITY;
+        double nodeMaxX = Double.NEGATIVE_INFINITY;
+        double nodeMaxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < nodeSize && pos < end; i++) {
+          nodeMinX = Math.min(nodeMinX, boxes[pos++]);
+          nodeMinY = Math.min(nodeMinY, boxes[pos++]);
+          nodeMaxX = Math.max(nodeMaxX, boxes[pos++]);
+          nodeMaxY = Math.max(nodeMaxY, boxes[pos++]);
+        }
+        indices[position >> 2] = nodeIndex;
+        boxes[position++] = nodeMinX;
+        boxes[position++] = nodeMinY;
+        boxes[position++] = nodeMaxX;
+        boxes[position++] = nodeMaxY;
+      }
+    }
+  }
+
+  /**
+   * Find the boxes which intersect a box.
+   *
+   * @param queryMinX the left of the box
+   * @param queryMinY the top of the box
+   * @param queryMaxX the right of the box
+   * @param queryMaxY the bottom of the box
+   * @param result    the list to add the indices of the boxes found to, in no particular order
+   */
+  public void search(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY,
+                     @NonNull KdPointIndex.IntList result) {
+    if (!finished) {
+      throw new IllegalStateException("The tree has to be finished before it's searched");
+    }
+    int top = 0;
+    int nodeIndex = boxes.length - 4;
+    while (true) {
+      // A node's children are the next node size boxes, up to the end of its level
+      int end = Math.min(nodeIndex + nodeSize * 4, upperBound(nodeIndex));
+      for (int pos = nodeIndex; pos < end; pos += 4) {
+        if (queryMaxX < boxes[pos] || queryMaxY < boxes[pos + 1]
+          || queryMinX > boxes[pos + 2] || queryMinY > boxes[pos + 3]) {
+          continue;
+        }
+        int index = indices[pos >> 2];
+        if (nodeIndex < numItems * 4) {
+          result.add(index);
+        } else {
+          if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+          }
+          stack[top++] = index;
+        }
+      }
+      if (top == 0) {
+        return;
+      }
+      nodeIndex = stack[--top];
+    }
+  }
+
+  private int upperBound(int nodeIndex) {
+    for (int bound : levelBounds) {
+      if (bound > nodeIndex) {
+        return bound;
+      }
+    }
+    return levelBounds[levelBounds.length - 1];
+  }
+
+  /**
+   * Quicksort the boxes by their Hilbert values, only down to groups of a node size since the order
+   * within a node doesn't matter.
+   */
+  private void sort(int[] values, int left, int right) {
+    if (left / nodeSize >= right / nodeSize) {
+      return;
+    }
+    int pivot = values[(left + right) >> 1];
+    int i = left - 1;
+    int j = right + 1;
+    while (true) {
+      do {
+        i++;
+      } while (values[i] < pivot);
+      do {
+        j--;
+      } while (values[j] > pivot);
+      if (i >= j) {
+        break;
+      }
+      swap(values, i, j);
+    }
+    sort(values, left, j);
+    sort(values, j + 1, right);
+  }
+
+  private void swap(int[] values, int i, int j) {
+    int value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+
+    int index = indices[i];
+    indices[i] = indices[j];
+    indices[j] = index;
+
+    int a = 4 * i;
+    int b = 4 * j;
+    for (int k = 0; k < 4; k++) {
+      double coordinate = boxes[a + k];
+      boxes[a + k] = boxes[b + k];
+      boxes[b + k] = coordinate;
+    }
+  }
+
+  /**
+   * The position of a point on a 16 bit Hilbert curve, from "Fast Hilbert curve generation, sorting,
+   * and range queries" by rawrunprotected.
+   */
+  private static int hilbert(int x, int y) {
+    int a = x ^ y;
+    int b = 0xFFFF ^ a;
+    int c = 0xFFFF ^ (x | y);
+    int d = x & (y ^ 0xFFFF);
+
+    int aa = a | (b >> 1);
+    int bb = (a >> 1) ^ a;
+    int cc = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+    int dd = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+    a = aa;
+    b = bb;
+    c = cc;
+    d = dd;
+    aa = (a & (a >> 2)) ^ (b & (b >> 2));
+    bb = (a & (b >> 2)) ^ (b & ((a ^ b) >> 2));
+    cc ^= (a & (c >> 2)) ^ (b & (d >> 2));
+    dd ^= (b & (c >> 2)) ^ ((a ^ b) & (d >> 2));
+
+    a = aa;
+    b = bb;
+    c = cc;
+    d = dd;
+    aa = (a & (a >> 4)) ^ (b & (b >> 4));
+    bb = (a & (b >> 4)) ^ (b & ((a ^ b) >> 4));
+    cc ^= (a & (c >> 4)) ^ (b & (d >> 4));
+    dd ^= (b & (c >> 4)) ^ ((a ^ b) & (d >> 4));
+
+    a = aa;
+    b = bb;
+    c = cc;
+    d = dd;
+    cc ^= (a & (c >> 8)) ^ (b & (d >> 8));
+    dd ^= (b & (c >> 8)) ^ ((a ^ b) & (d >> 8));
+
+    a = cc ^ (cc >> 1);
+    b = dd ^ (dd >> 1);
+
+    int i0 = x ^ y;
+    int i1 = b | (0xFFFF ^ (i0 | a));
+
+    i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+    i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+    i0 = (i0 | (i0 << 2)) & 0x33333333;
+    i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+    i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+    i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+    i1 = (i1 | (i1 << 2)) & 0x33333333;
+    i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+    return (i1 << 1) | i0;
+  }
+}
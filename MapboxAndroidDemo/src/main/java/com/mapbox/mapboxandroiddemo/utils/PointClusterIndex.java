@@ -0,0 +1,456 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clusters points on the Java side, in the same way as the clustering of a GeoJsonSource, so that
+ * examples can get at cluster members and expansion zooms without querying the map. This is a port of
+ * the supercluster algorithm the map uses.
+ * <p>
+ * The points are projected to Web Mercator and clustered greedily, one zoom level at a time from the
+ * highest zoom down. Each zoom level is kept in packed primitive arrays with a {@link KdPointIndex}
+ * over them, so a level holds no per point objects, and its clusters are found with radius queries on
+ * the level above. Building the index is the slow part, do it on a background thread. Once built, an
+ * index should be queried from one thread at a time.
+ * </p>
+ * <p>
+ * Clusters are returned as Point Features with the properties a clustered GeoJsonSource gives its
+ * clusters: {@link #PROPERTY_CLUSTER}, {@link #PROPERTY_CLUSTER_ID}, {@link #PROPERTY_POINT_COUNT} and
+ * {@link #PROPERTY_POINT_COUNT_ABBREVIATED}, so layers styled for one work with the other. Points that
+ * aren't in a cluster are returned as the Features they were added as.
+ * </p>
+ */
+public class PointClusterIndex {
+
+  public static final String PROPERTY_CLUSTER = "cluster";
+  public static final String PROPERTY_CLUSTER_ID = "cluster_id";
+  public static final String PROPERTY_POINT_COUNT = "point_count";
+  public static final String PROPERTY_POINT_COUNT_ABBREVIATED = "point_count_abbreviated";
+
+  private static final int NOT_PROCESSED = Integer.MAX_VALUE;
+  private static final int NO_PARENT = -1;
+
+  private final Options options;
+  private final List<Feature> points = new ArrayList<>();
+  // One level per zoom, from options.minZoom to options.maxZoom + 1 which holds the input points
+  private final Level[] levels;
+  private final KdPointIndex.IntList queryResult = new KdPointIndex.IntList();
+
+  /**
+   * Build an index of Point Features. Features with other geometries are left out.
+   *
+   * @param features the Features to cluster
+   * @param options  the clustering options
+   */
+  public PointClusterIndex(@NonNull List<Feature> features, @NonNull Options options) {
+    this.options = options;
+    levels = new Level[options.maxZoom + 2];
+
+    for (Feature feature : features) {
+      if (feature.geometry() instanceof Point) {
+        points.add(feature);
+      }
+    }
+
+    Level level = new Level(points.size());
+    for (int i = 0; i < points.size(); i++) {
+      Point point = (Point) points.get(i).geometry();
+      level.add(WebMercator.longitudeToX(point.longitude()), WebMercator.latitudeToY(point.latitude()), 1, i);
+    }
+    level.buildIndex(options.nodeSize);
+    levels[options.maxZoom + 1] = level;
+
+    // Cluster the points at each zoom from the clusters of the zoom above
+    for (int zoom = options.maxZoom; zoom >= options.minZoom; zoom--) {
+      level = cluster(level, zoom);
+      level.buildIndex(options.nodeSize);
+      levels[zoom] = level;
+    }
+  }
+
+  public int getPointCount() {
+    return points.size();
+  }
+
+  /**
+   * Get the clusters and unclustered points inside a box at a zoom.
+   *
+   * @param west  the western longitude of the box, the box may cross the antimeridian
+   * @param south the southern latitude of the box
+   * @param east  the eastern longitude of the box
+   * @param north the northern latitude of the box
+   * @param zoom  the map zoom, fractions are rounded down
+   * @return the clusters as Features with cluster properties, and the unclustered point Features
+   */
+  @NonNull
+  public List<Feature> getClusters(double west, double south, double east, double north, double zoom) {
+    List<Feature> clusters = new ArrayList<>();
+    double minLatitude = Math.max(-90, Math.min(90, south));
+    double maxLatitude = Math.max(-90, Math.min(90, north));
+    double minLongitude = wrapLongitude(west);
+    double maxLongitude = east == 180 ? 180 : wrapLongitude(east);
+    Level level = levels[limitZoom(zoom)];
+    if (east - west >= 360) {
+      addClusters(level, -180, minLatitude, 180, maxLatitude, clusters);
+    } else if (minLongitude > maxLongitude) {
+      addClusters(level, minLongitude, minLatitude, 180, maxLatitude, clusters);
+      addClusters(level, -180, minLatitude, maxLongitude, maxLatitude, clusters);
+    } else {
+      addClusters(level, minLongitude, minLatitude, maxLongitude, maxLatitude, clusters);
+    }
+    return clusters;
+  }
+
+  /**
+   * Get the clusters and points a cluster splits into at the next zoom.
+   *
+   * @param clusterId the {@link #PROPERTY_CLUSTER_ID} of the cluster
+   * @return the child clusters as Features with cluster properties, and the child point Features
+   * @throws IllegalArgumentException if there's no cluster with the id
+   */
+  @NonNull
+  public List<Feature> getChildren(int clusterId) {
+    Level level = levels[getOriginZoom(clusterId)];
+    List<Feature> children = new ArrayList<>();
+    for (int index : findChildren(clusterId)) {
+      children.add(toFeature(level, index));
+    }
+    return children;
+  }
+
+  /**
+   * Get the points in a cluster, a page at a time.
+   *
+   * @param clusterId the {@link #PROPERTY_CLUSTER_ID} of the cluster
+   * @param limit     the most points to return
+   * @param offset    the number of points to skip
+   * @return the Features of the points in the cluster
+   * @throws IllegalArgumentException if there's no cluster with the id
+   */
+  @NonNull
+  public List<Feature> getLeaves(int clusterId, int limit, int offset) {
+    List<Feature> leaves = new ArrayList<>();
+    if (limit > 0) {
+      appendLeaves(leaves, clusterId, limit, offset, 0);
+    }
+    return leaves;
+  }
+
+  /**
+   * Get the zoom at which a cluster splits into more than one cluster or point, to zoom the map to
+   * when the cluster is tapped.
+   *
+   * @param clusterId the {@link #PROPERTY_CLUSTER_ID} of the cluster
+   * @return the zoom at which the cluster expands
+   * @throws IllegalArgumentException if there's no cluster with the id
+   */
+  public int getClusterExpansionZoom(int clusterId) {
+    int expansionZoom = getOriginZoom(clusterId) - 1;
+    while (expansionZoom <= options.maxZoom) {
+      int[] children = findChildren(clusterId);
+      expansionZoom++;
+      if (children.length != 1) {
+        break;
+      }
+      Level level = levels[getOriginZoom(clusterId)];
+      if (level.numPoints[children[0]] == 1) {
+        break;
+      }
+      clusterId = level.ids[children[0]];
+    }
+    return expansionZoom;
+  }
+
+  private Level cluster(Level above, int zoom) {
+    Level level = new Level(above.size);
+    double radius = options.radius / (options.extent * Math.pow(2, zoom));
+
+    for (int i = 0; i < above.size; i++) {
+      // Skip points already taken into a cluster at this zoom
+      if (above.zooms[i] <= zoom) {
+        continue;
+      }
+      above.zooms[i] = zoom;
+
+      queryResult.clear();
+      above.index.within(above.xs[i], above.ys[i], radius, queryResult);
+
+      int originPointCount = above.numPoints[i];
+      int pointCount = originPointCount;
+      for (int n = 0; n < queryResult.size(); n++) {
+        int neighbor = queryResult.get(n);
+        if (above.zooms[neighbor] > zoom) {
+          pointCount += above.numPoints[neighbor];
+        }
+      }
+
+      if (pointCount > originPointCount && pointCount >= options.minPoints) {
+        // Merge the neighbors into a cluster at their weighted center
+        double weightedX = above.xs[i] * originPointCount;
+        double weightedY = above.ys[i] * originPointCount;
+        int clusterId = createClusterId(i, zoom);
+        for (int n = 0; n < queryResult.size(); n++) {
+          int neighbor = queryResult.get(n);
+          if (above.zooms[neighbor] <= zoom) {
+            continue;
+          }
+          above.zooms[neighbor] = zoom;
+          weightedX += above.xs[neighbor] * above.numPoints[neighbor];
+          weightedY += above.ys[neighbor] * above.numPoints[neighbor];
+          above.parentIds[neighbor] = clusterId;
+        }
+        above.parentIds[i] = clusterId;
+        level.add(weightedX / pointCount, weightedY / pointCount, pointCount, clusterId);
+      } else {
+        // Too few to cluster, keep the point and its neighbors as they are
+        level.add(above.xs[i], above.ys[i], above.numPoints[i], above.ids[i]);
+        if (pointCount > 1) {
+          for (int n = 0; n < queryResult.size(); n++) {
+            int neighbor = queryResult.get(n);
+            if (above.zooms[neighbor] <= zoom) {
+              continue;
+            }
+            above.zooms[neighbor] = zoom;
+            level.add(above.xs[neighbor], above.ys[neighbor], above.numPoints[neighbor], above.ids[neighbor]);
+          }
+        }
+      }
+    }
+    return level;
+  }
+
+  private void addClusters(Level level, double west, double south, double east, double north,
+                           List<Feature> clusters) {
+    queryResult.clear();
+    level.index.range(WebMercator.longitudeToX(west), WebMercator.latitudeToY(north),
+      WebMercator.longitudeToX(east), WebMercator.latitudeToY(south), queryResult);
+    for (int i = 0; i < queryResult.size(); i++) {
+      clusters.add(toFeature(level, queryResult.get(i)));
+    }
+  }
+
+  private int[] findChildren(int clusterId) {
+    int originZoom = getOriginZoom(clusterId);
+    int originIndex = getOriginIndex(clusterId);
+    if (originZoom < options.minZoom + 1 || originZoom > options.maxZoom + 1
+      || originIndex < 0 || originIndex >= levels[originZoom].size) {
+      throw new IllegalArgumentException("No cluster with the id " + clusterId);
+    }
+    Level level = levels[originZoom];
+    double radius = options.radius / (options.extent * Math.pow(2, originZoom - 1));
+    queryResult.clear();
+    level.index.within(level.xs[originIndex], level.ys[originIndex], radius, queryResult);
+    KdPointIndex.IntList children = new KdPointIndex.IntList();
+    for (int i = 0; i < queryResult.size(); i++) {
+      int index = queryResult.get(i);
+      if (level.parentIds[index] == clusterId) {
+        children.add(index);
+      }
+    }
+    if (children.size() == 0) {
+      throw new IllegalArgumentException("No cluster with the id " + clusterId);
+    }
+    return children.toArray();
+  }
+
+  private int appendLeaves(List<Feature> leaves, int clusterId, int limit, int offset, int skipped) {
+    Level level = levels[getOriginZoom(clusterId)];
+    for (int index : findChildren(clusterId)) {
+      int pointCount = level.numPoints[index];
+      if (pointCount > 1) {
+        if (skipped + pointCount <= offset) {
+          // Skip the whole cluster
+          skipped += pointCount;
+        } else {
+          skipped = appendLeaves(leaves, level.ids[index], limit, offset, skipped);
+        }
+      } else if (skipped < offset) {
+        skipped++;
+      } else {
+        leaves.add(points.get(level.ids[index]));
+      }
+      if (leaves.size() == limit) {
+        break;
+      }
+    }
+    return skipped;
+  }
+
+  private Feature toFeature(Level level, int index) {
+    if (level.numPoints[index] == 1) {
+      return points.get(level.ids[index]);
+    }
+    int clusterId = level.ids[index];
+    int pointCount = level.numPoints[index];
+    JsonObject properties = new JsonObject();
+    properties.addProperty(PROPERTY_CLUSTER, true);
+    properties.addProperty(PROPERTY_CLUSTER_ID, clusterId);
+    properties.addProperty(PROPERTY_POINT_COUNT, pointCount);
+    properties.addProperty(PROPERTY_POINT_COUNT_ABBREVIATED, abbreviate(pointCount));
+    return Feature.fromGeometry(
+      Point.fromLngLat(WebMercator.xToLongitude(level.xs[index]), WebMercator.yToLatitude(level.ys[index])),
+      properties, String.valueOf(clusterId));
+  }
+
+  /**
+   * Cluster ids encode the index of the point the cluster grew from and the zoom of the level it's in,
+   * so that its children can be found again.
+   */
+  private int createClusterId(int index, int zoom) {
+    return (index << 5) + (zoom + 1) + points.size();
+  }
+
+  private int getOriginIndex(int clusterId) {
+    return (clusterId - points.size()) >> 5;
+  }
+
+  private int getOriginZoom(int clusterId) {
+    return (clusterId - points.size()) % 32;
+  }
+
+  private int limitZoom(double zoom) {
+    return Math.max(options.minZoom, Math.min((int) Math.floor(zoom), options.maxZoom + 1));
+  }
+
+  private static String abbreviate(int pointCount) {
+    if (pointCount >= 10000) {
+      return Math.round(pointCount / 1000.0) + "k";
+    } else if (pointCount >= 1000) {
+      long tenths = Math.round(pointCount / 100.0);
+      return tenths % 10 == 0 ? (tenths / 10) + "k" : (tenths / 10) + "." + (tenths % 10) + "k";
+    }
+    return String.valueOf(pointCount);
+  }
+
+  private static double wrapLongitude(double longitude) {
+    return ((longitude + 180) % 360 + 360) % 360 - 180;
+  }
+
+  /**
+   * The points or clusters of one zoom level, in parallel arrays.
+   */
+  private static class Level {
+    private double[] xs;
+    private double[] ys;
+    private int[] numPoints;
+    // The index of the input point for single points, the cluster id for clusters
+    private int[] ids;
+    private int[] parentIds;
+    // The zoom the point was last clustered at
+    private int[] zooms;
+    private int size;
+    private KdPointIndex index;
+
+    Level(int capacity) {
+      xs = new double[capacity];
+      ys = new double[capacity];
+      numPoints = new int[capacity];
+      ids = new int[capacity];
+      parentIds = new int[capacity];
+      zooms = new int[capacity];
+    }
+
+    void add(double x, double y, int pointCount, int id) {
+      xs[size] = x;
+      ys[size] = y;
+      numPoints[size] = pointCount;
+      ids[size] = id;
+      parentIds[size] = NO_PARENT;
+      zooms[size] = NOT_PROCESSED;
+      size++;
+    }
+
+    void buildIndex(int nodeSize) {
+      // Levels are sized for the level above, lower zooms have far fewer clusters than that
+      if (size < xs.length) {
+        xs = Arrays.copyOf(xs, size);
+        ys = Arrays.copyOf(ys, size);
+        numPoints = Arrays.copyOf(numPoints, size);
+        ids = Arrays.copyOf(ids, size);
+        parentIds = Arrays.copyOf(parentIds, size);
+        zooms = Arrays.copyOf(zooms, size);
+      }
+      index = new KdPointIndex(xs, ys, size, nodeSize);
+    }
+  }
+
+  /**
+   * Clustering options, with the defaults of supercluster.
+   */
+  public static class Options {
+    private int minZoom = 0;
+    private int maxZoom = 16;
+    private int radius = 40;
+    private int extent = 512;
+    private int minPoints = 2;
+    private int nodeSize = 64;
+
+    /**
+     * @param minZoom the lowest zoom to make clusters at
+     * @return this
+     */
+    @NonNull
+    public Options withMinZoom(int minZoom) {
+      this.minZoom = Math.max(0, minZoom);
+      return this;
+    }
+
+    /**
+     * @param maxZoom the highest zoom to make clusters at, points aren't clustered above it
+     * @return this
+     */
+    @NonNull
+    public Options withMaxZoom(int maxZoom) {
+      this.maxZoom = Math.min(maxZoom, 24);
+      return this;
+    }
+
+    /**
+     * @param radius the radius of a cluster in pixels, relative to the tile extent
+     * @return this
+     */
+    @NonNull
+    public Options withRadius(int radius) {
+      this.radius = radius;
+      return this;
+    }
+
+    /**
+     * @param extent the tile extent the radius is relative to
+     * @return this
+     */
+    @NonNull
+    public Options withExtent(int extent) {
+      this.extent = extent;
+      return this;
+    }
+
+    /**
+     * @param minPoints the fewest points to make a cluster of
+     * @return this
+     */
+    @NonNull
+    public Options withMinPoints(int minPoints) {
+      this.minPoints = Math.max(2, minPoints);
+      return this;
+    }
+
+    /**
+     * @param nodeSize the leaf size of the KD-trees, see {@link KdPointIndex}
+     * @return this
+     */
+    @NonNull
+    public Options withNodeSize(int nodeSize) {
+      this.nodeSize = nodeSize;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,291 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Bins weighted points into a square grid of screen sized cells at each zoom, so that a heatmap can be
+ * given one weighted point per cell instead of every point.
+ * <p>
+ * A heatmap spreads each point over a radius of pixels, so moving the points of a cell a few pixels
+ * to the cell's centroid and summing their weights looks the same as long as the cells are well
+ * under the heatmap radius. The number of cells is bounded by the number of pixels rather than the
+ * number of points, which keeps the GeoJSON sent to the source small at the zooms where a heatmap
+ * covers a lot of points.
+ * </p>
+ * <p>
+ * Points are binned on Web Mercator pixels at every zoom between a min and max zoom as they're added,
+ * into open addressing hash maps of primitive arrays. Adding or removing a point only touches its
+ * cell at each zoom, so changing the data doesn't bin everything again. The methods are synchronized,
+ * so the points can be binned on a background thread while the map thread reads the cells.
+ * </p>
+ */
+public class PointGridAggregator {
+
+  public static final String PROPERTY_WEIGHT = "weight";
+  public static final String PROPERTY_POINT_COUNT = "point_count";
+
+  // The tile size of the map, which zoom levels are measured in
+  private static final int TILE_SIZE = 512;
+
+  private final int minZoom;
+  private final int maxZoom;
+  private final Level[] levels;
+  private final StringBuilder geoJson = new StringBuilder();
+  private int pointCount;
+
+  /**
+   * @param minZoom         the lowest zoom to bin the points at
+   * @param maxZoom         the highest zoom to bin the points at, higher zooms use its cells
+   * @param cellSizePixels  the width and height of a cell, in pixels at the zoom of the cell
+   */
+  public PointGridAggregator(int minZoom, int maxZoom, int cellSizePixels) {
+    if (minZoom < 0 || maxZoom < minZoom || maxZoom > 20 || cellSizePixels < 1) {
+      throw new IllegalArgumentException("Zooms " + minZoom + " to " + maxZoom + " with " + cellSizePixels
+        + " pixel cells can't be binned");
+    }
+    this.minZoom = minZoom;
+    this.maxZoom = maxZoom;
+    levels = new Level[maxZoom - minZoom + 1];
+    for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+      levels[zoom - minZoom] = new Level((double) (TILE_SIZE << zoom) / cellSizePixels);
+    }
+  }
+
+  /**
+   * Add a point to its cell at each zoom.
+   *
+   * @param longitude the longitude of the point
+   * @param latitude  the latitude of the point
+   * @param weight    the weight of the point, which is summed into the weight of its cells
+   */
+  public synchronized void add(double longitude, double latitude, double weight) {
+    double x = WebMercator.longitudeToX(longitude);
+    double y = WebMercator.latitudeToY(latitude);
+    for (Level level : levels) {
+      level.add(x, y, weight, 1);
+    }
+    pointCount++;
+  }
+
+  /**
+   * Remove a point which was added before, with the position and weight it was added with.
+   *
+   * @param longitude the longitude the point was added at
+   * @param latitude  the latitude the point was added at
+   * @param weight    the weight the point was added with
+   */
+  public synchronized void remove(double longitude, double latitude, double weight) {
+    double x = WebMercator.longitudeToX(longitude);
+    double y = WebMercator.latitudeToY(latitude);
+    for (Level level : levels) {
+      level.add(x, y, weight, -1);
+    }
+    pointCount--;
+  }
+
+  /**
+   * Remove all points.
+   */
+  public synchronized void clear() {
+    for (Level level : levels) {
+      level.clear();
+    }
+    pointCount = 0;
+  }
+
+  public synchronized int getPointCount() {
+    return pointCount;
+  }
+
+  /**
+   * @param zoom the map zoom
+   * @return the number of cells with points in them at the zoom
+   */
+  public synchronized int getCellCount(double zoom) {
+    return levels[getLevelZoom(zoom) - minZoom].cellCount;
+  }
+
+  /**
+   * Get the zoom whose cells are shown at a map zoom, the zoom rounded down and limited to the zooms
+   * the points are binned at. The cells only need to be sent to the map again when this changes.
+   *
+   * @param zoom the map zoom
+   * @return the zoom of the cells
+   */
+  public int getLevelZoom(double zoom) {
+    return Math.max(minZoom, Math.min(maxZoom, (int) Math.floor(zoom)));
+  }
+
+  /**
+   * Write the cells of a zoom whose centroid is inside a box as a GeoJSON FeatureCollection of Points,
+   * each with the summed {@link #PROPERTY_WEIGHT} and the {@link #PROPERTY_POINT_COUNT} of its cell.
+   *
+   * @param zoom  the map zoom
+   * @param west  the western longitude of the box, which may be below -180 to cross the antimeridian
+   * @param south the southern latitude of the box
+   * @param east  the eastern longitude of the box, which may be above 180 to cross the antimeridian
+   * @param north the northern latitude of the box
+   * @return the FeatureCollection as a String, for GeoJsonSource#setGeoJson(String)
+   */
+  @NonNull
+  public synchronized String getGeoJson(double zoom, double west, double south, double east, double north) {
+    Level level = levels[getLevelZoom(zoom) - minZoom];
+    boolean allLongitudes = east - west >= 360;
+    double minX = WebMercator.longitudeToX(west);
+    double maxX = WebMercator.longitudeToX(east);
+    double minY = WebMercator.latitudeToY(north);
+    double maxY = WebMercator.latitudeToY(south);
+
+    StringBuilder builder = geoJson;
+    builder.setLength(0);
+    builder.append("{\"type\":\"FeatureCollection\",\"features\":[");
+    boolean first = true;
+    for (int slot = 0; slot < level.counts.length; slot++) {
+      int count = level.counts[slot];
+      if (count <= 0) {
+        continue;
+      }
+      double x = level.sumXs[slot] / count;
+      double y = level.sumYs[slot] / count;
+      // Boxes across the antimeridian go past 0 or 1, so check the cell a world to each side too
+      if (y < minY || y > maxY
+        || !(allLongitudes || (x >= minX && x <= maxX) || (x + 1 >= minX && x + 1 <= maxX)
+        || (x - 1 >= minX && x - 1 <= maxX))) {
+        continue;
+      }
+      if (!first) {
+        builder.append(',');
+      }
+      first = false;
+      builder.append("{\"type\":\"Feature\",\"properties\":{\"").append(PROPERTY_WEIGHT).append("\":");
+      GeoJsonWriter.appendCoordinate(builder, level.weights[slot]);
+      builder.append(",\"").append(PROPERTY_POINT_COUNT).append("\":").append(count);
+      builder.append("},\"geometry\":{\"type\":\"Point\",\"coordinates\":[");
+      GeoJsonWriter.appendCoordinate(builder, WebMercator.xToLongitude(x));
+      builder.append(',');
+      GeoJsonWriter.appendCoordinate(builder, WebMercator.yToLatitude(y));
+      builder.append("]}}");
+    }
+    builder.append("]}");
+    return builder.toString();
+  }
+
+  /**
+   * The cells of one zoom, in an open addressing hash map keyed by the cell column and row.
+   */
+  private static class Level {
+
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 256;
+
+    // The number of cells across the world
+    private final double scale;
+    private final int maxCell;
+    private long[] keys;
+    private int[] counts;
+    private double[] weights;
+    private double[] sumXs;
+    private double[] sumYs;
+    private int usedSlots;
+    private int cellCount;
+
+    Level(double scale) {
+      this.scale = scale;
+      maxCell = (int) Math.ceil(scale) - 1;
+      allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Add a point to its cell with a count of 1, or remove it with a count of -1.
+     */
+    void add(double x, double y, double weight, int count) {
+      int column = Math.max(0, Math.min(maxCell, (int) (x * scale)));
+      int row = Math.max(0, Math.min(maxCell, (int) (y * scale)));
+      long key = ((long) column << 32) | row;
+      int slot = findSlot(key);
+      if (keys[slot] == EMPTY) {
+        if (count < 0) {
+          return;
+        }
+        keys[slot] = key;
+        usedSlots++;
+      }
+
+      int oldCount = counts[slot];
+      counts[slot] += count;
+      if (counts[slot] <= 0) {
+        // Start the cell over rather than keep the rounding errors of removed points
+        counts[slot] = 0;
+        weights[slot] = 0;
+        sumXs[slot] = 0;
+        sumYs[slot] = 0;
+      } else {
+        weights[slot] += count * weight;
+        sumXs[slot] += count * x;
+        sumYs[slot] += count * y;
+      }
+      if (oldCount <= 0 && counts[slot] > 0) {
+        cellCount++;
+      } else if (oldCount > 0 && counts[slot] <= 0) {
+        cellCount--;
+      }
+
+      if (usedSlots * 2 > keys.length) {
+        rehash();
+      }
+    }
+
+    void clear() {
+      allocate(INITIAL_CAPACITY);
+      usedSlots = 0;
+      cellCount = 0;
+    }
+
+    private int findSlot(long key) {
+      int mask = keys.length - 1;
+      int slot = hash(key) & mask;
+      while (keys[slot] != EMPTY && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void rehash() {
+      long[] oldKeys = keys;
+      int[] oldCounts = counts;
+      double[] oldWeights = weights;
+      double[] oldSumXs = sumXs;
+      double[] oldSumYs = sumYs;
+      // Cells that were emptied by removals are dropped here
+      allocate(Integer.highestOneBit(Math.max(cellCount, 1)) * 4);
+      usedSlots = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != EMPTY && oldCounts[i] > 0) {
+          int slot = findSlot(oldKeys[i]);
+          keys[slot] = oldKeys[i];
+          counts[slot] = oldCounts[i];
+          weights[slot] = oldWeights[i];
+          sumXs[slot] = oldSumXs[i];
+          sumYs[slot] = oldSumYs[i];
+          usedSlots++;
+        }
+      }
+    }
+
+    private void allocate(int capacity) {
+      keys = new long[Math.max(INITIAL_CAPACITY, capacity)];
+      Arrays.fill(keys, EMPTY);
+      counts = new int[keys.length];
+      weights = new double[keys.length];
+      sumXs = new double[keys.length];
+      sumYs = new double[keys.length];
+    }
+
+    private static int hash(long key) {
+      long hash = key * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32));
+    }
+  }
+}
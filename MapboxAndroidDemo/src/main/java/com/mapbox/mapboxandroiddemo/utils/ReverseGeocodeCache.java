@@ -0,0 +1,393 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+
+import com.mapbox.api.geocoding.v5.MapboxGeocoding;
+import com.mapbox.api.geocoding.v5.models.CarmenFeature;
+import com.mapbox.api.geocoding.v5.models.GeocodingResponse;
+import com.mapbox.core.exceptions.ServicesException;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxandroiddemo.MapboxApplication;
+import com.mapbox.mapboxandroiddemo.R;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Application-wide cache of reverse geocoding results, keyed by the geohash of the location, so that
+ * asking for the address of a spot close to one asked for before doesn't go to the network again.
+ * <p>
+ * A geohash names a cell of a grid, and every location in the cell shares the result of the first
+ * location asked for in it. The precision is the length of the geohash and sets the size of the
+ * cells: 5 characters is about 5 by 5 km, 6 is about 1.2 by 0.6 km, 7 is about 150 by 150 m and 8 is
+ * about 40 by 20 m. Pick the coarsest precision the result doesn't change within, like 5 for places
+ * and 8 for addresses.
+ * </p>
+ * <p>
+ * Results are looked up in memory first, where a hit is answered straight away, then in files in
+ * the app's cache folder which expire after a week, and then with the Geocoding API through the
+ * shared {@link HttpStack}. Lookups of a cell that is already being looked up wait for that lookup
+ * instead of starting their own. Failed lookups aren't cached.
+ * </p>
+ */
+public class ReverseGeocodeCache {
+
+  private static final String CACHE_FOLDER = "reverse-geocode";
+  private static final String FILE_EXTENSION = ".json";
+  private static final int MEMORY_ENTRIES = 256;
+  private static final long MAX_DISK_SIZE_BYTES = 2 * 1024 * 1024;
+  private static final long TIME_TO_LIVE_MILLIS = TimeUnit.DAYS.toMillis(7);
+  private static final String BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+  private final File directory;
+  private final String accessToken;
+  private final HttpStack httpStack;
+  private final LruCache<String, GeocodingResponse> memoryCache = new LruCache<>(MEMORY_ENTRIES);
+  // The callbacks waiting for each cell being looked up, only touched on the main thread
+  private final Map<String, List<Callback>> pending = new HashMap<>();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Executor diskExecutor = BackgroundTaskExecutor.getInstance().getDiskExecutor();
+  private int memoryHits;
+  private int diskHits;
+  private int networkLookups;
+  private int joinedLookups;
+
+  public ReverseGeocodeCache(@NonNull Context context, @NonNull HttpStack httpStack) {
+    this.directory = new File(context.getCacheDir(), CACHE_FOLDER);
+    this.accessToken = context.getString(R.string.access_token);
+    this.httpStack = httpStack;
+  }
+
+  /**
+   * Get the cache held by the application.
+   *
+   * @param context any context from this app
+   * @return the application's ReverseGeocodeCache
+   */
+  @NonNull
+  public static ReverseGeocodeCache getInstance(@NonNull Context context) {
+    return ((MapboxApplication) context.getApplicationContext()).getReverseGeocodeCache();
+  }
+
+  /**
+   * Encode a location as a geohash.
+   *
+   * @param longitude the longitude of the location
+   * @param latitude  the latitude of the location
+   * @param precision the number of characters of the geohash
+   * @return the geohash of the cell the location is in
+   */
+  @NonNull
+  public static String geohash(double longitude, double latitude, int precision) {
+    double minLongitude = -180;
+    double maxLongitude = 180;
+    double minLatitude = -90;
+    double maxLatitude = 90;
+    StringBuilder geohash = new StringBuilder(precision);
+    boolean longitudeBit = true;
+    int bits = 0;
+    int value = 0;
+    while (geohash.length() < precision) {
+      // Bits alternate between halving the longitude range and halving the latitude range
+      if (longitudeBit) {
+        double middle = (minLongitude + maxLongitude) / 2;
+        if (longitude >= middle) {
+          value = (value << 1) | 1;
+          minLongitude = middle;
+        } else {
+          value <<= 1;
+          maxLongitude = middle;
+        }
+      } else {
+        double middle = (minLatitude + maxLatitude) / 2;
+        if (latitude >= middle) {
+          value = (value << 1) | 1;
+          minLatitude = middle;
+        } else {
+          value <<= 1;
+          maxLatitude = middle;
+        }
+      }
+      longitudeBit = !longitudeBit;
+      if (++bits == 5) {
+        geohash.append(BASE_32.charAt(value));
+        bits = 0;
+        value = 0;
+      }
+    }
+    return geohash.toString();
+  }
+
+  /**
+   * Reverse geocode a location. A result in memory is passed to the callback before this returns,
+   * other results are passed to it later on the main thread.
+   *
+   * @param point          the location to look up
+   * @param precision      the length of the geohash the location is rounded to
+   * @param geocodingTypes the GeocodingCriteria types to return, or null for every type
+   * @param callback       the callback to pass the features found to
+   */
+  @MainThread
+  public void reverseGeocode(@NonNull final Point point, int precision, @Nullable final String geocodingTypes,
+                             @NonNull Callback callback) {
+    long startNanos = System.nanoTime();
+    final String key = (geocodingTypes == null ? "all" : geocodingTypes) + "-"
+      + geohash(point.longitude(), point.latitude(), precision);
+    GeocodingResponse cached = memoryCache.get(key);
+    if (cached != null) {
+      memoryHits++;
+      Timber.v("Reverse geocode of %1$s from memory in %2$.1f us", key, (System.nanoTime() - startNanos) / 1e3);
+      callback.onResult(getFeatures(cached));
+      return;
+    }
+
+    List<Callback> callbacks = pending.get(key);
+    if (callbacks != null) {
+      joinedLookups++;
+      callbacks.add(callback);
+      return;
+    }
+    callbacks = new ArrayList<>();
+    callbacks.add(callback);
+    pending.put(key, callbacks);
+    diskExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        GeocodingResponse response = readFile(key);
+        if (response != null) {
+          deliver(key, response, true);
+        } else {
+          lookUp(key, point, geocodingTypes);
+        }
+      }
+    });
+  }
+
+  /**
+   * Forget the results held in memory. The files stay.
+   */
+  public void clearMemory() {
+    memoryCache.evictAll();
+  }
+
+  /**
+   * Summary of where the results came from, for logging.
+   */
+  @NonNull
+  @MainThread
+  public String getStats() {
+    return String.format(Locale.US, "memory hits=%1$d, disk hits=%2$d, network lookups=%3$d, joined lookups=%4$d, "
+      + "memory entries=%5$d", memoryHits, diskHits, networkLookups, joinedLookups, memoryCache.size());
+  }
+
+  private void lookUp(final String key, Point point, @Nullable String geocodingTypes) {
+    MapboxGeocoding.Builder builder = MapboxGeocoding.builder()
+      .accessToken(accessToken)
+      .query(point);
+    if (geocodingTypes != null) {
+      builder.geocodingTypes(geocodingTypes);
+    }
+    MapboxGeocoding client;
+    try {
+      client = httpStack.attach(builder.build());
+    } catch (ServicesException servicesException) {
+      fail(key, servicesException);
+      return;
+    }
+    client.enqueueCall(new retrofit2.Callback<GeocodingResponse>() {
+      @Override
+      public void onResponse(Call<GeocodingResponse> call, Response<GeocodingResponse> response) {
+        final GeocodingResponse body = response.body();
+        if (!response.isSuccessful() || body == null) {
+          fail(key, new IOException("Unexpected geocoding response " + response.code()));
+          return;
+        }
+        deliver(key, body, false);
+        diskExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            writeFile(key, body);
+          }
+        });
+      }
+
+      @Override
+      public void onFailure(Call<GeocodingResponse> call, Throwable throwable) {
+        fail(key, throwable);
+      }
+    });
+  }
+
+  private void deliver(final String key, final GeocodingResponse response, final boolean fromDisk) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (fromDisk) {
+          diskHits++;
+        } else {
+          networkLookups++;
+        }
+        memoryCache.put(key, response);
+        List<CarmenFeature> features = getFeatures(response);
+        for (Callback callback : pending.remove(key)) {
+          callback.onResult(features);
+        }
+      }
+    });
+  }
+
+  private void fail(final String key, final Throwable throwable) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        for (Callback callback : pending.remove(key)) {
+          callback.onFailure(throwable);
+        }
+      }
+    });
+  }
+
+  private static List<CarmenFeature> getFeatures(GeocodingResponse response) {
+    List<CarmenFeature> features = response.features();
+    return features == null ? Collections.<CarmenFeature>emptyList() : features;
+  }
+
+  @WorkerThread
+  @Nullable
+  private GeocodingResponse readFile(String key) {
+    File file = new File(directory, key + FILE_EXTENSION);
+    if (!file.exists()) {
+      return null;
+    }
+    if (System.currentTimeMillis() - file.lastModified() > TIME_TO_LIVE_MILLIS) {
+      file.delete();
+      return null;
+    }
+    InputStream inputStream = null;
+    try {
+      inputStream = new FileInputStream(file);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+      byte[] buffer = new byte[4096];
+      int count;
+      while ((count = inputStream.read(buffer)) != -1) {
+        bytes.write(buffer, 0, count);
+      }
+      return GeocodingResponse.fromJson(bytes.toString("UTF-8"));
+    } catch (IOException | RuntimeException exception) {
+      Timber.d("Deleting unreadable reverse geocode cache file %1$s: %2$s", file.getName(), exception);
+      file.delete();
+      return null;
+    } finally {
+      if (inputStream != null) {
+        try {
+          inputStream.close();
+        } catch (IOException exception) {
+          Timber.d("Exception closing reverse geocode cache file: %s", exception.toString());
+        }
+      }
+    }
+  }
+
+  @WorkerThread
+  private void writeFile(String key, GeocodingResponse response) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Timber.e("Unable to create reverse geocode cache folder %s", directory);
+      return;
+    }
+    File file = new File(directory, key + FILE_EXTENSION);
+    File tempFile = new File(directory, key + ".tmp");
+    OutputStream outputStream = null;
+    try {
+      outputStream = new FileOutputStream(tempFile);
+      outputStream.write(response.toJson().getBytes("UTF-8"));
+      outputStream.close();
+      outputStream = null;
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Unable to rename " + tempFile + " to " + file);
+      }
+    } catch (IOException exception) {
+      Timber.e(exception, "Exception writing reverse geocode cache file %s", file.getName());
+      tempFile.delete();
+    } finally {
+      if (outputStream != null) {
+        try {
+          outputStream.close();
+        } catch (IOException exception) {
+          Timber.d("Exception closing reverse geocode cache file: %s", exception.toString());
+        }
+      }
+    }
+    trimToSize();
+  }
+
+  private void trimToSize() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    long totalSize = 0;
+    for (File file : files) {
+      totalSize += file.length();
+    }
+    if (totalSize <= MAX_DISK_SIZE_BYTES) {
+      return;
+    }
+    // Files are written once, so the oldest are deleted first
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File first, File second) {
+        long firstModified = first.lastModified();
+        long secondModified = second.lastModified();
+        return firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+      }
+    });
+    for (File file : files) {
+      if (totalSize <= MAX_DISK_SIZE_BYTES) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        totalSize -= length;
+      }
+    }
+  }
+
+  /**
+   * Receives the result of a reverse geocode, on the main thread.
+   */
+  public interface Callback {
+
+    /**
+     * @param features the features found, best match first, which may be none
+     */
+    void onResult(@NonNull List<CarmenFeature> features);
+
+    void onFailure(@NonNull Throwable throwable);
+  }
+}
@@ -0,0 +1,203 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Point;
+
+import java.util.List;
+
+/**
+ * Finds the position a given distance along a route, for moving a marker along the route at a
+ * constant speed.
+ * <p>
+ * The route's coordinates and the distance from its start to each coordinate are copied into
+ * primitive arrays once. Sampling looks the distance up in those arrays and writes the result into an
+ * array owned by the caller, so it doesn't allocate. Samples are usually taken at increasing
+ * distances, so the segment of the previous sample is checked before searching. An interpolator isn't
+ * thread safe.
+ * </p>
+ * <p>
+ * It also converts distances along the route to the fraction of the drawn line that a line-progress
+ * expression sees, which is measured in Web Mercator rather than meters.
+ * </p>
+ */
+public class RouteInterpolator {
+
+  /**
+   * Index of the longitude in a sample.
+   */
+  public static final int LONGITUDE = 0;
+  /**
+   * Index of the latitude in a sample.
+   */
+  public static final int LATITUDE = 1;
+  /**
+   * The length of the array to sample into.
+   */
+  public static final int SAMPLE_SIZE = 2;
+
+  // Mean earth radius, as used by Turf
+  private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+  private final double[] longitudes;
+  private final double[] latitudes;
+  private final double[] distances;
+  private final double[] lineProgress;
+  private int lastSegment;
+
+  /**
+   * @param coordinates the route, with at least one coordinate
+   */
+  public RouteInterpolator(@NonNull List<Point> coordinates) {
+    if (coordinates.isEmpty()) {
+      throw new IllegalArgumentException("A route needs at least one coordinate");
+    }
+    int count = coordinates.size();
+    longitudes = new double[count];
+    latitudes = new double[count];
+    distances = new double[count];
+    lineProgress = new double[count];
+    for (int i = 0; i < count; i++) {
+      Point point = coordinates.get(i);
+      longitudes[i] = point.longitude();
+      latitudes[i] = point.latitude();
+      if (i > 0) {
+        distances[i] = distances[i - 1] + distance(i - 1, i);
+        lineProgress[i] = lineProgress[i - 1] + projectedDistance(i - 1, i);
+      }
+    }
+    double projectedLength = lineProgress[count - 1];
+    for (int i = 1; i < count; i++) {
+      lineProgress[i] = projectedLength > 0 ? lineProgress[i] / projectedLength : 1;
+    }
+  }
+
+  /**
+   * @return the length of the route in meters
+   */
+  public double getLength() {
+    return distances[distances.length - 1];
+  }
+
+  public int getCoordinateCount() {
+    return longitudes.length;
+  }
+
+  /**
+   * Find the position a distance along the route. Positions between two coordinates are
+   * interpolated linearly, which is close enough for the short segments of a matched route.
+   *
+   * @param distance the distance from the start of the route in meters, clamped to the route
+   * @param sample   the array of at least {@link #SAMPLE_SIZE} to write the longitude and latitude
+   *                 into, at {@link #LONGITUDE} and {@link #LATITUDE}
+   * @return the index of the coordinate starting the segment the position is on
+   */
+  public int sample(double distance, @NonNull double[] sample) {
+    int last = distances.length - 1;
+    if (last == 0 || distance <= 0) {
+      return write(0, 0, sample);
+    }
+    if (distance >= distances[last]) {
+      return write(last - 1, 1, sample);
+    }
+    int segment = findSegment(distance);
+    double segmentLength = distances[segment + 1] - distances[segment];
+    double fraction = segmentLength > 0 ? (distance - distances[segment]) / segmentLength : 0;
+    return write(segment, fraction, sample);
+  }
+
+  /**
+   * Sample the route at an even spacing into Points, for a marker that moves by handing one of them to
+   * a GeoJSON source each frame. GeoJSON geometries are immutable, so a marker sampled every frame
+   * would otherwise need a new Point every frame.
+   *
+   * @param spacing the distance between two Points in meters, greater than 0
+   * @return the positions 0, spacing, 2 * spacing... meters along the route, ending at its end
+   */
+  @NonNull
+  public Point[] createPoints(double spacing) {
+    if (spacing <= 0) {
+      throw new IllegalArgumentException("The spacing must be greater than 0");
+    }
+    double length = getLength();
+    Point[] points = new Point[(int) Math.ceil(length / spacing) + 1];
+    double[] sample = new double[SAMPLE_SIZE];
+    for (int i = 0; i < points.length; i++) {
+      sample(Math.min(i * spacing, length), sample);
+      points[i] = Point.fromLngLat(sample[LONGITUDE], sample[LATITUDE]);
+    }
+    return points;
+  }
+
+  /**
+   * Find how much of the line a distance along the route is, as measured by the line-progress
+   * expression of a {@link com.mapbox.mapboxsdk.style.layers.LineLayer} drawing the route. The
+   * projected length of a segment grows with its latitude, so this drifts from the distance over the
+   * route's length along routes which change latitude.
+   *
+   * @param distance the distance from the start of the route in meters, clamped to the route
+   * @return the line progress, from 0 at the start of the route to 1 at its end
+   */
+  public double getLineProgress(double distance) {
+    int last = distances.length - 1;
+    if (last == 0 || distance <= 0) {
+      return 0;
+    }
+    if (distance >= distances[last]) {
+      return 1;
+    }
+    int segment = findSegment(distance);
+    double segmentLength = distances[segment + 1] - distances[segment];
+    double fraction = segmentLength > 0 ? (distance - distances[segment]) / segmentLength : 0;
+    return lineProgress[segment] + (lineProgress[segment + 1] - lineProgress[segment]) * fraction;
+  }
+
+  private int findSegment(double distance) {
+    // Check the previous segment and the one after it first, a marker moving along the route
+    // spends several frames on each segment
+    int segment = lastSegment;
+    if (distances[segment] <= distance && distance < distances[segment + 1]) {
+      return segment;
+    }
+    if (segment + 2 < distances.length && distances[segment + 1] <= distance && distance < distances[segment + 2]) {
+      lastSegment = segment + 1;
+      return lastSegment;
+    }
+    // Binary search for the last coordinate at or before the distance
+    int low = 0;
+    int high = distances.length - 2;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (distances[middle] <= distance) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    lastSegment = low;
+    return low;
+  }
+
+  private int write(int segment, double fraction, double[] sample) {
+    int next = Math.min(segment + 1, longitudes.length - 1);
+    sample[LONGITUDE] = longitudes[segment] + (longitudes[next] - longitudes[segment]) * fraction;
+    sample[LATITUDE] = latitudes[segment] + (latitudes[next] - latitudes[segment]) * fraction;
+    return segment;
+  }
+
+  private double distance(int from, int to) {
+    double fromLatitude = Math.toRadians(latitudes[from]);
+    double toLatitude = Math.toRadians(latitudes[to]);
+    double sinHalfLatitude = Math.sin((toLatitude - fromLatitude) / 2);
+    double sinHalfLongitude = Math.sin(Math.toRadians(longitudes[to] - longitudes[from]) / 2);
+    double haversine = sinHalfLatitude * sinHalfLatitude
+      + Math.cos(fromLatitude) * Math.cos(toLatitude) * sinHalfLongitude * sinHalfLongitude;
+    return 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(haversine), Math.sqrt(1 - haversine));
+  }
+
+  private double projectedDistance(int from, int to) {
+    double x = WebMercator.longitudeToX(longitudes[to]) - WebMercator.longitudeToX(longitudes[from]);
+    double y = WebMercator.latitudeToY(latitudes[to]) - WebMercator.latitudeToY(latitudes[from]);
+    return Math.sqrt(x * x + y * y);
+  }
+}
@@ -0,0 +1,523 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simplified copies of the lines and polygons of a FeatureCollection for bands of zooms, so a source
+ * can be given only as much detail as the zoom shows instead of every vertex at every zoom.
+ * <p>
+ * Each band but the last is simplified with Douglas-Peucker to a tolerance in pixels at the highest
+ * zoom of the band, on Web Mercator coordinates, so no line moves by more than the tolerance anywhere
+ * in the band. The last band keeps the Features as they are. Build a pyramid on a background thread,
+ * and swap the level of the zoom into the source when {@link #getLevel(double)} changes.
+ * </p>
+ * <p>
+ * Polygons that share borders, like neighborhoods, would open gaps and overlap each other if each
+ * were simplified on its own. The vertices where rings meet or part are found first and kept, and
+ * every piece of a ring between them is simplified in the same direction, so a border shared by two
+ * rings is simplified the same way in both. Holes that would collapse are dropped, outer rings that
+ * would collapse are kept whole. Points and geometry collections aren't simplified. The simplified
+ * Features share their properties with the originals, so properties changed later show in every level.
+ * </p>
+ */
+public class SimplificationPyramid {
+
+  // The tile size of the map, which zoom levels are measured in
+  private static final int TILE_SIZE = 512;
+
+  private final int[] levelZooms;
+  private final FeatureCollection[] levels;
+  private final int[] vertexCounts;
+  private final int[] geoJsonSizes;
+
+  /**
+   * Simplify the Features for each band of zooms. This takes a while for large collections.
+   *
+   * @param featureCollection the Features to simplify
+   * @param tolerancePixels   how far from the original a simplified line may be, in pixels
+   * @param levelZooms        the zoom each band starts at, ascending. The first band is also used
+   *                          below its zoom, the last band holds the original Features
+   */
+  @WorkerThread
+  public SimplificationPyramid(@NonNull FeatureCollection featureCollection, float tolerancePixels,
+                               @NonNull int... levelZooms) {
+    if (levelZooms.length == 0) {
+      throw new IllegalArgumentException("A pyramid needs at least one level");
+    }
+    for (int i = 1; i < levelZooms.length; i++) {
+      if (levelZooms[i] <= levelZooms[i - 1]) {
+        throw new IllegalArgumentException("Level zooms have to ascend: " + Arrays.toString(levelZooms));
+      }
+    }
+    this.levelZooms = levelZooms.clone();
+    levels = new FeatureCollection[levelZooms.length];
+    vertexCounts = new int[levelZooms.length];
+    geoJsonSizes = new int[levelZooms.length];
+
+    List<Feature> features = featureCollection.features() != null
+      ? featureCollection.features() : new ArrayList<Feature>();
+    Topology topology = new Topology(features);
+    for (int level = 0; level < levelZooms.length; level++) {
+      if (level == levelZooms.length - 1) {
+        levels[level] = FeatureCollection.fromFeatures(features);
+        vertexCounts[level] = topology.vertexCount;
+      } else {
+        double tolerance = tolerancePixels / (TILE_SIZE * Math.pow(2, levelZooms[level + 1]));
+        levels[level] = topology.simplify(tolerance * tolerance);
+        vertexCounts[level] = topology.simplifiedVertexCount;
+      }
+      geoJsonSizes[level] = levels[level].toJson().length();
+    }
+  }
+
+  public int getLevelCount() {
+    return levels.length;
+  }
+
+  /**
+   * @param zoom the map zoom
+   * @return the level whose band holds the zoom
+   */
+  public int getLevel(double zoom) {
+    int level = 0;
+    while (level + 1 < levelZooms.length && zoom >= levelZooms[level + 1]) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * @param level a level, as returned by {@link #getLevel(double)}
+   * @return the Features of the level
+   */
+  @NonNull
+  public FeatureCollection getFeatureCollection(int level) {
+    return levels[level];
+  }
+
+  /**
+   * @param level a level, as returned by {@link #getLevel(double)}
+   * @return the number of coordinates in the Features of the level
+   */
+  public int getVertexCount(int level) {
+    return vertexCounts[level];
+  }
+
+  /**
+   * @param level a level, as returned by {@link #getLevel(double)}
+   * @return the length of the level as GeoJSON, with the properties the Features had when it was built
+   */
+  public int getGeoJsonSize(int level) {
+    return geoJsonSizes[level];
+  }
+
+  /**
+   * The rings and lines of the Features in Web Mercator coordinates, with the vertices that have to
+   * be kept for their shared borders to stay shared.
+   */
+  private static class Topology {
+
+    private final List<Feature> features;
+    // The paths of each Feature, or null for the Features that aren't simplified
+    private final List<List<List<Path>>> paths;
+    private int vertexCount;
+    private int simplifiedVertexCount;
+
+    Topology(List<Feature> features) {
+      this.features = features;
+      paths = new ArrayList<>(features.size());
+      Map<Vertex, Neighbors> neighbors = new HashMap<>();
+      List<Path> allPaths = new ArrayList<>();
+      for (Feature feature : features) {
+        List<List<Path>> featurePaths = getPaths(feature.geometry());
+        paths.add(featurePaths);
+        if (featurePaths == null) {
+          continue;
+        }
+        for (List<Path> part : featurePaths) {
+          for (Path path : part) {
+            path.addNeighbors(neighbors);
+            allPaths.add(path);
+          }
+        }
+      }
+      for (Path path : allPaths) {
+        path.findJunctions(neighbors);
+      }
+      for (Feature feature : features) {
+        vertexCount += countVertices(feature.geometry());
+      }
+    }
+
+    /**
+     * Split the geometry into parts of paths: the rings of each polygon, or each line. Returns null for
+     * geometries that aren't simplified.
+     */
+    private static List<List<Path>> getPaths(Geometry geometry) {
+      List<List<Path>> parts = new ArrayList<>();
+      if (geometry instanceof LineString) {
+        parts.add(toLine(((LineString) geometry).coordinates()));
+      } else if (geometry instanceof MultiLineString) {
+        for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+          parts.add(toLine(line));
+        }
+      } else if (geometry instanceof Polygon) {
+        parts.add(toRings(((Polygon) geometry).coordinates()));
+      } else if (geometry instanceof MultiPolygon) {
+        for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+          parts.add(toRings(polygon));
+        }
+      } else {
+        return null;
+      }
+      return parts;
+    }
+
+    private static List<Path> toRings(List<List<Point>> rings) {
+      List<Path> paths = new ArrayList<>(rings.size());
+      for (List<Point> ring : rings) {
+        paths.add(new Path(ring, true));
+      }
+      return paths;
+    }
+
+    private static List<Path> toLine(List<Point> line) {
+      List<Path> paths = new ArrayList<>(1);
+      paths.add(new Path(line, false));
+      return paths;
+    }
+
+    private static int countVertices(Geometry geometry) {
+      if (geometry instanceof Point) {
+        return 1;
+      }
+      int count = 0;
+      if (geometry instanceof LineString) {
+        count = ((LineString) geometry).coordinates().size();
+      } else if (geometry instanceof MultiLineString) {
+        for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+          count += line.size();
+        }
+      } else if (geometry instanceof Polygon) {
+        for (List<Point> ring : ((Polygon) geometry).coordinates()) {
+          count += ring.size();
+        }
+      } else if (geometry instanceof MultiPolygon) {
+        for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+          for (List<Point> ring : polygon) {
+            count += ring.size();
+          }
+        }
+      }
+      return count;
+    }
+
+    FeatureCollection simplify(double sqTolerance) {
+      simplifiedVertexCount = 0;
+      List<Feature> simplified = new ArrayList<>(features.size());
+      for (int i = 0; i < features.size(); i++) {
+        Feature feature = features.get(i);
+        List<List<Path>> featurePaths = paths.get(i);
+        if (featurePaths == null) {
+          simplified.add(feature);
+          simplifiedVertexCount += countVertices(feature.geometry());
+          continue;
+        }
+        Geometry geometry = simplify(feature.geometry(), featurePaths, sqTolerance);
+        simplified.add(Feature.fromGeometry(geometry, feature.properties(), feature.id(), feature.bbox()));
+      }
+      return FeatureCollection.fromFeatures(simplified);
+    }
+
+    private Geometry simplify(Geometry geometry, List<List<Path>> parts, double sqTolerance) {
+      if (geometry instanceof LineString) {
+        return LineString.fromLngLats(simplifyLine(parts.get(0).get(0), sqTolerance));
+      } else if (geometry instanceof MultiLineString) {
+        List<List<Point>> lines = new ArrayList<>(parts.size());
+        for (List<Path> part : parts) {
+          lines.add(simplifyLine(part.get(0), sqTolerance));
+        }
+        return MultiLineString.fromLngLats(lines);
+      } else if (geometry instanceof Polygon) {
+        return Polygon.fromLngLats(simplifyRings(parts.get(0), sqTolerance));
+      } else {
+        List<List<List<Point>>> polygons = new ArrayList<>(parts.size());
+        for (List<Path> part : parts) {
+          polygons.add(simplifyRings(part, sqTolerance));
+        }
+        return MultiPolygon.fromLngLats(polygons);
+      }
+    }
+
+    private List<List<Point>> simplifyRings(List<Path> rings, double sqTolerance) {
+      List<List<Point>> simplified = new ArrayList<>(rings.size());
+      for (int i = 0; i < rings.size(); i++) {
+        List<Point> ring = rings.get(i).simplify(sqTolerance);
+        if (ring.size() >= 4) {
+          simplified.add(ring);
+          simplifiedVertexCount += ring.size();
+        } else if (i == 0) {
+          // Keep the polygon rather than drop it, it's small at this zoom anyway
+          simplified.add(rings.get(i).points);
+          simplifiedVertexCount += rings.get(i).points.size();
+        }
+      }
+      return simplified;
+    }
+
+    private List<Point> simplifyLine(Path line, double sqTolerance) {
+      List<Point> points = line.simplify(sqTolerance);
+      simplifiedVertexCount += points.size();
+      return points;
+    }
+  }
+
+  /**
+   * A ring or line. The vertices of a ring are kept without the one closing it.
+   */
+  private static class Path {
+
+    private final List<Point> points;
+    private final boolean closed;
+    private final int size;
+    private final double[] xs;
+    private final double[] ys;
+    private final boolean[] junctions;
+
+    Path(List<Point> points, boolean closed) {
+      this.points = points;
+      // Rings that aren't closed are left as they are
+      this.closed = closed && points.size() >= 4 && points.get(0).equals(points.get(points.size() - 1));
+      size = this.closed ? points.size() - 1 : points.size();
+      xs = new double[size];
+      ys = new double[size];
+      junctions = new boolean[size];
+      for (int i = 0; i < size; i++) {
+        xs[i] = WebMercator.longitudeToX(points.get(i).longitude());
+        ys[i] = WebMercator.latitudeToY(points.get(i).latitude());
+      }
+    }
+
+    void addNeighbors(Map<Vertex, Neighbors> neighbors) {
+      for (int i = 0; i < size; i++) {
+        Vertex vertex = new Vertex(points.get(i));
+        Neighbors vertexNeighbors = neighbors.get(vertex);
+        if (vertexNeighbors == null) {
+          vertexNeighbors = new Neighbors();
+          neighbors.put(vertex, vertexNeighbors);
+        }
+        if (closed) {
+          vertexNeighbors.add(new Vertex(points.get(i == 0 ? size - 1 : i - 1)));
+          vertexNeighbors.add(new Vertex(points.get(i == size - 1 ? 0 : i + 1)));
+        } else if (i == 0 || i == size - 1) {
+          vertexNeighbors.junction = true;
+        } else {
+          vertexNeighbors.add(new Vertex(points.get(i - 1)));
+          vertexNeighbors.add(new Vertex(points.get(i + 1)));
+        }
+      }
+    }
+
+    void findJunctions(Map<Vertex, Neighbors> neighbors) {
+      for (int i = 0; i < size; i++) {
+        junctions[i] = neighbors.get(new Vertex(points.get(i))).junction;
+      }
+    }
+
+    List<Point> simplify(double sqTolerance) {
+      if (size < 3 || (points.size() < 4 && closed)) {
+        return points;
+      }
+      boolean[] keep = new boolean[size];
+      int[] arc = new int[size + 1];
+      if (!closed) {
+        int start = 0;
+        for (int i = 1; i < size; i++) {
+          if (junctions[i] || i == size - 1) {
+            int length = 0;
+            for (int j = start; j <= i; j++) {
+              arc[length++] = j;
+            }
+            simplifyArc(arc, length, sqTolerance, keep);
+            start = i;
+          }
+        }
+      } else {
+        int first = -1;
+        for (int i = 0; i < size; i++) {
+          if (junctions[i]) {
+            first = i;
+            break;
+          }
+        }
+        if (first == -1) {
+          // A ring that touches no other starts at its smallest vertex, so rings equal to it match
+          first = 0;
+          for (int i = 1; i < size; i++) {
+            if (compare(i, first) < 0) {
+              first = i;
+            }
+          }
+        }
+        int start = first;
+        int i = first;
+        do {
+          i = (i + 1) % size;
+          if (junctions[i] || i == first) {
+            int length = 0;
+            for (int j = start; j != i; j = (j + 1) % size) {
+              arc[length++] = j;
+            }
+            arc[length++] = i;
+            simplifyArc(arc, length, sqTolerance, keep);
+            start = i;
+          }
+        } while (i != first);
+      }
+
+      List<Point> simplified = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        if (keep[i]) {
+          simplified.add(points.get(i));
+        }
+      }
+      if (closed && !simplified.isEmpty()) {
+        simplified.add(simplified.get(0));
+      }
+      return simplified;
+    }
+
+    /**
+     * Douglas-Peucker on the vertices of the arc, whose ends are kept. The arc is run in the order of
+     * its smaller end, so that the same arc of another ring in the other direction keeps the same
+     * vertices.
+     */
+    private void simplifyArc(int[] arc, int length, double sqTolerance, boolean[] keep) {
+      int last = length - 1;
+      int order = compare(arc[0], arc[last]);
+      if (order > 0 || (order == 0 && length > 2 && compare(arc[1], arc[last - 1]) > 0)) {
+        for (int i = 0, j = last; i < j; i++, j--) {
+          int index = arc[i];
+          arc[i] = arc[j];
+          arc[j] = index;
+        }
+      }
+      keep[arc[0]] = true;
+      keep[arc[last]] = true;
+
+      int[] stack = new int[64];
+      int top = 0;
+      stack[top++] = 0;
+      stack[top++] = last;
+      while (top > 0) {
+        int end = stack[--top];
+        int begin = stack[--top];
+        double maxDistance = sqTolerance;
+        int farthest = -1;
+        for (int i = begin + 1; i < end; i++) {
+          double distance = squaredSegmentDistance(xs[arc[i]], ys[arc[i]], xs[arc[begin]], ys[arc[begin]],
+            xs[arc[end]], ys[arc[end]]);
+          if (distance > maxDistance) {
+            farthest = i;
+            maxDistance = distance;
+          }
+        }
+        if (farthest != -1) {
+          keep[arc[farthest]] = true;
+          if (top + 4 > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+          }
+          stack[top++] = begin;
+          stack[top++] = farthest;
+          stack[top++] = farthest;
+          stack[top++] = end;
+        }
+      }
+    }
+
+    private int compare(int a, int b) {
+      int order = Double.compare(xs[a], xs[b]);
+      return order != 0 ? order : Double.compare(ys[a], ys[b]);
+    }
+
+    private static double squaredSegmentDistance(double x, double y, double ax, double ay, double bx, double by) {
+      double dx = bx - ax;
+      double dy = by - ay;
+      double lengthSquared = dx * dx + dy * dy;
+      double fraction = lengthSquared > 0 ? ((x - ax) * dx + (y - ay) * dy) / lengthSquared : 0;
+      fraction = Math.max(0, Math.min(1, fraction));
+      double closestX = ax + fraction * dx - x;
+      double closestY = ay + fraction * dy - y;
+      return closestX * closestX + closestY * closestY;
+    }
+  }
+
+  /**
+   * The vertices next to a vertex in every path it's in. A vertex with more than two is where paths
+   * meet or part.
+   */
+  private static class Neighbors {
+
+    private Vertex first;
+    private Vertex second;
+    private boolean junction;
+
+    void add(Vertex neighbor) {
+      if (junction) {
+        return;
+      }
+      if (first == null || first.equals(neighbor)) {
+        first = neighbor;
+      } else if (second == null || second.equals(neighbor)) {
+        second = neighbor;
+      } else {
+        junction = true;
+      }
+    }
+  }
+
+  /**
+   * A coordinate, compared exactly.
+   */
+  private static class Vertex {
+
+    private final double longitude;
+    private final double latitude;
+
+    Vertex(Point point) {
+      longitude = point.longitude();
+      latitude = point.latitude();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Vertex)) {
+        return false;
+      }
+      Vertex vertex = (Vertex) other;
+      return longitude == vertex.longitude && latitude == vertex.latitude;
+    }
+
+    @Override
+    public int hashCode() {
+      long bits = Double.doubleToLongBits(longitude) * 31 + Double.doubleToLongBits(latitude);
+      return (int) (bits ^ (bits >>> 32));
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Point;
+
+import java.util.List;
+
+/**
+ * Orders the stops of a trip on the device, for showing a route at once while the Optimization API
+ * works on it, or for trips with more stops than the API takes.
+ * <p>
+ * The trip starts at the first stop and ends at whichever stop is best, like an Optimization API
+ * request with a first source and any destination. A first order visits the nearest stop not yet
+ * visited each time. It is then improved with 2-opt, which reverses a run of stops, and Or-opt,
+ * which moves a run of up to three stops elsewhere, until neither finds a shorter trip or the time
+ * budget runs out. The result is usually within a few percent of the best order.
+ * </p>
+ * <p>
+ * The cost of travelling between stops can be the straight line distance from
+ * {@link #haversineCosts(List)}, or the durations or distances of a Matrix API response, which
+ * don't need to be the same in both directions.
+ * </p>
+ */
+public class StopOrderOptimizer {
+
+  // Mean earth radius, as used by Turf
+  private static final double EARTH_RADIUS_METERS = 6371008.8;
+  // Improvements smaller than this are rounding error of the running sums
+  private static final double MIN_IMPROVEMENT = 1e-6;
+  private static final int MAX_OR_OPT_LENGTH = 3;
+
+  private final double[][] costs;
+  private final int[] order;
+  // The cost from the first stop to each position, forwards and when walked backwards
+  private final double[] forwardCosts;
+  private final double[] backwardCosts;
+  private final long deadlineNanos;
+  private int improvementCount;
+
+  private StopOrderOptimizer(double[][] costs, long timeBudgetNanos) {
+    this.costs = costs;
+    this.order = new int[costs.length];
+    this.forwardCosts = new double[costs.length];
+    this.backwardCosts = new double[costs.length];
+    this.deadlineNanos = System.nanoTime() + timeBudgetNanos;
+  }
+
+  /**
+   * The straight line distance between every pair of stops.
+   *
+   * @param stops the stops
+   * @return the distance in meters from each stop, by row, to each stop, by column
+   */
+  @NonNull
+  public static double[][] haversineCosts(@NonNull List<Point> stops) {
+    int count = stops.size();
+    double[] latitudes = new double[count];
+    double[] cosLatitudes = new double[count];
+    double[] longitudes = new double[count];
+    for (int i = 0; i < count; i++) {
+      latitudes[i] = Math.toRadians(stops.get(i).latitude());
+      cosLatitudes[i] = Math.cos(latitudes[i]);
+      longitudes[i] = Math.toRadians(stops.get(i).longitude());
+    }
+    double[][] costs = new double[count][count];
+    for (int from = 0; from < count; from++) {
+      for (int to = from + 1; to < count; to++) {
+        double sinHalfLatitude = Math.sin((latitudes[to] - latitudes[from]) / 2);
+        double sinHalfLongitude = Math.sin((longitudes[to] - longitudes[from]) / 2);
+        double haversine = sinHalfLatitude * sinHalfLatitude
+          + cosLatitudes[from] * cosLatitudes[to] * sinHalfLongitude * sinHalfLongitude;
+        costs[from][to] = 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(haversine), Math.sqrt(1 - haversine));
+        costs[to][from] = costs[from][to];
+      }
+    }
+    return costs;
+  }
+
+  /**
+   * Find a short order to visit the stops in, starting at the first.
+   *
+   * @param costs           the cost from each stop, by row, to each stop, by column, with no NaN
+   * @param timeBudgetNanos how long to keep improving the order for
+   * @return the order found
+   */
+  @NonNull
+  public static Solution solve(@NonNull double[][] costs, long timeBudgetNanos) {
+    long startNanos = System.nanoTime();
+    StopOrderOptimizer optimizer = new StopOrderOptimizer(costs, timeBudgetNanos);
+    optimizer.visitNearestFirst();
+    boolean localOptimum = optimizer.improve();
+    return new Solution(optimizer.order, getCost(costs, optimizer.order), localOptimum,
+      optimizer.improvementCount, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * The cost of visiting stops in an order.
+   */
+  public static double getCost(@NonNull double[][] costs, @NonNull int[] order) {
+    double cost = 0;
+    for (int i = 1; i < order.length; i++) {
+      cost += costs[order[i - 1]][order[i]];
+    }
+    return cost;
+  }
+
+  private void visitNearestFirst() {
+    int count = order.length;
+    boolean[] visited = new boolean[count];
+    if (count == 0) {
+      return;
+    }
+    visited[0] = true;
+    for (int i = 1; i < count; i++) {
+      int last = order[i - 1];
+      int nearest = -1;
+      for (int stop = 1; stop < count; stop++) {
+        if (!visited[stop] && (nearest < 0 || costs[last][stop] < costs[last][nearest])) {
+          nearest = stop;
+        }
+      }
+      order[i] = nearest;
+      visited[nearest] = true;
+    }
+  }
+
+  /**
+   * @return whether neither move improves the order any more, rather than the time running out
+   */
+  private boolean improve() {
+    boolean improved = true;
+    while (improved) {
+      improved = false;
+      if (isOutOfTime()) {
+        return false;
+      }
+      improved |= improveWithTwoOpt();
+      if (isOutOfTime()) {
+        return false;
+      }
+      improved |= improveWithOrOpt();
+    }
+    return true;
+  }
+
+  private boolean improveWithTwoOpt() {
+    int count = order.length;
+    boolean improved = false;
+    updateRunningCosts();
+    for (int i = 1; i < count - 1; i++) {
+      if (isOutOfTime()) {
+        return improved;
+      }
+      int previous = order[i - 1];
+      int first = order[i];
+      for (int j = i + 1; j < count; j++) {
+        int last = order[j];
+        // Reversing positions i to j replaces the edges at either end and walks the run backwards
+        double delta = costs[previous][last] - costs[previous][first]
+          + (backwardCosts[j] - backwardCosts[i]) - (forwardCosts[j] - forwardCosts[i]);
+        if (j + 1 < count) {
+          int next = order[j + 1];
+          delta += costs[first][next] - costs[last][next];
+        }
+        if (delta < -MIN_IMPROVEMENT) {
+          reverse(i, j);
+          updateRunningCosts();
+          improvementCount++;
+          improved = true;
+          first = order[i];
+        }
+      }
+    }
+    return improved;
+  }
+
+  private boolean improveWithOrOpt() {
+    int count = order.length;
+    boolean improved = false;
+    for (int length = 1; length <= MAX_OR_OPT_LENGTH; length++) {
+      for (int start = 1; start + length <= count; start++) {
+        if (isOutOfTime()) {
+          return improved;
+        }
+        int end = start + length - 1;
+        int previous = order[start - 1];
+        int first = order[start];
+        int last = order[end];
+        // What taking the run out saves, joining the stops either side of it
+        double saving = costs[previous][first];
+        if (end + 1 < count) {
+          int next = order[end + 1];
+          saving += costs[last][next] - costs[previous][next];
+        }
+        int bestPosition = -1;
+        double bestDelta = -MIN_IMPROVEMENT;
+        for (int position = 0; position < count; position++) {
+          if (position >= start - 1 && position <= end) {
+            continue;
+          }
+          // What putting the run back in after this position costs
+          int before = order[position];
+          double cost = costs[before][first];
+          if (position + 1 < count) {
+            int after = order[position + 1];
+            cost += costs[last][after] - costs[before][after];
+          }
+          if (cost - saving < bestDelta) {
+            bestDelta = cost - saving;
+            bestPosition = position;
+          }
+        }
+        if (bestPosition >= 0) {
+          move(start, end, bestPosition);
+          improvementCount++;
+          improved = true;
+        }
+      }
+    }
+    return improved;
+  }
+
+  private void reverse(int from, int to) {
+    while (from < to) {
+      int stop = order[from];
+      order[from++] = order[to];
+      order[to--] = stop;
+    }
+  }
+
+  /**
+   * Move the run of stops from start to end so that it follows the stop at a position.
+   */
+  private void move(int start, int end, int position) {
+    int length = end - start + 1;
+    int[] run = new int[length];
+    System.arraycopy(order, start, run, 0, length);
+    if (position < start) {
+      System.arraycopy(order, position + 1, order, position + 1 + length, start - position - 1);
+      System.arraycopy(run, 0, order, position + 1, length);
+    } else {
+      System.arraycopy(order, end + 1, order, start, position - end);
+      System.arraycopy(run, 0, order, position - length + 1, length);
+    }
+  }
+
+  private void updateRunningCosts() {
+    for (int i = 1; i < order.length; i++) {
+      forwardCosts[i] = forwardCosts[i - 1] + costs[order[i - 1]][order[i]];
+      backwardCosts[i] = backwardCosts[i - 1] + costs[order[i]][order[i - 1]];
+    }
+  }
+
+  private boolean isOutOfTime() {
+    return System.nanoTime() - deadlineNanos > 0;
+  }
+
+  /**
+   * An order of the stops and its cost.
+   */
+  public static class Solution {
+
+    private final int[] order;
+    private final double cost;
+    private final boolean localOptimum;
+    private final int improvementCount;
+    private final long elapsedNanos;
+
+    Solution(int[] order, double cost, boolean localOptimum, int improvementCount, long elapsedNanos) {
+      this.order = order;
+      this.cost = cost;
+      this.localOptimum = localOptimum;
+      this.improvementCount = improvementCount;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the indices of the stops in the order to visit them, starting with 0
+     */
+    @NonNull
+    public int[] getOrder() {
+      return order;
+    }
+
+    public double getCost() {
+      return cost;
+    }
+
+    /**
+     * @return whether the order can't be improved by one more move, rather than the time running out
+     */
+    public boolean isLocalOptimum() {
+      return localOptimum;
+    }
+
+    public int getImprovementCount() {
+      return improvementCount;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+}
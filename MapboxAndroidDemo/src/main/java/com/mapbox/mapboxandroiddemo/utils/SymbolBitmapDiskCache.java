@@ -0,0 +1,138 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import timber.log.Timber;
+
+/**
+ * Content-addressed disk cache for rendered symbol Bitmaps, stored as PNG files in the app's cache
+ * folder. Files are named after a hash of everything that went into drawing the image, so an entry
+ * never goes stale: a change to the feature or the layout gives a new key. The least recently used
+ * files are deleted once the folder grows over its size limit.
+ */
+public class SymbolBitmapDiskCache {
+
+  private static final String CACHE_FOLDER = "symbol-images";
+  private static final String FILE_EXTENSION = ".png";
+  private static final long DEFAULT_MAX_SIZE_BYTES = 10 * 1024 * 1024;
+
+  private final File directory;
+  private final long maxSizeBytes;
+
+  public SymbolBitmapDiskCache(@NonNull Context context) {
+    this(new File(context.getCacheDir(), CACHE_FOLDER), DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  public SymbolBitmapDiskCache(@NonNull File directory, long maxSizeBytes) {
+    this.directory = directory;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Read a cached Bitmap.
+   *
+   * @param key a key created with {@link ContentHash#sha1Hex(String)}
+   * @return the Bitmap, or null if it isn't cached
+   */
+  @WorkerThread
+  @Nullable
+  public synchronized Bitmap get(@NonNull String key) {
+    File file = getFile(key);
+    if (!file.exists()) {
+      return null;
+    }
+    Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+    if (bitmap == null) {
+      Timber.d("Deleting unreadable symbol cache file %s", file.getName());
+      file.delete();
+      return null;
+    }
+    file.setLastModified(System.currentTimeMillis());
+    return bitmap;
+  }
+
+  /**
+   * Write a Bitmap to the cache, then trim the cache back to its size limit.
+   *
+   * @param key    a key created with {@link ContentHash#sha1Hex(String)}
+   * @param bitmap the Bitmap to cache
+   */
+  @WorkerThread
+  public synchronized void put(@NonNull String key, @NonNull Bitmap bitmap) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Timber.e("Unable to create symbol cache folder %s", directory);
+      return;
+    }
+    File file = getFile(key);
+    File tempFile = new File(directory, key + ".tmp");
+    OutputStream outputStream = null;
+    try {
+      outputStream = new FileOutputStream(tempFile);
+      bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+      outputStream.close();
+      outputStream = null;
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Unable to rename " + tempFile + " to " + file);
+      }
+    } catch (IOException exception) {
+      Timber.e(exception, "Exception writing symbol cache file %s", file.getName());
+      tempFile.delete();
+    } finally {
+      if (outputStream != null) {
+        try {
+          outputStream.close();
+        } catch (IOException exception) {
+          Timber.d("Exception closing symbol cache file: %s", exception.toString());
+        }
+      }
+    }
+    trimToSize();
+  }
+
+  private File getFile(String key) {
+    return new File(directory, key + FILE_EXTENSION);
+  }
+
+  private void trimToSize() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    long totalSize = 0;
+    for (File file : files) {
+      totalSize += file.length();
+    }
+    if (totalSize <= maxSizeBytes) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File first, File second) {
+        long firstModified = first.lastModified();
+        long secondModified = second.lastModified();
+        return firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+      }
+    });
+    for (File file : files) {
+      if (totalSize <= maxSizeBytes) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        totalSize -= length;
+      }
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+
+import java.util.HashMap;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Draws Android SDK Views into Bitmaps to be used as SymbolLayer icons.
+ * <p>
+ * {@link #generate(Context, List, ViewBinder)} inflates a single View and reuses it for every Feature,
+ * and returns one Bitmap per Feature, ready for a single Style.addImages call.
+ * </p>
+ */
+public final class SymbolBitmapGenerator {
+
+  private SymbolBitmapGenerator() {
+  }
+
+  /**
+   * Inflates and fills in the View which is drawn for each Feature.
+   */
+  public abstract static class ViewBinder {
+
+    /**
+     * Inflate the View that will be reused for every Feature.
+     *
+     * @param inflater a LayoutInflater for the rendering context
+     * @return the View to bind Features to
+     */
+    @NonNull
+    public abstract View createView(@NonNull LayoutInflater inflater);
+
+    /**
+     * Fill in the View for a Feature.
+     *
+     * @param view    a View returned by {@link #createView(LayoutInflater)}
+     * @param feature the Feature to show
+     * @return the image id to store the Bitmap under, or null to skip the Feature
+     */
+    @Nullable
+    public abstract String bindView(@NonNull View view, @NonNull Feature feature);
+
+    /**
+     * Called after a bound View has been measured, laid out and drawn, before it's reused for the
+     * next Feature. Override to keep layout information such as hit boxes.
+     *
+     * @param view    the View which was just drawn
+     * @param imageId the image id returned by {@link #bindView(View, Feature)}
+     */
+    public void onViewRendered(@NonNull View view, @NonNull String imageId) {
+    }
+
+    /**
+     * The image id for a Feature, without binding a View. Needed to render symbols on demand with
+     * {@link SymbolImageProvider}.
+     *
+     * @param feature the Feature to show
+     * @return the image id {@link #bindView(View, Feature)} would return, or null to skip the Feature
+     */
+    @Nullable
+    public String getImageId(@NonNull Feature feature) {
+      return null;
+    }
+
+    /**
+     * Describes everything about a Feature which changes its View. Symbols are only redrawn when this
+     * changes, and it's hashed into the disk cache key by {@link SymbolImageProvider}. Defaults to
+     * all of the Feature's properties, override it to leave out properties the View doesn't show.
+     *
+     * @param feature the Feature to show
+     * @return the content key
+     */
+    @NonNull
+    public String getContentKey(@NonNull Feature feature) {
+      JsonObject properties = feature.properties();
+      return properties == null ? "" : properties.toString();
+    }
+  }
+
+  /**
+   * Generate a Bitmap from an Android SDK View.
+   *
+   * @param view the View to be drawn to a Bitmap
+   * @return the generated bitmap
+   */
+  @NonNull
+  public static Bitmap generate(@NonNull View view) {
+    measureAndLayout(view);
+    Bitmap bitmap = Bitmap.createBitmap(view.getMeasuredWidth(), view.getMeasuredHeight(), Bitmap.Config.ARGB_8888);
+    bitmap.eraseColor(Color.TRANSPARENT);
+    Canvas canvas = new Canvas(bitmap);
+    view.draw(canvas);
+    return bitmap;
+  }
+
+  /**
+   * Render a Bitmap for each Feature with one View. If the calling thread is interrupted, the
+   * remaining Features are skipped and the Bitmaps rendered so far are returned.
+   *
+   * @param context  the context used to inflate the View
+   * @param features the Features to render
+   * @param binder   inflates and fills in the View for each Feature
+   * @return the Bitmaps keyed by the image ids returned by the binder
+   */
+  @WorkerThread
+  @NonNull
+  public static HashMap<String, Bitmap> generate(@NonNull Context context, @NonNull List<Feature> features,
+                                                 @NonNull ViewBinder binder) {
+    long startTime = SystemClock.elapsedRealtime();
+    HashMap<String, Bitmap> imagesMap = new HashMap<>();
+    if (features.isEmpty()) {
+      return imagesMap;
+    }
+    View view = binder.createView(LayoutInflater.from(context));
+    for (Feature feature : features) {
+      if (Thread.currentThread().isInterrupted()) {
+        break;
+      }
+      String imageId = binder.bindView(view, feature);
+      if (imageId != null) {
+        imagesMap.put(imageId, generate(view));
+        binder.onViewRendered(view, imageId);
+      }
+    }
+    Timber.d("Generated %1$d of %2$d symbol bitmaps in %3$d ms", imagesMap.size(), features.size(),
+      SystemClock.elapsedRealtime() - startTime);
+    return imagesMap;
+  }
+
+  /**
+   * Measure a View at its natural size and lay it out at the origin, the same way it's done before
+   * it's drawn into a symbol Bitmap.
+   *
+   * @param view the View to measure and lay out
+   */
+  public static void measureAndLayout(@NonNull View view) {
+    int measureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+    view.measure(measureSpec, measureSpec);
+    view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+  }
+}
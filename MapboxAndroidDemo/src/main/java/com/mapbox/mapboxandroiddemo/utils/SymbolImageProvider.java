@@ -0,0 +1,380 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.v4.util.LruCache;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.mapboxsdk.maps.Style;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Renders View based symbol images and keeps the Style holding the ones a layer shows.
+ * {@link #update(LifecycleOwner, Style, Collection)} is called with the features a layer currently
+ * shows, for example the selected ones or the ones in the viewport. Only those images are added to
+ * the Style, and images which are no longer shown are removed.
+ * <p>
+ * In {@link Mode#ON_DEMAND} mode an image is only drawn once its feature is shown. Missing images are
+ * looked up in a small memory cache, then in a {@link SymbolBitmapDiskCache}, and only drawn when
+ * neither has them. The cache key is a hash of the layout, the screen density and font scale, and the
+ * feature's content key, so images drawn on a previous launch are reused as long as nothing that
+ * changes them has changed.
+ * </p>
+ * <p>
+ * In {@link Mode#EAGER} mode {@link #prefetch(LifecycleOwner, Collection)} draws every feature's image
+ * with one View from {@link SymbolBitmapGenerator} once the data has loaded, and all of them are kept in
+ * memory, so showing one never waits. That suits a small data set which is tapped through quickly.
+ * </p>
+ */
+public class SymbolImageProvider {
+
+  /**
+   * When images are drawn.
+   */
+  public enum Mode {
+    /**
+     * Draw an image when its feature is first shown.
+     */
+    ON_DEMAND,
+    /**
+     * Draw every image in {@link #prefetch(LifecycleOwner, Collection)} and keep all of them in memory.
+     */
+    EAGER
+  }
+
+  private static final int MEMORY_CACHE_SIZE_BYTES = 2 * 1024 * 1024;
+
+  private final Context context;
+  private final SymbolBitmapGenerator.ViewBinder binder;
+  private final Mode mode;
+  private final SymbolBitmapDiskCache diskCache;
+  private final String layoutKey;
+  private final LruCache<String, Bitmap> memoryCache;
+
+  // image id -> cache key of the image the Style holds under that id
+  private final Map<String, String> styleImageKeys = new HashMap<>();
+  // image id -> cache key of the image which should be shown
+  private final Map<String, String> wantedImageKeys = new HashMap<>();
+  private final Set<String> pendingKeys = new HashSet<>();
+  private Style style;
+  private int renderCount;
+  private int diskHitCount;
+  private int memoryHitCount;
+
+  /**
+   * Create a provider which draws images on demand.
+   *
+   * @param context   the context used to inflate the Views
+   * @param binder    inflates and fills in the View for each feature. It has to implement
+   *                  {@link SymbolBitmapGenerator.ViewBinder#getImageId(Feature)}
+   * @param layoutKey identifies the layout and binder, change it whenever they change so that images
+   *                  cached by older versions aren't reused
+   * @param diskCache the disk cache to keep drawn images in
+   */
+  public SymbolImageProvider(@NonNull Context context, @NonNull SymbolBitmapGenerator.ViewBinder binder,
+                             @NonNull String layoutKey, @NonNull SymbolBitmapDiskCache diskCache) {
+    this(context, binder, layoutKey, diskCache, Mode.ON_DEMAND);
+  }
+
+  /**
+   * @param context   the context used to inflate the Views
+   * @param binder    inflates and fills in the View for each feature. It has to implement
+   *                  {@link SymbolBitmapGenerator.ViewBinder#getImageId(Feature)}
+   * @param layoutKey identifies the layout and binder, change it whenever they change so that images
+   *                  cached by older versions aren't reused
+   * @param diskCache the disk cache to keep drawn images in
+   * @param mode      whether images are drawn when they're first shown or all at once
+   */
+  public SymbolImageProvider(@NonNull Context context, @NonNull SymbolBitmapGenerator.ViewBinder binder,
+                             @NonNull String layoutKey, @NonNull SymbolBitmapDiskCache diskCache,
+                             @NonNull Mode mode) {
+    this.context = context.getApplicationContext();
+    this.binder = binder;
+    this.mode = mode;
+    this.diskCache = diskCache;
+    Configuration configuration = context.getResources().getConfiguration();
+    this.layoutKey = layoutKey + "|" + context.getResources().getDisplayMetrics().densityDpi
+      + "|" + configuration.fontScale;
+    // Eagerly drawn images are all kept, so the cache never evicts them
+    this.memoryCache = new LruCache<String, Bitmap>(
+      mode == Mode.EAGER ? Integer.MAX_VALUE : MEMORY_CACHE_SIZE_BYTES) {
+      @Override
+      protected int sizeOf(String key, Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+      }
+    };
+  }
+
+  /**
+   * Make the Style hold the images of the given features, and only those. Images already drawn are
+   * added straight away, the rest are loaded or drawn on a background task bound to the owner's
+   * lifecycle and added when they're ready.
+   *
+   * @param owner    the Activity the background work is bound to
+   * @param style    the Style to add the images to
+   * @param features the features whose images are shown
+   */
+  @MainThread
+  public void update(@NonNull LifecycleOwner owner, @NonNull Style style, @NonNull Collection<Feature> features) {
+    if (this.style != style) {
+      // A new Style doesn't have any of the images
+      styleImageKeys.clear();
+      this.style = style;
+    }
+
+    wantedImageKeys.clear();
+    Map<String, Feature> wantedFeatures = new HashMap<>();
+    for (Feature feature : features) {
+      String imageId = binder.getImageId(feature);
+      if (imageId != null) {
+        wantedImageKeys.put(imageId, getKey(feature));
+        wantedFeatures.put(imageId, feature);
+      }
+    }
+
+    Iterator<Map.Entry<String, String>> iterator = styleImageKeys.entrySet().iterator();
+    while (iterator.hasNext()) {
+      String imageId = iterator.next().getKey();
+      if (!wantedImageKeys.containsKey(imageId)) {
+        style.removeImage(imageId);
+        iterator.remove();
+      }
+    }
+
+    List<RenderRequest> requests = new ArrayList<>();
+    for (Map.Entry<String, String> entry : wantedImageKeys.entrySet()) {
+      String imageId = entry.getKey();
+      String key = entry.getValue();
+      if (key.equals(styleImageKeys.get(imageId))) {
+        continue;
+      }
+      Bitmap bitmap = memoryCache.get(key);
+      if (bitmap != null) {
+        memoryHitCount++;
+        style.addImage(imageId, bitmap);
+        styleImageKeys.put(imageId, key);
+      } else if (pendingKeys.add(key)) {
+        requests.add(new RenderRequest(imageId, key, wantedFeatures.get(imageId)));
+      }
+    }
+    if (!requests.isEmpty()) {
+      BackgroundTaskExecutor.getInstance().execute(owner, new RenderTask(this, requests));
+    }
+  }
+
+  /**
+   * Draw the images of all features in the background, in {@link Mode#EAGER} mode, so that they're in memory
+   * before they're shown. Images already on disk are loaded instead. Does nothing in
+   * {@link Mode#ON_DEMAND} mode.
+   *
+   * @param owner    the Activity the background work is bound to
+   * @param features every feature which can be shown
+   */
+  @MainThread
+  public void prefetch(@NonNull LifecycleOwner owner, @NonNull Collection<Feature> features) {
+    if (mode != Mode.EAGER) {
+      return;
+    }
+    List<RenderRequest> requests = new ArrayList<>();
+    Set<String> imageIds = new HashSet<>();
+    for (Feature feature : features) {
+      String imageId = binder.getImageId(feature);
+      if (imageId == null || !imageIds.add(imageId)) {
+        continue;
+      }
+      String key = getKey(feature);
+      if (memoryCache.get(key) == null && pendingKeys.add(key)) {
+        requests.add(new RenderRequest(imageId, key, feature));
+      }
+    }
+    if (!requests.isEmpty()) {
+      BackgroundTaskExecutor.getInstance().execute(owner, new PrefetchTask(this, requests));
+    }
+  }
+
+  /**
+   * Drop the images kept in memory. Images added to the Style and the disk cache aren't affected.
+   */
+  public void clearMemoryCache() {
+    memoryCache.evictAll();
+  }
+
+  /**
+   * Summary of where images came from, for logging.
+   *
+   * @return the memory hit, disk hit and render counts as a String
+   */
+  @NonNull
+  public String getStats() {
+    return String.format(Locale.US, "memory hits=%1$d, disk hits=%2$d, rendered=%3$d, style images=%4$d",
+      memoryHitCount, diskHitCount, renderCount, styleImageKeys.size());
+  }
+
+  private String getKey(Feature feature) {
+    return ContentHash.sha1Hex(layoutKey + "|" + binder.getContentKey(feature));
+  }
+
+  @MainThread
+  private void onImagesReady(List<RenderRequest> requests) {
+    for (RenderRequest request : requests) {
+      pendingKeys.remove(request.key);
+      if (request.bitmap == null) {
+        continue;
+      }
+      memoryCache.put(request.key, request.bitmap);
+      if (request.fromDisk) {
+        diskHitCount++;
+      } else {
+        renderCount++;
+      }
+      // Only add images which are still wanted, the selection may have changed in the meantime
+      if (style != null && request.key.equals(wantedImageKeys.get(request.imageId))) {
+        style.addImage(request.imageId, request.bitmap);
+        styleImageKeys.put(request.imageId, request.key);
+      }
+    }
+    Timber.d("Symbol images ready: %s", getStats());
+  }
+
+  @MainThread
+  private void onImagesCancelled(List<RenderRequest> requests) {
+    for (RenderRequest request : requests) {
+      pendingKeys.remove(request.key);
+    }
+  }
+
+  private static class RenderRequest {
+    private final String imageId;
+    private final String key;
+    private final Feature feature;
+    private Bitmap bitmap;
+    private boolean fromDisk;
+
+    RenderRequest(String imageId, String key, Feature feature) {
+      this.imageId = imageId;
+      this.key = key;
+      this.feature = feature;
+    }
+  }
+
+  /**
+   * Loads the requested images from the disk cache, or draws and caches the ones it doesn't have.
+   */
+  private static class RenderTask extends BackgroundTask<List<RenderRequest>> {
+
+    private final SymbolImageProvider provider;
+    private final List<RenderRequest> requests;
+
+    RenderTask(SymbolImageProvider provider, List<RenderRequest> requests) {
+      super(Pool.CPU, PRIORITY_HIGH);
+      this.provider = provider;
+      this.requests = requests;
+    }
+
+    @SuppressWarnings("WrongThread")
+    @Override
+    protected List<RenderRequest> doInBackground() {
+      View view = null;
+      for (RenderRequest request : requests) {
+        if (isCancelled()) {
+          break;
+        }
+        request.bitmap = provider.diskCache.get(request.key);
+        if (request.bitmap != null) {
+          request.fromDisk = true;
+          continue;
+        }
+        if (view == null) {
+          view = provider.binder.createView(LayoutInflater.from(provider.context));
+        }
+        provider.binder.bindView(view, request.feature);
+        request.bitmap = SymbolBitmapGenerator.generate(view);
+        provider.binder.onViewRendered(view, request.imageId);
+        provider.diskCache.put(request.key, request.bitmap);
+      }
+      return requests;
+    }
+
+    @Override
+    protected void onPostExecute(List<RenderRequest> result) {
+      provider.onImagesReady(requests);
+    }
+
+    @Override
+    protected void onCancelled() {
+      provider.onImagesCancelled(requests);
+    }
+  }
+
+  /**
+   * Loads every requested image from the disk cache, then draws the ones it doesn't have and caches
+   * them.
+   */
+  private static class PrefetchTask extends BackgroundTask<List<RenderRequest>> {
+
+    private final SymbolImageProvider provider;
+    private final List<RenderRequest> requests;
+
+    PrefetchTask(SymbolImageProvider provider, List<RenderRequest> requests) {
+      super(Pool.CPU);
+      this.provider = provider;
+      this.requests = requests;
+    }
+
+    @Override
+    protected List<RenderRequest> doInBackground() {
+      List<Feature> missingFeatures = new ArrayList<>();
+      Map<String, RenderRequest> missingRequests = new HashMap<>();
+      for (RenderRequest request : requests) {
+        if (isCancelled()) {
+          return requests;
+        }
+        request.bitmap = provider.diskCache.get(request.key);
+        if (request.bitmap != null) {
+          request.fromDisk = true;
+        } else {
+          missingFeatures.add(request.feature);
+          missingRequests.put(request.imageId, request);
+        }
+      }
+
+      Map<String, Bitmap> bitmaps = SymbolBitmapGenerator.generate(provider.context, missingFeatures,
+        provider.binder);
+      for (Map.Entry<String, Bitmap> entry : bitmaps.entrySet()) {
+        RenderRequest request = missingRequests.get(entry.getKey());
+        if (request != null) {
+          request.bitmap = entry.getValue();
+          provider.diskCache.put(request.key, request.bitmap);
+        }
+      }
+      return requests;
+    }
+
+    @Override
+    protected void onPostExecute(List<RenderRequest> result) {
+      provider.onImagesReady(requests);
+    }
+
+    @Override
+    protected void onCancelled() {
+      provider.onImagesCancelled(requests);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out tokens at a steady rate, saving up to a burst while they aren't taken, for keeping
+ * requests to an API under its rate limit.
+ */
+class TokenBucket {
+
+  private final double tokensPerNano;
+  private final double capacity;
+  private double tokens;
+  private long lastRefillNanos = System.nanoTime();
+
+  TokenBucket(double tokensPerSecond, int capacity) {
+    this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.capacity = capacity;
+    this.tokens = capacity;
+  }
+
+  /**
+   * Take a token, waiting for one if there are none.
+   */
+  synchronized void acquire() throws InterruptedException {
+    while (true) {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+      lastRefillNanos = now;
+      if (tokens >= 1) {
+        tokens--;
+        return;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one layer of features as a Mapbox Vector Tile, the protocol buffer format vector sources
+ * read, without a protocol buffer library.
+ * <p>
+ * Geometries are given already encoded as MVT commands in tile coordinates, see
+ * {@link #command(int, int)} and {@link #zigZag(int)}. Property keys and values are shared between
+ * the features of the layer. Numbers that are whole are written as integers and other numbers as
+ * doubles, nested objects and arrays are written as their JSON. The encoder can be reused for
+ * another tile after {@link #encode()}.
+ * </p>
+ */
+public class VectorTileEncoder {
+
+  public static final int GEOMETRY_POINT = 1;
+  public static final int GEOMETRY_LINE = 2;
+  public static final int GEOMETRY_POLYGON = 3;
+
+  public static final int COMMAND_MOVE_TO = 1;
+  public static final int COMMAND_LINE_TO = 2;
+  public static final int COMMAND_CLOSE_PATH = 7;
+
+  private static final int VERSION = 2;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int WIRE_VARINT = 0;
+  private static final int WIRE_FIXED64 = 1;
+  private static final int WIRE_LENGTH_DELIMITED = 2;
+
+  private final String layerName;
+  private final int extent;
+  private final Map<String, Integer> keys = new HashMap<>();
+  private final List<String> keyList = new ArrayList<>();
+  private final Map<Object, Integer> values = new HashMap<>();
+  private final List<Object> valueList = new ArrayList<>();
+  private final ProtoWriter features = new ProtoWriter();
+  private final ProtoWriter feature = new ProtoWriter();
+  private final ProtoWriter packed = new ProtoWriter();
+  private int[] tags = new int[32];
+  private int featureCount;
+
+  /**
+   * @param layerName the name of the layer, which style layers refer to as their source layer
+   * @param extent    the size of the tile in tile coordinates, usually 4096
+   */
+  public VectorTileEncoder(@NonNull String layerName, int extent) {
+    this.layerName = layerName;
+    this.extent = extent;
+  }
+
+  /**
+   * Encode an MVT command.
+   *
+   * @param id    one of {@link #COMMAND_MOVE_TO}, {@link #COMMAND_LINE_TO} or {@link #COMMAND_CLOSE_PATH}
+   * @param count how many times the command repeats
+   * @return the command integer
+   */
+  public static int command(int id, int count) {
+    return (id & 0x7) | (count << 3);
+  }
+
+  /**
+   * Encode a command parameter, a change in tile coordinates from the last point.
+   */
+  public static int zigZag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  /**
+   * Add a feature to the layer.
+   *
+   * @param id         the id of the feature, or a negative number to leave it out
+   * @param properties the properties of the feature
+   * @param type       one of {@link #GEOMETRY_POINT}, {@link #GEOMETRY_LINE} or {@link #GEOMETRY_POLYGON}
+   * @param geometry   the MVT commands and parameters of the geometry
+   * @param length     the number of integers of the geometry to write
+   */
+  public void addFeature(long id, @Nullable JsonObject properties, int type, @NonNull int[] geometry,
+                         int length) {
+    int tagCount = 0;
+    if (properties != null) {
+      for (Map.Entry<String, JsonElement> property : properties.entrySet()) {
+        Object value = toValue(property.getValue());
+        if (value == null) {
+          continue;
+        }
+        if (tagCount + 2 > tags.length) {
+          tags = Arrays.copyOf(tags, tags.length * 2);
+        }
+        tags[tagCount++] = indexOf(keys, keyList, property.getKey());
+        tags[tagCount++] = indexOf(values, valueList, value);
+      }
+    }
+
+    feature.reset();
+    if (id >= 0) {
+      feature.writeTag(1, WIRE_VARINT);
+      feature.writeVarint(id);
+    }
+    if (tagCount > 0) {
+      packed.reset();
+      for (int i = 0; i < tagCount; i++) {
+        packed.writeVarint(tags[i]);
+      }
+      feature.writeMessage(2, packed);
+    }
+    feature.writeTag(3, WIRE_VARINT);
+    feature.writeVarint(type);
+    packed.reset();
+    for (int i = 0; i < length; i++) {
+      packed.writeVarint(geometry[i] & 0xFFFFFFFFL);
+    }
+    feature.writeMessage(4, packed);
+
+    features.writeMessage(2, feature);
+    featureCount++;
+  }
+
+  public int getFeatureCount() {
+    return featureCount;
+  }
+
+  /**
+   * Write the tile and reset the encoder for the next one.
+   *
+   * @return the tile, or an empty array if no features were added
+   */
+  @NonNull
+  public byte[] encode() {
+    if (featureCount == 0) {
+      return new byte[0];
+    }
+    ProtoWriter layer = new ProtoWriter();
+    layer.writeTag(15, WIRE_VARINT);
+    layer.writeVarint(VERSION);
+    layer.writeString(1, layerName);
+    layer.writeBytes(features.buffer, 0, features.position);
+    for (String key : keyList) {
+      layer.writeString(3, key);
+    }
+    ProtoWriter value = new ProtoWriter();
+    for (Object object : valueList) {
+      value.reset();
+      writeValue(value, object);
+      layer.writeMessage(4, value);
+    }
+    layer.writeTag(5, WIRE_VARINT);
+    layer.writeVarint(extent);
+
+    ProtoWriter tile = new ProtoWriter();
+    tile.writeMessage(3, layer);
+
+    keys.clear();
+    keyList.clear();
+    values.clear();
+    valueList.clear();
+    features.reset();
+    featureCount = 0;
+    return Arrays.copyOf(tile.buffer, tile.position);
+  }
+
+  private static <T> int indexOf(Map<T, Integer> indices, List<T> list, T item) {
+    Integer index = indices.get(item);
+    if (index == null) {
+      index = list.size();
+      indices.put(item, index);
+      list.add(item);
+    }
+    return index;
+  }
+
+  /**
+   * The value a property is written as: a String, Long, Double or Boolean, or null to leave it out.
+   */
+  @Nullable
+  private static Object toValue(JsonElement element) {
+    if (element == null || element.isJsonNull()) {
+      return null;
+    }
+    if (!element.isJsonPrimitive()) {
+      return element.toString();
+    }
+    JsonPrimitive primitive = element.getAsJsonPrimitive();
+    if (primitive.isBoolean()) {
+      return primitive.getAsBoolean();
+    } else if (primitive.isNumber()) {
+      double number = primitive.getAsDouble();
+      if (number == Math.rint(number) && Math.abs(number) < 1L << 53) {
+        return (long) number;
+      }
+      return number;
+    }
+    return primitive.getAsString();
+  }
+
+  private static void writeValue(ProtoWriter writer, Object value) {
+    if (value instanceof String) {
+      writer.writeString(1, (String) value);
+    } else if (value instanceof Double) {
+      writer.writeTag(3, WIRE_FIXED64);
+      writer.writeFixed64(Double.doubleToLongBits((Double) value));
+    } else if (value instanceof Long) {
+      long number = (Long) value;
+      if (number >= 0) {
+        writer.writeTag(5, WIRE_VARINT);
+        writer.writeVarint(number);
+      } else {
+        writer.writeTag(6, WIRE_VARINT);
+        writer.writeVarint((number << 1) ^ (number >> 63));
+      }
+    } else {
+      writer.writeTag(7, WIRE_VARINT);
+      writer.writeVarint((Boolean) value ? 1 : 0);
+    }
+  }
+
+  /**
+   * The protocol buffer wire format, written into a growing array.
+   */
+  private static class ProtoWriter {
+
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    void reset() {
+      position = 0;
+    }
+
+    void writeTag(int field, int wireType) {
+      writeVarint((field << 3) | wireType);
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    void writeFixed64(long value) {
+      ensureCapacity(8);
+      for (int i = 0; i < 8; i++) {
+        buffer[position++] = (byte) (value >>> (8 * i));
+      }
+    }
+
+    void writeString(int field, String value) {
+      byte[] bytes = value.getBytes(UTF_8);
+      writeTag(field, WIRE_LENGTH_DELIMITED);
+      writeVarint(bytes.length);
+      writeBytes(bytes, 0, bytes.length);
+    }
+
+    void writeMessage(int field, ProtoWriter message) {
+      writeTag(field, WIRE_LENGTH_DELIMITED);
+      writeVarint(message.position);
+      writeBytes(message.buffer, 0, message.position);
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) {
+      ensureCapacity(length);
+      System.arraycopy(bytes, offset, buffer, position, length);
+      position += length;
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      }
+    }
+  }
+}
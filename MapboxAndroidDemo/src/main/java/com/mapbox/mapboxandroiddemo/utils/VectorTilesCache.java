@@ -0,0 +1,101 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import com.mapbox.mapboxandroiddemo.MapboxApplication;
+
+import java.util.Locale;
+
+import timber.log.Timber;
+
+/**
+ * Application-wide cache of {@link GeoJsonVectorTiles}, keyed by the name the tiles are served under,
+ * so that reopening an example doesn't project and simplify its GeoJSON again, and the tiles cut and
+ * encoded the last time it was open are still there.
+ * <p>
+ * Tile sets are evicted least recently used first once there are more than the limit. When memory
+ * runs low, the encoded tiles are dropped before the tile sets.
+ * </p>
+ */
+public class VectorTilesCache {
+
+  private final LruCache<String, GeoJsonVectorTiles> cache;
+
+  /**
+   * @param maxTileSets how many tile sets to keep
+   */
+  public VectorTilesCache(int maxTileSets) {
+    cache = new LruCache<>(maxTileSets);
+  }
+
+  /**
+   * Get the cache held by the application.
+   *
+   * @param context any context from this app
+   * @return the application's VectorTilesCache
+   */
+  @NonNull
+  public static VectorTilesCache getInstance(@NonNull Context context) {
+    return ((MapboxApplication) context.getApplicationContext()).getVectorTilesCache();
+  }
+
+  /**
+   * @param name the name the tiles are served under
+   * @return the cached tiles, or null if they haven't been cut or were evicted
+   */
+  @Nullable
+  public GeoJsonVectorTiles get(@NonNull String name) {
+    GeoJsonVectorTiles tiles = cache.get(name);
+    Timber.d("Vector tiles cache %1$s for %2$s, %3$s", tiles != null ? "hit" : "miss", name, getStats());
+    return tiles;
+  }
+
+  /**
+   * Keep tiles under a name, replacing the tiles kept under it before.
+   *
+   * @param name  the name the tiles are served under
+   * @param tiles the tiles
+   */
+  public void put(@NonNull String name, @NonNull GeoJsonVectorTiles tiles) {
+    cache.put(name, tiles);
+  }
+
+  /**
+   * Release cached tiles in response to {@link android.app.Application#onTrimMemory(int)}.
+   *
+   * @param level the trim level passed to onTrimMemory
+   */
+  public void onTrimMemory(int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+      || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+      cache.evictAll();
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      for (GeoJsonVectorTiles tiles : cache.snapshot().values()) {
+        tiles.clearCache();
+      }
+    }
+    Timber.d("Vector tiles cache trimmed for level %1$d, %2$s", level, getStats());
+  }
+
+  /**
+   * Drop every cached tile set.
+   */
+  public void clear() {
+    cache.evictAll();
+  }
+
+  /**
+   * Summary of the cache counters, for logging.
+   *
+   * @return the size, hit, miss and eviction counts as a String
+   */
+  @NonNull
+  public String getStats() {
+    return String.format(Locale.US, "size=%1$d/%2$d tile sets, hits=%3$d, misses=%4$d, evictions=%5$d",
+      cache.size(), cache.maxSize(), cache.hitCount(), cache.missCount(), cache.evictionCount());
+  }
+}
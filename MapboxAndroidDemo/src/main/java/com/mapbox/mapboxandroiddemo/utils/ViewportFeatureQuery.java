@@ -0,0 +1,285 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import android.graphics.PointF;
+import android.graphics.RectF;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.mapboxsdk.camera.CameraPosition;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.mapboxsdk.maps.MapView;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the rendered features of some layers that are in the viewport, querying only what changed.
+ * <p>
+ * After the map was only panned, the area that was queried last time is still on screen, moved over.
+ * Only the strips of the viewport it doesn't cover are queried with queryRenderedFeatures, the
+ * features found are merged into a set keyed by their id and geometry, and the features whose bounds
+ * are no longer in the viewport are evicted. When the zoom, bearing or tilt changed, or the map moved
+ * by more than a viewport, the whole viewport is queried again.
+ * </p>
+ * <p>
+ * queryRenderedFeatures only finds features in tiles which have been rendered, so a query made while
+ * tiles were still loading can miss features in the part of the viewport that's never queried again.
+ * The whole viewport is also queried when the map wasn't fully rendered at the last query, and on
+ * every {@value #FULL_QUERY_INTERVAL}th update in any case.
+ * </p>
+ * <p>
+ * queryRenderedFeatures returns a feature once for every tile it's in, with the part of its geometry
+ * in that tile, so the pieces are kept apart by their geometry rather than merged by id.
+ * </p>
+ */
+public class ViewportFeatureQuery implements MapView.OnWillStartRenderingMapListener,
+  MapView.OnDidFinishRenderingMapListener {
+
+  static final int FULL_QUERY_INTERVAL = 10;
+
+  private final MapView mapView;
+  private final MapboxMap mapboxMap;
+  private final String[] layerIds;
+  private final Map<Key, Entry> entries = new LinkedHashMap<>();
+  private final RectF lastViewport = new RectF();
+  private LatLng lastCorner;
+  private double lastZoom;
+  private double lastBearing;
+  private boolean fullyRendered;
+  private boolean lastQueryFullyRendered;
+  private int updatesSinceFullQuery;
+  private FeatureCollection featureCollection = FeatureCollection.fromFeatures(new ArrayList<Feature>());
+
+  private int addedCount;
+  private int evictedCount;
+  private float queriedFraction;
+
+  /**
+   * Create a query which listens to the map view for when the map is fully rendered. Call
+   * {@link #destroy()} to stop listening.
+   *
+   * @param mapView   the view showing the map
+   * @param mapboxMap the map to query
+   * @param layerIds  the layers to query the features of
+   */
+  public ViewportFeatureQuery(@NonNull MapView mapView, @NonNull MapboxMap mapboxMap, @NonNull String... layerIds) {
+    this.mapView = mapView;
+    this.mapboxMap = mapboxMap;
+    this.layerIds = layerIds;
+    mapView.addOnWillStartRenderingMapListener(this);
+    mapView.addOnDidFinishRenderingMapListener(this);
+  }
+
+  /**
+   * Stop listening to the map view.
+   */
+  public void destroy() {
+    mapView.removeOnWillStartRenderingMapListener(this);
+    mapView.removeOnDidFinishRenderingMapListener(this);
+  }
+
+  @Override
+  public void onWillStartRenderingMap() {
+    fullyRendered = false;
+  }
+
+  @Override
+  public void onDidFinishRenderingMap(boolean fully) {
+    fullyRendered = fully;
+  }
+
+  /**
+   * Query the parts of the viewport that weren't covered by the last update.
+   *
+   * @param viewport the area of the map on screen, in pixels
+   * @return true if features were added or evicted, and {@link #getFeatureCollection()} changed
+   */
+  @MainThread
+  public boolean update(@NonNull RectF viewport) {
+    addedCount = 0;
+    evictedCount = 0;
+    CameraPosition camera = mapboxMap.getCameraPosition();
+
+    PointF offset = null;
+    if (lastCorner != null && lastQueryFullyRendered && updatesSinceFullQuery + 1 < FULL_QUERY_INTERVAL
+      && camera.zoom == lastZoom && camera.bearing == lastBearing && camera.tilt == 0
+      && viewport.equals(lastViewport)) {
+      // A pan moves the last viewport across the screen by as much as its corner moved
+      PointF corner = mapboxMap.getProjection().toScreenLocation(lastCorner);
+      offset = new PointF(corner.x - viewport.left, corner.y - viewport.top);
+      if (Math.abs(offset.x) >= viewport.width() || Math.abs(offset.y) >= viewport.height()) {
+        offset = null;
+      }
+    }
+
+    if (offset == null) {
+      evictedCount = entries.size();
+      entries.clear();
+      query(viewport);
+      queriedFraction = 1;
+      updatesSinceFullQuery = 0;
+    } else {
+      queryExposedStrips(viewport, offset);
+      evictOutside(mapboxMap.getProjection().getVisibleRegion().latLngBounds);
+      updatesSinceFullQuery++;
+    }
+    lastQueryFullyRendered = fullyRendered;
+
+    lastViewport.set(viewport);
+    lastCorner = mapboxMap.getProjection().fromScreenLocation(new PointF(viewport.left, viewport.top));
+    lastZoom = camera.zoom;
+    lastBearing = camera.bearing;
+
+    if (addedCount == 0 && evictedCount == 0) {
+      return false;
+    }
+    List<Feature> features = new ArrayList<>(entries.size());
+    for (Entry entry : entries.values()) {
+      features.add(entry.feature);
+    }
+    featureCollection = FeatureCollection.fromFeatures(features);
+    return true;
+  }
+
+  /**
+   * Forget the features, so the next update queries the whole viewport.
+   */
+  public void clear() {
+    entries.clear();
+    lastCorner = null;
+    featureCollection = FeatureCollection.fromFeatures(new ArrayList<Feature>());
+  }
+
+  /**
+   * @return the features in the viewport as of the last update
+   */
+  @NonNull
+  public FeatureCollection getFeatureCollection() {
+    return featureCollection;
+  }
+
+  /**
+   * Summary of the last update, for logging.
+   *
+   * @return the features kept, added and evicted and the part of the viewport queried as a String
+   */
+  @NonNull
+  public String getStats() {
+    return String.format(Locale.US, "features=%1$d, added=%2$d, evicted=%3$d, queried=%4$.0f%% of the viewport, "
+        + "fully rendered=%5$b", entries.size(), addedCount, evictedCount, queriedFraction * 100,
+      lastQueryFullyRendered);
+  }
+
+  /**
+   * Query the strips along the sides of the viewport which the last viewport, moved by the offset,
+   * doesn't cover. These are a strip the full height of the viewport on the left or right, and a
+   * strip on the top or bottom between them.
+   */
+  private void queryExposedStrips(RectF viewport, PointF offset) {
+    float queriedArea = 0;
+    if (offset.x > 0) {
+      queriedArea += query(new RectF(viewport.left, viewport.top, viewport.left + offset.x, viewport.bottom));
+    } else if (offset.x < 0) {
+      queriedArea += query(new RectF(viewport.right + offset.x, viewport.top, viewport.right, viewport.bottom));
+    }
+    float left = Math.max(viewport.left, viewport.left + offset.x);
+    float right = Math.min(viewport.right, viewport.right + offset.x);
+    if (offset.y > 0) {
+      queriedArea += query(new RectF(left, viewport.top, right, viewport.top + offset.y));
+    } else if (offset.y < 0) {
+      queriedArea += query(new RectF(left, viewport.bottom + offset.y, right, viewport.bottom));
+    }
+    queriedFraction = queriedArea / (viewport.width() * viewport.height());
+  }
+
+  /**
+   * Add the features in an area of the screen which aren't in the set yet.
+   *
+   * @return the area queried
+   */
+  private float query(RectF area) {
+    if (area.width() <= 0 || area.height() <= 0) {
+      return 0;
+    }
+    for (Feature feature : mapboxMap.queryRenderedFeatures(area, layerIds)) {
+      Key key = new Key(feature);
+      if (!entries.containsKey(key)) {
+        entries.put(key, new Entry(feature));
+        addedCount++;
+      }
+    }
+    return area.width() * area.height();
+  }
+
+  private void evictOutside(LatLngBounds bounds) {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.bounds[2] < bounds.getLonWest() || entry.bounds[0] > bounds.getLonEast()
+        || entry.bounds[3] < bounds.getLatSouth() || entry.bounds[1] > bounds.getLatNorth()) {
+        iterator.remove();
+        evictedCount++;
+      }
+    }
+  }
+
+  /**
+   * A feature's id and geometry, compared by value.
+   */
+  private static class Key {
+
+    @Nullable
+    private final String id;
+    @Nullable
+    private final Geometry geometry;
+    private final int hashCode;
+
+    Key(Feature feature) {
+      id = feature.id();
+      geometry = feature.geometry();
+      hashCode = 31 * (id != null ? id.hashCode() : 0) + (geometry != null ? geometry.hashCode() : 0);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return hashCode == key.hashCode
+        && (id != null ? id.equals(key.id) : key.id == null)
+        && (geometry != null ? geometry.equals(key.geometry) : key.geometry == null);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * A feature and its bounds.
+   */
+  private static class Entry {
+
+    private final Feature feature;
+    // West, south, east and north, in degrees
+    private final double[] bounds = new double[4];
+
+    Entry(Feature feature) {
+      this.feature = feature;
+      FeatureHitIndex.resetBounds(bounds);
+      FeatureHitIndex.addToBounds(feature.geometry(), bounds);
+    }
+  }
+}
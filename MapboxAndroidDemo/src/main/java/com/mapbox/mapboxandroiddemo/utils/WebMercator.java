@@ -0,0 +1,38 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+/**
+ * Converts between longitudes and latitudes and Web Mercator coordinates in units of the world's
+ * width, with x from 0 at -180 to 1 at 180 and y from 0 at the north edge to 1 at the south edge, as
+ * the map projects them. Multiply by the size of the world at a zoom to get pixels or tiles.
+ */
+public final class WebMercator {
+
+  /**
+   * The latitude of the edges of a square Web Mercator world, beyond which the map shows nothing.
+   */
+  public static final double MAX_LATITUDE = 85.0511287798;
+
+  private WebMercator() {
+  }
+
+  public static double longitudeToX(double longitude) {
+    return longitude / 360 + 0.5;
+  }
+
+  /**
+   * @param latitude the latitude, limited to {@link #MAX_LATITUDE} north and south
+   * @return y, from 0 to 1
+   */
+  public static double latitudeToY(double latitude) {
+    double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+    return 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+  }
+
+  public static double xToLongitude(double x) {
+    return (x - 0.5) * 360;
+  }
+
+  public static double yToLatitude(double y) {
+    return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+  }
+}
@@ -0,0 +1,178 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link ConcurrentFetcher} against a local server which answers each path with the path itself,
+ * holds back {@code /slow} until the test lets it go and answers {@code /missing} with a 404.
+ */
+public class ConcurrentFetcherTest {
+
+  private static final int THREAD_COUNT = 4;
+  private static final int REQUEST_COUNT = 16;
+  private static final long RESPONSE_DELAY_MILLIS = 50;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final CountDownLatch slowResponse = new CountDownLatch(1);
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private MockWebServer server;
+  private ExecutorService executor;
+  private ConcurrentFetcher<String> fetcher;
+
+  private final ConcurrentFetcher.BodyReader<String> reader = new ConcurrentFetcher.BodyReader<String>() {
+    @Override
+    public String read(InputStream body) throws IOException {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[256];
+      int count;
+      while ((count = body.read(buffer)) != -1) {
+        output.write(buffer, 0, count);
+      }
+      return output.toString("UTF-8");
+    }
+  };
+
+  @Before
+  public void setUp() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        int count = inFlight.incrementAndGet();
+        try {
+          int max = maxInFlight.get();
+          while (count > max && !maxInFlight.compareAndSet(max, count)) {
+            max = maxInFlight.get();
+          }
+          String path = request.getPath();
+          if (path.equals("/missing")) {
+            return new MockResponse().setResponseCode(404);
+          }
+          if (path.equals("/slow")) {
+            slowResponse.await(5, TimeUnit.SECONDS);
+          } else {
+            Thread.sleep(RESPONSE_DELAY_MILLIS);
+          }
+          return new MockResponse().setBody(path);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      }
+    });
+    server.start();
+    executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    OkHttpClient okHttpClient = new HttpStack(temporaryFolder.newFolder()).getClient();
+    fetcher = new ConcurrentFetcher<>(okHttpClient, executor);
+  }
+
+  @After
+  public void tearDown() throws IOException, InterruptedException {
+    slowResponse.countDown();
+    executor.shutdownNow();
+    executor.awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdown();
+  }
+
+  @Test
+  public void take_returnsEveryResponseWithAsManyInFlightAsThreads() throws Exception {
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      fetcher.submit(server.url("/" + i).toString(), reader);
+    }
+    boolean[] seen = new boolean[REQUEST_COUNT];
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      seen[Integer.parseInt(fetcher.take().get().substring(1))] = true;
+    }
+
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      assertTrue("No response for request " + i, seen[i]);
+    }
+    assertEquals(REQUEST_COUNT, server.getRequestCount());
+    assertEquals(THREAD_COUNT, maxInFlight.get());
+  }
+
+  @Test
+  public void take_returnsResponsesAsTheyFinish() throws Exception {
+    fetcher.submit(server.url("/slow").toString(), reader);
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      fetcher.submit(server.url("/" + i).toString(), reader);
+    }
+
+    // Every other response comes in while the first request is still waiting for its own
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      assertNotEquals("/slow", fetcher.take().get());
+    }
+    slowResponse.countDown();
+    assertEquals("/slow", fetcher.take().get());
+  }
+
+  @Test
+  public void take_failsErrorResponses() throws Exception {
+    fetcher.submit(server.url("/missing").toString(), reader);
+    fetcher.submit(server.url("/0").toString(), reader);
+
+    int failedCount = 0;
+    for (int i = 0; i < 2; i++) {
+      Future<String> future = fetcher.take();
+      try {
+        assertEquals("/0", future.get());
+      } catch (ExecutionException exception) {
+        assertTrue(exception.getCause() instanceof IOException);
+        failedCount++;
+      }
+    }
+    assertEquals(1, failedCount);
+  }
+
+  @Test
+  public void cancel_dropsQueuedRequests() throws Exception {
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      fetcher.submit(server.url("/slow").toString(), reader);
+    }
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      fetcher.submit(server.url("/" + i).toString(), reader);
+    }
+    // Wait for every thread to be held up by a slow request
+    long deadline = System.currentTimeMillis() + 5000;
+    while (inFlight.get() < THREAD_COUNT) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("The slow requests weren't made");
+      }
+      Thread.sleep(10);
+    }
+
+    fetcher.cancel();
+    slowResponse.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(THREAD_COUNT, server.getRequestCount());
+  }
+}
@@ -0,0 +1,159 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the peak Java heap of loading a GeoJSON asset as a String, with the streaming
+ * {@link GeoJsonAssetLoader} and with {@link GeoJsonBinaryAssetLoader}.
+ * <p>
+ * Each load runs in its own JVM with a fixed heap, after an array takes up part of it. The largest
+ * array that still leaves room for the load is found by bisection, and the peak is how much smaller
+ * it has to be than with no load at all. Sizing the array rather than the heap measures to the byte
+ * where the JVM rounds heap sizes to megabytes. The young generation is kept at 1 MB so that the
+ * limit is on the live objects. The loaded collection is held until the end, so the peak covers the
+ * result as well as what the parse needs on the way.
+ * </p>
+ * <p>
+ * Run from the MapboxAndroidDemo folder after a build, which writes the binary assets:
+ * {@code java -cp <test classpath> com.mapbox.mapboxandroiddemo.utils.GeoJsonLoaderHeapBenchmark}
+ * </p>
+ */
+public class GeoJsonLoaderHeapBenchmark {
+
+  private static final String[] ASSETS = {"la_hotels", "new-orleans-neighborhoods", "fake_norway_campsites"};
+  private static final String[] LOADERS = {"none", "string", "stream", "binary", "binary-decoded"};
+  private static final String WARM_UP_ASSET = "example";
+  private static final int HEAP_MB = 64;
+  private static final int RESOLUTION_KB = 16;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // Keep the array and the result reachable until the forked JVM exits
+  private static byte[] ballast;
+  private static Object loaded;
+
+  public static void main(String[] args) throws Exception {
+    String assetFolder = args.length > 1 ? args[1] : "src/main/assets";
+    String binaryFolder = args.length > 2 ? args[2] : "build/generated/assets/geojson-binary/geobin";
+    if (args.length > 0 && args[0].equals("load")) {
+      // Forked: load every way once so the same classes are loaded whichever load is measured
+      for (String loader : LOADERS) {
+        load(loader, assetFolder, binaryFolder, WARM_UP_ASSET);
+      }
+      System.gc();
+      ballast = new byte[Integer.parseInt(args[5]) * 1024];
+      loaded = load(args[3], assetFolder, binaryFolder, args[4]);
+      return;
+    }
+
+    System.out.println("Peak heap in KB, to within " + RESOLUTION_KB + " KB");
+    System.out.printf(Locale.US, "%-28s%10s%10s%10s%10s%16s%n", "asset", "file", "string", "stream", "binary",
+      "binary-decoded");
+    for (String asset : ASSETS) {
+      int baseline = findLargestBallastKb("none", assetFolder, binaryFolder, asset);
+      List<Integer> peaks = new ArrayList<>();
+      for (int i = 1; i < LOADERS.length; i++) {
+        peaks.add(baseline - findLargestBallastKb(LOADERS[i], assetFolder, binaryFolder, asset));
+      }
+      System.out.printf(Locale.US, "%-28s%10d%10d%10d%10d%16d%n", asset,
+        new File(assetFolder, asset + ".geojson").length() / 1024, peaks.get(0), peaks.get(1), peaks.get(2),
+        peaks.get(3));
+    }
+  }
+
+  private static Object load(String loader, String assetFolder, String binaryFolder, String asset)
+    throws IOException {
+    File textFile = new File(assetFolder, asset + ".geojson");
+    File binaryFile = new File(binaryFolder, asset + ".geobin");
+    switch (loader) {
+      case "none":
+        return null;
+      case "string":
+        // How the examples loaded assets before GeoJsonAssetLoader
+        return FeatureCollection.fromJson(new String(Files.readAllBytes(textFile.toPath()), UTF_8));
+      case "stream":
+        return loadStream(textFile);
+      case "binary":
+        return loadBinary(binaryFile, false);
+      case "binary-decoded":
+        return loadBinary(binaryFile, true);
+      default:
+        throw new IllegalArgumentException("Unknown loader " + loader);
+    }
+  }
+
+  private static FeatureCollection loadStream(File textFile) throws IOException {
+    InputStream inputStream = new FileInputStream(textFile);
+    try {
+      return GeoJsonAssetLoader.parse(inputStream, null);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private static FeatureCollection loadBinary(File binaryFile, boolean decode) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(binaryFile, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      FeatureCollection featureCollection = GeoJsonBinaryAssetLoader.fromBuffer(
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      if (decode) {
+        for (Feature feature : featureCollection.features()) {
+          feature.geometry();
+        }
+      }
+      return featureCollection;
+    } finally {
+      file.close();
+    }
+  }
+
+  private static int findLargestBallastKb(String loader, String assetFolder, String binaryFolder, String asset)
+    throws IOException, InterruptedException {
+    int passes = 0;
+    int fails = HEAP_MB * 1024;
+    if (!runsWith(passes, loader, assetFolder, binaryFolder, asset)) {
+      throw new IllegalStateException(loader + " doesn't load " + asset + " in " + HEAP_MB + " MB");
+    }
+    while (fails - passes > RESOLUTION_KB) {
+      int ballastKb = (fails + passes) / 2;
+      if (runsWith(ballastKb, loader, assetFolder, binaryFolder, asset)) {
+        passes = ballastKb;
+      } else {
+        fails = ballastKb;
+      }
+    }
+    return passes;
+  }
+
+  private static boolean runsWith(int ballastKb, String loader, String assetFolder, String binaryFolder,
+                                  String asset) throws IOException, InterruptedException {
+    Process process = new ProcessBuilder(
+      new File(System.getProperty("java.home"), "bin/java").getPath(),
+      "-Xms" + HEAP_MB + "m", "-Xmx" + HEAP_MB + "m", "-Xmn1m", "-XX:+UseSerialGC",
+      "-cp", System.getProperty("java.class.path"),
+      GeoJsonLoaderHeapBenchmark.class.getName(), "load", assetFolder, binaryFolder, loader, asset,
+      String.valueOf(ballastKb))
+      .redirectErrorStream(true)
+      .start();
+    // The OutOfMemoryError of a heap that's too small is expected, so the output is dropped
+    InputStream output = process.getInputStream();
+    byte[] buffer = new byte[4096];
+    while (output.read(buffer) != -1) {
+      // Drain the output so that the process can't block on it
+    }
+    return process.waitFor() == 0;
+  }
+}
@@ -0,0 +1,135 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import com.mapbox.geojson.FeatureCollection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of showing a GeoJSON asset from {@link GeoJsonVectorTiles}: projecting and simplifying
+ * it, then slicing and encoding the tiles of the first viewport, for the assets of
+ * MultipleGeometriesActivity and MarathonExtrusionActivity.
+ * <p>
+ * The viewport is a 1080x1920 px screen at the camera position in each example's layout, without the
+ * tilt. {@code firstViewport} starts from the parsed FeatureCollection, as the examples do once the
+ * asset is loaded, and {@code cachedViewport} gets the same tiles again from a warm tile set, as when
+ * an example is reopened while the tiles are still in {@link VectorTilesCache}.
+ * </p>
+ * <p>
+ * Run from the MapboxAndroidDemo folder:
+ * {@code java -cp <test classpath> com.mapbox.mapboxandroiddemo.utils.GeoJsonVectorTilesBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class GeoJsonVectorTilesBenchmark {
+
+  private static final String ASSET_FOLDER = "src/main/assets";
+  private static final int TILES_MAX_ZOOM = 14;
+  private static final int TILE_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+  private static final int TILE_SIZE = 512;
+  private static final int VIEWPORT_WIDTH = 1080;
+  private static final int VIEWPORT_HEIGHT = 1920;
+
+  @Param({"fake_norway_campsites", "marathon_route"})
+  public String asset;
+
+  private FeatureCollection featureCollection;
+  // The zoom, x and y of each tile in the viewport
+  private int[][] viewportTiles;
+  private GeoJsonVectorTiles warmTiles;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(GeoJsonVectorTilesBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    byte[] json = Files.readAllBytes(new File(ASSET_FOLDER, asset + ".geojson").toPath());
+    featureCollection = FeatureCollection.fromJson(new String(json, Charset.forName("UTF-8")));
+    // The camera of activity_multiple_geometries.xml and activity_marathon_extrusion.xml
+    if (asset.equals("fake_norway_campsites")) {
+      viewportTiles = getViewportTiles(16.951005, 65.509486, 3.296733);
+    } else {
+      viewportTiles = getViewportTiles(-118.335074, 33.334915, 12.692151);
+    }
+    warmTiles = new GeoJsonVectorTiles(featureCollection, asset, TILES_MAX_ZOOM, TILE_CACHE_SIZE_BYTES);
+    int byteCount = getTiles(warmTiles);
+    System.out.println(String.format(Locale.US, "%n%1$s: %2$d tiles in the first viewport, %3$d bytes encoded",
+      asset, viewportTiles.length, byteCount));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 10)
+  public int firstViewport() {
+    return getTiles(new GeoJsonVectorTiles(featureCollection, asset, TILES_MAX_ZOOM, TILE_CACHE_SIZE_BYTES));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public int cachedViewport() {
+    return getTiles(warmTiles);
+  }
+
+  private int getTiles(GeoJsonVectorTiles tiles) {
+    int byteCount = 0;
+    for (int[] tile : viewportTiles) {
+      byteCount += tiles.getTile(tile[0], tile[1], tile[2]).length;
+    }
+    return byteCount;
+  }
+
+  /**
+   * The tiles a map shows for a viewport, those of the camera zoom rounded down that the viewport
+   * overlaps.
+   */
+  private static int[][] getViewportTiles(double longitude, double latitude, double zoom) {
+    int tileZoom = (int) Math.floor(zoom);
+    int tileCount = 1 << tileZoom;
+    // The tiles are drawn larger than their size between two zooms
+    double tileSizePixels = TILE_SIZE * Math.pow(2, zoom - tileZoom);
+    double centerX = WebMercator.longitudeToX(longitude) * tileCount;
+    double centerY = WebMercator.latitudeToY(latitude) * tileCount;
+    int minX = (int) Math.floor(centerX - VIEWPORT_WIDTH / 2.0 / tileSizePixels);
+    // A world narrower than the viewport shows each tile once
+    int maxX = Math.min(minX + tileCount - 1, (int) Math.floor(centerX + VIEWPORT_WIDTH / 2.0 / tileSizePixels));
+    int minY = Math.max(0, (int) Math.floor(centerY - VIEWPORT_HEIGHT / 2.0 / tileSizePixels));
+    int maxY = Math.min(tileCount - 1, (int) Math.floor(centerY + VIEWPORT_HEIGHT / 2.0 / tileSizePixels));
+    List<int[]> tiles = new ArrayList<>();
+    for (int y = minY; y <= maxY; y++) {
+      for (int x = minX; x <= maxX; x++) {
+        // Wrap around the antimeridian
+        tiles.add(new int[] {tileZoom, ((x % tileCount) + tileCount) % tileCount, y});
+      }
+    }
+    return tiles.toArray(new int[tiles.size()][]);
+  }
+}
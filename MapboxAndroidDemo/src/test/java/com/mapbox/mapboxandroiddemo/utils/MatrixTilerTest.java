@@ -0,0 +1,209 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mapbox.api.directions.v5.DirectionsCriteria;
+import com.mapbox.geojson.Point;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link MatrixTiler} against a local Matrix endpoint which answers every request with made up
+ * distances computed from its coordinates, and records how many coordinates each request had.
+ */
+public class MatrixTilerTest {
+
+  private static final int POINT_COUNT = 520;
+  private static final int SOURCE_COUNT = 30;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Gson gson = new Gson();
+  private final List<Integer> coordinateCounts = new ArrayList<>();
+  private MockWebServer server;
+  private MatrixTiler tiler;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return respond(request.getRequestUrl());
+      }
+    });
+    server.start();
+    HttpStack httpStack = new HttpStack(temporaryFolder.newFolder());
+    tiler = new MatrixTiler(httpStack, "pk.test", DirectionsCriteria.PROFILE_DRIVING, server.url("/").toString());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  public void compute_keepsEveryRequestWithinTheCoordinateLimit() {
+    List<Point> points = createPoints();
+    MatrixTiler.Result result = tiler.compute(points.subList(0, SOURCE_COUNT), points);
+
+    assertEquals(0, result.getFailedTileCount());
+    assertEquals(result.getTileCount(), server.getRequestCount());
+    synchronized (coordinateCounts) {
+      assertEquals(result.getTileCount(), coordinateCounts.size());
+      for (int count : coordinateCounts) {
+        assertTrue("A request had " + count + " coordinates", count <= MatrixTiler.MAX_COORDINATES);
+      }
+    }
+  }
+
+  @Test
+  public void compute_fillsEveryCell() {
+    List<Point> points = createPoints();
+    List<Point> sources = points.subList(0, SOURCE_COUNT);
+    MatrixTiler.Result result = tiler.compute(sources, points);
+
+    for (int row = 0; row < sources.size(); row++) {
+      for (int column = 0; column < points.size(); column++) {
+        double distance = getDistance(sources.get(row), points.get(column));
+        assertEquals(distance, result.getDistances()[row][column], 1e-3);
+        assertEquals(getDuration(distance), result.getDurations()[row][column], 1e-3);
+      }
+    }
+  }
+
+  @Test
+  public void compute_again_isServedFromTheCache() {
+    List<Point> points = createPoints();
+    MatrixTiler.Result first = tiler.compute(points.subList(0, SOURCE_COUNT), points);
+    int requestCount = server.getRequestCount();
+    MatrixTiler.Result second = tiler.compute(points.subList(0, SOURCE_COUNT), points);
+
+    assertEquals(0, first.getCachedTileCount());
+    assertEquals(second.getTileCount(), second.getCachedTileCount());
+    assertEquals(requestCount, server.getRequestCount());
+    for (int row = 0; row < SOURCE_COUNT; row++) {
+      for (int column = 0; column < points.size(); column++) {
+        assertEquals(first.getDistances()[row][column], second.getDistances()[row][column], 0);
+      }
+    }
+  }
+
+  @Test
+  public void compute_withoutSourcesOrDestinations_isEmpty() {
+    List<Point> points = createPoints();
+    MatrixTiler.Result noSources = tiler.compute(new ArrayList<Point>(), points);
+    MatrixTiler.Result noDestinations = tiler.compute(points.subList(0, SOURCE_COUNT), new ArrayList<Point>());
+
+    assertEquals(0, noSources.getTileCount());
+    assertEquals(0, noSources.getDurations().length);
+    assertEquals(0, noDestinations.getTileCount());
+    assertEquals(SOURCE_COUNT, noDestinations.getDurations().length);
+    assertEquals(0, noDestinations.getDurations()[0].length);
+    assertEquals(0, server.getRequestCount());
+  }
+
+  /**
+   * Points around Boston, with six decimals like the coordinates of a request.
+   */
+  private static List<Point> createPoints() {
+    Random random = new Random(7);
+    List<Point> points = new ArrayList<>(POINT_COUNT);
+    for (int i = 0; i < POINT_COUNT; i++) {
+      points.add(Point.fromLngLat(Math.round((-71.1 + random.nextDouble() * 0.2) * 1e6) / 1e6,
+        Math.round((42.3 + random.nextDouble() * 0.1) * 1e6) / 1e6));
+    }
+    return points;
+  }
+
+  private static double getDistance(Point from, Point to) {
+    return Math.abs(from.longitude() - to.longitude()) * 80000 + Math.abs(from.latitude() - to.latitude()) * 111000;
+  }
+
+  private static double getDuration(double distance) {
+    return distance / 10;
+  }
+
+  /**
+   * Answer a request to /directions-matrix/v1/mapbox/{profile}/{coordinates}.
+   */
+  private MockResponse respond(HttpUrl url) {
+    List<String> segments = url.pathSegments();
+    List<Point> coordinates = new ArrayList<>();
+    for (String coordinate : segments.get(segments.size() - 1).split(";")) {
+      String[] lngLat = coordinate.split(",");
+      coordinates.add(Point.fromLngLat(Double.parseDouble(lngLat[0]), Double.parseDouble(lngLat[1])));
+    }
+    synchronized (coordinateCounts) {
+      coordinateCounts.add(coordinates.size());
+    }
+    if (coordinates.size() > MatrixTiler.MAX_COORDINATES) {
+      return new MockResponse().setResponseCode(422);
+    }
+
+    List<Point> sources = getPoints(coordinates, url.queryParameter("sources"));
+    List<Point> destinations = getPoints(coordinates, url.queryParameter("destinations"));
+    JsonArray durations = new JsonArray();
+    JsonArray distances = new JsonArray();
+    for (Point source : sources) {
+      JsonArray durationRow = new JsonArray();
+      JsonArray distanceRow = new JsonArray();
+      for (Point destination : destinations) {
+        double distance = getDistance(source, destination);
+        durationRow.add(getDuration(distance));
+        distanceRow.add(distance);
+      }
+      durations.add(durationRow);
+      distances.add(distanceRow);
+    }
+    JsonObject body = new JsonObject();
+    body.addProperty("code", "Ok");
+    body.add("durations", durations);
+    body.add("distances", distances);
+    body.add("sources", getWaypoints(sources));
+    body.add("destinations", getWaypoints(destinations));
+    return new MockResponse().setHeader("Content-Type", "application/json").setBody(gson.toJson(body));
+  }
+
+  private static List<Point> getPoints(List<Point> coordinates, String indices) {
+    List<Point> points = new ArrayList<>();
+    for (String index : indices.split(";")) {
+      points.add(coordinates.get(Integer.parseInt(index)));
+    }
+    return points;
+  }
+
+  private static JsonArray getWaypoints(List<Point> points) {
+    JsonArray waypoints = new JsonArray();
+    for (Point point : points) {
+      JsonArray location = new JsonArray();
+      location.add(point.longitude());
+      location.add(point.latitude());
+      JsonObject waypoint = new JsonObject();
+      waypoint.addProperty("name", "");
+      waypoint.add("location", location);
+      waypoints.add(waypoint);
+    }
+    return waypoints;
+  }
+}
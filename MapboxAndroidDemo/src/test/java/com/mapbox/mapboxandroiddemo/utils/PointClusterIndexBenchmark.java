@@ -0,0 +1,109 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Point;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of building a {@link PointClusterIndex} and of querying it for the clusters in a
+ * phone sized viewport, for 100k and 1M points.
+ * <p>
+ * The points are clumped around a few hundred centres like real point data, rather than spread
+ * evenly. Each query is a 1080x1920 px viewport around one of the centres, at a zoom from 0 to the
+ * index's max zoom, cycling through both.
+ * </p>
+ * <p>
+ * Run with {@code java -cp <test classpath> com.mapbox.mapboxandroiddemo.utils.PointClusterIndexBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class PointClusterIndexBenchmark {
+
+  private static final int CLUMP_COUNT = 300;
+  private static final double CLUMP_SPREAD_DEGREES = 2;
+  private static final int VIEWPORT_WIDTH = 1080;
+  private static final int VIEWPORT_HEIGHT = 1920;
+  private static final int TILE_SIZE = 512;
+  private static final int QUERY_COUNT = 1024;
+
+  @Param({"100000", "1000000"})
+  public int pointCount;
+
+  private final PointClusterIndex.Options options = new PointClusterIndex.Options();
+  private List<Feature> features;
+  private PointClusterIndex index;
+  private double[][] queries;
+  private int nextQuery;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PointClusterIndexBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    double[][] clumps = new double[CLUMP_COUNT][];
+    for (int i = 0; i < CLUMP_COUNT; i++) {
+      clumps[i] = new double[] {random.nextDouble() * 360 - 180, random.nextDouble() * 140 - 70};
+    }
+    features = new ArrayList<>(pointCount);
+    for (int i = 0; i < pointCount; i++) {
+      double[] clump = clumps[random.nextInt(CLUMP_COUNT)];
+      double longitude = clump[0] + random.nextGaussian() * CLUMP_SPREAD_DEGREES;
+      double latitude = Math.max(-85, Math.min(85, clump[1] + random.nextGaussian() * CLUMP_SPREAD_DEGREES));
+      features.add(Feature.fromGeometry(Point.fromLngLat(longitude, latitude)));
+    }
+    index = new PointClusterIndex(features, options);
+
+    queries = new double[QUERY_COUNT][];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      double[] clump = clumps[random.nextInt(CLUMP_COUNT)];
+      int zoom = i % 17;
+      double longitudeSpan = 360.0 * VIEWPORT_WIDTH / (TILE_SIZE << zoom);
+      double latitudeSpan = longitudeSpan * VIEWPORT_HEIGHT / VIEWPORT_WIDTH * Math.cos(Math.toRadians(clump[1]));
+      queries[i] = new double[] {clump[0] - longitudeSpan / 2, clump[1] - latitudeSpan / 2,
+        clump[0] + longitudeSpan / 2, clump[1] + latitudeSpan / 2, zoom};
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 5)
+  public PointClusterIndex build() {
+    return new PointClusterIndex(features, options);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public List<Feature> getClusters() {
+    double[] query = queries[nextQuery];
+    nextQuery = (nextQuery + 1) % QUERY_COUNT;
+    return index.getClusters(query[0], query[1], query[2], query[3], query[4]);
+  }
+}
@@ -0,0 +1,146 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Point;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of writing the GeoJSON a heatmap source is given for a phone sized viewport, with
+ * every point in the viewport against the cells of a {@link PointGridAggregator}, for 10k and 100k
+ * weighted points.
+ * <p>
+ * The raw upload is what HeatmapActivity sent before binning: the points in the viewport, found with a
+ * {@link KdPointIndex}, written as a FeatureCollection. The aggregated upload is the cells of 4 pixels
+ * in the viewport, as HeatmapActivity sends now. The queries are 1080x1920 px viewports around the
+ * clumps the points are drawn around, at the heatmap's zooms from 0 to 8, cycling through both. The
+ * average GeoJSON length of each upload is printed during setup, since it's what the map has to parse.
+ * </p>
+ * <p>
+ * Run with {@code java -cp <test classpath> com.mapbox.mapboxandroiddemo.utils.PointGridAggregatorBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class PointGridAggregatorBenchmark {
+
+  private static final int CLUMP_COUNT = 300;
+  private static final double CLUMP_SPREAD_DEGREES = 2;
+  private static final int VIEWPORT_WIDTH = 1080;
+  private static final int VIEWPORT_HEIGHT = 1920;
+  private static final int TILE_SIZE = 512;
+  private static final int MAX_ZOOM = 8;
+  private static final int CELL_SIZE_PIXELS = 4;
+  private static final int QUERY_COUNT = 256;
+
+  @Param({"10000", "100000"})
+  public int pointCount;
+
+  private List<Feature> features;
+  private KdPointIndex index;
+  private PointGridAggregator aggregator;
+  private final KdPointIndex.IntList queryResult = new KdPointIndex.IntList();
+  private double[][] queries;
+  private int nextQuery;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PointGridAggregatorBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    double[][] clumps = new double[CLUMP_COUNT][];
+    for (int i = 0; i < CLUMP_COUNT; i++) {
+      clumps[i] = new double[] {random.nextDouble() * 360 - 180, random.nextDouble() * 140 - 70};
+    }
+    features = new ArrayList<>(pointCount);
+    double[] longitudes = new double[pointCount];
+    double[] latitudes = new double[pointCount];
+    aggregator = new PointGridAggregator(0, MAX_ZOOM, CELL_SIZE_PIXELS);
+    for (int i = 0; i < pointCount; i++) {
+      double[] clump = clumps[random.nextInt(CLUMP_COUNT)];
+      longitudes[i] = Math.max(-180, Math.min(180, clump[0] + random.nextGaussian() * CLUMP_SPREAD_DEGREES));
+      latitudes[i] = Math.max(-85, Math.min(85, clump[1] + random.nextGaussian() * CLUMP_SPREAD_DEGREES));
+      // Weighed like HeatmapActivity's earthquakes, by magnitude over the magnitude of full weight
+      double magnitude = 1 + random.nextDouble() * 5;
+      Feature feature = Feature.fromGeometry(Point.fromLngLat(longitudes[i], latitudes[i]));
+      feature.addNumberProperty("mag", magnitude);
+      features.add(feature);
+      aggregator.add(longitudes[i], latitudes[i], magnitude / 6);
+    }
+    index = new KdPointIndex(longitudes, latitudes, pointCount);
+
+    queries = new double[QUERY_COUNT][];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      double[] clump = clumps[random.nextInt(CLUMP_COUNT)];
+      int zoom = i % (MAX_ZOOM + 1);
+      double longitudeSpan = Math.min(360, 360.0 * VIEWPORT_WIDTH / (TILE_SIZE << zoom));
+      double latitudeSpan = Math.min(170,
+        longitudeSpan * VIEWPORT_HEIGHT / VIEWPORT_WIDTH * Math.cos(Math.toRadians(clump[1])));
+      queries[i] = new double[] {clump[0] - longitudeSpan / 2, Math.max(-85, clump[1] - latitudeSpan / 2),
+        clump[0] + longitudeSpan / 2, Math.min(85, clump[1] + latitudeSpan / 2), zoom};
+    }
+
+    long rawLength = 0;
+    long aggregatedLength = 0;
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      nextQuery = i;
+      rawLength += uploadRaw().length();
+      nextQuery = i;
+      aggregatedLength += uploadAggregated().length();
+    }
+    nextQuery = 0;
+    System.out.println(String.format(Locale.US, "%n%1$d points, average GeoJSON length: raw %2$d, aggregated %3$d",
+      pointCount, rawLength / QUERY_COUNT, aggregatedLength / QUERY_COUNT));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public String uploadRaw() {
+    double[] query = queries[nextQuery];
+    nextQuery = (nextQuery + 1) % QUERY_COUNT;
+    queryResult.clear();
+    index.range(query[0], query[1], query[2], query[3], queryResult);
+    List<Feature> points = new ArrayList<>(queryResult.size());
+    for (int i = 0; i < queryResult.size(); i++) {
+      points.add(features.get(queryResult.get(i)));
+    }
+    return FeatureCollection.fromFeatures(points).toJson();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public String uploadAggregated() {
+    double[] query = queries[nextQuery];
+    nextQuery = (nextQuery + 1) % QUERY_COUNT;
+    return aggregator.getGeoJson(query[4], query[0], query[1], query[2], query[3]);
+  }
+}
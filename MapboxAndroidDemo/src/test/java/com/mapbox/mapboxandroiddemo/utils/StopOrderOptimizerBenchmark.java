@@ -0,0 +1,92 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import com.mapbox.geojson.Point;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of {@link StopOrderOptimizer#solve(double[][], long)} for 12, 100 and 500 random stops,
+ * including the haversine costs, as OptimizationActivity orders its stops.
+ * <p>
+ * The stops are spread over about 20 km around Boston. Each call orders the next of a few sets of
+ * stops. {@code solve} runs to a local optimum, and {@code solveWithinBudget} stops at the 8 ms budget
+ * OptimizationActivity gives it.
+ * </p>
+ * <p>
+ * Run with {@code java -cp <test classpath> com.mapbox.mapboxandroiddemo.utils.StopOrderOptimizerBenchmark}
+ * </p>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class StopOrderOptimizerBenchmark {
+
+  private static final int TRIP_COUNT = 16;
+  private static final long UNLIMITED_BUDGET_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final long ACTIVITY_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+  @Param({"12", "100", "500"})
+  public int stopCount;
+
+  private List<List<Point>> trips;
+  private int nextTrip;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(StopOrderOptimizerBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    trips = new ArrayList<>(TRIP_COUNT);
+    for (int trip = 0; trip < TRIP_COUNT; trip++) {
+      List<Point> stops = new ArrayList<>(stopCount);
+      for (int i = 0; i < stopCount; i++) {
+        stops.add(Point.fromLngLat(-71.2 + random.nextDouble() * 0.25, 42.25 + random.nextDouble() * 0.18));
+      }
+      trips.add(stops);
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public StopOrderOptimizer.Solution solve() {
+    return StopOrderOptimizer.solve(StopOrderOptimizer.haversineCosts(nextTrip()), UNLIMITED_BUDGET_NANOS);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public StopOrderOptimizer.Solution solveWithinBudget() {
+    return StopOrderOptimizer.solve(StopOrderOptimizer.haversineCosts(nextTrip()), ACTIVITY_BUDGET_NANOS);
+  }
+
+  private List<Point> nextTrip() {
+    List<Point> stops = trips.get(nextTrip);
+    nextTrip = (nextTrip + 1) % TRIP_COUNT;
+    return stops;
+  }
+}
@@ -0,0 +1,107 @@
+package com.mapbox.mapboxandroiddemo.utils;
+
+import com.mapbox.geojson.Point;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the orders {@link StopOrderOptimizer} finds for 12 random stops, the most the Optimization
+ * API takes, with the best orders found by Held-Karp.
+ */
+public class StopOrderOptimizerTest {
+
+  private static final int STOP_COUNT = 12;
+  private static final int TRIP_COUNT = 200;
+  private static final long TIME_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // These trips are 0.8% longer than the best orders on average
+  private static final double MAX_MEAN_GAP = 0.02;
+
+  @Test
+  public void solve_visitsEveryStopOnceStartingAtTheFirst() {
+    Random random = new Random(1);
+    for (int trip = 0; trip < TRIP_COUNT; trip++) {
+      StopOrderOptimizer.Solution solution =
+        StopOrderOptimizer.solve(StopOrderOptimizer.haversineCosts(createStops(random)), TIME_BUDGET_NANOS);
+
+      int[] order = solution.getOrder().clone();
+      assertEquals(0, order[0]);
+      Arrays.sort(order);
+      for (int i = 0; i < STOP_COUNT; i++) {
+        assertEquals(i, order[i]);
+      }
+      assertTrue(solution.isLocalOptimum());
+    }
+  }
+
+  @Test
+  public void solve_isCloseToHeldKarp() {
+    Random random = new Random(1);
+    double gapSum = 0;
+    for (int trip = 0; trip < TRIP_COUNT; trip++) {
+      double[][] costs = StopOrderOptimizer.haversineCosts(createStops(random));
+      double best = solveExactly(costs);
+      StopOrderOptimizer.Solution solution = StopOrderOptimizer.solve(costs, TIME_BUDGET_NANOS);
+
+      assertEquals(solution.getCost(), StopOrderOptimizer.getCost(costs, solution.getOrder()), 1e-6);
+      assertTrue("Trip " + trip + " is shorter than the best order", solution.getCost() >= best - 1e-6);
+      gapSum += solution.getCost() / best - 1;
+    }
+    double meanGap = gapSum / TRIP_COUNT;
+    assertTrue("The mean gap to the best order is " + meanGap, meanGap <= MAX_MEAN_GAP);
+  }
+
+  /**
+   * Stops spread over about 20 km around Boston.
+   */
+  private static List<Point> createStops(Random random) {
+    List<Point> stops = new ArrayList<>(STOP_COUNT);
+    for (int i = 0; i < STOP_COUNT; i++) {
+      stops.add(Point.fromLngLat(-71.2 + random.nextDouble() * 0.25, 42.25 + random.nextDouble() * 0.18));
+    }
+    return stops;
+  }
+
+  /**
+   * Held-Karp for the best cost of a trip starting at the first stop and ending at any stop.
+   */
+  private static double solveExactly(double[][] costs) {
+    int count = costs.length;
+    // The stops after the first, as bits of a set
+    int setCount = 1 << (count - 1);
+    double[][] best = new double[setCount][count - 1];
+    for (double[] row : best) {
+      Arrays.fill(row, Double.POSITIVE_INFINITY);
+    }
+    for (int last = 0; last < count - 1; last++) {
+      best[1 << last][last] = costs[0][last + 1];
+    }
+    for (int set = 1; set < setCount; set++) {
+      for (int last = 0; last < count - 1; last++) {
+        if ((set & (1 << last)) == 0 || best[set][last] == Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        for (int next = 0; next < count - 1; next++) {
+          if ((set & (1 << next)) != 0) {
+            continue;
+          }
+          int nextSet = set | (1 << next);
+          best[nextSet][next] = Math.min(best[nextSet][next], best[set][last] + costs[last + 1][next + 1]);
+        }
+      }
+    }
+    double result = Double.POSITIVE_INFINITY;
+    for (int last = 0; last < count - 1; last++) {
+      result = Math.min(result, best[setCount - 1][last]);
+    }
+    return result;
+  }
+}